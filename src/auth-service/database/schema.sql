@@ -5,11 +5,16 @@
 CREATE TABLE IF NOT EXISTS user_credentials (
     id SERIAL PRIMARY KEY,
     user_id UUID UNIQUE NOT NULL,
+    -- ユーザーサービスの users.username の写し（UserCredentialSync が同期する）
+    username VARCHAR(50),
     password_hash VARCHAR(255) NOT NULL,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
 );
 
+-- 既存のDBへの移行（再実行しても安全な形で列を追加する）
+ALTER TABLE user_credentials ADD COLUMN IF NOT EXISTS username VARCHAR(50);
+
 -- セッショントークンテーブル
 CREATE TABLE IF NOT EXISTS session_tokens (
     id SERIAL PRIMARY KEY,
@@ -31,10 +36,24 @@ CREATE TABLE IF NOT EXISTS login_history (
     FOREIGN KEY (user_id) REFERENCES user_credentials(user_id) ON DELETE CASCADE
 );
 
--- インデックス作成
-CREATE INDEX idx_user_credentials_user_id ON user_credentials(user_id);
-CREATE INDEX idx_session_tokens_token ON session_tokens(token);
-CREATE INDEX idx_session_tokens_user_id ON session_tokens(user_id);
-CREATE INDEX idx_login_history_user_id ON login_history(user_id);
+-- 失効（ログアウト）したJWTのID
+CREATE TABLE IF NOT EXISTS revoked_tokens (
+    jti VARCHAR(64) PRIMARY KEY,
+    expires_at TIMESTAMP NOT NULL,
+    revoked_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- インデックス作成（既存のDBに再実行しても失敗しないよう IF NOT EXISTS にする）
+CREATE INDEX IF NOT EXISTS idx_user_credentials_user_id ON user_credentials(user_id);
+-- ユーザー名でのログイン（名前の付け替えの同期途中で一時的に重複し得るため UNIQUE にしない）
+CREATE INDEX IF NOT EXISTS idx_user_credentials_username ON user_credentials(username);
+CREATE INDEX IF NOT EXISTS idx_session_tokens_token ON session_tokens(token);
+CREATE INDEX IF NOT EXISTS idx_session_tokens_user_id ON session_tokens(user_id);
+-- 期限切れセッションの少量ずつの削除（expires_at 順）に使用
+CREATE INDEX IF NOT EXISTS idx_session_tokens_expires_at ON session_tokens(expires_at);
+-- 他ノードの失効の差分取得（revoked_at 以降）と期限切れの失効の削除に使用
+CREATE INDEX IF NOT EXISTS idx_revoked_tokens_revoked_at ON revoked_tokens(revoked_at);
+CREATE INDEX IF NOT EXISTS idx_revoked_tokens_expires_at ON revoked_tokens(expires_at);
+CREATE INDEX IF NOT EXISTS idx_login_history_user_id ON login_history(user_id);
 
 SELECT 'Auth Service Schema created successfully' AS status;
@@ -3,12 +3,12 @@
 
 -- 認証情報データの挿入 (パスワードは "password123" のハッシュ値)
 -- BCryptでハッシュ化されたパスワード
-INSERT INTO user_credentials (user_id, password_hash) VALUES
-    ('05c66ceb-6ddc-4ada-b736-08702615ff48', '$2a$10$OSuuVFLoafV6AKzzptdQSeGXQIqx0rU53gtZvYwZ07Des/5txWC6q'), -- tanaka_taro
-    ('4f4777e4-dd9c-4d5b-a928-19a59b1d3ead', '$2a$10$OSuuVFLoafV6AKzzptdQSeGXQIqx0rU53gtZvYwZ07Des/5txWC6q'), -- suzuki_hanako
-    ('7bd6e35b-9c8e-4635-a47d-f7adce5c8ed9', '$2a$10$OSuuVFLoafV6AKzzptdQSeGXQIqx0rU53gtZvYwZ07Des/5txWC6q'), -- yamada_jiro
-    ('233c99d5-41ba-42f3-89fa-eb34644fe3b5', '$2a$10$OSuuVFLoafV6AKzzptdQSeGXQIqx0rU53gtZvYwZ07Des/5txWC6q'), -- sato_yuki
-    ('8a17f2c2-c1c8-4fee-ae95-8a483127bf1f', '$2a$10$OSuuVFLoafV6AKzzptdQSeGXQIqx0rU53gtZvYwZ07Des/5txWC6q'); -- takahashi_mai
+INSERT INTO user_credentials (user_id, username, password_hash) VALUES
+    ('05c66ceb-6ddc-4ada-b736-08702615ff48', 'tanaka_taro', '$2a$10$OSuuVFLoafV6AKzzptdQSeGXQIqx0rU53gtZvYwZ07Des/5txWC6q'),
+    ('4f4777e4-dd9c-4d5b-a928-19a59b1d3ead', 'suzuki_hanako', '$2a$10$OSuuVFLoafV6AKzzptdQSeGXQIqx0rU53gtZvYwZ07Des/5txWC6q'),
+    ('7bd6e35b-9c8e-4635-a47d-f7adce5c8ed9', 'yamada_jiro', '$2a$10$OSuuVFLoafV6AKzzptdQSeGXQIqx0rU53gtZvYwZ07Des/5txWC6q'),
+    ('233c99d5-41ba-42f3-89fa-eb34644fe3b5', 'sato_yuki', '$2a$10$OSuuVFLoafV6AKzzptdQSeGXQIqx0rU53gtZvYwZ07Des/5txWC6q'),
+    ('8a17f2c2-c1c8-4fee-ae95-8a483127bf1f', 'takahashi_mai', '$2a$10$OSuuVFLoafV6AKzzptdQSeGXQIqx0rU53gtZvYwZ07Des/5txWC6q');
 
 -- サンプルセッショントークンの挿入
 INSERT INTO session_tokens (user_id, token, expires_at) VALUES
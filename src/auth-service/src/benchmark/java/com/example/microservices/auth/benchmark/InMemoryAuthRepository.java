@@ -0,0 +1,95 @@
+package com.example.microservices.auth.benchmark;
+
+import com.example.microservices.auth.model.LoginHistoryEntry;
+import com.example.microservices.auth.model.SessionToken;
+import com.example.microservices.auth.repository.AuthRepository;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * ベンチマーク用のメモリ上の AuthRepository（DBの待ち時間を除いたアプリケーション側のコストを測る）
+ * セッショントークンのみ保持し、ログイン履歴は捨てる
+ */
+public class InMemoryAuthRepository extends AuthRepository {
+
+    private final ConcurrentHashMap<String, SessionToken> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+
+    public InMemoryAuthRepository() {
+        super(null, null);
+    }
+
+    @Override
+    public SessionToken createSessionToken(SessionToken token) {
+        token.setId(ids.incrementAndGet());
+        if (token.getCreatedAt() == null) {
+            token.setCreatedAt(LocalDateTime.now());
+        }
+        sessions.put(token.getToken(), token);
+        return token;
+    }
+
+    @Override
+    public Optional<SessionToken> findSessionByToken(String token) {
+        return Optional.ofNullable(sessions.get(token));
+    }
+
+    @Override
+    public void deleteSession(String token) {
+        sessions.remove(token);
+    }
+
+    @Override
+    public void recordLoginHistoryBatch(List<LoginHistoryEntry> entries) {
+    }
+
+    @Override
+    public LocalDateTime forEachLiveSessionToken(LocalDateTime createdSince, Consumer<String> consumer) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime latest = null;
+        for (SessionToken session : sessions.values()) {
+            if (!session.getExpiresAt().isAfter(now)
+                    || (createdSince != null && session.getCreatedAt().isBefore(createdSince))) {
+                continue;
+            }
+            consumer.accept(session.getToken());
+            if (latest == null || session.getCreatedAt().isAfter(latest)) {
+                latest = session.getCreatedAt();
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * CDIコンテナの代わりに @Inject フィールドへ値を設定する
+     */
+    static void inject(Object target, String fieldName, Object value) {
+        try {
+            Field field = target.getClass().getDeclaredField(fieldName);
+            field.setAccessible(true);
+            field.set(target, value);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot inject " + fieldName + " into " + target.getClass().getSimpleName(), e);
+        }
+    }
+
+    /**
+     * CDIコンテナの代わりにライフサイクルのメソッド（@PostConstruct / @PreDestroy など、パッケージプライベート）を呼ぶ
+     */
+    static void invoke(Object target, String methodName) {
+        try {
+            Method method = target.getClass().getDeclaredMethod(methodName);
+            method.setAccessible(true);
+            method.invoke(target);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot invoke " + methodName + " on " + target.getClass().getSimpleName(), e);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.microservices.auth.benchmark;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.example.microservices.auth.util.JwtUtil;
+import com.example.microservices.auth.util.TokenClaims;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JWT検証コストの比較
+ * - perCallVerifier     : 変更前の verifyToken。呼び出しごとに JWTVerifier を生成して検証する
+ * - perCallExtractBoth  : 変更前の extractUserId + extractUsername。同じトークンを2回検証・デコードする
+ * - cachedVerify        : kid ごとに使い回す検証器で1回だけ検証し、不変のクレームから値を取り出す
+ *
+ * 実行: mvn -Pbenchmark test-compile exec:exec -Djmh.args=JwtVerificationBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtVerificationBenchmark {
+
+    private static final String SECRET_KEY = "your-secret-key-change-this-in-production";
+    private static final Algorithm ALGORITHM = Algorithm.HMAC256(SECRET_KEY);
+
+    private JwtUtil jwtUtil;
+    private String token;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        System.setProperty("JWT_SECRET_KEY", SECRET_KEY);
+        // 変更前と同じ HS256 で比較する
+        System.setProperty("JWT_SIGNING_ALGORITHM", "HS256");
+        jwtUtil = new JwtUtil();
+        token = jwtUtil.generateToken(UUID.randomUUID(), "bench_user");
+    }
+
+    @Benchmark
+    public void perCallVerifier(Blackhole blackhole) {
+        JWTVerifier verifier = JWT.require(ALGORITHM).build();
+        DecodedJWT jwt = verifier.verify(token);
+        blackhole.consume(jwt.getClaim("userId").asString());
+        blackhole.consume(jwt.getClaim("username").asString());
+    }
+
+    @Benchmark
+    public void perCallExtractBoth(Blackhole blackhole) {
+        DecodedJWT forUserId = JWT.require(ALGORITHM).build().verify(token);
+        blackhole.consume(UUID.fromString(forUserId.getClaim("userId").asString()));
+        DecodedJWT forUsername = JWT.require(ALGORITHM).build().verify(token);
+        blackhole.consume(forUsername.getClaim("username").asString());
+    }
+
+    @Benchmark
+    public void cachedVerify(Blackhole blackhole) {
+        TokenClaims claims = jwtUtil.verify(token);
+        blackhole.consume(claims.getUserId());
+        blackhole.consume(claims.getUsername());
+    }
+}
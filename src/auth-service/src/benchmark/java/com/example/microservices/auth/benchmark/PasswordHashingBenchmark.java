@@ -0,0 +1,60 @@
+package com.example.microservices.auth.benchmark;
+
+import com.example.microservices.auth.service.AuthService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BCrypt のコストごとの処理時間とスループット
+ * - hashPassword        : 呼び出し元スレッドでのハッシュ化（パスワード登録・再ハッシュ）
+ * - verifyPassword      : BCrypt専用スレッドプール経由の検証（ログイン。ここでは完了を待って計測する）
+ * - verifyPasswordBurst : 8スレッドから同時に検証したときのスループット（プールの上限で頭打ちになる）
+ *
+ * 実行: mvn -Pbenchmark test-compile exec:exec -Djmh.args=PasswordHashingBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime, Mode.Throughput})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class PasswordHashingBenchmark {
+
+    private static final String PASSWORD = "password123";
+
+    @Param({"8", "10", "12"})
+    private int cost;
+
+    private AuthService authService;
+    private String hashedPassword;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        System.setProperty("AUTH_BCRYPT_COST", String.valueOf(cost));
+        authService = new AuthService();
+        hashedPassword = authService.hashPassword(PASSWORD);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        // 試行ごとに作る BCrypt 用スレッドプールを止める（@PreDestroy の代わり）
+        InMemoryAuthRepository.invoke(authService, "shutdown");
+    }
+
+    @Benchmark
+    public String hashPassword() {
+        return authService.hashPassword(PASSWORD);
+    }
+
+    @Benchmark
+    public boolean verifyPassword() {
+        return authService.verifyPassword(PASSWORD, hashedPassword).join();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean verifyPasswordBurst() {
+        return authService.verifyPassword(PASSWORD, hashedPassword).join();
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.microservices.auth.benchmark;
+
+import com.example.microservices.auth.service.AuthService;
+import com.example.microservices.auth.util.JwtUtil;
+import com.example.microservices.auth.util.TokenClaims;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * トークンの発行・検証のコスト
+ * - sessionToken   : レガシーセッショントークンの生成（AuthService.generateToken）
+ * - jwtGenerate    : JWTの署名（JwtUtil.generateToken）
+ * - jwtVerify      : JWTの検証とクレームの取り出し（JwtUtil.verify）
+ * - jwtExtractUserId : ユーザーIDだけを取り出す検証（JwtUtil.extractUserId）
+ * *Contended は8スレッドから同時に呼び出したときのスループット
+ * algorithm で署名方式（共有シークレットの HS256 / 公開鍵で検証できる ES256）を切り替える
+ *
+ * 実行: mvn -Pbenchmark test-compile exec:exec -Djmh.args=TokenBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenBenchmark {
+
+    @Param({"HS256", "ES256"})
+    private String algorithm;
+
+    private AuthService authService;
+    private JwtUtil jwtUtil;
+    private UUID userId;
+    private String token;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // HS256 のシークレットは HS256 で署名する場合のみ設定する（ES256 では HS256 を受け付けない）
+        if ("HS256".equals(algorithm)) {
+            System.setProperty("JWT_SECRET_KEY", "benchmark-secret-key");
+        } else {
+            System.clearProperty("JWT_SECRET_KEY");
+        }
+        System.setProperty("JWT_SIGNING_ALGORITHM", algorithm);
+        // ES256 の署名鍵は試行ごとに生成する
+        System.setProperty("JWT_EC_EPHEMERAL_KEY", "true");
+        authService = new AuthService();
+        jwtUtil = new JwtUtil();
+        userId = UUID.randomUUID();
+        token = jwtUtil.generateToken(userId, "bench_user");
+    }
+
+    @Benchmark
+    public String sessionToken() {
+        return authService.generateToken();
+    }
+
+    @Benchmark
+    public String jwtGenerate() {
+        return jwtUtil.generateToken(userId, "bench_user");
+    }
+
+    @Benchmark
+    public TokenClaims jwtVerify() {
+        return jwtUtil.verify(token);
+    }
+
+    @Benchmark
+    public UUID jwtExtractUserId() {
+        return jwtUtil.extractUserId(token);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String jwtGenerateContended() {
+        return jwtUtil.generateToken(userId, "bench_user");
+    }
+
+    @Benchmark
+    @Threads(8)
+    public TokenClaims jwtVerifyContended() {
+        return jwtUtil.verify(token);
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.microservices.auth.benchmark;
+
+import com.example.microservices.auth.repository.AuthRepository;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.*;
+import org.postgresql.ds.PGSimpleDataSource;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ログイン時のユーザー検索（username → userId）のレイテンシ比較
+ * - driverManager: 変更前。呼び出しごとに新しい物理接続を張る（PGSimpleDataSource は getConnection ごとに接続する）
+ * - pooled       : 変更後。プール済み接続と PreparedStatement の再利用（UserServicePool 相当の設定）
+ *
+ * ユーザーサービスのDB（seed.sql 投入済み）が必要。接続先は USER_SERVICE_DB_* のシステムプロパティまたは環境変数。
+ *
+ * 実行: mvn -Pbenchmark test-compile exec:exec -Djmh.args=UserLookupBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class UserLookupBenchmark {
+
+    @Param({"driverManager", "pooled"})
+    private String mode;
+
+    @Param({"tanaka_taro"})
+    private String username;
+
+    private HikariDataSource pool;
+    private AuthRepository repository;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        PGSimpleDataSource userDb = new PGSimpleDataSource();
+        userDb.setServerNames(new String[]{config("USER_SERVICE_DB_HOST", "localhost")});
+        userDb.setPortNumbers(new int[]{Integer.parseInt(config("USER_SERVICE_DB_PORT", "5432"))});
+        userDb.setDatabaseName(config("USER_SERVICE_DB_NAME", "user_service_db"));
+        userDb.setUser(config("USER_SERVICE_DB_USER", "postgres"));
+        userDb.setPassword(config("USER_SERVICE_DB_PASSWORD", "postgres"));
+
+        DataSource dataSource = userDb;
+        if ("pooled".equals(mode)) {
+            userDb.setPrepareThreshold(1);
+            HikariConfig config = new HikariConfig();
+            config.setDataSource(userDb);
+            config.setMinimumIdle(4);
+            config.setMaximumPoolSize(16);
+            config.setConnectionTimeout(2000);
+            pool = new HikariDataSource(config);
+            dataSource = pool;
+        }
+        repository = new AuthRepository(null, dataSource);
+
+        if (!repository.getUserIdByUsername(username).isPresent()) {
+            throw new IllegalStateException("User not found in user-service DB: " + username);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    @Benchmark
+    public Optional<UUID> lookupUserId() throws SQLException {
+        return repository.getUserIdByUsername(username);
+    }
+
+    private static String config(String key, String defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null || value.isEmpty()) {
+            value = System.getenv(key);
+        }
+        return value == null || value.isEmpty() ? defaultValue : value;
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.microservices.auth.benchmark;
+
+import com.example.microservices.auth.model.SessionToken;
+import com.example.microservices.auth.repository.SessionTokenIndex;
+import com.example.microservices.auth.rest.AuthResource;
+import com.example.microservices.auth.service.TokenRevocationList;
+import com.example.microservices.auth.util.JwtUtil;
+import org.openjdk.jmh.annotations.*;
+
+import javax.ws.rs.core.Response;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * POST /auth/verify（AuthResource.verifyToken）のエンドツーエンドのコスト
+ * DBの代わりにメモリ上の AuthRepository を使い、HTTPを除いたアプリケーション側の処理を測る
+ * - jwt     : JWTの検証と失効一覧の照合
+ * - legacy  : JWTとして失敗した後、セッショントークンの索引（キャッシュ）で解決する
+ * - invalid : どちらにも一致しないトークン（401、ブルームフィルターで弾かれる）
+ * 索引は本番と同じく起動時の全件読み込みを済ませた状態で測る（定期的な読み込みのスレッドは動かさない）
+ *
+ * 実行: mvn -Pbenchmark test-compile exec:exec -Djmh.args=VerifyTokenBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VerifyTokenBenchmark {
+
+    @Param({"jwt", "legacy", "invalid"})
+    private String tokenType;
+
+    private AuthResource authResource;
+    private String authHeader;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        // ES256 の署名鍵は試行ごとに生成する
+        System.setProperty("JWT_EC_EPHEMERAL_KEY", "true");
+        InMemoryAuthRepository repository = new InMemoryAuthRepository();
+        JwtUtil jwtUtil = new JwtUtil();
+        SessionTokenIndex sessionTokenIndex = new SessionTokenIndex();
+        InMemoryAuthRepository.inject(sessionTokenIndex, "authRepository", repository);
+        // ブルームフィルターを読み込む（未読み込みのままだと全トークンがDB照会の経路に回る）
+        InMemoryAuthRepository.invoke(sessionTokenIndex, "rebuild");
+
+        authResource = new AuthResource();
+        InMemoryAuthRepository.inject(authResource, "authRepository", repository);
+        InMemoryAuthRepository.inject(authResource, "jwtUtil", jwtUtil);
+        InMemoryAuthRepository.inject(authResource, "sessionTokenIndex", sessionTokenIndex);
+        InMemoryAuthRepository.inject(authResource, "tokenRevocationList", new TokenRevocationList());
+
+        UUID userId = UUID.randomUUID();
+        String token;
+        switch (tokenType) {
+            case "jwt":
+                token = jwtUtil.generateToken(userId, "bench_user");
+                break;
+            case "legacy":
+                token = UUID.randomUUID().toString();
+                sessionTokenIndex.createSession(new SessionToken(userId, token, LocalDateTime.now().plusDays(7)));
+                break;
+            default:
+                token = "not-a-valid-token";
+                break;
+        }
+        authHeader = "Bearer " + token;
+    }
+
+    @Benchmark
+    public Response verify() {
+        return authResource.verifyToken(authHeader);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Response verifyContended() {
+        return authResource.verifyToken(authHeader);
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.microservices.auth.model;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * トークン一括検証リクエストDTO
+ */
+public class BatchVerifyRequest implements Serializable {
+    private List<String> tokens;
+
+    // Constructors
+    public BatchVerifyRequest() {
+    }
+
+    public BatchVerifyRequest(List<String> tokens) {
+        this.tokens = tokens;
+    }
+
+    // Getters and Setters
+    public List<String> getTokens() {
+        return tokens;
+    }
+
+    public void setTokens(List<String> tokens) {
+        this.tokens = tokens;
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.microservices.auth.model;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * ログイン履歴の1件（書き込み待ちのイベント、不変）
+ */
+public final class LoginHistoryEntry {
+    private final UUID userId;
+    private final String ipAddress;
+    private final String userAgent;
+    private final boolean success;
+    private final LocalDateTime loginTime;
+
+    public LoginHistoryEntry(UUID userId, String ipAddress, String userAgent, boolean success, LocalDateTime loginTime) {
+        this.userId = userId;
+        this.ipAddress = ipAddress;
+        this.userAgent = userAgent;
+        this.success = success;
+        this.loginTime = loginTime;
+    }
+
+    public UUID getUserId() {
+        return userId;
+    }
+
+    public String getIpAddress() {
+        return ipAddress;
+    }
+
+    public String getUserAgent() {
+        return userAgent;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public LocalDateTime getLoginTime() {
+        return loginTime;
+    }
+}
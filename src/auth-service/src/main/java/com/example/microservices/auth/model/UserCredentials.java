@@ -0,0 +1,31 @@
+package com.example.microservices.auth.model;
+
+import java.util.UUID;
+
+/**
+ * ログインに必要な認証情報（user_credentials の1行、不変）
+ * username はユーザーサービスから同期した写しで、同期前は null の場合がある
+ */
+public final class UserCredentials {
+    private final UUID userId;
+    private final String username;
+    private final String passwordHash;
+
+    public UserCredentials(UUID userId, String username, String passwordHash) {
+        this.userId = userId;
+        this.username = username;
+        this.passwordHash = passwordHash;
+    }
+
+    public UUID getUserId() {
+        return userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getPasswordHash() {
+        return passwordHash;
+    }
+}
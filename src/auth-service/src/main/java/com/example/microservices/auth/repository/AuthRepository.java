@@ -1,12 +1,24 @@
 package com.example.microservices.auth.repository;
 
+import com.example.microservices.auth.config.AuthConfig;
+import com.example.microservices.auth.model.LoginHistoryEntry;
 import com.example.microservices.auth.model.SessionToken;
+import com.example.microservices.auth.model.UserCredentials;
 import javax.annotation.Resource;
 import javax.enterprise.context.ApplicationScoped;
 import javax.sql.DataSource;
 import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 /**
  * 認証リポジトリ
@@ -17,53 +29,57 @@ public class AuthRepository {
     @Resource(lookup = "java:app/jdbc/authServiceDB")
     private DataSource dataSource;
 
-    static {
-        try {
-            // PostgreSQLドライバーを明示的にロード
-            Class.forName("org.postgresql.Driver");
-        } catch (ClassNotFoundException e) {
-            throw new RuntimeException("PostgreSQL JDBC Driver not found", e);
-        }
+    /** ユーザーサービスDBのプール（UserServicePool）。ログイン時のユーザー検索で使用 */
+    @Resource(lookup = "java:app/jdbc/userServiceDB")
+    private DataSource userDataSource;
+
+    private final ConnectionPoolMetrics authPoolMetrics = new ConnectionPoolMetrics("AuthServicePool");
+    private final ConnectionPoolMetrics userPoolMetrics = new ConnectionPoolMetrics("UserServicePool");
+    private final int userQueryTimeoutSeconds = Math.max(1, AuthConfig.getInt("AUTH_USER_DB_QUERY_TIMEOUT_SECONDS", 2));
+
+    public AuthRepository() {
     }
 
     /**
-     * 設定値を取得（システムプロパティ優先、次に環境変数、最後にデフォルト値）
-     * テスト時にはシステムプロパティで動的な値を設定可能
+     * CDIコンテナ外（ベンチマークなど）で任意のDataSourceを使う場合
      */
-    private String getConfigValue(String key, String defaultValue) {
-        // システムプロパティを優先（テスト用）
-        String sysProp = System.getProperty(key);
-        if (sysProp != null && !sysProp.isEmpty()) {
-            return sysProp;
-        }
-        // 次に環境変数
-        String envVar = System.getenv(key);
-        if (envVar != null && !envVar.isEmpty()) {
-            return envVar;
-        }
-        // デフォルト値
-        return defaultValue;
+    public AuthRepository(DataSource dataSource, DataSource userDataSource) {
+        this.dataSource = dataSource;
+        this.userDataSource = userDataSource;
+    }
+
+    private Connection authConnection() throws SQLException {
+        return authPoolMetrics.borrow(dataSource);
+    }
+
+    private Connection userConnection() throws SQLException {
+        return userPoolMetrics.borrow(userDataSource);
+    }
+
+    /**
+     * コネクションプールのメトリクス
+     */
+    public Map<String, Object> poolMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("authServicePool", authPoolMetrics.snapshot());
+        metrics.put("userServicePool", userPoolMetrics.snapshot());
+        return metrics;
     }
 
     /**
-     * ユーザー名からユーザーIDを取得
+     * ユーザー名からユーザーIDを取得（ユーザーサービスDB）
+     * 通常のログインは findCredentialsByUsername を使い、同期前のユーザーの場合のみ使用する
      */
     public Optional<UUID> getUserIdByUsername(String username) throws SQLException {
-        // ユーザーサービスのデータベースに接続してユーザーIDを取得
-        // 本来はマイクロサービス間通信で取得すべきですが、簡易的にDB直接接続
-        // 設定値を取得（システムプロパティまたは環境変数から）
-        String host = getConfigValue("USER_SERVICE_DB_HOST", "localhost");
-        String port = getConfigValue("USER_SERVICE_DB_PORT", "5432");
-        String dbName = getConfigValue("USER_SERVICE_DB_NAME", "user_service_db");
-        String dbUser = getConfigValue("USER_SERVICE_DB_USER", "postgres");
-        String dbPassword = getConfigValue("USER_SERVICE_DB_PASSWORD", "postgres");
-        
-        String jdbcUrl = String.format("jdbc:postgresql://%s:%s/%s", host, port, dbName);
+        // ユーザーサービスのデータベースからユーザーIDを取得
+        // 本来はマイクロサービス間通信で取得すべきですが、簡易的にDB直接接続（プール経由）
         String sql = "SELECT id FROM users WHERE username = ?";
         
-        try (Connection conn = java.sql.DriverManager.getConnection(jdbcUrl, dbUser, dbPassword);
+        try (Connection conn = userConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
+            // ユーザーサービスDBの遅延でログインのスレッドが詰まらないようにする
+            stmt.setQueryTimeout(userQueryTimeoutSeconds);
             stmt.setString(1, username);
             
             try (ResultSet rs = stmt.executeQuery()) {
@@ -76,75 +92,249 @@ public class AuthRepository {
     }
 
     /**
-     * ユーザーIDからユーザー名を取得
+     * ユーザー認証情報の検証
      */
-    public Optional<String> getUsernameByUserId(UUID userId) throws SQLException {
-        // ユーザーサービスのデータベースに接続してユーザー名を取得
-        // 設定値を取得（システムプロパティまたは環境変数から）
-        String host = getConfigValue("USER_SERVICE_DB_HOST", "localhost");
-        String port = getConfigValue("USER_SERVICE_DB_PORT", "5432");
-        String dbName = getConfigValue("USER_SERVICE_DB_NAME", "user_service_db");
-        String dbUser = getConfigValue("USER_SERVICE_DB_USER", "postgres");
-        String dbPassword = getConfigValue("USER_SERVICE_DB_PASSWORD", "postgres");
-        
-        String jdbcUrl = String.format("jdbc:postgresql://%s:%s/%s", host, port, dbName);
-        String sql = "SELECT username FROM users WHERE id = ?";
+    public boolean verifyCredentials(UUID userId, String passwordHash) throws SQLException {
+        String sql = "SELECT COUNT(*) FROM user_credentials WHERE user_id = ? AND password_hash = ?";
         
-        try (Connection conn = java.sql.DriverManager.getConnection(jdbcUrl, dbUser, dbPassword);
+        try (Connection conn = authConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setObject(1, userId);
+            stmt.setString(2, passwordHash);
             
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    return Optional.of(rs.getString("username"));
+                    return rs.getInt(1) > 0;
                 }
             }
         }
-        return Optional.empty();
+        return false;
     }
 
     /**
-     * ユーザー認証情報の検証
+     * パスワードハッシュ取得
      */
-    public boolean verifyCredentials(UUID userId, String passwordHash) throws SQLException {
-        String sql = "SELECT COUNT(*) FROM user_credentials WHERE user_id = ? AND password_hash = ?";
+    public Optional<String> getPasswordHash(UUID userId) throws SQLException {
+        String sql = "SELECT password_hash FROM user_credentials WHERE user_id = ?";
         
-        try (Connection conn = dataSource.getConnection();
+        try (Connection conn = authConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setObject(1, userId);
-            stmt.setString(2, passwordHash);
             
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    return rs.getInt(1) > 0;
+                    return Optional.of(rs.getString("password_hash"));
                 }
             }
         }
-        return false;
+        return Optional.empty();
     }
 
     /**
-     * パスワードハッシュ取得
+     * ユーザー名で認証情報を取得（認証DBのみ、username のインデックスを使う1回の問い合わせ）
+     * 同期の途中で同じユーザー名が複数行に残っている場合は判断できないため空を返す
      */
-    public Optional<String> getPasswordHash(UUID userId) throws SQLException {
-        String sql = "SELECT password_hash FROM user_credentials WHERE user_id = ?";
+    public Optional<UserCredentials> findCredentialsByUsername(String username) throws SQLException {
+        String sql = "SELECT user_id, username, password_hash FROM user_credentials WHERE username = ? LIMIT 2";
+        
+        try (Connection conn = authConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            stmt.setString(1, username);
+            
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return Optional.empty();
+                }
+                UserCredentials credentials = mapCredentials(rs);
+                return rs.next() ? Optional.empty() : Optional.of(credentials);
+            }
+        }
+    }
+
+    /**
+     * ユーザーIDで認証情報を取得（認証DBのみ）
+     */
+    public Optional<UserCredentials> findCredentialsByUserId(UUID userId) throws SQLException {
+        String sql = "SELECT user_id, username, password_hash FROM user_credentials WHERE user_id = ?";
         
-        try (Connection conn = dataSource.getConnection();
+        try (Connection conn = authConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setObject(1, userId);
             
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    return Optional.of(rs.getString("password_hash"));
+                    return Optional.of(mapCredentials(rs));
                 }
             }
         }
         return Optional.empty();
     }
 
+    private UserCredentials mapCredentials(ResultSet rs) throws SQLException {
+        return new UserCredentials(
+                (UUID) rs.getObject("user_id"),
+                rs.getString("username"),
+                rs.getString("password_hash"));
+    }
+
+    /**
+     * 指定日時以降に更新されたユーザーの (id, username) を読み出す（ユーザーサービスDB）
+     * 件数が多くてもメモリに溜めないようカーソルで少しずつ取得する
+     *
+     * @param updatedSince この日時以降に更新されたものだけを対象にする（null の場合はすべて）
+     * @param consumer     (ユーザーID, ユーザー名) を受け取る処理
+     * @return 読み出した中で最も新しい updated_at（1件もない場合は null）
+     */
+    public LocalDateTime forEachUserUpdatedSince(LocalDateTime updatedSince, BiConsumer<UUID, String> consumer) throws SQLException {
+        String sql = "SELECT id, username, updated_at FROM users WHERE updated_at >= ? ORDER BY updated_at";
+        LocalDateTime latest = null;
+        
+        try (Connection conn = userConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            // PostgreSQLはトランザクション内でのみカーソル（fetchSize）が有効
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setFetchSize(1000);
+                stmt.setTimestamp(1, Timestamp.valueOf(updatedSince != null ? updatedSince : LocalDateTime.of(1970, 1, 1, 0, 0)));
+                
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        consumer.accept((UUID) rs.getObject("id"), rs.getString("username"));
+                        Timestamp updatedAt = rs.getTimestamp("updated_at");
+                        if (updatedAt != null && (latest == null || updatedAt.toLocalDateTime().isAfter(latest))) {
+                            latest = updatedAt.toLocalDateTime();
+                        }
+                    }
+                }
+                conn.commit();
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * ユーザーIDの昇順で、after より後のユーザーIDを最大 limit 件取得（ユーザーサービスDB）
+     *
+     * @param after この値より後から取得する（null の場合は先頭から）
+     */
+    public List<UUID> findUserIdsAfter(UUID after, int limit) throws SQLException {
+        String sql = after != null
+                ? "SELECT id FROM users WHERE id > ? ORDER BY id LIMIT ?"
+                : "SELECT id FROM users ORDER BY id LIMIT ?";
+        List<UUID> ids = new ArrayList<>();
+        
+        try (Connection conn = userConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            int index = 1;
+            if (after != null) {
+                stmt.setObject(index++, after);
+            }
+            stmt.setInt(index, limit);
+            
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.add((UUID) rs.getObject("id"));
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * ユーザー名の写しを一括で反映（認証情報の行があるユーザーのみ）
+     * 他の行に同じユーザー名が残っている場合（名前の付け替え）は先にその行のユーザー名を外す
+     *
+     * @param usernames ユーザーID → ユーザー名
+     * @return ユーザー名を書き換えた行数
+     */
+    public int syncUsernames(Map<UUID, String> usernames) throws SQLException {
+        if (usernames.isEmpty()) {
+            return 0;
+        }
+        String releaseSql = "UPDATE user_credentials c SET username = NULL " +
+                    "FROM unnest(?::uuid[], ?::varchar[]) AS u(user_id, username) " +
+                    "WHERE c.username = u.username AND c.user_id <> u.user_id";
+        String updateSql = "UPDATE user_credentials c SET username = u.username " +
+                    "FROM unnest(?::uuid[], ?::varchar[]) AS u(user_id, username) " +
+                    "WHERE c.user_id = u.user_id AND c.username IS DISTINCT FROM u.username";
+
+        Object[] userIds = usernames.keySet().toArray();
+        Object[] names = usernames.values().toArray();
+
+        try (Connection conn = authConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (PreparedStatement release = conn.prepareStatement(releaseSql);
+                 PreparedStatement update = conn.prepareStatement(updateSql)) {
+                
+                release.setArray(1, conn.createArrayOf("uuid", userIds));
+                release.setArray(2, conn.createArrayOf("varchar", names));
+                release.executeUpdate();
+                update.setArray(1, conn.createArrayOf("uuid", userIds));
+                update.setArray(2, conn.createArrayOf("varchar", names));
+                int updated = update.executeUpdate();
+                conn.commit();
+                return updated;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    /**
+     * ユーザーIDが (after, upTo] の範囲で、present に含まれない行のユーザー名を外す
+     * （ユーザーサービスで削除されたユーザーをユーザー名でログインできないようにする）
+     *
+     * @param after   範囲の下端（含まない、null の場合は下限なし）
+     * @param upTo    範囲の上端（含む、null の場合は上限なし）
+     * @param present ユーザーサービスに存在するユーザーID
+     * @return ユーザー名を外した行数
+     */
+    public int clearUsernamesMissingFrom(UUID after, UUID upTo, List<UUID> present) throws SQLException {
+        String sql = "UPDATE user_credentials SET username = NULL " +
+                    "WHERE username IS NOT NULL AND (?::uuid IS NULL OR user_id > ?::uuid) " +
+                    "AND (?::uuid IS NULL OR user_id <= ?::uuid) AND NOT (user_id = ANY(?::uuid[]))";
+        
+        try (Connection conn = authConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            stmt.setObject(1, after, Types.OTHER);
+            stmt.setObject(2, after, Types.OTHER);
+            stmt.setObject(3, upTo, Types.OTHER);
+            stmt.setObject(4, upTo, Types.OTHER);
+            stmt.setArray(5, conn.createArrayOf("uuid", present.toArray()));
+            return stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * パスワードハッシュ更新
+     * 読み取った時点のハッシュから変わっていない場合のみ更新する（同時のパスワード変更を上書きしない）
+     */
+    public boolean updatePasswordHash(UUID userId, String currentHash, String newHash) throws SQLException {
+        String sql = "UPDATE user_credentials SET password_hash = ?, updated_at = CURRENT_TIMESTAMP " +
+                    "WHERE user_id = ? AND password_hash = ?";
+        
+        try (Connection conn = authConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            stmt.setString(1, newHash);
+            stmt.setObject(2, userId);
+            stmt.setString(3, currentHash);
+            return stmt.executeUpdate() > 0;
+        }
+    }
+
     /**
      * セッショントークン作成
      */
@@ -152,7 +342,7 @@ public class AuthRepository {
         String sql = "INSERT INTO session_tokens (user_id, token, expires_at) " +
                     "VALUES (?, ?, ?) RETURNING id, created_at";
         
-        try (Connection conn = dataSource.getConnection();
+        try (Connection conn = authConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setObject(1, token.getUserId());
@@ -176,7 +366,7 @@ public class AuthRepository {
         String sql = "SELECT id, user_id, token, expires_at, created_at " +
                     "FROM session_tokens WHERE token = ?";
         
-        try (Connection conn = dataSource.getConnection();
+        try (Connection conn = authConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, token);
@@ -196,13 +386,84 @@ public class AuthRepository {
         return Optional.empty();
     }
 
+    /**
+     * 複数のトークンによるセッション取得（1回のクエリで引く）
+     *
+     * @return トークン → セッション（見つからなかったトークンは含まない）
+     */
+    public Map<String, SessionToken> findSessionsByTokens(Collection<String> tokens) throws SQLException {
+        Map<String, SessionToken> sessions = new HashMap<>();
+        if (tokens.isEmpty()) {
+            return sessions;
+        }
+        String sql = "SELECT id, user_id, token, expires_at, created_at " +
+                    "FROM session_tokens WHERE token = ANY(?)";
+        
+        try (Connection conn = authConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            stmt.setArray(1, conn.createArrayOf("varchar", tokens.toArray()));
+            
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    SessionToken sessionToken = new SessionToken();
+                    sessionToken.setId(rs.getLong("id"));
+                    sessionToken.setUserId((UUID) rs.getObject("user_id"));
+                    sessionToken.setToken(rs.getString("token"));
+                    sessionToken.setExpiresAt(rs.getTimestamp("expires_at").toLocalDateTime());
+                    sessionToken.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
+                    sessions.put(sessionToken.getToken(), sessionToken);
+                }
+            }
+        }
+        return sessions;
+    }
+
+    /**
+     * 有効なセッショントークンを順に読み出す（インメモリの索引の構築・差分更新用）
+     * 件数が多くてもメモリに溜めないようカーソルで少しずつ取得する
+     *
+     * @param createdSince この日時以降に作成されたものだけを対象にする（null の場合はすべて）
+     * @param consumer     トークンを受け取る処理
+     * @return 読み出した中で最も新しい created_at（1件もない場合は null）
+     */
+    public LocalDateTime forEachLiveSessionToken(LocalDateTime createdSince, Consumer<String> consumer) throws SQLException {
+        String sql = "SELECT token, created_at FROM session_tokens " +
+                    "WHERE expires_at > CURRENT_TIMESTAMP AND created_at >= ?";
+        LocalDateTime latest = null;
+        
+        try (Connection conn = authConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            // PostgreSQLはトランザクション内でのみカーソル（fetchSize）が有効
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setFetchSize(1000);
+                stmt.setTimestamp(1, Timestamp.valueOf(createdSince != null ? createdSince : LocalDateTime.of(1970, 1, 1, 0, 0)));
+                
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        consumer.accept(rs.getString("token"));
+                        LocalDateTime createdAt = rs.getTimestamp("created_at").toLocalDateTime();
+                        if (latest == null || createdAt.isAfter(latest)) {
+                            latest = createdAt;
+                        }
+                    }
+                }
+                conn.commit();
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+        return latest;
+    }
+
     /**
      * セッション削除
      */
     public void deleteSession(String token) throws SQLException {
         String sql = "DELETE FROM session_tokens WHERE token = ?";
         
-        try (Connection conn = dataSource.getConnection();
+        try (Connection conn = authConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, token);
@@ -211,31 +472,122 @@ public class AuthRepository {
     }
 
     /**
-     * ログイン履歴記録
+     * ログイン履歴の一括記録
+     * 配列パラメータを unnest して1回の INSERT で複数行を書き込む（件数によらずSQLが同じため PreparedStatement を再利用できる）
+     */
+    public void recordLoginHistoryBatch(List<LoginHistoryEntry> entries) throws SQLException {
+        if (entries.isEmpty()) {
+            return;
+        }
+        String sql = "INSERT INTO login_history (user_id, ip_address, user_agent, success, login_time) " +
+                    "SELECT * FROM unnest(?::uuid[], ?::varchar[], ?::text[], ?::boolean[], ?::timestamp[])";
+
+        int size = entries.size();
+        Object[] userIds = new Object[size];
+        Object[] ipAddresses = new Object[size];
+        Object[] userAgents = new Object[size];
+        Object[] successes = new Object[size];
+        Object[] loginTimes = new Object[size];
+        for (int i = 0; i < size; i++) {
+            LoginHistoryEntry entry = entries.get(i);
+            userIds[i] = entry.getUserId();
+            ipAddresses[i] = entry.getIpAddress();
+            userAgents[i] = entry.getUserAgent();
+            successes[i] = entry.isSuccess();
+            loginTimes[i] = Timestamp.valueOf(entry.getLoginTime());
+        }
+
+        try (Connection conn = authConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            stmt.setArray(1, conn.createArrayOf("uuid", userIds));
+            stmt.setArray(2, conn.createArrayOf("varchar", ipAddresses));
+            stmt.setArray(3, conn.createArrayOf("text", userAgents));
+            stmt.setArray(4, conn.createArrayOf("bool", successes));
+            stmt.setArray(5, conn.createArrayOf("timestamp", loginTimes));
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * 期限切れセッションを古いものから最大 batchSize 件削除
+     * 対象行は FOR UPDATE SKIP LOCKED で確保するため、複数ノードで同時に実行しても同じ行を奪い合わない
+     *
+     * @return 削除した件数
      */
-    public void recordLoginHistory(UUID userId, String ipAddress, String userAgent, boolean success) throws SQLException {
-        String sql = "INSERT INTO login_history (user_id, ip_address, user_agent, success) VALUES (?, ?, ?, ?)";
+    public int deleteExpiredSessions(int batchSize) throws SQLException {
+        String sql = "DELETE FROM session_tokens WHERE id IN (" +
+                    "SELECT id FROM session_tokens WHERE expires_at < CURRENT_TIMESTAMP " +
+                    "ORDER BY expires_at LIMIT ? FOR UPDATE SKIP LOCKED)";
         
-        try (Connection conn = dataSource.getConnection();
+        try (Connection conn = authConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
-            stmt.setObject(1, userId);
-            stmt.setString(2, ipAddress);
-            stmt.setString(3, userAgent);
-            stmt.setBoolean(4, success);
+            stmt.setInt(1, batchSize);
+            return stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * JWTの失効を記録（同じ jti が既にあれば何もしない）
+     */
+    public void revokeToken(String jti, LocalDateTime expiresAt) throws SQLException {
+        String sql = "INSERT INTO revoked_tokens (jti, expires_at) VALUES (?, ?) ON CONFLICT (jti) DO NOTHING";
+        
+        try (Connection conn = authConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            stmt.setString(1, jti);
+            stmt.setTimestamp(2, Timestamp.valueOf(expiresAt));
             stmt.executeUpdate();
         }
     }
 
     /**
-     * 期限切れセッションの削除
+     * 有効期限内の失効済みJWTを順に読み出す（インメモリの失効リストの差分更新用）
+     *
+     * @param revokedSince この日時以降に失効したものだけを対象にする（null の場合はすべて）
+     * @param consumer     jti と有効期限を受け取る処理
+     * @return 読み出した中で最も新しい revoked_at（1件もない場合は null）
+     */
+    public LocalDateTime forEachRevokedToken(LocalDateTime revokedSince, BiConsumer<String, LocalDateTime> consumer) throws SQLException {
+        String sql = "SELECT jti, expires_at, revoked_at FROM revoked_tokens " +
+                    "WHERE expires_at > CURRENT_TIMESTAMP AND revoked_at >= ?";
+        LocalDateTime latest = null;
+        
+        try (Connection conn = authConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            stmt.setTimestamp(1, Timestamp.valueOf(revokedSince != null ? revokedSince : LocalDateTime.of(1970, 1, 1, 0, 0)));
+            
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    consumer.accept(rs.getString("jti"), rs.getTimestamp("expires_at").toLocalDateTime());
+                    LocalDateTime revokedAt = rs.getTimestamp("revoked_at").toLocalDateTime();
+                    if (latest == null || revokedAt.isAfter(latest)) {
+                        latest = revokedAt;
+                    }
+                }
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * 有効期限を過ぎた失効記録を最大 batchSize 件削除（トークン自体が期限切れなので不要）
+     *
+     * @return 削除した件数
      */
-    public void cleanupExpiredSessions() throws SQLException {
-        String sql = "DELETE FROM session_tokens WHERE expires_at < CURRENT_TIMESTAMP";
+    public int deleteExpiredRevocations(int batchSize) throws SQLException {
+        String sql = "DELETE FROM revoked_tokens WHERE jti IN (" +
+                    "SELECT jti FROM revoked_tokens WHERE expires_at < CURRENT_TIMESTAMP " +
+                    "ORDER BY expires_at LIMIT ? FOR UPDATE SKIP LOCKED)";
         
-        try (Connection conn = dataSource.getConnection();
-             Statement stmt = conn.createStatement()) {
-            stmt.executeUpdate(sql);
+        try (Connection conn = authConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            stmt.setInt(1, batchSize);
+            return stmt.executeUpdate();
         }
     }
 }
@@ -0,0 +1,101 @@
+package com.example.microservices.auth.repository;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * コネクションプール利用状況のメトリクス
+ * 接続の取得待ち時間・保持時間・同時使用数をアプリケーション側で計測する
+ */
+public final class ConnectionPoolMetrics {
+
+    private final String poolName;
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder acquireNanos = new LongAdder();
+    private final LongAdder holdNanos = new LongAdder();
+    private final LongAdder released = new LongAdder();
+    private final AtomicLong maxAcquireNanos = new AtomicLong();
+    private final AtomicInteger inUse = new AtomicInteger();
+    private final AtomicInteger peakInUse = new AtomicInteger();
+
+    public ConnectionPoolMetrics(String poolName) {
+        this.poolName = poolName;
+    }
+
+    /**
+     * プールから接続を取得
+     * 返される接続の close() でプールへの返却を記録する
+     */
+    public Connection borrow(DataSource dataSource) throws SQLException {
+        long start = System.nanoTime();
+        Connection connection;
+        try {
+            connection = dataSource.getConnection();
+        } catch (SQLException | RuntimeException e) {
+            failed.increment();
+            throw e;
+        }
+        long waited = System.nanoTime() - start;
+        acquired.increment();
+        acquireNanos.add(waited);
+        maxAcquireNanos.accumulateAndGet(waited, Math::max);
+        peakInUse.accumulateAndGet(inUse.incrementAndGet(), Math::max);
+        return track(connection, System.nanoTime());
+    }
+
+    private Connection track(Connection connection, long borrowedAt) {
+        InvocationHandler handler = new InvocationHandler() {
+            private boolean closed;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if ("close".equals(method.getName()) && method.getParameterCount() == 0) {
+                    synchronized (this) {
+                        if (!closed) {
+                            closed = true;
+                            inUse.decrementAndGet();
+                            released.increment();
+                            holdNanos.add(System.nanoTime() - borrowedAt);
+                        }
+                    }
+                }
+                try {
+                    return method.invoke(connection, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+        };
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, handler);
+    }
+
+    /**
+     * メトリクスのスナップショット
+     */
+    public Map<String, Object> snapshot() {
+        long acquiredCount = acquired.sum();
+        long releasedCount = released.sum();
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("pool", poolName);
+        snapshot.put("acquired", acquiredCount);
+        snapshot.put("failed", failed.sum());
+        snapshot.put("inUse", inUse.get());
+        snapshot.put("peakInUse", peakInUse.get());
+        snapshot.put("avgAcquireMillis", acquiredCount == 0 ? 0.0 : acquireNanos.sum() / 1_000_000.0 / acquiredCount);
+        snapshot.put("maxAcquireMillis", maxAcquireNanos.get() / 1_000_000.0);
+        snapshot.put("avgHoldMillis", releasedCount == 0 ? 0.0 : holdNanos.sum() / 1_000_000.0 / releasedCount);
+        return snapshot;
+    }
+}
@@ -0,0 +1,257 @@
+package com.example.microservices.auth.repository;
+
+import com.example.microservices.auth.config.AuthConfig;
+import com.example.microservices.auth.model.LoginHistoryEntry;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ログイン履歴の非同期バッチ書き込み
+ * ログイン処理はイベントを有界キューに積むだけで、DBへの書き込みは専用スレッドが
+ * 件数（バッチサイズ）または時間（フラッシュ間隔）のどちらかに達した時点でまとめて行う
+ * 停止時はキューに残ったイベントをすべて書き込んでから終了する
+ *
+ * 設定:
+ * - AUTH_LOGIN_HISTORY_QUEUE_CAPACITY     キューの上限（デフォルト 10000）
+ * - AUTH_LOGIN_HISTORY_BATCH_SIZE         1回の INSERT でまとめる最大件数（デフォルト 200）
+ * - AUTH_LOGIN_HISTORY_FLUSH_INTERVAL_MS  最初のイベントから書き込みまでの最大待ち時間（デフォルト 500）
+ * - AUTH_LOGIN_HISTORY_OVERFLOW           キューが一杯のときの動作 DROP / BLOCK（デフォルト DROP）
+ * - AUTH_LOGIN_HISTORY_BLOCK_TIMEOUT_MS   BLOCK 時に空きを待つ上限。超えた場合は破棄して数える（デフォルト 1000）
+ */
+@ApplicationScoped
+public class LoginHistoryWriter {
+
+    /**
+     * キューが一杯のときの動作
+     */
+    public enum OverflowPolicy {
+        /** 待たずに破棄して数える */
+        DROP,
+        /** 空きが出るまで（上限時間まで）ログイン処理を待たせる */
+        BLOCK
+    }
+
+    /**
+     * 書き込み先（テストでは差し替える）
+     */
+    interface Sink {
+        void write(List<LoginHistoryEntry> entries) throws SQLException;
+    }
+
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 10_000;
+    // login_history.ip_address の桁数（1件の不正な値でバッチ全体が失敗しないよう切り詰める）
+    private static final int MAX_IP_ADDRESS_LENGTH = 45;
+
+    @Inject
+    private AuthRepository authRepository;
+
+    private final BlockingQueue<LoginHistoryEntry> queue;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final OverflowPolicy overflowPolicy;
+    private final long blockTimeoutMillis;
+    private Sink sink;
+    private Thread writerThread;
+    private volatile boolean running;
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong unknownUsers = new AtomicLong();
+
+    public LoginHistoryWriter() {
+        this(null,
+                AuthConfig.getInt("AUTH_LOGIN_HISTORY_QUEUE_CAPACITY", 10000),
+                AuthConfig.getInt("AUTH_LOGIN_HISTORY_BATCH_SIZE", 200),
+                AuthConfig.getLong("AUTH_LOGIN_HISTORY_FLUSH_INTERVAL_MS", 500),
+                parsePolicy(AuthConfig.getString("AUTH_LOGIN_HISTORY_OVERFLOW", "DROP")),
+                AuthConfig.getLong("AUTH_LOGIN_HISTORY_BLOCK_TIMEOUT_MS", 1000));
+    }
+
+    LoginHistoryWriter(Sink sink, int capacity, int batchSize, long flushIntervalMillis,
+                       OverflowPolicy overflowPolicy, long blockTimeoutMillis) {
+        this.sink = sink;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalMillis = Math.max(1, flushIntervalMillis);
+        this.overflowPolicy = overflowPolicy;
+        this.blockTimeoutMillis = Math.max(0, blockTimeoutMillis);
+    }
+
+    private static OverflowPolicy parsePolicy(String value) {
+        try {
+            return OverflowPolicy.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid AUTH_LOGIN_HISTORY_OVERFLOW: " + value);
+            return OverflowPolicy.DROP;
+        }
+    }
+
+    @PostConstruct
+    void start() {
+        if (sink == null) {
+            sink = authRepository::recordLoginHistoryBatch;
+        }
+        running = true;
+        writerThread = new Thread(this::run, "auth-login-history-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * 停止前に残りのイベントを書き込む
+     */
+    @PreDestroy
+    void shutdown() {
+        running = false;
+        if (writerThread == null) {
+            return;
+        }
+        // フラッシュ間隔の待ちを打ち切り、残りをすぐに書き込ませる
+        writerThread.interrupt();
+        try {
+            writerThread.join(SHUTDOWN_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!queue.isEmpty()) {
+            System.err.println("Login history writer stopped with " + queue.size() + " pending events");
+        }
+    }
+
+    /**
+     * ログイン試行を記録（キューに積むだけでDBは待たない）
+     *
+     * @return キューに積めた場合は true、破棄した場合は false
+     */
+    public boolean record(UUID userId, String ipAddress, String userAgent, boolean success) {
+        if (ipAddress != null && ipAddress.length() > MAX_IP_ADDRESS_LENGTH) {
+            ipAddress = ipAddress.substring(0, MAX_IP_ADDRESS_LENGTH);
+        }
+        LoginHistoryEntry entry = new LoginHistoryEntry(userId, ipAddress, userAgent, success, LocalDateTime.now());
+        boolean accepted;
+        if (overflowPolicy == OverflowPolicy.BLOCK) {
+            try {
+                accepted = queue.offer(entry, blockTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                accepted = false;
+            }
+        } else {
+            accepted = queue.offer(entry);
+        }
+
+        if (accepted) {
+            enqueued.incrementAndGet();
+        } else {
+            dropped.incrementAndGet();
+        }
+        return accepted;
+    }
+
+    /**
+     * 認証情報のないユーザーへのログイン試行を数える
+     * login_history.user_id は user_credentials を参照するため、行としては書き込めない
+     */
+    public void recordUnknownUser() {
+        unknownUsers.incrementAndGet();
+    }
+
+    private void run() {
+        List<LoginHistoryEntry> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                LoginHistoryEntry first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                fill(batch);
+            } catch (InterruptedException e) {
+                // 停止処理中は残りを書き込んでから終了する
+                running = false;
+                queue.drainTo(batch, batchSize - batch.size());
+            }
+            flush(batch);
+        }
+    }
+
+    /**
+     * バッチサイズに達するか、最初のイベントからフラッシュ間隔が経過するまでイベントを集める
+     */
+    private void fill(List<LoginHistoryEntry> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0 || !running) {
+                return;
+            }
+            LoginHistoryEntry next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void flush(List<LoginHistoryEntry> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            sink.write(batch);
+            written.addAndGet(batch.size());
+            batches.incrementAndGet();
+        } catch (SQLException | RuntimeException e) {
+            if (batch.size() == 1) {
+                // 監査ログの書き込み失敗でログイン処理を止めない（件数のみ記録する）
+                failed.incrementAndGet();
+                System.err.println("Failed to write login history: " + e.getMessage());
+            } else {
+                // 一部の行（外部キー違反など）が原因の場合に備えて1件ずつ書き直す
+                for (LoginHistoryEntry entry : new ArrayList<>(batch)) {
+                    List<LoginHistoryEntry> single = new ArrayList<>(1);
+                    single.add(entry);
+                    flush(single);
+                }
+            }
+        } finally {
+            batch.clear();
+        }
+    }
+
+    /**
+     * メトリクスのスナップショット
+     */
+    public Map<String, Object> snapshot() {
+        long batchCount = batches.get();
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("overflowPolicy", overflowPolicy.name());
+        snapshot.put("queued", queue.size());
+        snapshot.put("enqueued", enqueued.get());
+        snapshot.put("dropped", dropped.get());
+        snapshot.put("written", written.get());
+        snapshot.put("failed", failed.get());
+        snapshot.put("unknownUsers", unknownUsers.get());
+        snapshot.put("batches", batchCount);
+        snapshot.put("avgBatchSize", batchCount == 0 ? 0.0 : (double) written.get() / batchCount);
+        return snapshot;
+    }
+}
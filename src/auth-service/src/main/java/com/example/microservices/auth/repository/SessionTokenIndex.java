@@ -0,0 +1,364 @@
+package com.example.microservices.auth.repository;
+
+import com.example.microservices.auth.config.AuthConfig;
+import com.example.microservices.auth.model.SessionToken;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * レガシーセッショントークン検索の前段（ブルームフィルター + 小さなキャッシュ）
+ * 有効なトークンをブルームフィルターに載せておき、載っていないトークン（でたらめな値・削除済み）は
+ * DBに問い合わせずに拒否する。存在するセッションは有効期限を考慮した小さなキャッシュから返す
+ *
+ * - 起動時と定期的（AUTH_SESSION_INDEX_REBUILD_SECONDS）に全件から作り直す（削除・期限切れの反映）
+ * - 他ノードで作成されたトークンは created_at による差分取得（AUTH_SESSION_INDEX_REFRESH_SECONDS）で取り込む
+ * - 初回の読み込みが終わるまではフィルターを使わず、従来通りDBに問い合わせる
+ *
+ * 設定:
+ * - AUTH_SESSION_INDEX_ENABLED           有効/無効（デフォルト true）
+ * - AUTH_SESSION_BLOOM_EXPECTED_ENTRIES  想定する有効トークン数（デフォルト 1000000）
+ * - AUTH_SESSION_BLOOM_FPP               想定件数での偽陽性率（デフォルト 0.01）
+ * - AUTH_SESSION_CACHE_MAX_ENTRIES       キャッシュの最大件数（デフォルト 10000）
+ * - AUTH_SESSION_CACHE_TTL_SECONDS       キャッシュの保持時間。他ノードでのログアウトが反映されるまでの上限（デフォルト 30）
+ */
+@ApplicationScoped
+public class SessionTokenIndex {
+
+    // 差分取得時に created_at を少し遡り、コミットが遅れた行の取りこぼしを防ぐ
+    private static final long CREATED_AT_OVERLAP_SECONDS = 5;
+
+    @Inject
+    private AuthRepository authRepository;
+
+    private final boolean enabled;
+    private final long expectedEntries;
+    private final double falsePositiveRate;
+    private final int cacheMaxEntries;
+    private final long cacheTtlSeconds;
+    private final Clock clock;
+
+    private final Map<String, CachedSession> cache;
+    private volatile BloomFilter filter;
+    private volatile BloomFilter building;
+    // 読み込み済みの created_at（スケジューラースレッドからのみ更新する）
+    private LocalDateTime refreshedUpTo;
+    private ScheduledExecutorService scheduler;
+
+    private final AtomicLong bloomRejected = new AtomicLong();
+    private final AtomicLong bloomFalsePositives = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong dbLookups = new AtomicLong();
+    private final AtomicLong rebuilds = new AtomicLong();
+    private final AtomicLong refreshFailures = new AtomicLong();
+
+    public SessionTokenIndex() {
+        this(null,
+                AuthConfig.getBoolean("AUTH_SESSION_INDEX_ENABLED", true),
+                AuthConfig.getLong("AUTH_SESSION_BLOOM_EXPECTED_ENTRIES", 1_000_000),
+                parseRate(AuthConfig.getString("AUTH_SESSION_BLOOM_FPP", "0.01")),
+                AuthConfig.getInt("AUTH_SESSION_CACHE_MAX_ENTRIES", 10000),
+                AuthConfig.getLong("AUTH_SESSION_CACHE_TTL_SECONDS", 30),
+                Clock.systemDefaultZone());
+    }
+
+    SessionTokenIndex(AuthRepository authRepository, boolean enabled, long expectedEntries, double falsePositiveRate,
+                      int cacheMaxEntries, long cacheTtlSeconds, Clock clock) {
+        this.authRepository = authRepository;
+        this.enabled = enabled;
+        this.expectedEntries = Math.max(1, expectedEntries);
+        this.falsePositiveRate = falsePositiveRate;
+        this.cacheMaxEntries = Math.max(1, cacheMaxEntries);
+        this.cacheTtlSeconds = Math.max(0, cacheTtlSeconds);
+        this.clock = clock;
+        this.cache = new LinkedHashMap<String, CachedSession>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedSession> eldest) {
+                return size() > SessionTokenIndex.this.cacheMaxEntries;
+            }
+        };
+    }
+
+    private static double parseRate(String value) {
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid AUTH_SESSION_BLOOM_FPP: " + value);
+            return 0.01;
+        }
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "auth-session-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long rebuildSeconds = Math.max(60, AuthConfig.getLong("AUTH_SESSION_INDEX_REBUILD_SECONDS", 3600));
+        long refreshSeconds = Math.max(1, AuthConfig.getLong("AUTH_SESSION_INDEX_REFRESH_SECONDS", 5));
+        scheduler.scheduleWithFixedDelay(this::rebuildQuietly, 0, rebuildSeconds, TimeUnit.SECONDS);
+        scheduler.scheduleWithFixedDelay(this::refreshQuietly, refreshSeconds, refreshSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * トークンによるセッション取得
+     * ブルームフィルターに載っていなければDBに問い合わせずに空を返す
+     */
+    public Optional<SessionToken> findSession(String token) throws SQLException {
+        if (enabled) {
+            BloomFilter current = filter;
+            if (current != null && !current.mightContain(token)) {
+                bloomRejected.incrementAndGet();
+                return Optional.empty();
+            }
+            SessionToken cached = getCached(token);
+            if (cached != null) {
+                cacheHits.incrementAndGet();
+                return Optional.of(cached);
+            }
+        }
+
+        dbLookups.incrementAndGet();
+        Optional<SessionToken> session = authRepository.findSessionByToken(token);
+        if (enabled) {
+            if (session.isPresent()) {
+                putCached(token, session.get());
+            } else if (filter != null) {
+                bloomFalsePositives.incrementAndGet();
+            }
+        }
+        return session;
+    }
+
+    /**
+     * 複数のトークンによるセッション取得
+     * フィルター・キャッシュで解決できなかったトークンだけを1回のクエリでDBに問い合わせる
+     *
+     * @return トークン → セッション（見つからなかったトークンは含まない）
+     */
+    public Map<String, SessionToken> findSessions(Collection<String> tokens) throws SQLException {
+        Map<String, SessionToken> sessions = new HashMap<>();
+        Set<String> remaining = new HashSet<>();
+        BloomFilter current = enabled ? filter : null;
+        for (String token : tokens) {
+            if (current != null && !current.mightContain(token)) {
+                bloomRejected.incrementAndGet();
+                continue;
+            }
+            SessionToken cached = enabled ? getCached(token) : null;
+            if (cached != null) {
+                cacheHits.incrementAndGet();
+                sessions.put(token, cached);
+            } else {
+                remaining.add(token);
+            }
+        }
+        if (remaining.isEmpty()) {
+            return sessions;
+        }
+
+        dbLookups.incrementAndGet();
+        Map<String, SessionToken> found = authRepository.findSessionsByTokens(remaining);
+        if (enabled) {
+            found.forEach(this::putCached);
+            if (current != null) {
+                bloomFalsePositives.addAndGet(remaining.size() - found.size());
+            }
+        }
+        sessions.putAll(found);
+        return sessions;
+    }
+
+    /**
+     * セッショントークン作成（作成したトークンはすぐに索引へ載せる）
+     */
+    public SessionToken createSession(SessionToken token) throws SQLException {
+        SessionToken created = authRepository.createSessionToken(token);
+        add(created.getToken());
+        return created;
+    }
+
+    /**
+     * セッション削除（キャッシュからも取り除く。フィルターからは次回の作り直しで消える）
+     */
+    public void deleteSession(String token) throws SQLException {
+        invalidate(token);
+        authRepository.deleteSession(token);
+    }
+
+    /**
+     * 期限切れセッションの削除後などに、全件からの作り直しを予約する
+     */
+    public void requestRebuild() {
+        if (scheduler == null) {
+            return;
+        }
+        try {
+            scheduler.execute(this::rebuildQuietly);
+        } catch (RejectedExecutionException e) {
+            // 停止処理中
+        }
+    }
+
+    /**
+     * 有効なトークン全件からフィルターを作り直す
+     */
+    void rebuild() throws SQLException {
+        BloomFilter current = filter;
+        long size = Math.max(expectedEntries, current != null ? current.inserted() * 2 : 0);
+        BloomFilter next = new BloomFilter(size, falsePositiveRate);
+        // 読み込み中に作成されたトークンも新しいフィルターへ載せる
+        building = next;
+        try {
+            LocalDateTime latest = authRepository.forEachLiveSessionToken(null, next::put);
+            filter = next;
+            if (latest != null) {
+                refreshedUpTo = latest;
+            }
+            rebuilds.incrementAndGet();
+        } finally {
+            building = null;
+        }
+    }
+
+    /**
+     * 前回以降に（他ノードで）作成されたトークンを取り込む
+     */
+    void refresh() throws SQLException {
+        if (filter == null) {
+            return;
+        }
+        LocalDateTime since = refreshedUpTo != null ? refreshedUpTo.minusSeconds(CREATED_AT_OVERLAP_SECONDS) : null;
+        LocalDateTime latest = authRepository.forEachLiveSessionToken(since, this::add);
+        if (latest != null && (refreshedUpTo == null || latest.isAfter(refreshedUpTo))) {
+            refreshedUpTo = latest;
+        }
+    }
+
+    private void rebuildQuietly() {
+        try {
+            rebuild();
+        } catch (SQLException | RuntimeException e) {
+            refreshFailures.incrementAndGet();
+            System.err.println("Failed to rebuild session token index: " + e.getMessage());
+        }
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (SQLException | RuntimeException e) {
+            refreshFailures.incrementAndGet();
+            System.err.println("Failed to refresh session token index: " + e.getMessage());
+        }
+    }
+
+    private void add(String token) {
+        BloomFilter current = filter;
+        if (current != null) {
+            current.put(token);
+        }
+        BloomFilter next = building;
+        if (next != null) {
+            next.put(token);
+        }
+    }
+
+    private SessionToken getCached(String token) {
+        synchronized (cache) {
+            CachedSession cached = cache.get(token);
+            if (cached == null) {
+                return null;
+            }
+            if (!cached.validUntil.isAfter(LocalDateTime.now(clock))) {
+                cache.remove(token);
+                return null;
+            }
+            return cached.session;
+        }
+    }
+
+    private void putCached(String token, SessionToken session) {
+        LocalDateTime now = LocalDateTime.now(clock);
+        LocalDateTime validUntil = now.plusSeconds(cacheTtlSeconds);
+        // セッションの有効期限を超えてキャッシュしない
+        if (session.getExpiresAt() != null && session.getExpiresAt().isBefore(validUntil)) {
+            validUntil = session.getExpiresAt();
+        }
+        if (!validUntil.isAfter(now)) {
+            return;
+        }
+        synchronized (cache) {
+            cache.put(token, new CachedSession(session, validUntil));
+        }
+    }
+
+    private void invalidate(String token) {
+        synchronized (cache) {
+            cache.remove(token);
+        }
+    }
+
+    /**
+     * メトリクスのスナップショット
+     */
+    public Map<String, Object> snapshot() {
+        BloomFilter current = filter;
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("enabled", enabled);
+        snapshot.put("ready", current != null);
+        if (current != null) {
+            snapshot.put("bloomBits", current.bitCount());
+            snapshot.put("bloomHashes", current.hashCount());
+            snapshot.put("bloomEntries", current.inserted());
+        }
+        synchronized (cache) {
+            snapshot.put("cacheSize", cache.size());
+        }
+        snapshot.put("bloomRejected", bloomRejected.get());
+        snapshot.put("bloomFalsePositives", bloomFalsePositives.get());
+        snapshot.put("cacheHits", cacheHits.get());
+        snapshot.put("dbLookups", dbLookups.get());
+        snapshot.put("rebuilds", rebuilds.get());
+        snapshot.put("refreshFailures", refreshFailures.get());
+        return snapshot;
+    }
+
+    private static final class CachedSession {
+        private final SessionToken session;
+        private final LocalDateTime validUntil;
+
+        private CachedSession(SessionToken session, LocalDateTime validUntil) {
+            this.session = session;
+            this.validUntil = validUntil;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.example.microservices.auth.repository;
+
+import com.example.microservices.auth.config.AuthConfig;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ユーザー名の写し（user_credentials.username）をユーザーサービスDBから同期する
+ * ログインを認証DBの1回の問い合わせで済ませ、ユーザーサービスDBが遅くてもログインできるようにする
+ *
+ * - users.updated_at による差分取得（AUTH_CREDENTIAL_SYNC_INTERVAL_SECONDS）で作成・名前変更を取り込む
+ * - 削除されたユーザーはユーザーIDの範囲ごとに突き合わせて（AUTH_CREDENTIAL_SYNC_RECONCILE_SECONDS）ユーザー名を外す
+ * - 同期が追いつく前のユーザーは、ログイン時にユーザーサービスDBへの問い合わせで補う
+ *
+ * 設定:
+ * - AUTH_CREDENTIAL_SYNC_ENABLED            有効/無効（デフォルト true）
+ * - AUTH_CREDENTIAL_SYNC_INTERVAL_SECONDS   差分取得の間隔（デフォルト 5）
+ * - AUTH_CREDENTIAL_SYNC_RECONCILE_SECONDS  削除の突き合わせの間隔（デフォルト 3600）
+ * - AUTH_CREDENTIAL_SYNC_BATCH_SIZE         1回の書き込み・突き合わせの件数（デフォルト 1000）
+ */
+@ApplicationScoped
+public class UserCredentialSync {
+
+    // 差分取得時に updated_at を少し遡り、コミットが遅れた行の取りこぼしを防ぐ
+    private static final long UPDATED_AT_OVERLAP_SECONDS = 5;
+
+    @Inject
+    private AuthRepository authRepository;
+
+    private final boolean enabled;
+    private final int batchSize;
+
+    // 読み込み済みの updated_at（スケジューラースレッドからのみ更新する）
+    private LocalDateTime syncedUpTo;
+    private ScheduledExecutorService scheduler;
+
+    private final AtomicLong syncs = new AtomicLong();
+    private final AtomicLong usersRead = new AtomicLong();
+    private final AtomicLong usernamesUpdated = new AtomicLong();
+    private final AtomicLong usernamesCleared = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private volatile Instant lastSyncAt;
+
+    public UserCredentialSync() {
+        this(null,
+                AuthConfig.getBoolean("AUTH_CREDENTIAL_SYNC_ENABLED", true),
+                AuthConfig.getInt("AUTH_CREDENTIAL_SYNC_BATCH_SIZE", 1000));
+    }
+
+    UserCredentialSync(AuthRepository authRepository, boolean enabled, int batchSize) {
+        this.authRepository = authRepository;
+        this.enabled = enabled;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "auth-credential-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalSeconds = Math.max(1, AuthConfig.getLong("AUTH_CREDENTIAL_SYNC_INTERVAL_SECONDS", 5));
+        long reconcileSeconds = Math.max(60, AuthConfig.getLong("AUTH_CREDENTIAL_SYNC_RECONCILE_SECONDS", 3600));
+        scheduler.scheduleWithFixedDelay(this::syncQuietly, 0, intervalSeconds, TimeUnit.SECONDS);
+        scheduler.scheduleWithFixedDelay(this::reconcileQuietly, reconcileSeconds, reconcileSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * ログイン時にユーザーサービスDBで見つけたユーザー名を写しへ反映（次の差分取得を待たない）
+     */
+    public void remember(UUID userId, String username) {
+        Map<UUID, String> usernames = new LinkedHashMap<>();
+        usernames.put(userId, username);
+        try {
+            usernamesUpdated.addAndGet(authRepository.syncUsernames(usernames));
+        } catch (SQLException | RuntimeException e) {
+            System.err.println("Failed to store username for userId " + userId + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * 前回以降に作成・更新されたユーザーのユーザー名を反映
+     */
+    void sync() throws SQLException {
+        LocalDateTime since = syncedUpTo != null ? syncedUpTo.minusSeconds(UPDATED_AT_OVERLAP_SECONDS) : null;
+        Map<UUID, String> batch = new LinkedHashMap<>();
+        SQLException[] writeFailure = new SQLException[1];
+        LocalDateTime latest = authRepository.forEachUserUpdatedSince(since, (userId, username) -> {
+            usersRead.incrementAndGet();
+            if (writeFailure[0] != null) {
+                return;
+            }
+            batch.put(userId, username);
+            if (batch.size() >= batchSize) {
+                writeFailure[0] = flush(batch);
+            }
+        });
+        if (writeFailure[0] != null) {
+            // 読み込み位置は進めず、次回同じ範囲からやり直す
+            throw writeFailure[0];
+        }
+        SQLException failure = flush(batch);
+        if (failure != null) {
+            throw failure;
+        }
+        if (latest != null && (syncedUpTo == null || latest.isAfter(syncedUpTo))) {
+            syncedUpTo = latest;
+        }
+        syncs.incrementAndGet();
+        lastSyncAt = Instant.now();
+    }
+
+    private SQLException flush(Map<UUID, String> batch) {
+        if (batch.isEmpty()) {
+            return null;
+        }
+        try {
+            usernamesUpdated.addAndGet(authRepository.syncUsernames(batch));
+            return null;
+        } catch (SQLException e) {
+            return e;
+        } finally {
+            batch.clear();
+        }
+    }
+
+    /**
+     * ユーザーサービスで削除されたユーザーのユーザー名を外す
+     * ユーザーIDの昇順に batchSize 件ずつ取得し、同じ範囲の認証情報と突き合わせる
+     */
+    void reconcile() throws SQLException {
+        UUID after = null;
+        while (!Thread.currentThread().isInterrupted()) {
+            List<UUID> present = authRepository.findUserIdsAfter(after, batchSize);
+            // 最後の範囲は上限なし（末尾より後ろの行も対象にする）
+            UUID upTo = present.size() < batchSize ? null : present.get(present.size() - 1);
+            usernamesCleared.addAndGet(authRepository.clearUsernamesMissingFrom(after, upTo, present));
+            if (upTo == null) {
+                return;
+            }
+            after = upTo;
+        }
+    }
+
+    private void syncQuietly() {
+        try {
+            sync();
+        } catch (SQLException | RuntimeException e) {
+            failures.incrementAndGet();
+            System.err.println("Failed to sync usernames from user service: " + e.getMessage());
+        }
+    }
+
+    private void reconcileQuietly() {
+        try {
+            reconcile();
+        } catch (SQLException | RuntimeException e) {
+            failures.incrementAndGet();
+            System.err.println("Failed to reconcile deleted users: " + e.getMessage());
+        }
+    }
+
+    /**
+     * メトリクスのスナップショット
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("enabled", enabled);
+        snapshot.put("syncs", syncs.get());
+        snapshot.put("usersRead", usersRead.get());
+        snapshot.put("usernamesUpdated", usernamesUpdated.get());
+        snapshot.put("usernamesCleared", usernamesCleared.get());
+        snapshot.put("failures", failures.get());
+        snapshot.put("lastSyncAt", lastSyncAt != null ? lastSyncAt.toString() : null);
+        return snapshot;
+    }
+}
@@ -1,12 +1,20 @@
 package com.example.microservices.auth.rest;
 
 import com.auth0.jwt.exceptions.JWTVerificationException;
-import com.auth0.jwt.interfaces.DecodedJWT;
+import com.example.microservices.auth.model.BatchVerifyRequest;
 import com.example.microservices.auth.model.LoginRequest;
 import com.example.microservices.auth.model.SessionToken;
+import com.example.microservices.auth.model.UserCredentials;
 import com.example.microservices.auth.repository.AuthRepository;
+import com.example.microservices.auth.repository.LoginHistoryWriter;
+import com.example.microservices.auth.repository.SessionTokenIndex;
+import com.example.microservices.auth.repository.UserCredentialSync;
 import com.example.microservices.auth.service.AuthService;
+import com.example.microservices.auth.service.ExpiredSessionSweeper;
+import com.example.microservices.auth.service.TokenBatchVerifier;
+import com.example.microservices.auth.service.TokenRevocationList;
 import com.example.microservices.auth.util.JwtUtil;
+import com.example.microservices.auth.util.TokenClaims;
 
 import javax.inject.Inject;
 import javax.ws.rs.*;
@@ -20,6 +28,10 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * 認証REST API
@@ -38,108 +50,157 @@ public class AuthResource {
     @Inject
     private JwtUtil jwtUtil;
 
+    @Inject
+    private LoginHistoryWriter loginHistoryWriter;
+
+    @Inject
+    private SessionTokenIndex sessionTokenIndex;
+
+    @Inject
+    private UserCredentialSync userCredentialSync;
+
+    @Inject
+    private ExpiredSessionSweeper expiredSessionSweeper;
+
+    @Inject
+    private TokenRevocationList tokenRevocationList;
+
+    @Inject
+    private TokenBatchVerifier tokenBatchVerifier;
+
+    public AuthResource() {
+    }
+
+    AuthResource(AuthRepository authRepository, AuthService authService, JwtUtil jwtUtil,
+                 LoginHistoryWriter loginHistoryWriter, SessionTokenIndex sessionTokenIndex) {
+        this.authRepository = authRepository;
+        this.authService = authService;
+        this.jwtUtil = jwtUtil;
+        this.loginHistoryWriter = loginHistoryWriter;
+        this.sessionTokenIndex = sessionTokenIndex;
+    }
+
     /**
      * ログイン
+     * パスワード検証（BCrypt）は専用スレッドプールで行い、その間コンテナのスレッドは解放する
+     * 検証後の処理（トークン発行・セッション保存）は検証を終えたスレッドで続ける
      */
     @POST
     @Path("/login")
-    public Response login(LoginRequest loginRequest, @Context HttpHeaders headers) {
+    public CompletionStage<Response> login(LoginRequest loginRequest, @Context HttpHeaders headers) {
         try {
             // 入力検証
             if (loginRequest == null || loginRequest.getPassword() == null) {
-                return Response.status(Response.Status.BAD_REQUEST)
+                return completed(Response.status(Response.Status.BAD_REQUEST)
                         .entity(createErrorResponse("Username and password are required"))
-                        .build();
+                        .build());
             }
 
-            UUID userId = null;
-            String username = null;
-
-            // userId または username のどちらかでログイン
+            // 認証情報は認証DBの写し（user_credentials.username）から1回の問い合わせで取得する
+            Optional<UserCredentials> credentialsOpt;
             if (loginRequest.getUserId() != null) {
                 // userIdでログイン
-                userId = loginRequest.getUserId();
-                // ユーザー名を取得（レスポンス用）
-                try {
-                    Optional<String> usernameOpt = authRepository.getUsernameByUserId(userId);
-                    if (usernameOpt.isPresent()) {
-                        username = usernameOpt.get();
-                    }
-                } catch (Exception e) {
-                    // ユーザー名取得失敗時もログイン処理を続行（usernameはnullのまま）
-                    System.err.println("Failed to get username for userId " + userId + ": " + e.getMessage());
-                }
+                credentialsOpt = authRepository.findCredentialsByUserId(loginRequest.getUserId());
             } else if (loginRequest.getUsername() != null) {
                 // ユーザー名でログイン
-                username = loginRequest.getUsername();
-                try {
-                    Optional<UUID> userIdOpt = authRepository.getUserIdByUsername(username);
-                    if (userIdOpt.isPresent()) {
-                        userId = userIdOpt.get();
-                    }
-                } catch (Exception e) {
-                    // ユーザーID取得失敗時はログイン失敗扱い
-                    System.err.println("Failed to get userId for username " + username + ": " + e.getMessage());
-                }
+                credentialsOpt = findCredentialsByUsername(loginRequest.getUsername());
             } else {
-                return Response.status(Response.Status.BAD_REQUEST)
+                return completed(Response.status(Response.Status.BAD_REQUEST)
                         .entity(createErrorResponse("Username and password are required"))
-                        .build();
+                        .build());
             }
 
-            if (userId == null) {
-                return Response.status(Response.Status.UNAUTHORIZED)
+            if (!credentialsOpt.isPresent()) {
+                // 認証情報のないユーザーはログイン履歴の外部キーを満たさないため、件数のみ記録する
+                loginHistoryWriter.recordUnknownUser();
+                return completed(Response.status(Response.Status.UNAUTHORIZED)
                         .entity(createErrorResponse("Invalid credentials"))
-                        .build();
+                        .build());
             }
 
-            // パスワードハッシュ取得
-            Optional<String> hashedPasswordOpt = authRepository.getPasswordHash(userId);
-            if (!hashedPasswordOpt.isPresent()) {
-                recordLoginAttempt(userId, headers, false);
-                return Response.status(Response.Status.UNAUTHORIZED)
-                        .entity(createErrorResponse("Invalid credentials"))
-                        .build();
-            }
+            UserCredentials credentials = credentialsOpt.get();
+            // ヘッダーはリクエストの処理スレッドでしか読めないため、検証の前に取り出す
+            LoginClient client = LoginClient.of(headers);
 
-            // パスワード検証
-            boolean isValid = authService.verifyPassword(loginRequest.getPassword(), hashedPasswordOpt.get());
-            
-            if (!isValid) {
-                recordLoginAttempt(userId, headers, false);
-                return Response.status(Response.Status.UNAUTHORIZED)
-                        .entity(createErrorResponse("Invalid credentials"))
-                        .build();
-            }
+            // パスワード検証（BCrypt専用スレッドプールで実行。混雑時は即座に503を返す）
+            return authService.verifyPassword(loginRequest.getPassword(), credentials.getPasswordHash())
+                    .thenApply(isValid -> completeLogin(loginRequest, credentials, client, isValid))
+                    .exceptionally(this::loginFailure);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return completed(Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity(createErrorResponse("Login failed: " + e.getMessage()))
+                    .build());
+        }
+    }
 
-            // JWT トークン生成
-            String jwtToken = jwtUtil.generateToken(userId, username);
+    /**
+     * パスワード検証後のログイン処理（トークン発行・セッション保存・履歴の記録）
+     */
+    private Response completeLogin(LoginRequest loginRequest, UserCredentials credentials, LoginClient client,
+                                   boolean isValid) {
+        UUID userId = credentials.getUserId();
+        if (!isValid) {
+            recordLoginAttempt(userId, client, false);
+            return Response.status(Response.Status.UNAUTHORIZED)
+                    .entity(createErrorResponse("Invalid credentials"))
+                    .build();
+        }
 
-            // レガシーのセッショントークンも生成（移行期間中のみ）
-            String sessionToken = authService.generateToken();
-            LocalDateTime expiresAt = LocalDateTime.now().plusDays(7);
-            
-            SessionToken session = new SessionToken(userId, sessionToken, expiresAt);
-            session = authRepository.createSessionToken(session);
+        // 設定されたコストと異なるハッシュはログイン成功時に再ハッシュする
+        String hashedPassword = credentials.getPasswordHash();
+        if (authService.needsRehash(hashedPassword)) {
+            upgradePasswordHash(userId, loginRequest.getPassword(), hashedPassword);
+        }
 
-            // ログイン成功記録
-            recordLoginAttempt(userId, headers, true);
+        // ユーザー名の写しがまだない場合は入力されたユーザー名（userIdでのログインでは null のまま省く）
+        String username = credentials.getUsername() != null ? credentials.getUsername() : loginRequest.getUsername();
 
-            Map<String, Object> response = new HashMap<>();
-            response.put("token", jwtToken);
-            response.put("userId", userId.toString());
-            if (username != null) {
-                response.put("username", username);
-            }
-            response.put("expiresAt", expiresAt.toString());
+        // JWT トークン生成
+        String jwtToken = jwtUtil.generateToken(userId, username);
 
-            return Response.ok(response).build();
+        // レガシーのセッショントークンも生成（移行期間中のみ）
+        String sessionToken = authService.generateToken();
+        LocalDateTime expiresAt = LocalDateTime.now().plusDays(7);
+
+        try {
+            sessionTokenIndex.createSession(new SessionToken(userId, sessionToken, expiresAt));
         } catch (SQLException e) {
             e.printStackTrace();
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
                     .entity(createErrorResponse("Login failed: " + e.getMessage()))
                     .build();
         }
+
+        // ログイン成功記録
+        recordLoginAttempt(userId, client, true);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("token", jwtToken);
+        response.put("userId", userId.toString());
+        if (username != null) {
+            response.put("username", username);
+        }
+        response.put("expiresAt", expiresAt.toString());
+
+        return Response.ok(response).build();
+    }
+
+    /**
+     * パスワード検証の失敗（混雑・タイムアウトは503、それ以外は500）
+     */
+    private Response loginFailure(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof RejectedExecutionException) {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .entity(createErrorResponse("Login is busy, please retry"))
+                    .build();
+        }
+        System.err.println("Login failed: " + cause);
+        return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                .entity(createErrorResponse("Login failed: " + cause.getMessage()))
+                .build();
     }
 
     /**
@@ -159,28 +220,34 @@ public class AuthResource {
             
             // JWT トークン検証を試みる
             try {
-                DecodedJWT jwt = jwtUtil.verifyToken(token);
-                String userIdStr = jwt.getClaim("userId").asString();
-                String username = jwt.getClaim("username").asString();
+                TokenClaims claims = jwtUtil.verify(token);
                 
-                if (userIdStr == null || userIdStr.isEmpty()) {
+                if (claims.getUserId() == null) {
                     return Response.status(Response.Status.UNAUTHORIZED)
                             .entity(createErrorResponse("Invalid token: userId claim missing"))
                             .build();
                 }
+
+                // ログアウト済みのトークン（メモリ上の失効一覧で照合し、DBには問い合わせない）
+                if (tokenRevocationList.isRevoked(claims.getTokenId())) {
+                    return Response.status(Response.Status.UNAUTHORIZED)
+                            .entity(createErrorResponse("Token revoked"))
+                            .build();
+                }
                 
                 // usernameはオプショナル（nullでも有効なトークンとして扱う）
                 Map<String, Object> response = new HashMap<>();
                 response.put("valid", true);
-                response.put("userId", userIdStr);
-                if (username != null && !username.isEmpty()) {
-                    response.put("username", username);
+                response.put("userId", claims.getUserId().toString());
+                if (claims.getUsername() != null) {
+                    response.put("username", claims.getUsername());
                 }
 
                 return Response.ok(response).build();
             } catch (JWTVerificationException e) {
                 // JWT 検証失敗の場合、レガシーセッショントークンを確認
-                Optional<SessionToken> sessionOpt = authRepository.findSessionByToken(token);
+                // 索引（ブルームフィルター）にないトークンはDBに問い合わせずに拒否される
+                Optional<SessionToken> sessionOpt = sessionTokenIndex.findSession(token);
 
                 if (!sessionOpt.isPresent()) {
                     return Response.status(Response.Status.UNAUTHORIZED)
@@ -190,7 +257,7 @@ public class AuthResource {
 
                 SessionToken session = sessionOpt.get();
                 if (session.isExpired()) {
-                    authRepository.deleteSession(token);
+                    sessionTokenIndex.deleteSession(token);
                     return Response.status(Response.Status.UNAUTHORIZED)
                             .entity(createErrorResponse("Token expired"))
                             .build();
@@ -210,6 +277,35 @@ public class AuthResource {
         }
     }
 
+    /**
+     * トークン一括検証
+     * リクエスト: {"tokens":["...","..."]}、レスポンス: {"results":[{"valid":true,"userId":...},{"valid":false,"error":...}]}
+     * 結果は入力と同じ順番で返す
+     */
+    @POST
+    @Path("/verify/batch")
+    public Response verifyTokens(BatchVerifyRequest request) {
+        if (request == null || request.getTokens() == null) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(createErrorResponse("tokens is required"))
+                    .build();
+        }
+        if (request.getTokens().size() > tokenBatchVerifier.getMaxTokens()) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(createErrorResponse("Too many tokens (max " + tokenBatchVerifier.getMaxTokens() + ")"))
+                    .build();
+        }
+        try {
+            Map<String, Object> response = new HashMap<>();
+            response.put("results", tokenBatchVerifier.verify(request.getTokens()));
+            return Response.ok(response).build();
+        } catch (SQLException e) {
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity(createErrorResponse("Verification failed: " + e.getMessage()))
+                    .build();
+        }
+    }
+
     /**
      * ログアウト
      */
@@ -225,13 +321,13 @@ public class AuthResource {
 
             String token = authHeader.substring(7);
             
-            // JWT トークンの場合は何もしない（ステートレスなので）
+            // JWT トークンの場合は jti を失効一覧に加え、有効期限まで拒否させる
             try {
-                jwtUtil.verifyToken(token);
-                // JWT トークンは有効だがステートレスなのでサーバー側で削除する必要はない
+                TokenClaims claims = jwtUtil.verify(token);
+                tokenRevocationList.revoke(claims.getTokenId(), claims.getExpiresAt());
             } catch (JWTVerificationException e) {
                 // レガシーセッショントークンの場合は削除
-                authRepository.deleteSession(token);
+                sessionTokenIndex.deleteSession(token);
             }
 
             Map<String, String> response = new HashMap<>();
@@ -247,24 +343,93 @@ public class AuthResource {
 
     /**
      * 期限切れセッションのクリーンアップ
+     * 通常は ExpiredSessionSweeper が定期的に実行する。このエンドポイントは1回の実行を予約して 202 を返す
+     * （削除は毎秒の件数を制限しながら進むため、件数が多いと完了まで時間がかかる）
      */
     @POST
     @Path("/cleanup")
     public Response cleanupExpiredSessions() {
-        try {
-            authRepository.cleanupExpiredSessions();
-            Map<String, String> response = new HashMap<>();
-            response.put("message", "Expired sessions cleaned up successfully");
+        Map<String, Object> response = new HashMap<>();
+        if (!expiredSessionSweeper.requestSweep(sessionTokenIndex::requestRebuild)) {
+            response.put("message", "Cleanup is already in progress");
             return Response.ok(response).build();
-        } catch (SQLException e) {
-            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                    .entity(createErrorResponse("Cleanup failed: " + e.getMessage()))
-                    .build();
         }
+        response.put("message", "Expired session cleanup scheduled");
+        return Response.accepted(response).build();
     }
 
-    private void recordLoginAttempt(UUID userId, HttpHeaders headers, boolean success) {
+    /**
+     * ユーザー名で認証情報を取得
+     * 写しにない場合（同期前のユーザーなど）のみユーザーサービスDBで補い、見つかったユーザー名を写しへ反映する
+     */
+    private Optional<UserCredentials> findCredentialsByUsername(String username) throws SQLException {
+        Optional<UserCredentials> credentials = authRepository.findCredentialsByUsername(username);
+        if (credentials.isPresent()) {
+            return credentials;
+        }
+        Optional<UUID> userIdOpt;
         try {
+            userIdOpt = authRepository.getUserIdByUsername(username);
+        } catch (SQLException e) {
+            // ユーザーID取得失敗時はログイン失敗扱い
+            System.err.println("Failed to get userId for username " + username + ": " + e.getMessage());
+            return Optional.empty();
+        }
+        if (!userIdOpt.isPresent()) {
+            return Optional.empty();
+        }
+        credentials = authRepository.findCredentialsByUserId(userIdOpt.get());
+        if (credentials.isPresent()) {
+            userCredentialSync.remember(userIdOpt.get(), username);
+        }
+        return credentials;
+    }
+
+    /**
+     * パスワードハッシュを現在のコストで作り直して保存（非同期・ベストエフォート）
+     */
+    private void upgradePasswordHash(UUID userId, String password, String currentHash) {
+        authService.rehashPassword(password).whenComplete((newHash, error) -> {
+            if (error != null) {
+                // 混雑時は見送り、次回のログインで再試行する
+                return;
+            }
+            try {
+                authRepository.updatePasswordHash(userId, currentHash, newHash);
+            } catch (SQLException e) {
+                System.err.println("Failed to upgrade password hash for userId " + userId + ": " + e.getMessage());
+            }
+        });
+    }
+
+    private void recordLoginAttempt(UUID userId, LoginClient client, boolean success) {
+        // DBへの書き込みはバックグラウンドでまとめて行う（ログイン処理は待たない）
+        loginHistoryWriter.record(userId, client.ipAddress, client.userAgent, success);
+    }
+
+    private static <T> CompletionStage<T> completed(T value) {
+        return CompletableFuture.completedFuture(value);
+    }
+
+    private Map<String, String> createErrorResponse(String message) {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", message);
+        return error;
+    }
+
+    /**
+     * ログイン履歴に記録する接続元
+     */
+    private static final class LoginClient {
+        private final String ipAddress;
+        private final String userAgent;
+
+        private LoginClient(String ipAddress, String userAgent) {
+            this.ipAddress = ipAddress;
+            this.userAgent = userAgent;
+        }
+
+        static LoginClient of(HttpHeaders headers) {
             String ipAddress = headers.getHeaderString("X-Forwarded-For");
             if (ipAddress == null) {
                 ipAddress = headers.getHeaderString("X-Real-IP");
@@ -277,17 +442,7 @@ public class AuthResource {
             if (userAgent == null) {
                 userAgent = "unknown";
             }
-
-            authRepository.recordLoginHistory(userId, ipAddress, userAgent, success);
-        } catch (SQLException e) {
-            // ログ記録失敗は致命的なエラーではないので無視
-            System.err.println("Failed to record login history: " + e.getMessage());
+            return new LoginClient(ipAddress, userAgent);
         }
     }
-
-    private Map<String, String> createErrorResponse(String message) {
-        Map<String, String> error = new HashMap<>();
-        error.put("error", message);
-        return error;
-    }
 }
@@ -0,0 +1,40 @@
+package com.example.microservices.auth.rest;
+
+import com.example.microservices.auth.util.JwtUtil;
+
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * JWT署名の公開鍵（JWKS）
+ * GET /api/auth/keys
+ *
+ * BFF / Point Service はこの一覧を取得してキャッシュし、JWTをローカルで検証する
+ * 未知の kid のトークンを受け取った場合は取得し直す（鍵のローテーション直後）
+ */
+@Path("/auth/keys")
+@Produces(MediaType.APPLICATION_JSON)
+public class KeysResource {
+
+    // 鍵は起動中に変わらないため、短時間のキャッシュを許可する
+    private static final int MAX_AGE_SECONDS = 300;
+
+    @Inject
+    private JwtUtil jwtUtil;
+
+    @GET
+    public Response getKeys() {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("keys", jwtUtil.getPublicKeys());
+        CacheControl cacheControl = new CacheControl();
+        cacheControl.setMaxAge(MAX_AGE_SECONDS);
+        return Response.ok(body).cacheControl(cacheControl).build();
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.microservices.auth.rest;
+
+import com.example.microservices.auth.repository.AuthRepository;
+import com.example.microservices.auth.repository.LoginHistoryWriter;
+import com.example.microservices.auth.repository.SessionTokenIndex;
+import com.example.microservices.auth.repository.UserCredentialSync;
+import com.example.microservices.auth.service.AuthService;
+import com.example.microservices.auth.service.ExpiredSessionSweeper;
+import com.example.microservices.auth.service.TokenBatchVerifier;
+import com.example.microservices.auth.service.TokenRevocationList;
+
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 認証サービス内部メトリクス
+ * GET /api/auth/metrics
+ */
+@Path("/auth/metrics")
+@Produces(MediaType.APPLICATION_JSON)
+public class MetricsResource {
+
+    @Inject
+    private AuthRepository authRepository;
+
+    @Inject
+    private AuthService authService;
+
+    @Inject
+    private LoginHistoryWriter loginHistoryWriter;
+
+    @Inject
+    private SessionTokenIndex sessionTokenIndex;
+
+    @Inject
+    private ExpiredSessionSweeper expiredSessionSweeper;
+
+    @Inject
+    private TokenRevocationList tokenRevocationList;
+
+    @Inject
+    private UserCredentialSync userCredentialSync;
+
+    @Inject
+    private TokenBatchVerifier tokenBatchVerifier;
+
+    @GET
+    public Response getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("connectionPools", authRepository.poolMetrics());
+        metrics.put("passwordHashing", authService.snapshot());
+        metrics.put("loginHistory", loginHistoryWriter.snapshot());
+        metrics.put("sessionTokenIndex", sessionTokenIndex.snapshot());
+        metrics.put("sessionSweeper", expiredSessionSweeper.snapshot());
+        metrics.put("revocations", tokenRevocationList.snapshot());
+        metrics.put("credentialSync", userCredentialSync.snapshot());
+        metrics.put("batchVerification", tokenBatchVerifier.snapshot());
+        return Response.ok(metrics).build();
+    }
+}
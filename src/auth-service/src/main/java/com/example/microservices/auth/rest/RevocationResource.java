@@ -0,0 +1,57 @@
+package com.example.microservices.auth.rest;
+
+import com.example.microservices.auth.service.TokenRevocationList;
+
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 失効済みJWTの一覧（BFF / Point Service がポーリングして手元で照合する）
+ * GET /api/auth/revocations
+ *
+ * ETag に版を載せ、If-None-Match が一致すれば 304 を返す（変更がなければ本文を送らない）
+ */
+@Path("/auth/revocations")
+@Produces(MediaType.APPLICATION_JSON)
+public class RevocationResource {
+
+    @Inject
+    private TokenRevocationList tokenRevocationList;
+
+    @GET
+    public Response getRevocations(@Context Request request) {
+        TokenRevocationList.Revocations revocations = tokenRevocationList.publish();
+        EntityTag etag = new EntityTag(revocations.getVersion());
+        CacheControl cacheControl = new CacheControl();
+        cacheControl.setNoCache(true);
+
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(etag);
+        if (notModified != null) {
+            return notModified.cacheControl(cacheControl).build();
+        }
+
+        List<Map<String, Object>> revoked = new ArrayList<>(revocations.getEntries().size());
+        for (Map.Entry<String, Long> entry : revocations.getEntries().entrySet()) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("jti", entry.getKey());
+            item.put("exp", entry.getValue());
+            revoked.add(item);
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("version", revocations.getVersion());
+        body.put("revoked", revoked);
+        return Response.ok(body).tag(etag).cacheControl(cacheControl).build();
+    }
+}
@@ -1,12 +1,35 @@
 package com.example.microservices.auth.service;
 
+import com.example.microservices.auth.config.AuthConfig;
 import org.mindrot.jbcrypt.BCrypt;
+import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
 import java.security.SecureRandom;
 import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 認証ユーティリティサービス
+ * BCryptのハッシュ化・検証はCPU数に合わせた専用スレッドプールで実行し、
+ * リクエストスレッド（/verify などの軽い処理）とCPUを奪い合わないようにする
+ * キューが一杯の場合は待たずに RejectedExecutionException で即座に拒否する
+ * 検証結果は CompletableFuture で返し、呼び出し元（リクエストスレッド）はBCryptの完了を待たない
+ *
+ * 設定:
+ * - AUTH_BCRYPT_COST            新しく作るハッシュのコスト（デフォルト 10）。変更するとログイン時に再ハッシュされる
+ * - AUTH_BCRYPT_THREADS         専用スレッド数（デフォルト CPU数）
+ * - AUTH_BCRYPT_QUEUE_CAPACITY  待ちキューの上限（デフォルト 32）
+ * - AUTH_BCRYPT_TIMEOUT_MS      キューでの待ちを含めた検証の上限時間（デフォルト 3000）
  */
 @ApplicationScoped
 public class AuthService {
@@ -14,24 +37,117 @@ public class AuthService {
     private static final int TOKEN_LENGTH = 32;
     private static final SecureRandom secureRandom = new SecureRandom();
 
+    private final int cost;
+    private final long timeoutMillis;
+    private final ThreadPoolExecutor executor;
+
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+    private final AtomicLong rehashed = new AtomicLong();
+
+    public AuthService() {
+        this(AuthConfig.getInt("AUTH_BCRYPT_COST", 10),
+                AuthConfig.getInt("AUTH_BCRYPT_THREADS", Runtime.getRuntime().availableProcessors()),
+                AuthConfig.getInt("AUTH_BCRYPT_QUEUE_CAPACITY", 32),
+                AuthConfig.getLong("AUTH_BCRYPT_TIMEOUT_MS", 3000));
+    }
+
+    AuthService(int cost, int threads, int queueCapacity, long timeoutMillis) {
+        // jBCryptが受け付けるコストは 4〜30
+        this.cost = Math.max(4, Math.min(30, cost));
+        this.timeoutMillis = timeoutMillis;
+        int poolSize = Math.max(1, threads);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(Math.max(1, queueCapacity)),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "auth-bcrypt-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
     /**
      * パスワードをハッシュ化
      */
     public String hashPassword(String password) {
-        return BCrypt.hashpw(password, BCrypt.gensalt(10));
+        return BCrypt.hashpw(password, BCrypt.gensalt(cost));
     }
 
     /**
-     * パスワード検証
+     * パスワード検証（専用スレッドプールで非同期に実行）
+     * キューが一杯の場合、または上限時間を超えた場合は RejectedExecutionException で失敗する
      */
-    public boolean verifyPassword(String password, String hashedPassword) {
+    public CompletableFuture<Boolean> verifyPassword(String password, String hashedPassword) {
+        CompletableFuture<Boolean> result;
         try {
-            return BCrypt.checkpw(password, hashedPassword);
-        } catch (IllegalArgumentException e) {
+            result = CompletableFuture.supplyAsync(() -> checkPassword(password, hashedPassword), executor);
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            CompletableFuture<Boolean> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+
+        CompletableFuture<Boolean> verification = new CompletableFuture<>();
+        result.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS).whenComplete((valid, error) -> {
+            if (error == null) {
+                verification.complete(valid);
+            } else if (unwrap(error) instanceof TimeoutException) {
+                // 上限時間で完了済みになるため、キューで待っている検証は実行されない
+                timedOut.incrementAndGet();
+                verification.completeExceptionally(new RejectedExecutionException("Password verification timed out"));
+            } else {
+                verification.complete(false);
+            }
+        });
+        return verification;
+    }
+
+    /**
+     * 保存済みハッシュのコストが現在の設定と異なるか
+     */
+    public boolean needsRehash(String hashedPassword) {
+        // 形式: $2a$10$<salt+hash>
+        if (hashedPassword == null || hashedPassword.length() < 7 || hashedPassword.charAt(0) != '$') {
+            return false;
+        }
+        int costStart = hashedPassword.indexOf('$', 1) + 1;
+        if (costStart <= 0 || costStart + 2 > hashedPassword.length()) {
+            return false;
+        }
+        try {
+            return Integer.parseInt(hashedPassword.substring(costStart, costStart + 2)) != cost;
+        } catch (NumberFormatException e) {
             return false;
         }
     }
 
+    /**
+     * 現在のコストで再ハッシュ（専用スレッドプールで非同期に実行）
+     * 検証より優先度が低いため、キューが一杯なら今回は見送る（次回のログインで再試行される）
+     */
+    public CompletableFuture<String> rehashPassword(String password) {
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                String hash = hashPassword(password);
+                rehashed.incrementAndGet();
+                return hash;
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            CompletableFuture<String> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
+
     /**
      * ランダムなセッショントークン生成
      */
@@ -40,4 +156,33 @@ public class AuthService {
         secureRandom.nextBytes(randomBytes);
         return Base64.getUrlEncoder().withoutPadding().encodeToString(randomBytes);
     }
+
+    /**
+     * メトリクスのスナップショット
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("cost", cost);
+        snapshot.put("threads", executor.getMaximumPoolSize());
+        snapshot.put("active", executor.getActiveCount());
+        snapshot.put("queued", executor.getQueue().size());
+        snapshot.put("queueCapacity", executor.getQueue().size() + executor.getQueue().remainingCapacity());
+        snapshot.put("completed", executor.getCompletedTaskCount());
+        snapshot.put("rejected", rejected.get());
+        snapshot.put("timedOut", timedOut.get());
+        snapshot.put("rehashed", rehashed.get());
+        return snapshot;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    private static boolean checkPassword(String password, String hashedPassword) {
+        try {
+            return BCrypt.checkpw(password, hashedPassword);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
 }
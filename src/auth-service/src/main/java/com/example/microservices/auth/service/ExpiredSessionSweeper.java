@@ -0,0 +1,200 @@
+package com.example.microservices.auth.service;
+
+import com.example.microservices.auth.config.AuthConfig;
+import com.example.microservices.auth.repository.AuthRepository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 期限切れセッションの定期削除
+ * 1回の巨大な DELETE の代わりに、expires_at の古い順に少量ずつ削除し、
+ * バッチ間で間隔を空けて毎秒の削除件数を制限する（ロック競合とWALの急増を避ける）
+ * 対象行は SKIP LOCKED で確保するため、複数ノードで同時に動いても安全
+ *
+ * 設定:
+ * - AUTH_SESSION_SWEEP_ENABLED               有効/無効（デフォルト true）
+ * - AUTH_SESSION_SWEEP_INTERVAL_SECONDS      実行間隔（デフォルト 60）
+ * - AUTH_SESSION_SWEEP_BATCH_SIZE            1回の DELETE の最大件数（デフォルト 500）
+ * - AUTH_SESSION_SWEEP_MAX_ROWS_PER_SECOND   毎秒の削除件数の上限、0 で無制限（デフォルト 2000）
+ */
+@ApplicationScoped
+public class ExpiredSessionSweeper {
+
+    @Inject
+    private AuthRepository authRepository;
+
+    private final boolean enabled;
+    private final long intervalSeconds;
+    private final int batchSize;
+    private final int maxRowsPerSecond;
+
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+    private volatile boolean stopped;
+    private ScheduledExecutorService scheduler;
+
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong deleted = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private volatile long lastRunDeleted;
+    private volatile long lastRunMillis;
+    private volatile Instant lastRunAt;
+
+    public ExpiredSessionSweeper() {
+        this(null,
+                AuthConfig.getBoolean("AUTH_SESSION_SWEEP_ENABLED", true),
+                AuthConfig.getLong("AUTH_SESSION_SWEEP_INTERVAL_SECONDS", 60),
+                AuthConfig.getInt("AUTH_SESSION_SWEEP_BATCH_SIZE", 500),
+                AuthConfig.getInt("AUTH_SESSION_SWEEP_MAX_ROWS_PER_SECOND", 2000));
+    }
+
+    ExpiredSessionSweeper(AuthRepository authRepository, boolean enabled, long intervalSeconds,
+                          int batchSize, int maxRowsPerSecond) {
+        this.authRepository = authRepository;
+        this.enabled = enabled;
+        this.intervalSeconds = Math.max(1, intervalSeconds);
+        this.batchSize = Math.max(1, batchSize);
+        this.maxRowsPerSecond = Math.max(0, maxRowsPerSecond);
+    }
+
+    @PostConstruct
+    void start() {
+        // 無効な場合も、POST /auth/cleanup からの手動実行のためにスレッドは用意する
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "auth-session-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (enabled) {
+            scheduler.scheduleWithFixedDelay(this::sweepQuietly, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        stopped = true;
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 削除をバックグラウンドで1回実行するよう予約する（呼び出し元は完了を待たない）
+     *
+     * @param afterSweep 1件以上削除した場合に、削除の完了後に実行する処理（null 可）
+     * @return 予約した場合は true、すでに実行中の場合は false
+     */
+    public boolean requestSweep(Runnable afterSweep) {
+        if (scheduler == null || sweeping.get()) {
+            return false;
+        }
+        try {
+            scheduler.execute(() -> {
+                try {
+                    if (sweep() > 0 && afterSweep != null) {
+                        afterSweep.run();
+                    }
+                } catch (SQLException | RuntimeException e) {
+                    failures.incrementAndGet();
+                    System.err.println("Failed to sweep expired sessions: " + e.getMessage());
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            // 停止処理中
+            return false;
+        }
+    }
+
+    /**
+     * 期限切れセッションを少量ずつ、なくなるまで削除
+     *
+     * @return 削除した件数（他のスレッドで実行中の場合は -1）
+     */
+    public long sweep() throws SQLException {
+        if (!sweeping.compareAndSet(false, true)) {
+            return -1;
+        }
+        long start = System.nanoTime();
+        long total = 0;
+        try {
+            runs.incrementAndGet();
+            while (!stopped) {
+                int count = authRepository.deleteExpiredSessions(batchSize);
+                batches.incrementAndGet();
+                deleted.addAndGet(count);
+                total += count;
+                if (count < batchSize || !pause(count)) {
+                    break;
+                }
+            }
+            return total;
+        } finally {
+            lastRunDeleted = total;
+            lastRunMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            lastRunAt = Instant.now();
+            sweeping.set(false);
+        }
+    }
+
+    /**
+     * 削除件数が毎秒の上限を超えないようにバッチ間で待つ
+     *
+     * @return 続行する場合は true（割り込まれた場合は false）
+     */
+    private boolean pause(int count) {
+        if (maxRowsPerSecond == 0) {
+            return true;
+        }
+        long pauseMillis = count * 1000L / maxRowsPerSecond;
+        if (pauseMillis <= 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(pauseMillis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void sweepQuietly() {
+        try {
+            sweep();
+        } catch (SQLException | RuntimeException e) {
+            failures.incrementAndGet();
+            System.err.println("Failed to sweep expired sessions: " + e.getMessage());
+        }
+    }
+
+    /**
+     * メトリクスのスナップショット
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("enabled", enabled);
+        snapshot.put("running", sweeping.get());
+        snapshot.put("runs", runs.get());
+        snapshot.put("batches", batches.get());
+        snapshot.put("deleted", deleted.get());
+        snapshot.put("failures", failures.get());
+        snapshot.put("lastRunDeleted", lastRunDeleted);
+        snapshot.put("lastRunMillis", lastRunMillis);
+        snapshot.put("lastRunAt", lastRunAt != null ? lastRunAt.toString() : null);
+        return snapshot;
+    }
+}
@@ -0,0 +1,228 @@
+package com.example.microservices.auth.service;
+
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.example.microservices.auth.config.AuthConfig;
+import com.example.microservices.auth.model.SessionToken;
+import com.example.microservices.auth.repository.SessionTokenIndex;
+import com.example.microservices.auth.util.JwtUtil;
+import com.example.microservices.auth.util.TokenClaims;
+
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 複数トークンの一括検証（POST /api/auth/verify/batch）
+ * - JWT は署名検証を専用スレッドプールで並列に行う（少量ならリクエストスレッドでそのまま検証する）
+ * - JWT でなかったトークンはレガシーセッショントークンとして、まとめて1回のクエリで引く
+ * 結果は入力と同じ順番で返す
+ *
+ * 設定:
+ * - AUTH_VERIFY_BATCH_MAX_TOKENS  1回に受け付けるトークン数の上限（デフォルト 100）
+ * - AUTH_VERIFY_BATCH_THREADS     JWT検証の並列数（デフォルト CPU数）
+ */
+@ApplicationScoped
+public class TokenBatchVerifier {
+
+    // 1スレッドに割り当てる最小件数（これより細かく分けても切り替えのコストが上回る）
+    private static final int MIN_TOKENS_PER_TASK = 16;
+
+    @Inject
+    private JwtUtil jwtUtil;
+
+    @Inject
+    private TokenRevocationList tokenRevocationList;
+
+    @Inject
+    private SessionTokenIndex sessionTokenIndex;
+
+    private final int maxTokens;
+    private final int parallelism;
+    private final ThreadPoolExecutor executor;
+
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong tokens = new AtomicLong();
+    private final AtomicLong legacyLookups = new AtomicLong();
+
+    public TokenBatchVerifier() {
+        this(null, null, null,
+                AuthConfig.getInt("AUTH_VERIFY_BATCH_MAX_TOKENS", 100),
+                AuthConfig.getInt("AUTH_VERIFY_BATCH_THREADS", Runtime.getRuntime().availableProcessors()));
+    }
+
+    TokenBatchVerifier(JwtUtil jwtUtil, TokenRevocationList tokenRevocationList, SessionTokenIndex sessionTokenIndex,
+                       int maxTokens, int threads) {
+        this.jwtUtil = jwtUtil;
+        this.tokenRevocationList = tokenRevocationList;
+        this.sessionTokenIndex = sessionTokenIndex;
+        this.maxTokens = Math.max(1, maxTokens);
+        this.parallelism = Math.max(1, threads);
+        AtomicInteger threadNumber = new AtomicInteger();
+        // キューが一杯（または停止処理中）なら呼び出し元のスレッドで検証する（混雑時は並列化を諦めるだけで拒否はしない）
+        this.executor = new ThreadPoolExecutor(parallelism, parallelism, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(parallelism * 4),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "auth-verify-batch-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                (runnable, pool) -> runnable.run());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 1回に受け付けるトークン数の上限
+     */
+    public int getMaxTokens() {
+        return maxTokens;
+    }
+
+    /**
+     * トークンをまとめて検証
+     *
+     * @return トークンごとの結果（入力と同じ順番）
+     *         有効: {"valid":true,"userId":...,"username"|"expiresAt":...} / 無効: {"valid":false,"error":...}
+     */
+    public List<Map<String, Object>> verify(List<String> tokenList) throws SQLException {
+        batches.incrementAndGet();
+        tokens.addAndGet(tokenList.size());
+
+        List<Map<String, Object>> results = verifyJwts(tokenList);
+
+        // JWT でなかったトークンはレガシーセッショントークンとして1回のクエリで引く
+        Set<String> legacyTokens = new LinkedHashSet<>();
+        for (int i = 0; i < tokenList.size(); i++) {
+            if (results.get(i) == null) {
+                legacyTokens.add(tokenList.get(i));
+            }
+        }
+        if (legacyTokens.isEmpty()) {
+            return results;
+        }
+        legacyLookups.incrementAndGet();
+        Map<String, SessionToken> sessions = sessionTokenIndex.findSessions(legacyTokens);
+        for (int i = 0; i < tokenList.size(); i++) {
+            if (results.get(i) == null) {
+                results.set(i, toResult(sessions.get(tokenList.get(i))));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * JWT を並列に検証する（JWT でなかったトークンの位置は null のまま）
+     */
+    private List<Map<String, Object>> verifyJwts(List<String> tokenList) {
+        int size = tokenList.size();
+        List<Map<String, Object>> results = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            results.add(null);
+        }
+        int taskCount = Math.min(parallelism, (size + MIN_TOKENS_PER_TASK - 1) / MIN_TOKENS_PER_TASK);
+        if (taskCount <= 1) {
+            verifyRange(tokenList, results, 0, size);
+            return results;
+        }
+        // 先頭の区間はリクエストスレッドで検証し、残りをスレッドプールに任せる
+        int chunk = (size + taskCount - 1) / taskCount;
+        List<CompletableFuture<Void>> tasks = new ArrayList<>(taskCount - 1);
+        for (int from = chunk; from < size; from += chunk) {
+            int start = from;
+            int end = Math.min(size, from + chunk);
+            tasks.add(CompletableFuture.runAsync(() -> verifyRange(tokenList, results, start, end), executor));
+        }
+        verifyRange(tokenList, results, 0, Math.min(size, chunk));
+        CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0])).join();
+        return results;
+    }
+
+    private void verifyRange(List<String> tokenList, List<Map<String, Object>> results, int from, int to) {
+        for (int i = from; i < to; i++) {
+            results.set(i, verifyJwt(tokenList.get(i)));
+        }
+    }
+
+    /**
+     * JWT を検証（JWT として解釈できない場合は null）
+     */
+    private Map<String, Object> verifyJwt(String token) {
+        if (token == null || token.isEmpty()) {
+            return invalid("Invalid token");
+        }
+        TokenClaims claims;
+        try {
+            claims = jwtUtil.verify(token);
+        } catch (JWTVerificationException e) {
+            return null;
+        }
+        if (claims.getUserId() == null) {
+            return invalid("Invalid token: userId claim missing");
+        }
+        if (tokenRevocationList.isRevoked(claims.getTokenId())) {
+            return invalid("Token revoked");
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("valid", true);
+        result.put("userId", claims.getUserId().toString());
+        if (claims.getUsername() != null) {
+            result.put("username", claims.getUsername());
+        }
+        return result;
+    }
+
+    /**
+     * レガシーセッションの結果
+     * 期限切れのセッションはここでは削除しない（ExpiredSessionSweeper がまとめて削除する）
+     */
+    private static Map<String, Object> toResult(SessionToken session) {
+        if (session == null) {
+            return invalid("Invalid token");
+        }
+        if (session.isExpired()) {
+            return invalid("Token expired");
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("valid", true);
+        result.put("userId", session.getUserId().toString());
+        result.put("expiresAt", session.getExpiresAt().toString());
+        return result;
+    }
+
+    private static Map<String, Object> invalid(String error) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("valid", false);
+        result.put("error", error);
+        return result;
+    }
+
+    /**
+     * メトリクスのスナップショット
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("maxTokens", maxTokens);
+        snapshot.put("threads", parallelism);
+        snapshot.put("batches", batches.get());
+        snapshot.put("tokens", tokens.get());
+        snapshot.put("legacyLookups", legacyLookups.get());
+        return snapshot;
+    }
+}
@@ -0,0 +1,240 @@
+package com.example.microservices.auth.service;
+
+import com.example.microservices.auth.config.AuthConfig;
+import com.example.microservices.auth.repository.AuthRepository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ログアウトで失効したJWT（jti）の一覧
+ * 検証のたびにDBを引かないよう、失効済みの jti をメモリ上に保持して O(1) で照合する
+ * 失効はDB（revoked_tokens）にも記録し、他ノードの失効は定期的な差分取得で取り込む
+ * 各エントリはトークンの有効期限を過ぎると自動的に消える
+ *
+ * BFF / Point Service 向けに、jti を整列した版付きのスナップショットを公開する（GET /api/auth/revocations）
+ * 版は内容（整列した jti と有効期限）のハッシュなので、同じ内容を持つノード同士では一致する
+ *
+ * 設定:
+ * - AUTH_REVOCATION_REFRESH_SECONDS  他ノードの失効を取り込む間隔（デフォルト 5）
+ */
+@ApplicationScoped
+public class TokenRevocationList {
+
+    // 差分取得時に revoked_at を少し遡り、コミットが遅れた行の取りこぼしを防ぐ
+    private static final long REVOKED_AT_OVERLAP_SECONDS = 5;
+    private static final int PURGE_BATCH_SIZE = 1000;
+    private static final long PURGE_INTERVAL_SECONDS = 60;
+
+    @Inject
+    private AuthRepository authRepository;
+
+    private final Clock clock;
+    // jti → 有効期限（エポック秒）
+    private final ConcurrentHashMap<String, Long> revoked = new ConcurrentHashMap<>();
+    // 手元の変更回数（公開用の一覧を作り直すかどうかの判定にだけ使う）
+    private final AtomicLong version = new AtomicLong();
+    private volatile Revocations published;
+    // 読み込み済みの revoked_at（スケジューラースレッドからのみ更新する）
+    private LocalDateTime refreshedUpTo;
+    private ScheduledExecutorService scheduler;
+
+    private final AtomicLong revocations = new AtomicLong();
+    private final AtomicLong refreshFailures = new AtomicLong();
+
+    public TokenRevocationList() {
+        this(null, Clock.systemDefaultZone());
+    }
+
+    TokenRevocationList(AuthRepository authRepository, Clock clock) {
+        this.authRepository = authRepository;
+        this.clock = clock;
+    }
+
+    @PostConstruct
+    void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "auth-revocation-list");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long refreshSeconds = Math.max(1, AuthConfig.getLong("AUTH_REVOCATION_REFRESH_SECONDS", 5));
+        scheduler.scheduleWithFixedDelay(this::refreshQuietly, 0, refreshSeconds, TimeUnit.SECONDS);
+        scheduler.scheduleWithFixedDelay(this::purgeQuietly, PURGE_INTERVAL_SECONDS, PURGE_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * トークンを失効させる（DBに記録してから手元の一覧に加える）
+     */
+    public void revoke(String jti, Instant expiresAt) throws SQLException {
+        if (jti == null || expiresAt == null || !expiresAt.isAfter(clock.instant())) {
+            return;
+        }
+        authRepository.revokeToken(jti, LocalDateTime.ofInstant(expiresAt, ZoneId.systemDefault()));
+        add(jti, expiresAt.getEpochSecond());
+        revocations.incrementAndGet();
+    }
+
+    /**
+     * 失効済みかどうか
+     */
+    public boolean isRevoked(String jti) {
+        if (jti == null) {
+            return false;
+        }
+        Long expiresAt = revoked.get(jti);
+        return expiresAt != null && expiresAt > clock.instant().getEpochSecond();
+    }
+
+    /**
+     * 公開用の現在の一覧（変更がなければ同じインスタンスを返す）
+     */
+    public Revocations publish() {
+        long currentVersion = version.get();
+        Revocations current = published;
+        if (current != null && current.versionNumber == currentVersion) {
+            return current;
+        }
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(revoked.entrySet());
+        entries.sort(Map.Entry.comparingByKey());
+        Map<String, Long> sorted = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> entry : entries) {
+            sorted.put(entry.getKey(), entry.getValue());
+        }
+        current = new Revocations(contentVersion(sorted), currentVersion, Collections.unmodifiableMap(sorted));
+        published = current;
+        return current;
+    }
+
+    /**
+     * 内容から求める版（整列した「jti:有効期限」の SHA-256 の先頭16バイト）
+     */
+    static String contentVersion(Map<String, Long> sortedEntries) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        for (Map.Entry<String, Long> entry : sortedEntries.entrySet()) {
+            digest.update((entry.getKey() + ":" + entry.getValue() + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+        byte[] hash = digest.digest();
+        StringBuilder hex = new StringBuilder(32);
+        for (int i = 0; i < 16; i++) {
+            hex.append(String.format("%02x", hash[i]));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * 他ノードで失効したトークンを取り込み、期限切れのエントリを取り除く
+     */
+    void refresh() throws SQLException {
+        LocalDateTime since = refreshedUpTo != null ? refreshedUpTo.minusSeconds(REVOKED_AT_OVERLAP_SECONDS) : null;
+        LocalDateTime latest = authRepository.forEachRevokedToken(since, (jti, expiresAt) ->
+                add(jti, expiresAt.atZone(ZoneId.systemDefault()).toEpochSecond()));
+        if (latest != null && (refreshedUpTo == null || latest.isAfter(refreshedUpTo))) {
+            refreshedUpTo = latest;
+        }
+        evictExpired();
+    }
+
+    void evictExpired() {
+        long now = clock.instant().getEpochSecond();
+        if (revoked.values().removeIf(expiresAt -> expiresAt <= now)) {
+            version.incrementAndGet();
+        }
+    }
+
+    private void add(String jti, long expiresAtEpochSecond) {
+        if (revoked.putIfAbsent(jti, expiresAtEpochSecond) == null) {
+            version.incrementAndGet();
+        }
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (SQLException | RuntimeException e) {
+            refreshFailures.incrementAndGet();
+            System.err.println("Failed to refresh token revocation list: " + e.getMessage());
+        }
+    }
+
+    private void purgeQuietly() {
+        try {
+            authRepository.deleteExpiredRevocations(PURGE_BATCH_SIZE);
+        } catch (SQLException | RuntimeException e) {
+            System.err.println("Failed to purge expired revocations: " + e.getMessage());
+        }
+    }
+
+    /**
+     * メトリクスのスナップショット
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("version", publish().getVersion());
+        snapshot.put("size", revoked.size());
+        snapshot.put("revocations", revocations.get());
+        snapshot.put("refreshFailures", refreshFailures.get());
+        return snapshot;
+    }
+
+    /**
+     * 版付きの失効一覧（不変）
+     */
+    public static final class Revocations {
+        private final String version;
+        private final long versionNumber;
+        private final Map<String, Long> entries;
+
+        private Revocations(String version, long versionNumber, Map<String, Long> entries) {
+            this.version = version;
+            this.versionNumber = versionNumber;
+            this.entries = entries;
+        }
+
+        /**
+         * 版（内容のハッシュ。内容が同じならどのノードでも同じ値になる）
+         */
+        public String getVersion() {
+            return version;
+        }
+
+        /**
+         * jti（昇順）→ 有効期限（エポック秒）
+         */
+        public Map<String, Long> getEntries() {
+            return entries;
+        }
+    }
+}
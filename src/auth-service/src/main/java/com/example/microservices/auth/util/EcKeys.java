@@ -0,0 +1,93 @@
+package com.example.microservices.auth.util;
+
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * ES256（P-256）鍵の読み込み・生成と JWK 形式への変換
+ */
+final class EcKeys {
+
+    private static final String CURVE = "secp256r1";
+    // P-256 の座標の長さ（バイト）
+    private static final int COORDINATE_LENGTH = 32;
+
+    private EcKeys() {
+    }
+
+    /**
+     * 秘密鍵を読み込む（PKCS#8 DER の Base64。PEM のヘッダー・改行は無視する）
+     */
+    static ECPrivateKey parsePrivateKey(String encoded) {
+        try {
+            return (ECPrivateKey) KeyFactory.getInstance("EC").generatePrivate(new PKCS8EncodedKeySpec(decode(encoded)));
+        } catch (GeneralSecurityException | IllegalArgumentException | ClassCastException e) {
+            throw new IllegalArgumentException("Invalid EC private key (expected Base64 PKCS#8)", e);
+        }
+    }
+
+    /**
+     * 公開鍵を読み込む（X.509 SubjectPublicKeyInfo DER の Base64。PEM のヘッダー・改行は無視する）
+     */
+    static ECPublicKey parsePublicKey(String encoded) {
+        try {
+            return (ECPublicKey) KeyFactory.getInstance("EC").generatePublic(new X509EncodedKeySpec(decode(encoded)));
+        } catch (GeneralSecurityException | IllegalArgumentException | ClassCastException e) {
+            throw new IllegalArgumentException("Invalid EC public key (expected Base64 X.509)", e);
+        }
+    }
+
+    /**
+     * 一時的な鍵ペアを生成（鍵が設定されていない開発環境用）
+     */
+    static KeyPair generate() {
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+            generator.initialize(new ECGenParameterSpec(CURVE));
+            return generator.generateKeyPair();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("EC key generation is not available", e);
+        }
+    }
+
+    /**
+     * 公開鍵を JWK（RFC 7517）形式に変換
+     */
+    static Map<String, Object> toJwk(String keyId, ECPublicKey publicKey) {
+        Map<String, Object> jwk = new LinkedHashMap<>();
+        jwk.put("kty", "EC");
+        jwk.put("crv", "P-256");
+        jwk.put("use", "sig");
+        jwk.put("alg", "ES256");
+        jwk.put("kid", keyId);
+        jwk.put("x", encodeCoordinate(publicKey.getW().getAffineX()));
+        jwk.put("y", encodeCoordinate(publicKey.getW().getAffineY()));
+        return Collections.unmodifiableMap(jwk);
+    }
+
+    private static String encodeCoordinate(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        byte[] fixed = new byte[COORDINATE_LENGTH];
+        // 符号用の先頭 0 を除き、短い場合は先頭を 0 で埋めて 32 バイトにそろえる
+        int length = Math.min(bytes.length, COORDINATE_LENGTH);
+        System.arraycopy(bytes, bytes.length - length, fixed, COORDINATE_LENGTH - length, length);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(fixed);
+    }
+
+    private static byte[] decode(String encoded) {
+        String body = encoded.replaceAll("-----(BEGIN|END) [A-Z ]+-----", "").replaceAll("\\s", "");
+        return Base64.getDecoder().decode(body);
+    }
+}
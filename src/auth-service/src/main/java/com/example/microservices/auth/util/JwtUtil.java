@@ -5,27 +5,221 @@ import com.auth0.jwt.JWTVerifier;
 import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.exceptions.JWTVerificationException;
 import com.auth0.jwt.interfaces.DecodedJWT;
+import com.example.microservices.auth.config.AuthConfig;
 
 import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.context.Initialized;
+import javax.enterprise.event.Observes;
+import java.security.KeyPair;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.UUID;
 
 /**
  * JWT生成と検証のユーティリティクラス
+ * 鍵ID（kid）ごとに署名アルゴリズムと JWTVerifier を一度だけ生成して使い回す
+ * 鍵のローテーション中は複数の鍵で検証でき、新しいトークンはアクティブな鍵で署名する
+ *
+ * 署名は ES256（ECDSA P-256）が既定。公開鍵は GET /api/auth/keys（JWKS）で公開し、
+ * BFF / Point Service は共有シークレットを持たずにローカルで検証する
+ * HS256 で発行済みのトークンは、設定された場合のみ JWT_HS256_ACCEPT_UNTIL まで従来の共有シークレットで検証する
+ *
+ * 設定:
+ * - JWT_SIGNING_ALGORITHM  署名アルゴリズム ES256 / HS256（デフォルト ES256）
+ * - JWT_EC_KID             ES256 の署名鍵のID（デフォルト "ec-1"、一時的な鍵では起動ごとのランダムな値）
+ * - JWT_EC_PRIVATE_KEY     ES256 の秘密鍵（PKCS#8 DER の Base64）
+ * - JWT_EC_PUBLIC_KEY      ES256 の公開鍵（X.509 DER の Base64）
+ * - JWT_EC_PREVIOUS_KEYS   ローテーション前の公開鍵 "kid:base64,kid:base64"（検証と公開のみに使う）
+ * - JWT_KEYS        HS256 の鍵の一覧 "kid:secret,kid:secret"（未設定時は JWT_SECRET_KEY を kid "default" として使う）
+ * - JWT_ACTIVE_KID  HS256 で署名する鍵のID（未設定時は JWT_KEYS の最後の鍵）
+ * - JWT_SECRET_KEY  HS256 の単一鍵運用時のシークレット
+ * - JWT_HS256_ACCEPT_UNTIL  ES256 で署名する場合に、HS256 で発行済みのトークンを受け付ける期限（ISO-8601）
+ * HS256 の鍵は既定値を持たず、設定された場合のみ使う（ES256 で署名する場合は JWT_HS256_ACCEPT_UNTIL も必須）
+ * kid ヘッダーのないトークン（ローテーション導入前に発行されたもの）は kid "default" の鍵で検証する
+ * - JWT_EC_EPHEMERAL_KEY   true の場合のみ、秘密鍵が未設定なら起動ごとに一時的な鍵を生成する（開発用、デフォルト false）
+ * ES256 の秘密鍵が設定されておらず一時的な鍵も許可されていない場合は起動に失敗する
  */
 @ApplicationScoped
 public class JwtUtil {
-    
-    // SECURITY NOTE: 本番環境では環境変数や暗号化された設定から取得すべき
-    // 環境変数例: System.getenv("JWT_SECRET_KEY")
-    // または AWS Secrets Manager, HashiCorp Vault などのシークレット管理サービスを使用
-    private static final String SECRET_KEY = "your-secret-key-change-this-in-production";
-    private static final Algorithm ALGORITHM = Algorithm.HMAC256(SECRET_KEY);
+
+    /** kid ヘッダーのないトークンに使う鍵ID */
+    static final String DEFAULT_KEY_ID = "default";
+
     private static final long EXPIRATION_TIME = 7 * 24 * 60 * 60 * 1000; // 7 days in milliseconds
-    
+
+    private final String activeKeyId;
+    private final Algorithm signingAlgorithm;
+    private final Map<String, JWTVerifier> verifiers;
+    private final List<Map<String, Object>> publicKeys;
+    // この時刻以降は HS256 のトークンを受け付けない（null の場合は期限なし）
+    private final Instant hmacAcceptUntil;
+
+    public JwtUtil() {
+        this(fromConfig());
+    }
+
+    /**
+     * HS256 で署名する
+     */
+    JwtUtil(Map<String, String> keys, String activeKeyId) {
+        this(hmac(keys, activeKeyId));
+    }
+
+    /**
+     * ES256 で署名し、HS256 の鍵は発行済みトークンの検証にのみ使う
+     *
+     * @param ecPublicKeys 公開する公開鍵（kid → 公開鍵、アクティブな鍵を含む）
+     */
+    JwtUtil(Map<String, String> hmacKeys, Map<String, ECPublicKey> ecPublicKeys, String activeKeyId, ECPrivateKey privateKey) {
+        this(ecdsa(hmacKeys, ecPublicKeys, activeKeyId, privateKey));
+    }
+
+    /**
+     * 起動時に生成し、鍵の設定の誤りで（最初のリクエストではなく）デプロイを失敗させる
+     */
+    void onStartup(@Observes @Initialized(ApplicationScoped.class) Object event) {
+        // 生成されるだけでよい
+    }
+
+    private JwtUtil(KeySet keySet) {
+        this.activeKeyId = keySet.activeKeyId;
+        this.signingAlgorithm = keySet.signingAlgorithm;
+        this.verifiers = Collections.unmodifiableMap(keySet.verifiers);
+        this.publicKeys = Collections.unmodifiableList(keySet.publicKeys);
+        this.hmacAcceptUntil = keySet.hmacAcceptUntil;
+    }
+
+    private static KeySet fromConfig() {
+        // HS256 の鍵は明示的に設定された場合のみ使う（既定のシークレットは持たない）
+        Map<String, String> hmacKeys = parseKeys(AuthConfig.getString("JWT_KEYS", null),
+                AuthConfig.getString("JWT_SECRET_KEY", null));
+        String algorithm = AuthConfig.getString("JWT_SIGNING_ALGORITHM", "ES256").trim().toUpperCase(Locale.ROOT);
+        if ("HS256".equals(algorithm)) {
+            return hmac(hmacKeys, AuthConfig.getString("JWT_ACTIVE_KID", null));
+        }
+        if (!"ES256".equals(algorithm)) {
+            throw new IllegalArgumentException("Unsupported JWT_SIGNING_ALGORITHM: " + algorithm);
+        }
+
+        Map<String, ECPublicKey> ecPublicKeys = new LinkedHashMap<>();
+        String previous = AuthConfig.getString("JWT_EC_PREVIOUS_KEYS", null);
+        if (previous != null) {
+            parseKeys(previous, null).forEach((keyId, encoded) -> ecPublicKeys.put(keyId, EcKeys.parsePublicKey(encoded)));
+        }
+        String privateKey = AuthConfig.getString("JWT_EC_PRIVATE_KEY", null);
+        String publicKey = AuthConfig.getString("JWT_EC_PUBLIC_KEY", null);
+        if (privateKey == null) {
+            // 一時的な鍵は明示的に有効にした開発環境でのみ使う（再起動・他ノードでトークンが無効になるため）
+            if (!AuthConfig.getBoolean("JWT_EC_EPHEMERAL_KEY", false)) {
+                throw new IllegalStateException("JWT_EC_PRIVATE_KEY is not set "
+                        + "(set JWT_EC_EPHEMERAL_KEY=true to sign with a throwaway key in local development)");
+            }
+            KeyPair keyPair = EcKeys.generate();
+            String keyId = AuthConfig.getString("JWT_EC_KID", "ephemeral-" + UUID.randomUUID().toString().substring(0, 8));
+            System.err.println("JWT_EC_EPHEMERAL_KEY is enabled; signing with an ephemeral ES256 key (kid " + keyId
+                    + "). Tokens will not survive a restart and cannot be shared between auth nodes.");
+            ecPublicKeys.put(keyId, (ECPublicKey) keyPair.getPublic());
+            KeySet keySet = ecdsa(hmacKeys, ecPublicKeys, keyId, (ECPrivateKey) keyPair.getPrivate());
+            keySet.hmacAcceptUntil = hmacAcceptUntil(hmacKeys);
+            return keySet;
+        }
+        if (publicKey == null) {
+            throw new IllegalArgumentException("JWT_EC_PUBLIC_KEY is required when JWT_EC_PRIVATE_KEY is set");
+        }
+        String keyId = AuthConfig.getString("JWT_EC_KID", "ec-1");
+        ecPublicKeys.put(keyId, EcKeys.parsePublicKey(publicKey));
+        KeySet keySet = ecdsa(hmacKeys, ecPublicKeys, keyId, EcKeys.parsePrivateKey(privateKey));
+        keySet.hmacAcceptUntil = hmacAcceptUntil(hmacKeys);
+        return keySet;
+    }
+
+    /**
+     * HS256 で発行済みのトークンを受け付ける期限（JWT_HS256_ACCEPT_UNTIL）
+     * HS256 の鍵を設定する場合は必須（旧トークンが期限切れになった後に HS256 を確実に止めるため）
+     */
+    private static Instant hmacAcceptUntil(Map<String, String> hmacKeys) {
+        if (hmacKeys.isEmpty()) {
+            return null;
+        }
+        String value = AuthConfig.getString("JWT_HS256_ACCEPT_UNTIL", null);
+        if (value == null) {
+            throw new IllegalArgumentException(
+                    "JWT_HS256_ACCEPT_UNTIL is required when HS256 keys are configured (e.g. 2024-07-01T00:00:00Z)");
+        }
+        try {
+            return Instant.parse(value.trim());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid JWT_HS256_ACCEPT_UNTIL (expected ISO-8601 instant): " + value, e);
+        }
+    }
+
+    private static KeySet hmac(Map<String, String> keys, String activeKeyId) {
+        if (keys.isEmpty()) {
+            throw new IllegalArgumentException("JWT_SECRET_KEY or JWT_KEYS is required for HS256 signing");
+        }
+        String lastKeyId = null;
+        for (String keyId : keys.keySet()) {
+            lastKeyId = keyId;
+        }
+        String signingKeyId = activeKeyId != null ? activeKeyId : lastKeyId;
+        if (!keys.containsKey(signingKeyId)) {
+            throw new IllegalArgumentException("Unknown active JWT key id: " + signingKeyId);
+        }
+        KeySet keySet = new KeySet(signingKeyId, Algorithm.HMAC256(keys.get(signingKeyId)));
+        keySet.addHmacVerifiers(keys);
+        return keySet;
+    }
+
+    private static KeySet ecdsa(Map<String, String> hmacKeys, Map<String, ECPublicKey> ecPublicKeys,
+                                String activeKeyId, ECPrivateKey privateKey) {
+        ECPublicKey activePublicKey = ecPublicKeys.get(activeKeyId);
+        if (activePublicKey == null) {
+            throw new IllegalArgumentException("Unknown active JWT key id: " + activeKeyId);
+        }
+        KeySet keySet = new KeySet(activeKeyId, Algorithm.ECDSA256(activePublicKey, privateKey));
+        keySet.addHmacVerifiers(hmacKeys);
+        // 同じ kid があれば ES256 の鍵を優先する
+        ecPublicKeys.forEach((keyId, publicKey) -> {
+            keySet.verifiers.put(keyId, JWT.require(Algorithm.ECDSA256(publicKey, null)).build());
+            keySet.publicKeys.add(EcKeys.toJwk(keyId, publicKey));
+        });
+        return keySet;
+    }
+
+    /**
+     * JWT_KEYS（"kid:secret,kid:secret"）・JWT_EC_PREVIOUS_KEYS（"kid:base64,kid:base64"）を解析
+     * 未設定の場合は単一の鍵を kid "default" として扱う（単一の鍵も未設定なら空）
+     */
+    static Map<String, String> parseKeys(String spec, String fallbackSecret) {
+        Map<String, String> keys = new LinkedHashMap<>();
+        if (spec == null || spec.trim().isEmpty()) {
+            if (fallbackSecret != null) {
+                keys.put(DEFAULT_KEY_ID, fallbackSecret);
+            }
+            return keys;
+        }
+        for (String entry : spec.split(",")) {
+            int separator = entry.indexOf(':');
+            if (separator <= 0 || separator == entry.length() - 1) {
+                throw new IllegalArgumentException("Invalid key list entry (expected kid:value)");
+            }
+            keys.put(entry.substring(0, separator).trim(), entry.substring(separator + 1).trim());
+        }
+        return keys;
+    }
+
     /**
      * JWT トークンを生成
-     * 
+     *
      * @param userId ユーザーID (UUID)
      * @param username ユーザー名
      * @return 生成されたJWTトークン
@@ -33,58 +227,103 @@ public class JwtUtil {
     public String generateToken(UUID userId, String username) {
         Date now = new Date();
         Date expiresAt = new Date(now.getTime() + EXPIRATION_TIME);
-        
+
         return JWT.create()
+                .withKeyId(activeKeyId)
+                .withJWTId(UUID.randomUUID().toString())
                 .withClaim("userId", userId.toString())
                 .withClaim("username", username)
                 .withIssuedAt(now)
                 .withExpiresAt(expiresAt)
-                .sign(ALGORITHM);
+                .sign(signingAlgorithm);
     }
-    
+
     /**
-     * JWT トークンを検証してデコード
-     * 
+     * JWT トークンを検証してクレームを取得
+     * デコードは1回だけ行い、kid に対応する検証器で署名と有効期限を検証する
+     *
      * @param token JWTトークン
-     * @return デコードされたJWT
-     * @throws JWTVerificationException トークンが無効な場合
+     * @return 検証済みのクレーム
+     * @throws JWTVerificationException トークンが無効な場合（未知の kid を含む）
      */
-    public DecodedJWT verifyToken(String token) throws JWTVerificationException {
-        JWTVerifier verifier = JWT.require(ALGORITHM).build();
-        return verifier.verify(token);
+    public TokenClaims verify(String token) throws JWTVerificationException {
+        DecodedJWT decoded = JWT.decode(token);
+        if (hmacAcceptUntil != null && "HS256".equals(decoded.getAlgorithm())
+                && !Instant.now().isBefore(hmacAcceptUntil)) {
+            throw new JWTVerificationException("HS256 tokens are no longer accepted");
+        }
+        String keyId = decoded.getKeyId() != null ? decoded.getKeyId() : DEFAULT_KEY_ID;
+        JWTVerifier verifier = verifiers.get(keyId);
+        if (verifier == null) {
+            throw new JWTVerificationException("Unknown key id: " + keyId);
+        }
+        return TokenClaims.of(verifier.verify(decoded), keyId);
     }
-    
+
     /**
      * トークンからユーザーIDを抽出
-     * 
+     *
      * @param token JWTトークン
      * @return ユーザーID (UUID)
      * @throws JWTVerificationException トークンが無効な場合
      * @throws IllegalArgumentException claimが存在しないかnullの場合
      */
     public UUID extractUserId(String token) throws JWTVerificationException {
-        DecodedJWT jwt = verifyToken(token);
-        String userIdStr = jwt.getClaim("userId").asString();
-        if (userIdStr == null || userIdStr.isEmpty()) {
+        UUID userId = verify(token).getUserId();
+        if (userId == null) {
             throw new IllegalArgumentException("userId claim is missing or invalid");
         }
-        return UUID.fromString(userIdStr);
+        return userId;
     }
-    
+
     /**
      * トークンからユーザー名を抽出
-     * 
+     *
      * @param token JWTトークン
      * @return ユーザー名
      * @throws JWTVerificationException トークンが無効な場合
      * @throws IllegalArgumentException claimが存在しないかnullの場合
      */
     public String extractUsername(String token) throws JWTVerificationException {
-        DecodedJWT jwt = verifyToken(token);
-        String username = jwt.getClaim("username").asString();
-        if (username == null || username.isEmpty()) {
+        String username = verify(token).getUsername();
+        if (username == null) {
             throw new IllegalArgumentException("username claim is missing or invalid");
         }
         return username;
     }
+
+    /**
+     * 署名に使う鍵のID
+     */
+    public String getActiveKeyId() {
+        return activeKeyId;
+    }
+
+    /**
+     * 公開鍵の一覧（JWK 形式、ES256 の場合のみ。HS256 のシークレットは公開しない）
+     */
+    public List<Map<String, Object>> getPublicKeys() {
+        return publicKeys;
+    }
+
+    /**
+     * 構築中の鍵の組
+     */
+    private static final class KeySet {
+        private final String activeKeyId;
+        private final Algorithm signingAlgorithm;
+        private final Map<String, JWTVerifier> verifiers = new LinkedHashMap<>();
+        private final List<Map<String, Object>> publicKeys = new ArrayList<>();
+        private Instant hmacAcceptUntil;
+
+        private KeySet(String activeKeyId, Algorithm signingAlgorithm) {
+            this.activeKeyId = activeKeyId;
+            this.signingAlgorithm = signingAlgorithm;
+        }
+
+        private void addHmacVerifiers(Map<String, String> keys) {
+            // JWTVerifier はスレッドセーフなので鍵ごとに一度だけ生成する
+            keys.forEach((keyId, secret) -> verifiers.put(keyId, JWT.require(Algorithm.HMAC256(secret)).build()));
+        }
+    }
 }
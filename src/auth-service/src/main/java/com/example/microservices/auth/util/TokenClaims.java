@@ -0,0 +1,87 @@
+package com.example.microservices.auth.util;
+
+import com.auth0.jwt.interfaces.DecodedJWT;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * 検証済みJWTのクレーム（不変）
+ * トークンのデコード・検証は1回だけ行い、以降はこのオブジェクトから値を参照する
+ */
+public final class TokenClaims {
+
+    private final UUID userId;
+    private final String username;
+    private final String tokenId;
+    private final String keyId;
+    private final Instant issuedAt;
+    private final Instant expiresAt;
+
+    TokenClaims(UUID userId, String username, String tokenId, String keyId, Instant issuedAt, Instant expiresAt) {
+        this.userId = userId;
+        this.username = username;
+        this.tokenId = tokenId;
+        this.keyId = keyId;
+        this.issuedAt = issuedAt;
+        this.expiresAt = expiresAt;
+    }
+
+    static TokenClaims of(DecodedJWT jwt, String keyId) {
+        String username = jwt.getClaim("username").asString();
+        return new TokenClaims(
+                parseUserId(jwt.getClaim("userId").asString()),
+                username != null && !username.isEmpty() ? username : null,
+                jwt.getId(),
+                keyId,
+                jwt.getIssuedAtAsInstant(),
+                jwt.getExpiresAtAsInstant());
+    }
+
+    private static UUID parseUserId(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            return UUID.fromString(value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * ユーザーID（クレームがない、またはUUID形式でない場合は null）
+     */
+    public UUID getUserId() {
+        return userId;
+    }
+
+    /**
+     * ユーザー名（オプショナル、ない場合は null）
+     */
+    public String getUsername() {
+        return username;
+    }
+
+    /**
+     * トークンのID（jti クレーム）。失効リストの照合に使う（jti 導入前のトークンは null）
+     */
+    public String getTokenId() {
+        return tokenId;
+    }
+
+    /**
+     * 署名に使われた鍵のID
+     */
+    public String getKeyId() {
+        return keyId;
+    }
+
+    public Instant getIssuedAt() {
+        return issuedAt;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+}
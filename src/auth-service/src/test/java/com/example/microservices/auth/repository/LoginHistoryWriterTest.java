@@ -0,0 +1,95 @@
+package com.example.microservices.auth.repository;
+
+import com.example.microservices.auth.model.LoginHistoryEntry;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * LoginHistoryWriter（非同期バッチ書き込み）のテスト
+ */
+public class LoginHistoryWriterTest {
+
+    private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+
+    @Test
+    public void testWritesInBatchesAndFlushesOnShutdown() {
+        LoginHistoryWriter writer = new LoginHistoryWriter(
+                entries -> batchSizes.add(entries.size()), 100, 3, 60_000, LoginHistoryWriter.OverflowPolicy.DROP, 0);
+        writer.start();
+
+        for (int i = 0; i < 7; i++) {
+            assertTrue(writer.record(UUID.randomUUID(), "127.0.0.1", "JUnit", true));
+        }
+        writer.shutdown();
+
+        // 3件ずつまとめて書き込み、残りの1件は停止時に書き込まれる
+        assertEquals(7, batchSizes.stream().mapToInt(Integer::intValue).sum());
+        assertTrue(batchSizes.stream().allMatch(size -> size <= 3));
+        assertEquals(7L, writer.snapshot().get("written"));
+        assertEquals(0, writer.snapshot().get("queued"));
+    }
+
+    @Test
+    public void testDropPolicyCountsOverflow() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch writing = new CountDownLatch(1);
+        LoginHistoryWriter writer = new LoginHistoryWriter(entries -> {
+            writing.countDown();
+            awaitQuietly(release);
+        }, 2, 1, 10, LoginHistoryWriter.OverflowPolicy.DROP, 0);
+        writer.start();
+
+        writer.record(UUID.randomUUID(), "127.0.0.1", "JUnit", true);
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        // 書き込み中にキュー（容量2）を溢れさせる
+        writer.record(UUID.randomUUID(), "127.0.0.1", "JUnit", true);
+        writer.record(UUID.randomUUID(), "127.0.0.1", "JUnit", true);
+        assertFalse(writer.record(UUID.randomUUID(), "127.0.0.1", "JUnit", true));
+
+        release.countDown();
+        writer.shutdown();
+        assertEquals(1L, writer.snapshot().get("dropped"));
+        assertEquals(3L, writer.snapshot().get("written"));
+    }
+
+    @Test
+    public void testFailedBatchIsRetriedRowByRow() {
+        UUID unknownUser = UUID.randomUUID();
+        List<UUID> written = Collections.synchronizedList(new ArrayList<>());
+        LoginHistoryWriter writer = new LoginHistoryWriter(entries -> {
+            for (LoginHistoryEntry entry : entries) {
+                if (entry.getUserId().equals(unknownUser)) {
+                    throw new SQLException("violates foreign key constraint");
+                }
+            }
+            entries.forEach(entry -> written.add(entry.getUserId()));
+        }, 100, 10, 60_000, LoginHistoryWriter.OverflowPolicy.DROP, 0);
+
+        // 開始前に積んでおき、1回のバッチにまとめる
+        writer.record(UUID.randomUUID(), "127.0.0.1", "JUnit", true);
+        writer.record(unknownUser, "127.0.0.1", "JUnit", false);
+        writer.record(UUID.randomUUID(), "127.0.0.1", "JUnit", true);
+        writer.start();
+        writer.shutdown();
+
+        assertEquals(2, written.size());
+        assertEquals(1L, writer.snapshot().get("failed"));
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
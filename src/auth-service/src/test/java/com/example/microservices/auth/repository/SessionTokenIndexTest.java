@@ -0,0 +1,142 @@
+package com.example.microservices.auth.repository;
+
+import com.example.microservices.auth.model.SessionToken;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SessionTokenIndex（ブルームフィルター + キャッシュ）のテスト
+ */
+public class SessionTokenIndexTest {
+
+    /**
+     * session_tokens をメモリ上で模擬するリポジトリ
+     */
+    private static class InMemoryAuthRepository extends AuthRepository {
+        private final Map<String, SessionToken> sessions = new HashMap<>();
+        private final AtomicInteger lookups = new AtomicInteger();
+
+        InMemoryAuthRepository() {
+            super(null, null);
+        }
+
+        @Override
+        public Optional<SessionToken> findSessionByToken(String token) {
+            lookups.incrementAndGet();
+            return Optional.ofNullable(sessions.get(token));
+        }
+
+        @Override
+        public Map<String, SessionToken> findSessionsByTokens(Collection<String> tokens) {
+            lookups.incrementAndGet();
+            Map<String, SessionToken> found = new HashMap<>();
+            for (String token : tokens) {
+                if (sessions.containsKey(token)) {
+                    found.put(token, sessions.get(token));
+                }
+            }
+            return found;
+        }
+
+        @Override
+        public SessionToken createSessionToken(SessionToken token) {
+            token.setCreatedAt(LocalDateTime.now());
+            sessions.put(token.getToken(), token);
+            return token;
+        }
+
+        @Override
+        public void deleteSession(String token) {
+            sessions.remove(token);
+        }
+
+        @Override
+        public LocalDateTime forEachLiveSessionToken(LocalDateTime createdSince, Consumer<String> consumer) {
+            LocalDateTime latest = null;
+            for (SessionToken session : sessions.values()) {
+                if (createdSince == null || !session.getCreatedAt().isBefore(createdSince)) {
+                    consumer.accept(session.getToken());
+                    latest = latest == null || session.getCreatedAt().isAfter(latest) ? session.getCreatedAt() : latest;
+                }
+            }
+            return latest;
+        }
+    }
+
+    private final InMemoryAuthRepository repository = new InMemoryAuthRepository();
+    private final SessionTokenIndex index =
+            new SessionTokenIndex(repository, true, 1000, 0.01, 100, 30, Clock.systemDefaultZone());
+
+    private SessionToken session(String token) {
+        return new SessionToken(UUID.randomUUID(), token, LocalDateTime.now().plusDays(7));
+    }
+
+    @Test
+    public void testUnknownTokensAreRejectedWithoutDatabase() throws Exception {
+        repository.createSessionToken(session("token_existing"));
+        index.rebuild();
+
+        for (int i = 0; i < 100; i++) {
+            assertFalse(index.findSession("garbage-" + i).isPresent());
+        }
+        // 偽陽性率1%のフィルターなので、DBへ問い合わせるのはごく一部だけ
+        assertTrue(repository.lookups.get() <= 5);
+        assertTrue(index.findSession("token_existing").isPresent());
+    }
+
+    @Test
+    public void testKnownSessionsAreServedFromCache() throws Exception {
+        index.rebuild();
+        index.createSession(session("token_new"));
+
+        assertTrue(index.findSession("token_new").isPresent());
+        assertTrue(index.findSession("token_new").isPresent());
+        assertEquals(1, repository.lookups.get());
+
+        index.deleteSession("token_new");
+        assertFalse(index.findSession("token_new").isPresent());
+    }
+
+    @Test
+    public void testRefreshPicksUpTokensCreatedElsewhere() throws Exception {
+        index.rebuild();
+        // 別ノードで作成されたトークン（この索引を経由しない）
+        repository.createSessionToken(session("token_other_node"));
+        assertFalse(index.findSession("token_other_node").isPresent());
+
+        index.refresh();
+        assertTrue(index.findSession("token_other_node").isPresent());
+    }
+
+    @Test
+    public void testFindSessionsQueriesDatabaseOnce() throws Exception {
+        repository.createSessionToken(session("token_a"));
+        repository.createSessionToken(session("token_b"));
+        index.rebuild();
+
+        List<String> tokens = new ArrayList<>(List.of("token_a", "token_b"));
+        for (int i = 0; i < 50; i++) {
+            tokens.add("garbage-" + i);
+        }
+        Map<String, SessionToken> found = index.findSessions(tokens);
+        assertEquals(2, found.size());
+        assertEquals(1, repository.lookups.get());
+
+        // 2回目はキャッシュから返し、DBには問い合わせない
+        assertEquals(2, index.findSessions(List.of("token_a", "token_b")).size());
+        assertEquals(1, repository.lookups.get());
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.microservices.auth.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * UserCredentialSync（ユーザー名の写しの同期）のテスト
+ */
+public class UserCredentialSyncTest {
+
+    /**
+     * users（ユーザーサービスDB）と user_credentials.username（認証DB）をメモリ上で模擬するリポジトリ
+     */
+    private static class InMemoryUsers extends AuthRepository {
+        private final TreeMap<UUID, String> users = new TreeMap<>();
+        private final Map<UUID, LocalDateTime> updatedAt = new LinkedHashMap<>();
+        private final TreeMap<UUID, String> credentials = new TreeMap<>();
+        private final List<Integer> batchSizes = new ArrayList<>();
+        private final List<LocalDateTime> sinceValues = new ArrayList<>();
+
+        InMemoryUsers() {
+            super(null, null);
+        }
+
+        void putUser(UUID userId, String username, LocalDateTime at) {
+            users.put(userId, username);
+            updatedAt.put(userId, at);
+        }
+
+        @Override
+        public LocalDateTime forEachUserUpdatedSince(LocalDateTime updatedSince, BiConsumer<UUID, String> consumer) {
+            sinceValues.add(updatedSince);
+            LocalDateTime latest = null;
+            for (Map.Entry<UUID, String> user : users.entrySet()) {
+                LocalDateTime at = updatedAt.get(user.getKey());
+                if (updatedSince == null || !at.isBefore(updatedSince)) {
+                    consumer.accept(user.getKey(), user.getValue());
+                    latest = latest == null || at.isAfter(latest) ? at : latest;
+                }
+            }
+            return latest;
+        }
+
+        @Override
+        public int syncUsernames(Map<UUID, String> usernames) {
+            batchSizes.add(usernames.size());
+            int updated = 0;
+            for (Map.Entry<UUID, String> entry : usernames.entrySet()) {
+                if (credentials.containsKey(entry.getKey())
+                        && !entry.getValue().equals(credentials.get(entry.getKey()))) {
+                    credentials.put(entry.getKey(), entry.getValue());
+                    updated++;
+                }
+            }
+            return updated;
+        }
+
+        @Override
+        public List<UUID> findUserIdsAfter(UUID after, int limit) {
+            List<UUID> ids = new ArrayList<>();
+            for (UUID id : after == null ? users.keySet() : users.tailMap(after, false).keySet()) {
+                if (ids.size() == limit) {
+                    break;
+                }
+                ids.add(id);
+            }
+            return ids;
+        }
+
+        @Override
+        public int clearUsernamesMissingFrom(UUID after, UUID upTo, List<UUID> present) {
+            int cleared = 0;
+            for (Map.Entry<UUID, String> entry : credentials.entrySet()) {
+                UUID id = entry.getKey();
+                boolean inRange = (after == null || id.compareTo(after) > 0) && (upTo == null || id.compareTo(upTo) <= 0);
+                if (inRange && entry.getValue() != null && !present.contains(id)) {
+                    entry.setValue(null);
+                    cleared++;
+                }
+            }
+            return cleared;
+        }
+    }
+
+    private static UUID id(int n) {
+        return new UUID(0, n);
+    }
+
+    @Test
+    public void testSyncWritesInBatchesAndAdvancesCursor() throws Exception {
+        InMemoryUsers repository = new InMemoryUsers();
+        LocalDateTime t0 = LocalDateTime.of(2024, 6, 1, 0, 0);
+        for (int i = 1; i <= 5; i++) {
+            repository.putUser(id(i), "user" + i, t0);
+            repository.credentials.put(id(i), null);
+        }
+        UserCredentialSync sync = new UserCredentialSync(repository, true, 2);
+
+        sync.sync();
+        assertEquals(List.of(2, 2, 1), repository.batchSizes);
+        assertEquals("user3", repository.credentials.get(id(3)));
+
+        // 名前の変更は updated_at を少し遡った差分取得で取り込む
+        repository.putUser(id(3), "renamed", t0.plusMinutes(1));
+        sync.sync();
+        assertEquals(t0.minusSeconds(5), repository.sinceValues.get(1));
+        assertEquals("renamed", repository.credentials.get(id(3)));
+        assertEquals(5L + 1L, sync.snapshot().get("usernamesUpdated"));
+    }
+
+    @Test
+    public void testReconcileClearsDeletedUsersAcrossRanges() throws Exception {
+        InMemoryUsers repository = new InMemoryUsers();
+        LocalDateTime t0 = LocalDateTime.of(2024, 6, 1, 0, 0);
+        for (int i = 1; i <= 6; i++) {
+            repository.credentials.put(id(i), "user" + i);
+            if (i != 2 && i != 6) {
+                repository.putUser(id(i), "user" + i, t0);
+            }
+        }
+        UserCredentialSync sync = new UserCredentialSync(repository, true, 2);
+
+        sync.reconcile();
+
+        assertNull(repository.credentials.get(id(2)));
+        // 末尾より後ろのユーザーも対象になる
+        assertNull(repository.credentials.get(id(6)));
+        assertEquals("user1", repository.credentials.get(id(1)));
+        assertEquals("user5", repository.credentials.get(id(5)));
+        assertEquals(2L, sync.snapshot().get("usernamesCleared"));
+    }
+}
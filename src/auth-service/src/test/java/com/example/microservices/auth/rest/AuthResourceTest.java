@@ -0,0 +1,139 @@
+package com.example.microservices.auth.rest;
+
+import com.example.microservices.auth.model.LoginRequest;
+import com.example.microservices.auth.model.SessionToken;
+import com.example.microservices.auth.model.UserCredentials;
+import com.example.microservices.auth.repository.AuthRepository;
+import com.example.microservices.auth.repository.LoginHistoryWriter;
+import com.example.microservices.auth.repository.SessionTokenIndex;
+import com.example.microservices.auth.service.AuthService;
+import com.example.microservices.auth.util.JwtUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * AuthResource のログインのテスト
+ */
+public class AuthResourceTest {
+
+    private final Map<UUID, UserCredentials> credentials = new HashMap<>();
+    private AuthService authService;
+    private LoginHistoryWriter loginHistoryWriter;
+    private AuthResource resource;
+    private JwtUtil jwtUtil;
+    private final InMemorySessionIndex sessionIndex = new InMemorySessionIndex();
+
+    /**
+     * 認証情報をメモリ上に持つリポジトリ
+     */
+    private class InMemoryCredentials extends AuthRepository {
+        InMemoryCredentials() {
+            super(null, null);
+        }
+
+        @Override
+        public Optional<UserCredentials> findCredentialsByUserId(UUID userId) {
+            return Optional.ofNullable(credentials.get(userId));
+        }
+    }
+
+    private final HttpHeaders headers = (HttpHeaders) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class<?>[] {HttpHeaders.class}, (proxy, method, args) -> {
+                if ("getHeaderString".equals(method.getName())) {
+                    return null;
+                }
+                throw new UnsupportedOperationException(method.getName());
+            });
+
+    /**
+     * 作成したセッションをメモリ上に持つ索引
+     */
+    private static class InMemorySessionIndex extends SessionTokenIndex {
+        private final List<SessionToken> sessions = new ArrayList<>();
+
+        @Override
+        public SessionToken createSession(SessionToken token) {
+            sessions.add(token);
+            return token;
+        }
+    }
+
+    @BeforeEach
+    public void setUp() {
+        authService = new AuthService();
+        // 書き込みスレッドは起動せず、キューに積まれた件数だけを見る
+        loginHistoryWriter = new LoginHistoryWriter();
+        System.setProperty("JWT_EC_EPHEMERAL_KEY", "true");
+        try {
+            jwtUtil = new JwtUtil();
+        } finally {
+            System.clearProperty("JWT_EC_EPHEMERAL_KEY");
+        }
+        resource = new AuthResource(new InMemoryCredentials(), authService, jwtUtil, loginHistoryWriter, sessionIndex);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        // BCrypt のスレッドプールを止める（shutdown はコンテナから呼ばれるためパッケージプライベート）
+        Method shutdown = AuthService.class.getDeclaredMethod("shutdown");
+        shutdown.setAccessible(true);
+        shutdown.invoke(authService);
+    }
+
+    private Response login(LoginRequest request) throws Exception {
+        return resource.login(request, headers).toCompletableFuture().get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testLoginCompletesAfterAsynchronousVerification() throws Exception {
+        UUID userId = UUID.randomUUID();
+        credentials.put(userId, new UserCredentials(userId, "tanaka_taro", authService.hashPassword("password123")));
+
+        Response response = login(new LoginRequest(userId, "password123"));
+
+        assertEquals(200, response.getStatus());
+        @SuppressWarnings("unchecked")
+        Map<String, Object> body = (Map<String, Object>) response.getEntity();
+        assertEquals(userId, jwtUtil.verify((String) body.get("token")).getUserId());
+        assertEquals("tanaka_taro", body.get("username"));
+        assertEquals(1, sessionIndex.sessions.size());
+        assertEquals(1L, loginHistoryWriter.snapshot().get("enqueued"));
+    }
+
+    @Test
+    public void testUnknownUserIsCountedWithoutHistoryRow() throws Exception {
+        Response response = login(new LoginRequest(UUID.randomUUID(), "password123"));
+
+        assertEquals(401, response.getStatus());
+        // login_history には書けない（外部キー）ため、件数として記録する
+        assertEquals(1L, loginHistoryWriter.snapshot().get("unknownUsers"));
+        assertEquals(0L, loginHistoryWriter.snapshot().get("enqueued"));
+    }
+
+    @Test
+    public void testWrongPasswordIsRecorded() throws Exception {
+        UUID userId = UUID.randomUUID();
+        credentials.put(userId, new UserCredentials(userId, "tanaka_taro", authService.hashPassword("password123")));
+
+        Response response = login(new LoginRequest(userId, "wrong"));
+
+        assertEquals(401, response.getStatus());
+        assertEquals(1L, loginHistoryWriter.snapshot().get("enqueued"));
+        assertEquals(0L, loginHistoryWriter.snapshot().get("unknownUsers"));
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.microservices.auth.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mindrot.jbcrypt.BCrypt;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * AuthService（BCrypt専用スレッドプール・再ハッシュ判定）のテスト
+ */
+public class AuthServiceTest {
+
+    private final AuthService authService = new AuthService(5, 2, 4, 5000);
+
+    @AfterEach
+    public void tearDown() {
+        authService.shutdown();
+    }
+
+    @Test
+    public void testVerifyPassword() throws Exception {
+        String hash = BCrypt.hashpw("password123", BCrypt.gensalt(4));
+
+        assertTrue(authService.verifyPassword("password123", hash).get(5, TimeUnit.SECONDS));
+        assertFalse(authService.verifyPassword("wrong", hash).get(5, TimeUnit.SECONDS));
+        assertFalse(authService.verifyPassword("password123", "not-a-bcrypt-hash").get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testVerificationDoesNotBlockCallerAndTimesOut() throws Exception {
+        // 1スレッド・上限 50ms。コスト 12 の検証は上限を超える
+        AuthService slow = new AuthService(4, 1, 4, 50);
+        try {
+            String hash = BCrypt.hashpw("password123", BCrypt.gensalt(12));
+
+            CompletableFuture<Boolean> first = slow.verifyPassword("password123", hash);
+            CompletableFuture<Boolean> queued = slow.verifyPassword("password123", hash);
+            // 呼び出し元は検証の完了を待たない
+            assertFalse(first.isDone());
+
+            ExecutionException error = assertThrows(ExecutionException.class, () -> queued.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(RejectedExecutionException.class, error.getCause());
+            assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+            assertEquals(2L, slow.snapshot().get("timedOut"));
+        } finally {
+            slow.shutdown();
+        }
+    }
+
+    @Test
+    public void testFullQueueIsRejectedImmediately() throws Exception {
+        AuthService busy = new AuthService(4, 1, 1, 5000);
+        try {
+            String hash = BCrypt.hashpw("password123", BCrypt.gensalt(12));
+            busy.verifyPassword("password123", hash);
+            busy.verifyPassword("password123", hash);
+
+            CompletableFuture<Boolean> rejected = busy.verifyPassword("password123", hash);
+
+            assertTrue(rejected.isCompletedExceptionally());
+            assertEquals(1L, busy.snapshot().get("rejected"));
+        } finally {
+            busy.shutdown();
+        }
+    }
+
+    @Test
+    public void testNeedsRehashWhenCostDiffers() {
+        assertTrue(authService.needsRehash(BCrypt.hashpw("password123", BCrypt.gensalt(4))));
+        assertFalse(authService.needsRehash(BCrypt.hashpw("password123", BCrypt.gensalt(5))));
+        assertFalse(authService.needsRehash("not-a-bcrypt-hash"));
+        assertFalse(authService.needsRehash(null));
+    }
+
+    @Test
+    public void testRehashUsesConfiguredCost() throws Exception {
+        String rehashed = authService.rehashPassword("password123").get(5, TimeUnit.SECONDS);
+
+        assertTrue(rehashed.startsWith("$2a$05$"));
+        assertTrue(BCrypt.checkpw("password123", rehashed));
+        assertFalse(authService.needsRehash(rehashed));
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.microservices.auth.service;
+
+import com.example.microservices.auth.repository.AuthRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ExpiredSessionSweeper（少量ずつの期限切れセッション削除）のテスト
+ */
+public class ExpiredSessionSweeperTest {
+
+    /**
+     * 期限切れセッションの件数だけを模擬するリポジトリ
+     */
+    private static class ExpiredRows extends AuthRepository {
+        private int remaining;
+        private final List<Integer> batchSizes = new ArrayList<>();
+
+        ExpiredRows(int remaining) {
+            super(null, null);
+            this.remaining = remaining;
+        }
+
+        @Override
+        public int deleteExpiredSessions(int batchSize) {
+            batchSizes.add(batchSize);
+            int deleted = Math.min(batchSize, remaining);
+            remaining -= deleted;
+            return deleted;
+        }
+    }
+
+    @Test
+    public void testDeletesInBoundedBatchesUntilDone() throws Exception {
+        ExpiredRows repository = new ExpiredRows(250);
+        ExpiredSessionSweeper sweeper = new ExpiredSessionSweeper(repository, true, 60, 100, 0);
+
+        assertEquals(250, sweeper.sweep());
+        assertEquals(0, repository.remaining);
+        // 100, 100, 50 の3回で終了する
+        assertEquals(3, repository.batchSizes.size());
+        assertTrue(repository.batchSizes.stream().allMatch(size -> size == 100));
+        assertEquals(250L, sweeper.snapshot().get("deleted"));
+        assertEquals(3L, sweeper.snapshot().get("batches"));
+    }
+
+    @Test
+    public void testRateLimitPausesBetweenBatches() throws Exception {
+        ExpiredRows repository = new ExpiredRows(300);
+        // 毎秒1000件まで → 100件ごとに100ms待つ
+        ExpiredSessionSweeper sweeper = new ExpiredSessionSweeper(repository, true, 60, 100, 1000);
+
+        long start = System.nanoTime();
+        assertEquals(300, sweeper.sweep());
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(elapsedMillis >= 250, "elapsed " + elapsedMillis + "ms");
+    }
+
+    @Test
+    public void testRequestedSweepRunsInBackground() throws Exception {
+        ExpiredRows repository = new ExpiredRows(150);
+        ExpiredSessionSweeper sweeper = new ExpiredSessionSweeper(repository, false, 60, 100, 0);
+        sweeper.start();
+        try {
+            CountDownLatch done = new CountDownLatch(1);
+            assertTrue(sweeper.requestSweep(done::countDown));
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertEquals(0, repository.remaining);
+        } finally {
+            sweeper.shutdown();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.microservices.auth.service;
+
+import com.example.microservices.auth.model.SessionToken;
+import com.example.microservices.auth.repository.AuthRepository;
+import com.example.microservices.auth.repository.SessionTokenIndex;
+import com.example.microservices.auth.util.JwtUtil;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * TokenBatchVerifier（トークン一括検証）のテスト
+ */
+public class TokenBatchVerifierTest {
+
+    /**
+     * レガシーセッションをメモリ上で模擬する索引（一括取得の呼び出しを記録する）
+     */
+    private static class InMemorySessionIndex extends SessionTokenIndex {
+        private final Map<String, SessionToken> sessions = new HashMap<>();
+        private final List<Collection<String>> lookups = new ArrayList<>();
+
+        @Override
+        public Map<String, SessionToken> findSessions(Collection<String> tokens) {
+            lookups.add(new ArrayList<>(tokens));
+            Map<String, SessionToken> found = new HashMap<>();
+            for (String token : tokens) {
+                if (sessions.containsKey(token)) {
+                    found.put(token, sessions.get(token));
+                }
+            }
+            return found;
+        }
+    }
+
+    private static class NoopRevocations extends AuthRepository {
+        NoopRevocations() {
+            super(null, null);
+        }
+
+        @Override
+        public void revokeToken(String jti, LocalDateTime expiresAt) {
+        }
+    }
+
+    @Test
+    public void testVerifyMixedTokensInOrder() throws Exception {
+        System.setProperty("JWT_EC_EPHEMERAL_KEY", "true");
+        JwtUtil jwtUtil;
+        try {
+            jwtUtil = new JwtUtil();
+        } finally {
+            System.clearProperty("JWT_EC_EPHEMERAL_KEY");
+        }
+        TokenRevocationList revocations = new TokenRevocationList(new NoopRevocations(), Clock.systemUTC());
+        InMemorySessionIndex index = new InMemorySessionIndex();
+        TokenBatchVerifier verifier = new TokenBatchVerifier(jwtUtil, revocations, index, 100, 4);
+
+        UUID legacyUser = UUID.randomUUID();
+        index.sessions.put("legacy_valid", new SessionToken(legacyUser, "legacy_valid", LocalDateTime.now().plusDays(1)));
+        index.sessions.put("legacy_expired", new SessionToken(legacyUser, "legacy_expired", LocalDateTime.now().minusDays(1)));
+        String revoked = jwtUtil.generateToken(UUID.randomUUID(), "revoked_user");
+        revocations.revoke(jwtUtil.verify(revoked).getTokenId(), jwtUtil.verify(revoked).getExpiresAt());
+
+        // 並列に分割されるよう十分な件数の JWT に、レガシー・不正なトークンを混ぜる
+        List<UUID> userIds = new ArrayList<>();
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            UUID userId = UUID.randomUUID();
+            userIds.add(userId);
+            tokens.add(jwtUtil.generateToken(userId, "user_" + i));
+        }
+        tokens.add(revoked);
+        tokens.add("legacy_valid");
+        tokens.add("legacy_expired");
+        tokens.add("garbage");
+
+        List<Map<String, Object>> results = verifier.verify(tokens);
+
+        assertEquals(tokens.size(), results.size());
+        for (int i = 0; i < 60; i++) {
+            assertEquals(true, results.get(i).get("valid"));
+            assertEquals(userIds.get(i).toString(), results.get(i).get("userId"));
+        }
+        assertEquals("Token revoked", results.get(60).get("error"));
+        assertEquals(legacyUser.toString(), results.get(61).get("userId"));
+        assertEquals("Token expired", results.get(62).get("error"));
+        assertEquals("Invalid token", results.get(63).get("error"));
+
+        // JWT でないトークンだけを1回でまとめて引く
+        assertEquals(1, index.lookups.size());
+        assertEquals(List.of("legacy_valid", "legacy_expired", "garbage"), index.lookups.get(0));
+        verifier.shutdown();
+    }
+}
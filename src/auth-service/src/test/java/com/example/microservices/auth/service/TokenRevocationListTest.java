@@ -0,0 +1,122 @@
+package com.example.microservices.auth.service;
+
+import com.example.microservices.auth.repository.AuthRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * TokenRevocationList（ログアウト済みJWTの失効一覧）のテスト
+ */
+public class TokenRevocationListTest {
+
+    private static final Instant NOW = Instant.parse("2024-06-01T00:00:00Z");
+
+    /**
+     * revoked_tokens テーブルをメモリ上で模擬するリポジトリ
+     */
+    private static class InMemoryRevocations extends AuthRepository {
+        private final Map<String, LocalDateTime> rows = new LinkedHashMap<>();
+
+        InMemoryRevocations() {
+            super(null, null);
+        }
+
+        @Override
+        public void revokeToken(String jti, LocalDateTime expiresAt) {
+            rows.putIfAbsent(jti, expiresAt);
+        }
+
+        @Override
+        public LocalDateTime forEachRevokedToken(LocalDateTime revokedSince, BiConsumer<String, LocalDateTime> consumer) {
+            rows.forEach(consumer);
+            return null;
+        }
+    }
+
+    private static Clock clockAt(Instant instant) {
+        return Clock.fixed(instant, ZoneOffset.UTC);
+    }
+
+    @Test
+    public void testRevokedTokenIsRejectedUntilExpiry() throws Exception {
+        InMemoryRevocations repository = new InMemoryRevocations();
+        TokenRevocationList list = new TokenRevocationList(repository, clockAt(NOW));
+
+        list.revoke("jti-1", NOW.plusSeconds(60));
+
+        assertTrue(list.isRevoked("jti-1"));
+        assertFalse(list.isRevoked("jti-2"));
+        assertFalse(list.isRevoked(null));
+        assertTrue(repository.rows.containsKey("jti-1"));
+
+        // 有効期限を過ぎたエントリは照合対象から外れ、次の掃除で消える
+        TokenRevocationList later = new TokenRevocationList(repository, clockAt(NOW.plusSeconds(61)));
+        later.refresh();
+        assertFalse(later.isRevoked("jti-1"));
+        assertTrue(later.publish().getEntries().isEmpty());
+    }
+
+    @Test
+    public void testRefreshPicksUpRevocationsFromOtherNodes() throws Exception {
+        InMemoryRevocations repository = new InMemoryRevocations();
+        repository.revokeToken("other-node", LocalDateTime.ofInstant(NOW.plusSeconds(60), ZoneId.systemDefault()));
+        TokenRevocationList list = new TokenRevocationList(repository, clockAt(NOW));
+
+        assertFalse(list.isRevoked("other-node"));
+        list.refresh();
+        assertTrue(list.isRevoked("other-node"));
+    }
+
+    @Test
+    public void testSnapshotVersionChangesOnlyWhenContentChanges() throws Exception {
+        TokenRevocationList list = new TokenRevocationList(new InMemoryRevocations(), clockAt(NOW));
+        list.revoke("b", NOW.plusSeconds(60));
+        list.revoke("a", NOW.plusSeconds(120));
+
+        TokenRevocationList.Revocations first = list.publish();
+        assertSame(first, list.publish());
+        assertArrayEquals(new String[] {"a", "b"}, first.getEntries().keySet().toArray());
+        assertEquals(NOW.plusSeconds(120).getEpochSecond(), first.getEntries().get("a"));
+
+        // 同じ jti の再失効では版は変わらない
+        list.revoke("a", NOW.plusSeconds(120));
+        assertSame(first, list.publish());
+
+        list.revoke("c", NOW.plusSeconds(60));
+        assertNotEquals(first.getVersion(), list.publish().getVersion());
+    }
+
+    @Test
+    public void testVersionIsSameAcrossNodesWithSameContent() throws Exception {
+        InMemoryRevocations repository = new InMemoryRevocations();
+        TokenRevocationList node1 = new TokenRevocationList(repository, clockAt(NOW));
+        TokenRevocationList node2 = new TokenRevocationList(repository, clockAt(NOW));
+
+        // 別々の順番・経路（直接の失効と差分取得）で同じ内容になれば、版も一致する
+        node1.revoke("a", NOW.plusSeconds(60));
+        node1.revoke("b", NOW.plusSeconds(120));
+        node2.refresh();
+        assertEquals(node1.publish().getVersion(), node2.publish().getVersion());
+
+        TokenRevocationList empty1 = new TokenRevocationList(new InMemoryRevocations(), clockAt(NOW));
+        TokenRevocationList empty2 = new TokenRevocationList(new InMemoryRevocations(), clockAt(NOW));
+        assertEquals(empty1.publish().getVersion(), empty2.publish().getVersion());
+        assertNotEquals(empty1.publish().getVersion(), node1.publish().getVersion());
+
+        // 有効期限が違えば別の内容として扱う
+        TokenRevocationList other = new TokenRevocationList(new InMemoryRevocations(), clockAt(NOW));
+        other.revoke("b", NOW.plusSeconds(120));
+        other.revoke("a", NOW.plusSeconds(61));
+        assertNotEquals(node1.publish().getVersion(), other.publish().getVersion());
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.microservices.auth.util;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import org.junit.jupiter.api.Test;
+
+import java.security.KeyPair;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.util.Base64;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JwtUtil（kid ごとの検証器・鍵ローテーション）のテスト
+ */
+public class JwtUtilTest {
+
+    private static Map<String, String> keys(String... kidAndSecret) {
+        Map<String, String> keys = new LinkedHashMap<>();
+        for (int i = 0; i < kidAndSecret.length; i += 2) {
+            keys.put(kidAndSecret[i], kidAndSecret[i + 1]);
+        }
+        return keys;
+    }
+
+    @Test
+    public void testGenerateAndVerifyWithActiveKey() {
+        JwtUtil jwtUtil = new JwtUtil(keys("old", "old-secret", "new", "new-secret"), "new");
+        UUID userId = UUID.randomUUID();
+
+        TokenClaims claims = jwtUtil.verify(jwtUtil.generateToken(userId, "tanaka_taro"));
+
+        assertEquals(userId, claims.getUserId());
+        assertEquals("tanaka_taro", claims.getUsername());
+        assertEquals("new", claims.getKeyId());
+        assertNotNull(claims.getExpiresAt());
+    }
+
+    @Test
+    public void testTokensSignedWithRotatedKeyStillVerify() {
+        UUID userId = UUID.randomUUID();
+        String oldToken = new JwtUtil(keys("old", "old-secret"), "old").generateToken(userId, null);
+        // kid ヘッダーのないローテーション導入前のトークン
+        String legacyToken = JWT.create()
+                .withClaim("userId", userId.toString())
+                .withExpiresAt(new Date(System.currentTimeMillis() + 60_000))
+                .sign(Algorithm.HMAC256("legacy-secret"));
+
+        JwtUtil rotated = new JwtUtil(keys("default", "legacy-secret", "old", "old-secret", "new", "new-secret"), "new");
+
+        assertEquals(userId, rotated.verify(oldToken).getUserId());
+        assertNull(rotated.verify(oldToken).getUsername());
+        assertEquals("default", rotated.verify(legacyToken).getKeyId());
+    }
+
+    @Test
+    public void testRejectUnknownKeyIdAndWrongSignature() {
+        JwtUtil jwtUtil = new JwtUtil(keys("new", "new-secret"), "new");
+        String retiredToken = new JwtUtil(keys("old", "old-secret"), "old").generateToken(UUID.randomUUID(), "x");
+        String forgedToken = new JwtUtil(keys("new", "other-secret"), "new").generateToken(UUID.randomUUID(), "x");
+
+        assertThrows(JWTVerificationException.class, () -> jwtUtil.verify(retiredToken));
+        assertThrows(JWTVerificationException.class, () -> jwtUtil.verify(forgedToken));
+        assertThrows(JWTVerificationException.class, () -> jwtUtil.verify("not-a-jwt"));
+    }
+
+    @Test
+    public void testParseKeys() {
+        assertEquals(keys("default", "secret"), JwtUtil.parseKeys(null, "secret"));
+        assertEquals(keys("a", "s1", "b", "s:2"), JwtUtil.parseKeys("a:s1, b:s:2", "ignored"));
+        assertThrows(IllegalArgumentException.class, () -> JwtUtil.parseKeys("missing-secret", "x"));
+    }
+
+    @Test
+    public void testSignWithEs256AndPublishPublicKeys() {
+        KeyPair keyPair = EcKeys.generate();
+        Map<String, ECPublicKey> publicKeys = new LinkedHashMap<>();
+        publicKeys.put("ec-1", (ECPublicKey) keyPair.getPublic());
+        JwtUtil jwtUtil = new JwtUtil(keys("default", "legacy-secret"), publicKeys, "ec-1",
+                (ECPrivateKey) keyPair.getPrivate());
+        UUID userId = UUID.randomUUID();
+
+        String token = jwtUtil.generateToken(userId, "tanaka_taro");
+        assertEquals("ES256", JWT.decode(token).getAlgorithm());
+        assertEquals(userId, jwtUtil.verify(token).getUserId());
+        // HS256 で発行済みのトークンも有効期限までは検証できる
+        String hmacToken = new JwtUtil(keys("default", "legacy-secret"), "default").generateToken(userId, null);
+        assertEquals(userId, jwtUtil.verify(hmacToken).getUserId());
+
+        // 公開するのは ES256 の公開鍵のみ（座標は 32 バイトの base64url）
+        assertEquals(1, jwtUtil.getPublicKeys().size());
+        Map<String, Object> jwk = jwtUtil.getPublicKeys().get(0);
+        assertEquals("ec-1", jwk.get("kid"));
+        assertEquals("P-256", jwk.get("crv"));
+        assertEquals(43, ((String) jwk.get("x")).length());
+        assertEquals(43, ((String) jwk.get("y")).length());
+        assertTrue(new JwtUtil(keys("default", "secret"), "default").getPublicKeys().isEmpty());
+    }
+
+    @Test
+    public void testParseEncodedEcKeys() {
+        KeyPair keyPair = EcKeys.generate();
+        String privateKey = Base64.getEncoder().encodeToString(keyPair.getPrivate().getEncoded());
+        String publicKey = "-----BEGIN PUBLIC KEY-----\n"
+                + Base64.getMimeEncoder().encodeToString(keyPair.getPublic().getEncoded())
+                + "\n-----END PUBLIC KEY-----";
+
+        assertEquals(keyPair.getPrivate(), EcKeys.parsePrivateKey(privateKey));
+        assertEquals(keyPair.getPublic(), EcKeys.parsePublicKey(publicKey));
+        assertThrows(IllegalArgumentException.class, () -> EcKeys.parsePublicKey("not-a-key"));
+    }
+
+    @Test
+    public void testMissingEcPrivateKeyFailsUnlessEphemeralKeyIsEnabled() {
+        // 秘密鍵が未設定の既定の構成では起動に失敗する
+        assertThrows(IllegalStateException.class, JwtUtil::new);
+
+        System.setProperty("JWT_EC_EPHEMERAL_KEY", "true");
+        try {
+            JwtUtil jwtUtil = new JwtUtil();
+            UUID userId = UUID.randomUUID();
+            assertEquals(userId, jwtUtil.extractUserId(jwtUtil.generateToken(userId, "dev")));
+        } finally {
+            System.clearProperty("JWT_EC_EPHEMERAL_KEY");
+        }
+    }
+
+    @Test
+    public void testHs256KeysRequireAcceptUntil() {
+        System.setProperty("JWT_EC_EPHEMERAL_KEY", "true");
+        System.setProperty("JWT_SECRET_KEY", "legacy-secret");
+        try {
+            // 旧トークンを受け付ける期限のない HS256 の鍵は設定の誤りとして扱う
+            assertThrows(IllegalArgumentException.class, JwtUtil::new);
+
+            System.setProperty("JWT_HS256_ACCEPT_UNTIL", "2000-01-01T00:00:00Z");
+            JwtUtil jwtUtil = new JwtUtil();
+            String legacyToken = new JwtUtil(keys("default", "legacy-secret"), "default")
+                    .generateToken(UUID.randomUUID(), null);
+            // 期限を過ぎた HS256 のトークンは拒否する
+            assertThrows(JWTVerificationException.class, () -> jwtUtil.verify(legacyToken));
+        } finally {
+            System.clearProperty("JWT_EC_EPHEMERAL_KEY");
+            System.clearProperty("JWT_SECRET_KEY");
+            System.clearProperty("JWT_HS256_ACCEPT_UNTIL");
+        }
+    }
+}
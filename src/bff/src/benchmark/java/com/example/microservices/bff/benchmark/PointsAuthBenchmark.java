@@ -0,0 +1,144 @@
+package com.example.microservices.bff.benchmark;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.example.microservices.bff.security.JwtVerifier;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.*;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * /api/points の認証コスト比較
+ * - remoteVerify: 従来通り Auth Service の /verify を呼んでから Point Service を呼ぶ
+ * - localVerify : BFF内でJWTを検証してから Point Service を呼ぶ
+ *
+ * Auth Service / Point Service はローカルのスタブHTTPサーバーで代替する。
+ * downstreamDelayMillis で下流サービスの処理時間を模擬する。
+ *
+ * 実行: mvn -Pbenchmark test-compile exec:exec -Djmh.args=PointsAuthBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class PointsAuthBenchmark {
+
+    private static final String SECRET_KEY = "your-secret-key-change-this-in-production";
+
+    @Param({"0", "2"})
+    private int downstreamDelayMillis;
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private Client client;
+    private JwtVerifier jwtVerifier;
+    private String baseUrl;
+    private String token;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        UUID userId = UUID.randomUUID();
+        token = JWT.create()
+                .withClaim("userId", userId.toString())
+                .withClaim("username", "bench_user")
+                .withIssuedAt(new Date())
+                .withExpiresAt(new Date(System.currentTimeMillis() + 3_600_000))
+                .sign(Algorithm.HMAC256(SECRET_KEY));
+
+        String verifyBody = "{\"valid\":true,\"userId\":\"" + userId + "\",\"username\":\"bench_user\"}";
+        String pointsBody = "{\"userId\":\"" + userId + "\",\"balance\":1200,\"lastUpdated\":\"2024-01-01T00:00:00\"}";
+
+        // スタブ側のNagle遅延が計測値を支配しないようにする
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 128);
+        serverExecutor = Executors.newFixedThreadPool(32);
+        server.setExecutor(serverExecutor);
+        server.createContext("/auth-service/api/auth/verify", exchange -> respond(exchange, verifyBody));
+        server.createContext("/point-service/api/points", exchange -> respond(exchange, pointsBody));
+        server.start();
+
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        client = ClientBuilder.newClient();
+        System.setProperty("JWT_SECRET_KEY", SECRET_KEY);
+        System.setProperty("JWT_HS256_ACCEPT_UNTIL", "2100-01-01T00:00:00Z");
+        jwtVerifier = new JwtVerifier();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        client.close();
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public String remoteVerify() {
+        try (Response verify = client.target(baseUrl)
+                .path("/auth-service/api/auth/verify")
+                .request(MediaType.APPLICATION_JSON)
+                .header("Authorization", "Bearer " + token)
+                .post(Entity.json("{}"))) {
+            if (verify.getStatus() != 200) {
+                throw new IllegalStateException("verify failed: " + verify.getStatus());
+            }
+            verify.readEntity(String.class);
+        }
+        return fetchPoints();
+    }
+
+    @Benchmark
+    public String localVerify() {
+        if (!jwtVerifier.verify(token).isPresent()) {
+            throw new IllegalStateException("verify failed");
+        }
+        return fetchPoints();
+    }
+
+    private String fetchPoints() {
+        try (Response points = client.target(baseUrl)
+                .path("/point-service/api/points")
+                .request(MediaType.APPLICATION_JSON)
+                .header("Authorization", "Bearer " + token)
+                .get()) {
+            return points.readEntity(String.class);
+        }
+    }
+
+    private void respond(HttpExchange exchange, String body) throws IOException {
+        try {
+            exchange.getRequestBody().readAllBytes();
+            if (downstreamDelayMillis > 0) {
+                Thread.sleep(downstreamDelayMillis);
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(bytes);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exchange.sendResponseHeaders(503, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+}
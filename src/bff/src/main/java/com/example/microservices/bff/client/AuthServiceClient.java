@@ -1,56 +1,98 @@
 package com.example.microservices.bff.client;
 
+import javax.annotation.PostConstruct;
 import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
 import javax.ws.rs.client.Client;
-import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.Invocation;
 import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.util.Map;
+import java.util.concurrent.CompletionStage;
 
 /**
  * 認証サービスクライアント
+ * 呼び出しは非同期で行い、結果を CompletionStage で返す
+ * サーキットブレーカーが開いている場合は下流を呼び出さずに CallNotPermittedException で失敗する
  */
 @ApplicationScoped
 public class AuthServiceClient {
 
     private static final String AUTH_SERVICE_URL = System.getenv().getOrDefault("AUTH_SERVICE_URL", "http://localhost:8081");
-    private final Client client;
+    private static final String SERVICE_NAME = "auth-service";
 
-    public AuthServiceClient() {
-        this.client = ClientBuilder.newClient();
+    @Inject
+    private HttpTransport httpTransport;
+
+    private Client client;
+    private DownstreamGuard guard;
+
+    @PostConstruct
+    void init() {
+        // コネクションプール付きの共有クライアントを使用
+        this.client = httpTransport.clientFor(SERVICE_NAME);
+        // サーキットブレーカー・バルクヘッドで保護
+        this.guard = httpTransport.guardFor(SERVICE_NAME);
     }
 
     /**
      * ログイン
      */
-    public Response login(Map<String, Object> loginData) {
+    public CompletionStage<Response> login(Map<String, Object> loginData) {
         WebTarget target = client.target(AUTH_SERVICE_URL)
                 .path("/auth-service/api/auth/login");
-        return target.request(MediaType.APPLICATION_JSON)
-                .post(Entity.entity(loginData, MediaType.APPLICATION_JSON));
+        return guard.call(() -> target.request(MediaType.APPLICATION_JSON)
+                        .rx().post(Entity.entity(loginData, MediaType.APPLICATION_JSON)));
     }
 
     /**
      * トークン検証
      */
-    public Response verifyToken(String token) {
+    public CompletionStage<Response> verifyToken(String token) {
         WebTarget target = client.target(AUTH_SERVICE_URL)
                 .path("/auth-service/api/auth/verify");
-        return target.request(MediaType.APPLICATION_JSON)
-                .header("Authorization", "Bearer " + token)
-                .post(Entity.json("{}"));
+        return guard.call(() -> target.request(MediaType.APPLICATION_JSON)
+                        .header("Authorization", "Bearer " + token)
+                        .rx().post(Entity.json("{}")));
     }
 
     /**
      * ログアウト
      */
-    public Response logout(String token) {
+    public CompletionStage<Response> logout(String token) {
         WebTarget target = client.target(AUTH_SERVICE_URL)
                 .path("/auth-service/api/auth/logout");
-        return target.request(MediaType.APPLICATION_JSON)
-                .header("Authorization", "Bearer " + token)
-                .post(Entity.json("{}"));
+        return guard.call(() -> target.request(MediaType.APPLICATION_JSON)
+                        .header("Authorization", "Bearer " + token)
+                        .rx().post(Entity.json("{}")));
+    }
+
+    /**
+     * 失効済みJWTの一覧
+     *
+     * @param etag 前回取得した一覧の ETag（一致すれば 304 が返る）、初回は null
+     */
+    public CompletionStage<Response> getRevocations(String etag) {
+        WebTarget target = client.target(AUTH_SERVICE_URL)
+                .path("/auth-service/api/auth/revocations");
+        return guard.call(() -> {
+            Invocation.Builder request = target.request(MediaType.APPLICATION_JSON);
+            if (etag != null) {
+                request.header(HttpHeaders.IF_NONE_MATCH, etag);
+            }
+            return request.rx().get();
+        });
+    }
+
+    /**
+     * JWT署名の公開鍵の一覧（JWKS）
+     */
+    public CompletionStage<Response> getKeys() {
+        WebTarget target = client.target(AUTH_SERVICE_URL)
+                .path("/auth-service/api/auth/keys");
+        return guard.call(() -> target.request(MediaType.APPLICATION_JSON).rx().get());
     }
 }
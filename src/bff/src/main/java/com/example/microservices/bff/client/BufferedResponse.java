@@ -0,0 +1,263 @@
+package com.example.microservices.bff.client;
+
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Link;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.NewCookie;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.RuntimeDelegate;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * ボディをメモリ上に読み込んだ下流サービスのレスポンス
+ * 不変で、複数の呼び出し元が同じインスタンスから何度でも readEntity できる（close は何もしない）
+ * readEntity は String / byte[] / InputStream のみ対応
+ */
+public final class BufferedResponse extends Response {
+
+    private final int status;
+    private final MultivaluedMap<String, Object> headers;
+    private final byte[] body;
+
+    private BufferedResponse(int status, MultivaluedMap<String, Object> headers, byte[] body) {
+        this.status = status;
+        this.headers = headers;
+        this.body = body;
+    }
+
+    /**
+     * 下流サービスのレスポンスを読み込んで閉じる
+     */
+    public static BufferedResponse of(Response response) {
+        try {
+            MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
+            response.getHeaders().forEach((name, values) -> headers.put(name, Collections.unmodifiableList(values)));
+            byte[] body = response.hasEntity() ? response.readEntity(byte[].class) : null;
+            return new BufferedResponse(response.getStatus(), headers, body);
+        } finally {
+            response.close();
+        }
+    }
+
+    public int getBodyLength() {
+        return body == null ? 0 : body.length;
+    }
+
+    @Override
+    public int getStatus() {
+        return status;
+    }
+
+    @Override
+    public StatusType getStatusInfo() {
+        StatusType known = Status.fromStatusCode(status);
+        if (known != null) {
+            return known;
+        }
+        return new StatusType() {
+            @Override
+            public int getStatusCode() {
+                return status;
+            }
+
+            @Override
+            public Status.Family getFamily() {
+                return Status.Family.familyOf(status);
+            }
+
+            @Override
+            public String getReasonPhrase() {
+                return "";
+            }
+        };
+    }
+
+    @Override
+    public Object getEntity() {
+        return body == null ? null : new ByteArrayInputStream(body);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T readEntity(Class<T> entityType) {
+        if (body == null) {
+            throw new IllegalStateException("Response has no entity");
+        }
+        if (entityType == String.class) {
+            return (T) new String(body, charset());
+        }
+        if (entityType == byte[].class) {
+            return (T) body.clone();
+        }
+        if (entityType == InputStream.class) {
+            return (T) new ByteArrayInputStream(body);
+        }
+        throw new IllegalStateException("Unsupported entity type: " + entityType.getName());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T readEntity(GenericType<T> entityType) {
+        return (T) readEntity(entityType.getRawType());
+    }
+
+    @Override
+    public <T> T readEntity(Class<T> entityType, Annotation[] annotations) {
+        return readEntity(entityType);
+    }
+
+    @Override
+    public <T> T readEntity(GenericType<T> entityType, Annotation[] annotations) {
+        return readEntity(entityType);
+    }
+
+    @Override
+    public boolean hasEntity() {
+        return body != null;
+    }
+
+    @Override
+    public boolean bufferEntity() {
+        return true;
+    }
+
+    @Override
+    public void close() {
+        // 共有されるため何もしない
+    }
+
+    @Override
+    public MediaType getMediaType() {
+        String value = getHeaderString(HttpHeaders.CONTENT_TYPE);
+        return value == null ? null : MediaType.valueOf(value);
+    }
+
+    @Override
+    public Locale getLanguage() {
+        String value = getHeaderString(HttpHeaders.CONTENT_LANGUAGE);
+        return value == null ? null : Locale.forLanguageTag(value);
+    }
+
+    @Override
+    public int getLength() {
+        return body == null ? -1 : body.length;
+    }
+
+    @Override
+    public Set<String> getAllowedMethods() {
+        return Collections.emptySet();
+    }
+
+    @Override
+    public Map<String, NewCookie> getCookies() {
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public EntityTag getEntityTag() {
+        String value = getHeaderString(HttpHeaders.ETAG);
+        return value == null ? null : EntityTag.valueOf(value);
+    }
+
+    @Override
+    public Date getDate() {
+        return null;
+    }
+
+    @Override
+    public Date getLastModified() {
+        return null;
+    }
+
+    @Override
+    public URI getLocation() {
+        String value = getHeaderString(HttpHeaders.LOCATION);
+        return value == null ? null : URI.create(value);
+    }
+
+    @Override
+    public Set<Link> getLinks() {
+        return Collections.emptySet();
+    }
+
+    @Override
+    public boolean hasLink(String relation) {
+        return false;
+    }
+
+    @Override
+    public Link getLink(String relation) {
+        return null;
+    }
+
+    @Override
+    public Link.Builder getLinkBuilder(String relation) {
+        return null;
+    }
+
+    @Override
+    public MultivaluedMap<String, Object> getMetadata() {
+        return headers;
+    }
+
+    @Override
+    public MultivaluedMap<String, String> getStringHeaders() {
+        MultivaluedMap<String, String> stringHeaders = new MultivaluedHashMap<>();
+        headers.forEach((name, values) -> {
+            for (Object value : values) {
+                stringHeaders.add(name, String.valueOf(value));
+            }
+        });
+        return stringHeaders;
+    }
+
+    @Override
+    public String getHeaderString(String name) {
+        for (Map.Entry<String, List<Object>> header : headers.entrySet()) {
+            if (header.getKey().equalsIgnoreCase(name)) {
+                List<Object> values = header.getValue();
+                if (values == null || values.isEmpty()) {
+                    return null;
+                }
+                StringBuilder joined = new StringBuilder();
+                for (Object value : values) {
+                    if (joined.length() > 0) {
+                        joined.append(',');
+                    }
+                    joined.append(toHeaderString(value));
+                }
+                return joined.toString();
+            }
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String toHeaderString(Object value) {
+        if (value instanceof String) {
+            return (String) value;
+        }
+        return RuntimeDelegate.getInstance().createHeaderDelegate((Class<Object>) value.getClass()).toString(value);
+    }
+
+    private Charset charset() {
+        MediaType mediaType = getMediaType();
+        String name = mediaType == null ? null : mediaType.getParameters().get(MediaType.CHARSET_PARAMETER);
+        return name == null ? StandardCharsets.UTF_8 : Charset.forName(name);
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.microservices.bff.client;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 下流サービスごとの同時呼び出し数の上限
+ * 上限に達している場合は待たずに拒否し、遅いサービスがBFF全体のスレッド・接続を占有しないようにする
+ */
+public class Bulkhead {
+
+    private final int maxConcurrentCalls;
+    private final Semaphore permits;
+    private final AtomicLong rejectedCalls = new AtomicLong();
+
+    Bulkhead(int maxConcurrentCalls) {
+        this.maxConcurrentCalls = Math.max(1, maxConcurrentCalls);
+        this.permits = new Semaphore(this.maxConcurrentCalls);
+    }
+
+    boolean tryAcquire() {
+        if (permits.tryAcquire()) {
+            return true;
+        }
+        rejectedCalls.incrementAndGet();
+        return false;
+    }
+
+    void release() {
+        permits.release();
+    }
+
+    Map<String, Object> snapshot() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("maxConcurrentCalls", maxConcurrentCalls);
+        metrics.put("activeCalls", maxConcurrentCalls - permits.availablePermits());
+        metrics.put("rejectedCalls", rejectedCalls.get());
+        return metrics;
+    }
+}
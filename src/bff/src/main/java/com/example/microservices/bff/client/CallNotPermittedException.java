@@ -0,0 +1,16 @@
+package com.example.microservices.bff.client;
+
+import javax.ws.rs.ProcessingException;
+
+/**
+ * サーキットブレーカーが開いている、またはバルクヘッドが満杯のため下流サービスを呼び出さなかった
+ * ProcessingException を継承し、接続エラーと同じく503として扱われる
+ */
+public class CallNotPermittedException extends ProcessingException {
+
+    private static final long serialVersionUID = 1L;
+
+    public CallNotPermittedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.microservices.bff.client;
+
+import java.time.Clock;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 下流サービスごとのサーキットブレーカー（直近N件の呼び出し結果で判定）
+ * - CLOSED: 通常状態。失敗率または遅延呼び出し率が閾値を超えると OPEN
+ * - OPEN: 呼び出しを即座に拒否。一定時間経過後に HALF_OPEN
+ * - HALF_OPEN: 試行呼び出しを数件だけ通し、全て成功すれば CLOSED、1件でも失敗・遅延すれば OPEN
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * ブレーカー設定
+     */
+    static final class Settings {
+        final int windowSize;
+        final int minimumCalls;
+        final int failureRateThreshold;
+        final long slowCallMillis;
+        final int slowCallRateThreshold;
+        final long openMillis;
+        final int halfOpenCalls;
+
+        Settings(int windowSize, int minimumCalls, int failureRateThreshold, long slowCallMillis,
+                 int slowCallRateThreshold, long openMillis, int halfOpenCalls) {
+            this.windowSize = Math.max(1, windowSize);
+            this.minimumCalls = Math.max(1, Math.min(minimumCalls, this.windowSize));
+            this.failureRateThreshold = failureRateThreshold;
+            this.slowCallMillis = slowCallMillis;
+            this.slowCallRateThreshold = slowCallRateThreshold;
+            this.openMillis = openMillis;
+            this.halfOpenCalls = Math.max(1, halfOpenCalls);
+        }
+    }
+
+    private static final byte FAILED = 1;
+    private static final byte SLOW = 2;
+
+    private final String name;
+    private final Settings settings;
+    private final Clock clock;
+
+    // 直近の呼び出し結果（リングバッファ）
+    private final byte[] window;
+    private int windowPosition;
+    private int recordedCalls;
+    private int failedCalls;
+    private int slowCalls;
+
+    private volatile State state = State.CLOSED;
+    private long openedAtMillis;
+    private int halfOpenPermitted;
+    private int halfOpenSucceeded;
+
+    private final AtomicLong notPermittedCalls = new AtomicLong();
+    private final ConcurrentHashMap<String, AtomicLong> transitions = new ConcurrentHashMap<>();
+
+    CircuitBreaker(String name, Settings settings, Clock clock) {
+        this.name = name;
+        this.settings = settings;
+        this.clock = clock;
+        this.window = new byte[settings.windowSize];
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * 呼び出してよいか判定（許可した場合は必ず onResult か release を呼ぶこと）
+     */
+    synchronized boolean tryAcquirePermission() {
+        if (state == State.OPEN) {
+            if (clock.millis() - openedAtMillis < settings.openMillis) {
+                notPermittedCalls.incrementAndGet();
+                return false;
+            }
+            transitionTo(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (halfOpenPermitted >= settings.halfOpenCalls) {
+                notPermittedCalls.incrementAndGet();
+                return false;
+            }
+            halfOpenPermitted++;
+        }
+        return true;
+    }
+
+    /**
+     * 結果を記録せずに許可を返却（下流を呼び出さなかった場合）
+     */
+    synchronized void release() {
+        if (state == State.HALF_OPEN && halfOpenPermitted > 0) {
+            halfOpenPermitted--;
+        }
+    }
+
+    /**
+     * 呼び出し結果を記録
+     */
+    synchronized void onResult(long durationMillis, boolean failed) {
+        boolean slow = durationMillis >= settings.slowCallMillis;
+
+        if (state == State.HALF_OPEN) {
+            if (failed || slow) {
+                transitionTo(State.OPEN);
+            } else if (++halfOpenSucceeded >= settings.halfOpenCalls) {
+                transitionTo(State.CLOSED);
+            }
+            return;
+        }
+        if (state == State.OPEN) {
+            // OPEN になる前に開始した呼び出しの結果は無視
+            return;
+        }
+
+        byte outcome = (byte) ((failed ? FAILED : 0) | (slow ? SLOW : 0));
+        if (recordedCalls == window.length) {
+            byte evicted = window[windowPosition];
+            if ((evicted & FAILED) != 0) {
+                failedCalls--;
+            }
+            if ((evicted & SLOW) != 0) {
+                slowCalls--;
+            }
+        } else {
+            recordedCalls++;
+        }
+        window[windowPosition] = outcome;
+        windowPosition = (windowPosition + 1) % window.length;
+        if (failed) {
+            failedCalls++;
+        }
+        if (slow) {
+            slowCalls++;
+        }
+
+        if (recordedCalls >= settings.minimumCalls
+                && (failedCalls * 100 >= settings.failureRateThreshold * recordedCalls
+                || slowCalls * 100 >= settings.slowCallRateThreshold * recordedCalls)) {
+            transitionTo(State.OPEN);
+        }
+    }
+
+    private void transitionTo(State next) {
+        State previous = state;
+        if (previous == next) {
+            return;
+        }
+        state = next;
+        transitions.computeIfAbsent(previous + "_TO_" + next, k -> new AtomicLong()).incrementAndGet();
+        System.err.println("Circuit breaker for " + name + " changed from " + previous + " to " + next);
+
+        if (next == State.OPEN) {
+            openedAtMillis = clock.millis();
+        }
+        halfOpenPermitted = 0;
+        halfOpenSucceeded = 0;
+        // 状態が変わったら集計をやり直す
+        recordedCalls = 0;
+        failedCalls = 0;
+        slowCalls = 0;
+        windowPosition = 0;
+    }
+
+    synchronized Map<String, Object> snapshot() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("state", state.name());
+        metrics.put("bufferedCalls", recordedCalls);
+        metrics.put("failureRate", recordedCalls == 0 ? 0.0 : failedCalls * 100.0 / recordedCalls);
+        metrics.put("slowCallRate", recordedCalls == 0 ? 0.0 : slowCalls * 100.0 / recordedCalls);
+        metrics.put("notPermittedCalls", notPermittedCalls.get());
+        Map<String, Long> transitionCounts = new LinkedHashMap<>();
+        transitions.forEach((key, count) -> transitionCounts.put(key, count.get()));
+        metrics.put("transitions", transitionCounts);
+        return metrics;
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.microservices.bff.client;
+
+import javax.ws.rs.core.Response;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * 下流サービス呼び出しをバルクヘッドとサーキットブレーカーで保護する
+ * 拒否した場合は CallNotPermittedException で失敗した CompletionStage を返す
+ * 例外および5xxレスポンスを失敗として記録する（4xxはクライアント起因なので成功扱い）
+ */
+public class DownstreamGuard {
+
+    private final String serviceName;
+    private final CircuitBreaker circuitBreaker;
+    private final Bulkhead bulkhead;
+
+    DownstreamGuard(String serviceName, CircuitBreaker circuitBreaker, Bulkhead bulkhead) {
+        this.serviceName = serviceName;
+        this.circuitBreaker = circuitBreaker;
+        this.bulkhead = bulkhead;
+    }
+
+    /**
+     * 保護された呼び出しを実行
+     */
+    public CompletionStage<Response> call(Supplier<CompletionStage<Response>> invocation) {
+        if (!bulkhead.tryAcquire()) {
+            return failed(new CallNotPermittedException("Bulkhead for " + serviceName + " is full"));
+        }
+        if (!circuitBreaker.tryAcquirePermission()) {
+            bulkhead.release();
+            return failed(new CallNotPermittedException("Circuit breaker for " + serviceName + " is OPEN"));
+        }
+
+        long start = System.nanoTime();
+        CompletionStage<Response> stage;
+        try {
+            stage = invocation.get();
+        } catch (RejectedExecutionException e) {
+            // 下流を呼び出していないので結果は記録しない
+            circuitBreaker.release();
+            bulkhead.release();
+            return failed(e);
+        } catch (RuntimeException e) {
+            circuitBreaker.onResult(elapsedMillis(start), true);
+            bulkhead.release();
+            return failed(e);
+        }
+
+        return stage.whenComplete((response, error) -> {
+            boolean failedCall = error != null || response.getStatus() >= 500;
+            circuitBreaker.onResult(elapsedMillis(start), failedCall);
+            bulkhead.release();
+        });
+    }
+
+    public CircuitBreaker.State getState() {
+        return circuitBreaker.getState();
+    }
+
+    Map<String, Object> snapshot() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("circuitBreaker", circuitBreaker.snapshot());
+        metrics.put("bulkhead", bulkhead.snapshot());
+        return metrics;
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    private static <T> CompletionStage<T> failed(Throwable error) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(error);
+        return future;
+    }
+}
@@ -0,0 +1,284 @@
+package com.example.microservices.bff.client;
+
+import com.example.microservices.bff.config.BffConfig;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.glassfish.jersey.apache.connector.ApacheClientProperties;
+import org.glassfish.jersey.apache.connector.ApacheConnectorProvider;
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.client.ClientProperties;
+import org.glassfish.jersey.client.RequestEntityProcessing;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import java.time.Clock;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 下流サービス用HTTPトランスポート
+ * サービスごとにKeep-Aliveのコネクションプールを持つJAX-RSクライアントを生成・共有する
+ * 非同期呼び出し（rx()）はサービスごとの上限付きスレッドプールで実行し、コンテナのスレッドを占有しない
+ *
+ * 設定（サービス個別の値 BFF_HTTP_{SERVICE}_{NAME} が優先、次に共通の BFF_HTTP_{NAME}）
+ * 例: BFF_HTTP_POINT_SERVICE_READ_TIMEOUT_MS=3000
+ * - MAX_CONNECTIONS      プールの最大接続数
+ * - CONNECT_TIMEOUT_MS   接続タイムアウト
+ * - READ_TIMEOUT_MS      読み取りタイムアウト
+ * - POOL_TIMEOUT_MS      プールからの接続取得待ちタイムアウト
+ * - IDLE_EVICT_SECONDS   アイドル接続を閉じるまでの時間
+ * - CONNECTION_TTL_SECONDS 接続の最大生存時間
+ * - ASYNC_QUEUE_SIZE     非同期呼び出しの待ち行列の上限（超過時は即座に失敗）
+ * - MAX_CONCURRENT_CALLS バルクヘッド（同時呼び出し数の上限、超過時は即座に503）
+ * - CB_WINDOW_SIZE / CB_MINIMUM_CALLS  サーキットブレーカーの判定対象件数 / 判定に必要な最小件数
+ * - CB_FAILURE_RATE_THRESHOLD / CB_SLOW_CALL_RATE_THRESHOLD  OPEN にする失敗率 / 遅延呼び出し率（%）
+ * - CB_SLOW_CALL_MS      遅延呼び出しとみなす応答時間
+ * - CB_OPEN_MS           OPEN から HALF_OPEN に移るまでの時間
+ * - CB_HALF_OPEN_CALLS   HALF_OPEN で通す試行呼び出し数
+ */
+@ApplicationScoped
+public class HttpTransport {
+
+    private final ConcurrentHashMap<String, Downstream> downstreams = new ConcurrentHashMap<>();
+    private ScheduledExecutorService idleEvictor;
+
+    @PostConstruct
+    void init() {
+        idleEvictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "bff-http-idle-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        idleEvictor.scheduleWithFixedDelay(this::evictIdleConnections, 5, 5, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (idleEvictor != null) {
+            idleEvictor.shutdownNow();
+        }
+        for (Downstream downstream : downstreams.values()) {
+            downstream.client.close();
+            downstream.executor.shutdownNow();
+            downstream.connectionManager.shutdown();
+        }
+        downstreams.clear();
+    }
+
+    /**
+     * 下流サービス用のクライアントを取得（サービスごとに共有）
+     *
+     * @param serviceName サービス名（例: "point-service"）
+     */
+    public Client clientFor(String serviceName) {
+        return downstreams.computeIfAbsent(serviceName, Downstream::new).client;
+    }
+
+    /**
+     * 下流サービス用のサーキットブレーカー・バルクヘッドを取得（サービスごとに共有）
+     */
+    public DownstreamGuard guardFor(String serviceName) {
+        return downstreams.computeIfAbsent(serviceName, Downstream::new).guard;
+    }
+
+    /**
+     * プールのメトリクス（サービスごと）
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        downstreams.forEach((name, downstream) -> metrics.put(name, downstream.snapshot()));
+        return metrics;
+    }
+
+    private void evictIdleConnections() {
+        for (Downstream downstream : downstreams.values()) {
+            try {
+                downstream.connectionManager.closeExpiredConnections();
+                downstream.connectionManager.closeIdleConnections(downstream.settings.idleEvictSeconds, TimeUnit.SECONDS);
+            } catch (RuntimeException e) {
+                System.err.println("Failed to evict idle connections: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * トランスポート設定
+     */
+    static final class Settings {
+        final int maxConnections;
+        final int connectTimeoutMillis;
+        final int readTimeoutMillis;
+        final int poolTimeoutMillis;
+        final int idleEvictSeconds;
+        final int connectionTtlSeconds;
+        final int asyncQueueSize;
+        final int maxConcurrentCalls;
+        final CircuitBreaker.Settings circuitBreaker;
+
+        Settings(String serviceName) {
+            String prefix = "BFF_HTTP_" + serviceName.toUpperCase().replace('-', '_') + "_";
+            this.maxConnections = get(prefix, "MAX_CONNECTIONS", 50);
+            this.connectTimeoutMillis = get(prefix, "CONNECT_TIMEOUT_MS", 2000);
+            this.readTimeoutMillis = get(prefix, "READ_TIMEOUT_MS", 5000);
+            this.poolTimeoutMillis = get(prefix, "POOL_TIMEOUT_MS", 1000);
+            this.idleEvictSeconds = get(prefix, "IDLE_EVICT_SECONDS", 30);
+            this.connectionTtlSeconds = get(prefix, "CONNECTION_TTL_SECONDS", 300);
+            this.asyncQueueSize = get(prefix, "ASYNC_QUEUE_SIZE", 1000);
+            this.maxConcurrentCalls = get(prefix, "MAX_CONCURRENT_CALLS", 100);
+            this.circuitBreaker = new CircuitBreaker.Settings(
+                    get(prefix, "CB_WINDOW_SIZE", 20),
+                    get(prefix, "CB_MINIMUM_CALLS", 10),
+                    get(prefix, "CB_FAILURE_RATE_THRESHOLD", 50),
+                    get(prefix, "CB_SLOW_CALL_MS", 2000),
+                    get(prefix, "CB_SLOW_CALL_RATE_THRESHOLD", 80),
+                    get(prefix, "CB_OPEN_MS", 10000),
+                    get(prefix, "CB_HALF_OPEN_CALLS", 3));
+        }
+
+        private static int get(String prefix, String name, int defaultValue) {
+            return BffConfig.getInt(prefix + name, BffConfig.getInt("BFF_HTTP_" + name, defaultValue));
+        }
+    }
+
+    /**
+     * 下流サービスごとのクライアントとコネクションプール
+     */
+    private static final class Downstream {
+        private final Settings settings;
+        private final MeteredConnectionManager connectionManager;
+        private final ThreadPoolExecutor executor;
+        private final AtomicLong asyncRejected = new AtomicLong();
+        private final Client client;
+        private final DownstreamGuard guard;
+
+        Downstream(String serviceName) {
+            this.settings = new Settings(serviceName);
+            this.guard = new DownstreamGuard(serviceName,
+                    new CircuitBreaker(serviceName, settings.circuitBreaker, Clock.systemUTC()),
+                    new Bulkhead(settings.maxConcurrentCalls));
+            this.connectionManager = new MeteredConnectionManager(settings.connectionTtlSeconds);
+            connectionManager.setMaxTotal(settings.maxConnections);
+            connectionManager.setDefaultMaxPerRoute(settings.maxConnections);
+            // 一定時間使われていない接続は再利用前に検証する
+            connectionManager.setValidateAfterInactivity(2000);
+
+            RequestConfig requestConfig = RequestConfig.custom()
+                    .setConnectionRequestTimeout(settings.poolTimeoutMillis)
+                    .build();
+
+            ClientConfig config = new ClientConfig();
+            config.connectorProvider(new ApacheConnectorProvider());
+            config.property(ApacheClientProperties.CONNECTION_MANAGER, connectionManager);
+            config.property(ApacheClientProperties.REQUEST_CONFIG, requestConfig);
+            config.property(ClientProperties.CONNECT_TIMEOUT, settings.connectTimeoutMillis);
+            config.property(ClientProperties.READ_TIMEOUT, settings.readTimeoutMillis);
+            // リクエストボディは小さいのでContent-Length付きで送る
+            config.property(ClientProperties.REQUEST_ENTITY_PROCESSING, RequestEntityProcessing.BUFFERED);
+
+            // 非同期呼び出し用のスレッドプール（I/O待ちは接続数までしか発生しないので同じ上限にする）
+            AtomicInteger threadCount = new AtomicInteger();
+            this.executor = new ThreadPoolExecutor(
+                    settings.maxConnections, settings.maxConnections,
+                    60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(settings.asyncQueueSize),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "bff-http-" + serviceName + "-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    },
+                    (runnable, pool) -> {
+                        asyncRejected.incrementAndGet();
+                        throw new RejectedExecutionException("Too many pending requests to " + serviceName);
+                    });
+            executor.allowCoreThreadTimeOut(true);
+
+            this.client = ClientBuilder.newBuilder()
+                    .withConfig(config)
+                    .executorService(executor)
+                    .build();
+        }
+
+        Map<String, Object> snapshot() {
+            PoolStats stats = connectionManager.getTotalStats();
+            long leaseRequests = connectionManager.leaseRequests.get();
+            long waitNanos = connectionManager.leaseWaitNanos.get();
+
+            Map<String, Object> metrics = new LinkedHashMap<>();
+            metrics.put("leased", stats.getLeased());
+            metrics.put("pending", stats.getPending());
+            metrics.put("available", stats.getAvailable());
+            metrics.put("max", stats.getMax());
+            metrics.put("leaseRequests", leaseRequests);
+            metrics.put("leaseTimeouts", connectionManager.leaseTimeouts.get());
+            metrics.put("leaseWaitAvgMillis", leaseRequests == 0 ? 0.0 : waitNanos / 1_000_000.0 / leaseRequests);
+            metrics.put("leaseWaitMaxMillis", connectionManager.leaseWaitMaxNanos.get() / 1_000_000.0);
+            metrics.put("asyncActive", executor.getActiveCount());
+            metrics.put("asyncQueued", executor.getQueue().size());
+            metrics.put("asyncRejected", asyncRejected.get());
+            metrics.put("connectTimeoutMillis", settings.connectTimeoutMillis);
+            metrics.put("readTimeoutMillis", settings.readTimeoutMillis);
+            metrics.putAll(guard.snapshot());
+            return metrics;
+        }
+    }
+
+    /**
+     * 接続取得の待ち時間を計測するコネクションマネージャー
+     */
+    private static final class MeteredConnectionManager extends PoolingHttpClientConnectionManager {
+        private final AtomicLong leaseRequests = new AtomicLong();
+        private final AtomicLong leaseTimeouts = new AtomicLong();
+        private final AtomicLong leaseWaitNanos = new AtomicLong();
+        private final AtomicLong leaseWaitMaxNanos = new AtomicLong();
+
+        MeteredConnectionManager(int connectionTtlSeconds) {
+            super(connectionTtlSeconds, TimeUnit.SECONDS);
+        }
+
+        @Override
+        public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+            ConnectionRequest delegate = super.requestConnection(route, state);
+            return new ConnectionRequest() {
+                @Override
+                public HttpClientConnection get(long timeout, TimeUnit unit)
+                        throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+                    long start = System.nanoTime();
+                    try {
+                        return delegate.get(timeout, unit);
+                    } catch (ConnectionPoolTimeoutException e) {
+                        leaseTimeouts.incrementAndGet();
+                        throw e;
+                    } finally {
+                        long waited = System.nanoTime() - start;
+                        leaseRequests.incrementAndGet();
+                        leaseWaitNanos.addAndGet(waited);
+                        leaseWaitMaxNanos.accumulateAndGet(waited, Math::max);
+                    }
+                }
+
+                @Override
+                public boolean cancel() {
+                    return delegate.cancel();
+                }
+            };
+        }
+    }
+}
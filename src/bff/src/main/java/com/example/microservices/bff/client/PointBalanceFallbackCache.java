@@ -0,0 +1,207 @@
+package com.example.microservices.bff.client;
+
+import com.example.microservices.bff.config.BffConfig;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonReader;
+import javax.json.JsonValue;
+import javax.ws.rs.core.Response;
+import java.io.ByteArrayInputStream;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ポイント残高の最終正常値キャッシュ（ユーザーごと）
+ * Point Service が停止・遅延している間は、最後に取得できた残高を stale（古い値）として返すために使う
+ * 取得に失敗したユーザーには印を付け、正常に取得できるまでは下流を待たずに古い値を返す（取得し直しは裏で1件ずつ）
+ * 件数の上限を超えた場合は最も使われていないユーザーから追い出す
+ *
+ * 設定:
+ * - BFF_POINTS_FALLBACK_MAX_ENTRIES      保持する最大ユーザー数（デフォルト 10000）
+ * - BFF_POINTS_FALLBACK_MAX_AGE_SECONDS  古い値として返してよい最大経過時間（デフォルト 3600）
+ */
+@ApplicationScoped
+public class PointBalanceFallbackCache {
+
+    private final int maxEntries;
+    private final Duration maxAge;
+    private final Clock clock;
+    private final LinkedHashMap<UUID, Entry> entries;
+    // 裏で取得し直し中のユーザー
+    private final Set<UUID> revalidating = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong updates = new AtomicLong();
+    private final AtomicLong staleServed = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong revalidations = new AtomicLong();
+
+    public PointBalanceFallbackCache() {
+        this(BffConfig.getInt("BFF_POINTS_FALLBACK_MAX_ENTRIES", 10000),
+                Duration.ofSeconds(BffConfig.getLong("BFF_POINTS_FALLBACK_MAX_AGE_SECONDS", 3600)),
+                Clock.systemUTC());
+    }
+
+    PointBalanceFallbackCache(int maxEntries, Duration maxAge, Clock clock) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.maxAge = maxAge;
+        this.clock = clock;
+        // アクセス順（LRU）
+        this.entries = new LinkedHashMap<UUID, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, Entry> eldest) {
+                if (size() > PointBalanceFallbackCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 正常に取得できた残高レスポンス（200）を保存
+     */
+    public void put(UUID userId, BufferedResponse response) {
+        if (response.getStatus() != 200 || !response.hasEntity()) {
+            return;
+        }
+        putEntry(userId, new Entry(response.readEntity(byte[].class), clock.instant()));
+    }
+
+    void putEntry(UUID userId, Entry entry) {
+        synchronized (entries) {
+            entries.put(userId, entry);
+        }
+        updates.incrementAndGet();
+    }
+
+    /**
+     * 取得に失敗したことを記録する（保存済みの残高がある場合のみ）
+     * 次に正常に取得できるまで、この残高は failing として扱われる
+     */
+    public void markFailing(UUID userId) {
+        synchronized (entries) {
+            Entry entry = entries.get(userId);
+            if (entry != null && !entry.failing) {
+                entries.put(userId, new Entry(entry.body, entry.cachedAt, true));
+            }
+        }
+    }
+
+    /**
+     * 裏での取得し直しを開始する（ユーザーごとに同時に1件まで）
+     *
+     * @return 開始してよい場合は true（完了したら finishRevalidation を呼ぶ）
+     */
+    public boolean startRevalidation(UUID userId) {
+        if (!revalidating.add(userId)) {
+            return false;
+        }
+        revalidations.incrementAndGet();
+        return true;
+    }
+
+    public void finishRevalidation(UUID userId) {
+        revalidating.remove(userId);
+    }
+
+    /**
+     * 古い値として返せる残高を取得
+     *
+     * @return 保存されていない、または古すぎる場合はnull
+     */
+    public Entry get(UUID userId) {
+        synchronized (entries) {
+            Entry entry = entries.get(userId);
+            if (entry != null && Duration.between(entry.cachedAt, clock.instant()).compareTo(maxAge) > 0) {
+                entries.remove(userId);
+                return null;
+            }
+            return entry;
+        }
+    }
+
+    /**
+     * 保存済みの残高から stale マーカー付きのレスポンスを生成
+     * ボディに "stale": true と "cachedAt" を追加し、キャッシュさせないヘッダーを付ける
+     */
+    public Response toStaleResponse(Entry entry) {
+        staleServed.incrementAndGet();
+        long ageSeconds = Math.max(0, Duration.between(entry.cachedAt, clock.instant()).getSeconds());
+        return Response.ok(entry.toStaleJson().toString())
+                .header("Warning", "110 - \"Response is Stale\"")
+                .header("X-Bff-Stale", "true")
+                .header("Age", ageSeconds)
+                .header("Cache-Control", "no-store")
+                .build();
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("size", size());
+        metrics.put("maxEntries", maxEntries);
+        metrics.put("updates", updates.get());
+        metrics.put("staleServed", staleServed.get());
+        metrics.put("evictions", evictions.get());
+        metrics.put("revalidations", revalidations.get());
+        return metrics;
+    }
+
+    /**
+     * 保存された残高
+     */
+    public static final class Entry {
+        private final byte[] body;
+        private final Instant cachedAt;
+        // 保存後に取得に失敗したか
+        private final boolean failing;
+
+        Entry(byte[] body, Instant cachedAt) {
+            this(body, cachedAt, false);
+        }
+
+        private Entry(byte[] body, Instant cachedAt, boolean failing) {
+            this.body = body;
+            this.cachedAt = cachedAt;
+            this.failing = failing;
+        }
+
+        public Instant getCachedAt() {
+            return cachedAt;
+        }
+
+        public boolean isFailing() {
+            return failing;
+        }
+
+        JsonObject toStaleJson() {
+            JsonObjectBuilder builder = Json.createObjectBuilder();
+            try (JsonReader reader = Json.createReader(new ByteArrayInputStream(body))) {
+                JsonValue value = reader.readValue();
+                if (value.getValueType() == JsonValue.ValueType.OBJECT) {
+                    ((JsonObject) value).forEach(builder::add);
+                }
+            }
+            return builder
+                    .add("stale", true)
+                    .add("cachedAt", cachedAt.toString())
+                    .build();
+        }
+    }
+}
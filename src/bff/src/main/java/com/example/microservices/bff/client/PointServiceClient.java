@@ -1,48 +1,84 @@
 package com.example.microservices.bff.client;
 
+import javax.annotation.PostConstruct;
 import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
 import javax.ws.rs.client.Client;
-import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import java.util.concurrent.CompletionStage;
 
 /**
  * ポイントサービスクライアント
+ * 呼び出しは非同期で行い、結果を CompletionStage で返す
+ * サーキットブレーカーが開いている場合は下流を呼び出さずに CallNotPermittedException で失敗する
+ * 参照系（GET）は同一リクエストの同時実行をまとめ、応答が遅い場合はヘッジリクエストを送る
  */
 @ApplicationScoped
 public class PointServiceClient {
 
     private static final String POINT_SERVICE_URL = System.getenv().getOrDefault("POINT_SERVICE_URL", "http://localhost:8084");
-    private final Client client;
+    private static final String SERVICE_NAME = "point-service";
 
-    public PointServiceClient() {
-        this.client = ClientBuilder.newClient();
+    @Inject
+    private HttpTransport httpTransport;
+
+    @Inject
+    private RequestCoalescer requestCoalescer;
+
+    @Inject
+    private RequestHedger requestHedger;
+
+    private Client client;
+    private DownstreamGuard guard;
+
+    @PostConstruct
+    void init() {
+        // コネクションプール付きの共有クライアントを使用
+        this.client = httpTransport.clientFor(SERVICE_NAME);
+        // サーキットブレーカー・バルクヘッドで保護
+        this.guard = httpTransport.guardFor(SERVICE_NAME);
     }
 
     /**
      * ポイント残高取得
      * GET /api/points
      */
-    public Response getPoints(String jwtToken) {
+    public CompletionStage<Response> getPoints(String jwtToken) {
+        return getPoints(jwtToken, null);
+    }
+
+    /**
+     * ポイント残高取得（条件付きGET、変更がなければ304）
+     */
+    public CompletionStage<Response> getPoints(String jwtToken, String ifNoneMatch) {
         WebTarget target = client.target(POINT_SERVICE_URL)
                 .path("/point-service/api/points");
-        return target.request(MediaType.APPLICATION_JSON)
-                .header("Authorization", "Bearer " + jwtToken)
-                .get();
+        return requestCoalescer.execute(
+                RequestCoalescer.key(SERVICE_NAME, "/points", jwtToken, ifNoneMatch),
+                () -> requestHedger.execute(SERVICE_NAME + " /points",
+                        () -> guard.call(() -> target.request(MediaType.APPLICATION_JSON)
+                                .header("Authorization", "Bearer " + jwtToken)
+                                .header(HttpHeaders.IF_NONE_MATCH, ifNoneMatch)
+                                .rx().get())));
     }
 
     /**
      * ポイント履歴取得
      * GET /api/points/history?page={page}&limit={limit}
      */
-    public Response getPointHistory(String jwtToken, int page, int limit) {
+    public CompletionStage<Response> getPointHistory(String jwtToken, int page, int limit) {
         WebTarget target = client.target(POINT_SERVICE_URL)
                 .path("/point-service/api/points/history")
                 .queryParam("page", page)
                 .queryParam("limit", limit);
-        return target.request(MediaType.APPLICATION_JSON)
-                .header("Authorization", "Bearer " + jwtToken)
-                .get();
+        return requestCoalescer.execute(
+                RequestCoalescer.key(SERVICE_NAME, "/points/history?page=" + page + "&limit=" + limit, jwtToken),
+                () -> requestHedger.execute(SERVICE_NAME + " /points/history",
+                        () -> guard.call(() -> target.request(MediaType.APPLICATION_JSON)
+                                .header("Authorization", "Bearer " + jwtToken)
+                                .rx().get())));
     }
 }
@@ -0,0 +1,166 @@
+package com.example.microservices.bff.client;
+
+import com.example.microservices.bff.config.BffConfig;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.ws.rs.core.Response;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 同一の冪等なGETリクエストの同時実行をまとめる（single-flight）
+ * 同じキーの呼び出しが実行中であれば新たに下流を呼び出さず、その結果を共有する
+ * 合流した呼び出し元がいる場合のみ、結果を BufferedResponse としてメモリに読み込んでから共有する
+ * （合流がなければ下流のレスポンスをそのまま返し、ストリーミング中継を妨げない）
+ * キーには呼び出し元の認証情報（トークンのダイジェスト）を含め、異なるユーザーの結果を混ぜない
+ *
+ * 設定: BFF_COALESCE_ENABLED（デフォルト true）
+ */
+@ApplicationScoped
+public class RequestCoalescer {
+
+    private final boolean enabled;
+    private final ConcurrentHashMap<String, Flight> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong leaders = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    public RequestCoalescer() {
+        this(BffConfig.getBoolean("BFF_COALESCE_ENABLED", true));
+    }
+
+    RequestCoalescer(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * 呼び出しキーを生成
+     *
+     * @param serviceName サービス名
+     * @param path        パスとクエリ
+     * @param credential  認証情報（トークンなど、なければnull）
+     */
+    public static String key(String serviceName, String path, String credential) {
+        return key(serviceName, path, credential, null);
+    }
+
+    /**
+     * 条件付きGETの呼び出しキーを生成（If-None-Match が異なれば結果も異なるため別のキーにする）
+     */
+    public static String key(String serviceName, String path, String credential, String ifNoneMatch) {
+        StringBuilder key = new StringBuilder(serviceName).append(' ').append(path);
+        if (credential != null) {
+            key.append(' ').append(digest(credential));
+        }
+        if (ifNoneMatch != null) {
+            key.append(" If-None-Match:").append(ifNoneMatch);
+        }
+        return key.toString();
+    }
+
+    /**
+     * 同じキーの実行中の呼び出しがあれば結果を共有し、なければ新たに呼び出す
+     * 合流した呼び出しがなければ、先頭の呼び出し元には下流のレスポンスをそのまま（ストリーミングのまま）返す
+     */
+    public CompletionStage<Response> execute(String key, Supplier<CompletionStage<Response>> call) {
+        if (!enabled) {
+            return call.get();
+        }
+
+        while (true) {
+            Flight flight = new Flight();
+            Flight existing = inFlight.putIfAbsent(key, flight);
+            if (existing == null) {
+                return lead(key, flight, call);
+            }
+            synchronized (existing) {
+                if (!existing.sealed) {
+                    existing.followers++;
+                    coalesced.incrementAndGet();
+                    return existing.shared;
+                }
+            }
+            // 完了処理中の呼び出し（直後に inFlight から取り除かれる）には合流せず、やり直す
+            inFlight.remove(key, existing);
+        }
+    }
+
+    private CompletionStage<Response> lead(String key, Flight flight, Supplier<CompletionStage<Response>> call) {
+        leaders.incrementAndGet();
+        CompletableFuture<Response> own = new CompletableFuture<>();
+        try {
+            call.get().whenComplete((response, error) -> {
+                // 完了後に届いたリクエストは新たに下流を呼び出す
+                inFlight.remove(key, flight);
+                int followers;
+                synchronized (flight) {
+                    flight.sealed = true;
+                    followers = flight.followers;
+                }
+                if (error != null) {
+                    own.completeExceptionally(error);
+                    flight.shared.completeExceptionally(error);
+                    return;
+                }
+                if (followers == 0) {
+                    own.complete(response);
+                    return;
+                }
+                // 合流した呼び出し元がいる場合のみメモリに読み込んで共有する
+                try {
+                    BufferedResponse buffered = BufferedResponse.of(response);
+                    own.complete(buffered);
+                    flight.shared.complete(buffered);
+                } catch (RuntimeException e) {
+                    own.completeExceptionally(e);
+                    flight.shared.completeExceptionally(e);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(key, flight);
+            synchronized (flight) {
+                flight.sealed = true;
+            }
+            own.completeExceptionally(e);
+            flight.shared.completeExceptionally(e);
+        }
+        return own;
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", enabled);
+        metrics.put("inFlight", inFlight.size());
+        metrics.put("downstreamCalls", leaders.get());
+        metrics.put("coalescedCalls", coalesced.get());
+        return metrics;
+    }
+
+    private static String digest(String value) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            byte[] hash = md.digest(value.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * 実行中の呼び出し（合流した呼び出し元の数と、完了処理に入ったかどうか）
+     */
+    private static final class Flight {
+        private final CompletableFuture<Response> shared = new CompletableFuture<>();
+        private int followers;
+        private boolean sealed;
+    }
+}
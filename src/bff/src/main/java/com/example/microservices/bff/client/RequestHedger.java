@@ -0,0 +1,256 @@
+package com.example.microservices.bff.client;
+
+import com.example.microservices.bff.config.BffConfig;
+
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.ws.rs.core.Response;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 冪等な読み取りのヘッジリクエスト
+ * 最初の呼び出しが一定時間（直近の応答時間のパーセンタイル）内に返らなければ2回目を送り、先に返った方を使う
+ * 負けた方のレスポンスは届き次第閉じて接続を解放する
+ * 追加の負荷は全体のヘッジ予算（リクエスト数に対する割合）で制限する
+ * 非冪等な呼び出し（POST/PUT/DELETE）には使わないこと
+ *
+ * 設定:
+ * - BFF_HEDGE_ENABLED         有効/無効（デフォルト false）
+ * - BFF_HEDGE_BUDGET_PERCENT  リクエスト数に対するヘッジの上限割合（デフォルト 10）
+ * - BFF_HEDGE_PERCENTILE      ヘッジまでの待ち時間に使う応答時間のパーセンタイル（デフォルト 95）
+ * - BFF_HEDGE_MIN_DELAY_MS / BFF_HEDGE_MAX_DELAY_MS  待ち時間の下限 / 上限
+ * - BFF_HEDGE_MIN_SAMPLES     ヘッジを始めるのに必要な応答時間のサンプル数
+ */
+@ApplicationScoped
+public class RequestHedger {
+
+    private static final int WINDOW_SIZE = 1000;
+    private static final int RECOMPUTE_INTERVAL = 100;
+    // 予算は 1/100 トークン単位で管理し、最大10回分まで貯める
+    private static final long CREDITS_PER_HEDGE = 100;
+    private static final long MAX_CREDITS = 10 * CREDITS_PER_HEDGE;
+
+    private final boolean enabled;
+    private final int budgetPercent;
+    private final int percentile;
+    private final long minDelayNanos;
+    private final long maxDelayNanos;
+    private final int minSamples;
+
+    private final ConcurrentHashMap<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+    private final AtomicLong credits = new AtomicLong(MAX_CREDITS);
+    private final ScheduledExecutorService scheduler;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private final AtomicLong budgetExhausted = new AtomicLong();
+
+    public RequestHedger() {
+        this(BffConfig.getBoolean("BFF_HEDGE_ENABLED", false),
+                BffConfig.getInt("BFF_HEDGE_BUDGET_PERCENT", 10),
+                BffConfig.getInt("BFF_HEDGE_PERCENTILE", 95),
+                BffConfig.getLong("BFF_HEDGE_MIN_DELAY_MS", 20),
+                BffConfig.getLong("BFF_HEDGE_MAX_DELAY_MS", 1000),
+                BffConfig.getInt("BFF_HEDGE_MIN_SAMPLES", 50));
+    }
+
+    RequestHedger(boolean enabled, int budgetPercent, int percentile,
+                  long minDelayMillis, long maxDelayMillis, int minSamples) {
+        this.enabled = enabled;
+        this.budgetPercent = Math.max(0, budgetPercent);
+        this.percentile = Math.max(1, Math.min(100, percentile));
+        this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(minDelayMillis);
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(minDelayMillis, maxDelayMillis));
+        this.minSamples = Math.min(WINDOW_SIZE, Math.max(0, minSamples));
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "bff-hedge-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * ヘッジ付きで呼び出す
+     *
+     * @param operation 応答時間を集計する単位（例: "point-service /points"）
+     * @param attempt   1回分の呼び出し（冪等であること）
+     */
+    public CompletionStage<Response> execute(String operation, Supplier<CompletionStage<Response>> attempt) {
+        if (!enabled) {
+            return attempt.get();
+        }
+
+        requests.incrementAndGet();
+        credits.accumulateAndGet(budgetPercent, (current, add) -> Math.min(MAX_CREDITS, current + add));
+
+        LatencyWindow window = latencies.computeIfAbsent(operation, k -> new LatencyWindow());
+        Race race = new Race(window);
+        race.launch(attempt, false);
+
+        long delay = window.hedgeDelayNanos();
+        if (delay >= 0 && !race.result.isDone()) {
+            ScheduledFuture<?> timer = scheduler.schedule(() -> {
+                if (race.result.isDone()) {
+                    return;
+                }
+                if (!tryAcquireBudget()) {
+                    budgetExhausted.incrementAndGet();
+                    return;
+                }
+                hedges.incrementAndGet();
+                race.launch(attempt, true);
+            }, delay, TimeUnit.NANOSECONDS);
+            race.result.whenComplete((response, error) -> timer.cancel(false));
+        }
+        return race.result;
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", enabled);
+        metrics.put("requests", requests.get());
+        metrics.put("hedges", hedges.get());
+        metrics.put("hedgeWins", hedgeWins.get());
+        metrics.put("budgetExhausted", budgetExhausted.get());
+        metrics.put("budgetTokens", credits.get() / (double) CREDITS_PER_HEDGE);
+        Map<String, Object> delays = new TreeMap<>();
+        latencies.forEach((operation, window) -> {
+            long delay = window.hedgeDelayNanos();
+            delays.put(operation, delay < 0 ? null : delay / 1_000_000.0);
+        });
+        metrics.put("hedgeDelayMillis", delays);
+        return metrics;
+    }
+
+    private boolean tryAcquireBudget() {
+        while (true) {
+            long current = credits.get();
+            if (current < CREDITS_PER_HEDGE) {
+                return false;
+            }
+            if (credits.compareAndSet(current, current - CREDITS_PER_HEDGE)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 1回のリクエストに対する複数の呼び出しの競争
+     * 最初に成功（5xx以外）した応答を採用し、全て失敗した場合は最後の失敗を返す
+     */
+    private final class Race {
+        private final CompletableFuture<Response> result = new CompletableFuture<>();
+        private final LatencyWindow window;
+        private final AtomicInteger outstanding = new AtomicInteger();
+
+        Race(LatencyWindow window) {
+            this.window = window;
+        }
+
+        void launch(Supplier<CompletionStage<Response>> attempt, boolean hedge) {
+            outstanding.incrementAndGet();
+            long start = System.nanoTime();
+            CompletionStage<Response> stage;
+            try {
+                stage = attempt.get();
+            } catch (RuntimeException e) {
+                onComplete(null, e, start, hedge);
+                return;
+            }
+            stage.whenComplete((response, error) -> onComplete(response, error, start, hedge));
+        }
+
+        private void onComplete(Response response, Throwable error, long start, boolean hedge) {
+            boolean success = error == null && response.getStatus() < 500;
+            if (success) {
+                window.record(System.nanoTime() - start);
+            }
+            int remaining = outstanding.decrementAndGet();
+
+            if (success) {
+                if (result.complete(response)) {
+                    if (hedge) {
+                        hedgeWins.incrementAndGet();
+                    }
+                } else {
+                    // 負けた呼び出しの応答は閉じて接続をプールへ返す
+                    response.close();
+                }
+                return;
+            }
+
+            // 他の呼び出しが残っていればそちらを待つ（失敗の再試行はしないので、残りがなければ失敗を返す）
+            if (remaining > 0) {
+                if (response != null) {
+                    response.close();
+                }
+                return;
+            }
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else if (!result.complete(response)) {
+                response.close();
+            }
+        }
+    }
+
+    /**
+     * 直近の応答時間（成功分）のリングバッファとパーセンタイル
+     */
+    private final class LatencyWindow {
+        private final long[] samples = new long[WINDOW_SIZE];
+        private int position;
+        private int count;
+        private int sinceRecompute;
+        private volatile long hedgeDelayNanos = -1;
+
+        synchronized void record(long latencyNanos) {
+            samples[position] = latencyNanos;
+            position = (position + 1) % samples.length;
+            if (count < samples.length) {
+                count++;
+            }
+            if (++sinceRecompute >= RECOMPUTE_INTERVAL || hedgeDelayNanos < 0) {
+                sinceRecompute = 0;
+                recompute();
+            }
+        }
+
+        long hedgeDelayNanos() {
+            if (hedgeDelayNanos < 0 && minSamples == 0) {
+                return minDelayNanos;
+            }
+            return hedgeDelayNanos;
+        }
+
+        private void recompute() {
+            if (count < minSamples || count == 0) {
+                return;
+            }
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100.0 * count) - 1;
+            long value = sorted[Math.max(0, Math.min(count - 1, index))];
+            hedgeDelayNanos = Math.max(minDelayNanos, Math.min(maxDelayNanos, value));
+        }
+    }
+}
@@ -1,82 +1,125 @@
 package com.example.microservices.bff.client;
 
+import javax.annotation.PostConstruct;
 import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
 import javax.ws.rs.client.Client;
-import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletionStage;
 
 /**
  * ユーザーサービスクライアント
+ * 呼び出しは非同期で行い、結果を CompletionStage で返す
+ * サーキットブレーカーが開いている場合は下流を呼び出さずに CallNotPermittedException で失敗する
+ * 参照系（GET）は同一リクエストの同時実行をまとめる
  */
 @ApplicationScoped
 public class UserServiceClient {
 
     private static final String USER_SERVICE_URL = System.getenv().getOrDefault("USER_SERVICE_URL", "http://localhost:8080");
-    private final Client client;
+    private static final String SERVICE_NAME = "user-service";
 
-    public UserServiceClient() {
-        this.client = ClientBuilder.newClient();
+    @Inject
+    private HttpTransport httpTransport;
+
+    @Inject
+    private RequestCoalescer requestCoalescer;
+
+    private Client client;
+    private DownstreamGuard guard;
+
+    @PostConstruct
+    void init() {
+        // コネクションプール付きの共有クライアントを使用
+        this.client = httpTransport.clientFor(SERVICE_NAME);
+        // サーキットブレーカー・バルクヘッドで保護
+        this.guard = httpTransport.guardFor(SERVICE_NAME);
     }
 
     /**
      * ユーザー情報取得
      */
-    public Response getUser(UUID userId) {
+    public CompletionStage<Response> getUser(UUID userId) {
+        return getUser(userId, null);
+    }
+
+    /**
+     * ユーザー情報取得（条件付きGET、変更がなければ304）
+     */
+    public CompletionStage<Response> getUser(UUID userId, String ifNoneMatch) {
         WebTarget target = client.target(USER_SERVICE_URL)
                 .path("/user-service/api/users/" + userId);
-        return target.request(MediaType.APPLICATION_JSON).get();
+        return requestCoalescer.execute(
+                RequestCoalescer.key(SERVICE_NAME, "/users/" + userId, null, ifNoneMatch),
+                () -> guard.call(() -> target.request(MediaType.APPLICATION_JSON)
+                        .header(HttpHeaders.IF_NONE_MATCH, ifNoneMatch)
+                        .rx().get()));
     }
 
     /**
      * ユーザーアカウント情報取得（ユーザー情報 + ポイント）
      */
-    public Response getUserAccount(UUID userId) {
+    public CompletionStage<Response> getUserAccount(UUID userId) {
+        return getUserAccount(userId, null);
+    }
+
+    /**
+     * ユーザーアカウント情報取得（条件付きGET、変更がなければ304）
+     */
+    public CompletionStage<Response> getUserAccount(UUID userId, String ifNoneMatch) {
         WebTarget target = client.target(USER_SERVICE_URL)
                 .path("/user-service/api/users/" + userId + "/account");
-        return target.request(MediaType.APPLICATION_JSON).get();
+        return requestCoalescer.execute(
+                RequestCoalescer.key(SERVICE_NAME, "/users/" + userId + "/account", null, ifNoneMatch),
+                () -> guard.call(() -> target.request(MediaType.APPLICATION_JSON)
+                        .header(HttpHeaders.IF_NONE_MATCH, ifNoneMatch)
+                        .rx().get()));
     }
 
     /**
      * 全ユーザー取得
      */
-    public Response getAllUsers() {
+    public CompletionStage<Response> getAllUsers() {
         WebTarget target = client.target(USER_SERVICE_URL)
                 .path("/user-service/api/users");
-        return target.request(MediaType.APPLICATION_JSON).get();
+        return requestCoalescer.execute(
+                RequestCoalescer.key(SERVICE_NAME, "/users", null),
+                () -> guard.call(() -> target.request(MediaType.APPLICATION_JSON).rx().get()));
     }
 
     /**
      * ユーザー作成
      */
-    public Response createUser(Map<String, Object> userData) {
+    public CompletionStage<Response> createUser(Map<String, Object> userData) {
         WebTarget target = client.target(USER_SERVICE_URL)
                 .path("/user-service/api/users");
-        return target.request(MediaType.APPLICATION_JSON)
-                .post(Entity.entity(userData, MediaType.APPLICATION_JSON));
+        return guard.call(() -> target.request(MediaType.APPLICATION_JSON)
+                        .rx().post(Entity.entity(userData, MediaType.APPLICATION_JSON)));
     }
 
     /**
      * ユーザー更新
      */
-    public Response updateUser(UUID userId, Map<String, Object> userData) {
+    public CompletionStage<Response> updateUser(UUID userId, Map<String, Object> userData) {
         WebTarget target = client.target(USER_SERVICE_URL)
                 .path("/user-service/api/users/" + userId);
-        return target.request(MediaType.APPLICATION_JSON)
-                .put(Entity.entity(userData, MediaType.APPLICATION_JSON));
+        return guard.call(() -> target.request(MediaType.APPLICATION_JSON)
+                        .rx().put(Entity.entity(userData, MediaType.APPLICATION_JSON)));
     }
 
     /**
      * ユーザー削除
      */
-    public Response deleteUser(UUID userId) {
+    public CompletionStage<Response> deleteUser(UUID userId) {
         WebTarget target = client.target(USER_SERVICE_URL)
                 .path("/user-service/api/users/" + userId);
-        return target.request(MediaType.APPLICATION_JSON).delete();
+        return guard.call(() -> target.request(MediaType.APPLICATION_JSON).rx().delete());
     }
 }
@@ -0,0 +1,355 @@
+package com.example.microservices.bff.filter;
+
+import com.example.microservices.bff.config.BffConfig;
+
+import javax.annotation.Priority;
+import javax.inject.Inject;
+import javax.ws.rs.Path;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * レスポンス圧縮（gzip / deflate）
+ * Accept-Encoding から圧縮方式を選び、ボディを溜め込まずにストリーミングで圧縮する
+ * 閾値未満の小さいボディは圧縮しない（閾値までは書き込みをバッファし、超えた時点で圧縮を開始する）
+ *
+ * 設定:
+ * - BFF_COMPRESSION_ENABLED    圧縮の有効/無効（デフォルト true）
+ * - BFF_COMPRESSION_MIN_BYTES  圧縮する最小サイズ（デフォルト 1024）
+ * - BFF_COMPRESSION_LEVEL      圧縮レベル 1-9（デフォルト 6）
+ * - BFF_COMPRESSION_CPU_SAMPLE_RATE  圧縮CPU時間を計測する割合 1/N（デフォルト 0 = 計測しない）
+ */
+@Provider
+@Priority(Priorities.ENTITY_CODER)
+public class CompressionInterceptor implements ContainerRequestFilter, WriterInterceptor {
+
+    private static final String ACCEPT_ENCODING_PROPERTY = CompressionInterceptor.class.getName() + ".acceptEncoding";
+    private static final String ROUTE_PROPERTY = CompressionInterceptor.class.getName() + ".route";
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+    private final boolean enabled;
+    private final int minBytes;
+    private final int level;
+    private final int cpuSampleRate;
+
+    @Inject
+    private CompressionMetrics metrics;
+
+    @Context
+    private ResourceInfo resourceInfo;
+
+    public CompressionInterceptor() {
+        this(null, BffConfig.getBoolean("BFF_COMPRESSION_ENABLED", true),
+                BffConfig.getInt("BFF_COMPRESSION_MIN_BYTES", 1024),
+                BffConfig.getInt("BFF_COMPRESSION_LEVEL", 6),
+                BffConfig.getInt("BFF_COMPRESSION_CPU_SAMPLE_RATE", 0));
+    }
+
+    CompressionInterceptor(CompressionMetrics metrics, boolean enabled, int minBytes, int level, int cpuSampleRate) {
+        this.metrics = metrics;
+        this.enabled = enabled;
+        this.minBytes = Math.max(0, minBytes);
+        this.level = Math.max(Deflater.BEST_SPEED, Math.min(Deflater.BEST_COMPRESSION, level));
+        this.cpuSampleRate = Math.max(0, cpuSampleRate);
+    }
+
+    /**
+     * 非同期レスポンスは別スレッドで書き込まれるため、必要な情報をリクエストのプロパティに保存しておく
+     */
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        requestContext.setProperty(ACCEPT_ENCODING_PROPERTY,
+                requestContext.getHeaderString(HttpHeaders.ACCEPT_ENCODING));
+        requestContext.setProperty(ROUTE_PROPERTY, routeOf(requestContext.getMethod()));
+    }
+
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+        MultivaluedMap<String, Object> headers = context.getHeaders();
+        if (!enabled || headers.containsKey(HttpHeaders.CONTENT_ENCODING) || !isCompressible(context.getMediaType())) {
+            context.proceed();
+            return;
+        }
+
+        headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        String encoding = negotiate((String) context.getProperty(ACCEPT_ENCODING_PROPERTY));
+        if (encoding == null) {
+            context.proceed();
+            return;
+        }
+
+        String route = (String) context.getProperty(ROUTE_PROPERTY);
+        CompressingOutputStream stream = new CompressingOutputStream(context.getOutputStream(), headers, encoding,
+                sampleCpuTime());
+        context.setOutputStream(stream);
+        try {
+            context.proceed();
+        } finally {
+            stream.close();
+            if (metrics != null) {
+                metrics.record(route == null ? "unknown" : route, stream.compressing,
+                        stream.bytesIn, stream.countingOut.count, stream.timed, stream.cpuNanos);
+            }
+        }
+    }
+
+    /**
+     * スレッドCPU時間の取得は書き込みごとに呼ぶと重いため、1/N のレスポンスだけ計測する
+     */
+    private boolean sampleCpuTime() {
+        return cpuSampleRate > 0
+                && (cpuSampleRate == 1 || ThreadLocalRandom.current().nextInt(cpuSampleRate) == 0);
+    }
+
+    /**
+     * Accept-Encoding から圧縮方式を選ぶ（gzip を優先、q=0 は除外）
+     *
+     * @return "gzip" / "deflate"、圧縮しない場合はnull
+     */
+    static String negotiate(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isEmpty()) {
+            return null;
+        }
+        double gzip = -1;
+        double deflate = -1;
+        double wildcard = -1;
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.trim().split(";");
+            String coding = tokens[0].trim().toLowerCase(Locale.ROOT);
+            double q = 1.0;
+            for (int i = 1; i < tokens.length; i++) {
+                String param = tokens[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        q = Double.parseDouble(param.substring(2));
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            if ("gzip".equals(coding) || "x-gzip".equals(coding)) {
+                gzip = q;
+            } else if ("deflate".equals(coding)) {
+                deflate = q;
+            } else if ("*".equals(coding)) {
+                wildcard = q;
+            }
+        }
+        if (gzip < 0) {
+            gzip = wildcard;
+        }
+        if (deflate < 0) {
+            deflate = wildcard;
+        }
+        if (gzip > 0 && gzip >= deflate) {
+            return "gzip";
+        }
+        if (deflate > 0) {
+            return "deflate";
+        }
+        return null;
+    }
+
+    private static boolean isCompressible(MediaType mediaType) {
+        if (mediaType == null) {
+            return true;
+        }
+        String subtype = mediaType.getSubtype().toLowerCase(Locale.ROOT);
+        return "text".equalsIgnoreCase(mediaType.getType())
+                || subtype.equals("json") || subtype.endsWith("+json")
+                || subtype.equals("xml") || subtype.endsWith("+xml");
+    }
+
+    private String routeOf(String httpMethod) {
+        if (resourceInfo == null || resourceInfo.getResourceMethod() == null) {
+            return httpMethod + " (unmatched)";
+        }
+        Method method = resourceInfo.getResourceMethod();
+        Path classPath = resourceInfo.getResourceClass().getAnnotation(Path.class);
+        Path methodPath = method.getAnnotation(Path.class);
+        return httpMethod + " " + (classPath == null ? "" : classPath.value())
+                + (methodPath == null ? "" : methodPath.value());
+    }
+
+    /**
+     * 閾値までは書き込みをバッファし、超えた時点で圧縮を開始する出力ストリーム
+     * ヘッダーは最初にボディを書き出す直前に確定する
+     */
+    private final class CompressingOutputStream extends OutputStream {
+        private final CountingOutputStream countingOut;
+        private final MultivaluedMap<String, Object> headers;
+        private final String encoding;
+        private final boolean timed;
+        private byte[] pending = new byte[Math.max(1, minBytes)];
+        private int pendingLength;
+        private OutputStream target;
+        private Deflater deflater;
+        private boolean compressing;
+        private boolean closed;
+        private long bytesIn;
+        private long cpuNanos;
+
+        CompressingOutputStream(OutputStream out, MultivaluedMap<String, Object> headers, String encoding,
+                                boolean timed) {
+            this.countingOut = new CountingOutputStream(out);
+            this.headers = headers;
+            this.encoding = encoding;
+            this.timed = timed;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return;
+            }
+            bytesIn += len;
+            if (target == null) {
+                if (pendingLength + len < minBytes) {
+                    System.arraycopy(b, off, pending, pendingLength, len);
+                    pendingLength += len;
+                    return;
+                }
+                startCompression();
+            }
+            writeTarget(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            // 閾値に達するまではフラッシュしない（ヘッダーが確定してしまうため）
+            if (target != null) {
+                target.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                if (target == null) {
+                    // 閾値未満なのでそのまま書き出す
+                    target = countingOut;
+                    target.write(pending, 0, pendingLength);
+                    target.flush();
+                } else if (!timed) {
+                    target.close();
+                } else {
+                    long start = THREAD_MX_BEAN.getCurrentThreadCpuTime();
+                    target.close();
+                    cpuNanos += THREAD_MX_BEAN.getCurrentThreadCpuTime() - start;
+                }
+            } finally {
+                pending = null;
+                // deflate 用に生成した Deflater は DeflaterOutputStream が解放しない
+                if (deflater != null) {
+                    deflater.end();
+                }
+            }
+        }
+
+        private void startCompression() throws IOException {
+            compressing = true;
+            headers.putSingle(HttpHeaders.CONTENT_ENCODING, encoding);
+            headers.remove(HttpHeaders.CONTENT_LENGTH);
+            // 圧縮後は別の表現になるため強いETagを弱いETagにする（下流での If-None-Match 判定は弱い比較で一致する）
+            Object etag = headers.getFirst(HttpHeaders.ETAG);
+            if (etag != null && !String.valueOf(etag).startsWith("W/")) {
+                headers.putSingle(HttpHeaders.ETAG, "W/" + etag);
+            }
+
+            if ("gzip".equals(encoding)) {
+                target = new LeveledGzipOutputStream(countingOut, level);
+            } else {
+                deflater = new Deflater(level);
+                target = new DeflaterOutputStream(countingOut, deflater, 8192);
+            }
+            writeTarget(pending, 0, pendingLength);
+            pending = null;
+        }
+
+        private void writeTarget(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return;
+            }
+            if (!timed) {
+                target.write(b, off, len);
+                return;
+            }
+            long start = THREAD_MX_BEAN.getCurrentThreadCpuTime();
+            target.write(b, off, len);
+            cpuNanos += THREAD_MX_BEAN.getCurrentThreadCpuTime() - start;
+        }
+    }
+
+    /**
+     * 圧縮レベルを指定できる GZIPOutputStream
+     */
+    private static final class LeveledGzipOutputStream extends GZIPOutputStream {
+        LeveledGzipOutputStream(OutputStream out, int level) throws IOException {
+            super(out, 8192);
+            def.setLevel(level);
+        }
+    }
+
+    /**
+     * 書き出したバイト数を数える出力ストリーム
+     */
+    private static final class CountingOutputStream extends OutputStream {
+        private final OutputStream out;
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            // コンテナのストリームはコンテナが閉じる
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.microservices.bff.filter;
+
+import javax.enterprise.context.ApplicationScoped;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * レスポンス圧縮のメトリクス（ルートごと）
+ * 圧縮前後のバイト数と圧縮にかかったCPU時間を集計し、帯域とCPUのトレードオフを確認できるようにする
+ * CPU時間はサンプリングしたレスポンスのみの合計（cpuSampledResponses で割ると1件あたりの目安になる）
+ */
+@ApplicationScoped
+public class CompressionMetrics {
+
+    private final ConcurrentHashMap<String, RouteStats> routes = new ConcurrentHashMap<>();
+
+    void record(String route, boolean compressed, long bytesIn, long bytesOut, boolean timed, long cpuNanos) {
+        RouteStats stats = routes.computeIfAbsent(route, k -> new RouteStats());
+        stats.responses.increment();
+        stats.bytesIn.add(bytesIn);
+        stats.bytesOut.add(bytesOut);
+        if (compressed) {
+            stats.compressedResponses.increment();
+            if (timed) {
+                stats.cpuSampledResponses.increment();
+                stats.cpuNanos.add(cpuNanos);
+            }
+        }
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> metrics = new TreeMap<>();
+        routes.forEach((route, stats) -> {
+            long bytesIn = stats.bytesIn.sum();
+            long bytesOut = stats.bytesOut.sum();
+            Map<String, Object> routeMetrics = new TreeMap<>();
+            routeMetrics.put("responses", stats.responses.sum());
+            routeMetrics.put("compressedResponses", stats.compressedResponses.sum());
+            routeMetrics.put("bytesIn", bytesIn);
+            routeMetrics.put("bytesOut", bytesOut);
+            routeMetrics.put("compressionRatio", bytesIn == 0 ? 1.0 : (double) bytesOut / bytesIn);
+            routeMetrics.put("cpuSampledResponses", stats.cpuSampledResponses.sum());
+            routeMetrics.put("cpuMillis", stats.cpuNanos.sum() / 1_000_000.0);
+            metrics.put(route, routeMetrics);
+        });
+        return metrics;
+    }
+
+    private static final class RouteStats {
+        private final LongAdder responses = new LongAdder();
+        private final LongAdder compressedResponses = new LongAdder();
+        private final LongAdder bytesIn = new LongAdder();
+        private final LongAdder bytesOut = new LongAdder();
+        private final LongAdder cpuSampledResponses = new LongAdder();
+        private final LongAdder cpuNanos = new LongAdder();
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.microservices.bff.filter;
+
+import com.example.microservices.bff.config.BffConfig;
+import com.example.microservices.bff.security.RateLimiter;
+import com.example.microservices.bff.security.TokenAuthenticator;
+import com.example.microservices.bff.security.UserPrincipal;
+
+import javax.annotation.Priority;
+import javax.inject.Inject;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.Provider;
+import java.util.Collections;
+import java.util.Optional;
+
+/**
+ * エッジでのレート制限
+ * 下流サービスを呼び出す前に、クライアントIP（ログイン・参照系）とユーザーID（参照系）で制限する
+ * ユーザー名でのログイン制限はリクエストボディが必要なため BffResource.login で行う
+ * 制限を超えた場合は 429 と Retry-After を返す
+ *
+ * 設定: BFF_RATE_LIMIT_TRUST_FORWARDED_FOR  X-Forwarded-For の先頭をクライアントIPとして使う（デフォルト false）
+ */
+@Provider
+@Priority(Priorities.AUTHENTICATION - 100)
+public class RateLimitFilter implements ContainerRequestFilter {
+
+    private static final boolean TRUST_FORWARDED_FOR =
+            BffConfig.getBoolean("BFF_RATE_LIMIT_TRUST_FORWARDED_FOR", false);
+
+    @Inject
+    private RateLimiter rateLimiter;
+
+    @Inject
+    private TokenAuthenticator tokenAuthenticator;
+
+    @Context
+    private HttpServletRequest servletRequest;
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        String method = requestContext.getMethod();
+        String path = requestContext.getUriInfo().getPath();
+        if (path.startsWith("/")) {
+            path = path.substring(1);
+        }
+
+        RateLimiter.Route route;
+        if (HttpMethod.POST.equals(method) && path.equals("api/login")) {
+            route = RateLimiter.Route.LOGIN;
+        } else if ((HttpMethod.GET.equals(method) && path.startsWith("api/") && !path.startsWith("api/metrics"))
+                || (HttpMethod.POST.equals(method) && path.equals("api/batch"))) {
+            // バッチはここではIP単位で1回分、ユーザー単位の制限はサブリクエストごとに BatchResource で行う
+            route = RateLimiter.Route.READ;
+        } else {
+            return;
+        }
+
+        long retryAfter = rateLimiter.tryAcquire(route, RateLimiter.Dimension.IP, clientIp(requestContext));
+        if (retryAfter == 0 && route == RateLimiter.Route.READ) {
+            // JWTはローカルで検証できるので、検証済みのユーザーIDで制限する（偽造したIDで他人の枠を消費させない）
+            // 検証結果はリクエスト属性に保存され、リソースの認証で再利用される（署名の検証は1回だけ）
+            String token = TokenAuthenticator.extractBearerToken(requestContext.getHeaderString(HttpHeaders.AUTHORIZATION));
+            if (token != null && tokenAuthenticator.isJwt(token)) {
+                Optional<UserPrincipal> principal = tokenAuthenticator.verifyJwtForRequest(requestContext, token);
+                if (principal.isPresent()) {
+                    retryAfter = rateLimiter.tryAcquire(route, RateLimiter.Dimension.USER,
+                            principal.get().getUserId().toString());
+                }
+            }
+        }
+
+        if (retryAfter > 0) {
+            requestContext.abortWith(tooManyRequests(retryAfter));
+        }
+    }
+
+    /**
+     * 429 Too Many Requests
+     */
+    public static Response tooManyRequests(long retryAfterSeconds) {
+        return Response.status(429)
+                .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds)
+                .type(MediaType.APPLICATION_JSON_TYPE)
+                .entity(Collections.singletonMap("error", "Too Many Requests"))
+                .build();
+    }
+
+    private String clientIp(ContainerRequestContext requestContext) {
+        if (TRUST_FORWARDED_FOR) {
+            String forwardedFor = requestContext.getHeaderString("X-Forwarded-For");
+            if (forwardedFor != null && !forwardedFor.isEmpty()) {
+                return forwardedFor.split(",")[0].trim();
+            }
+        }
+        return servletRequest == null ? null : servletRequest.getRemoteAddr();
+    }
+}
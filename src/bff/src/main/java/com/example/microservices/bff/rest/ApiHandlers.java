@@ -0,0 +1,180 @@
+package com.example.microservices.bff.rest;
+
+import com.example.microservices.bff.client.BufferedResponse;
+import com.example.microservices.bff.client.PointBalanceFallbackCache;
+import com.example.microservices.bff.client.PointServiceClient;
+import com.example.microservices.bff.client.UserServiceClient;
+import com.example.microservices.bff.config.BffConfig;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.core.Response;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 参照系エンドポイントの処理（認証済みのリクエストを下流サービスへ転送する）
+ * BffResource の各エンドポイントと BatchResource のサブリクエストで共用し、
+ * バッチ経由でも同じ振る舞い（残高の最終正常値へのフォールバックなど）にする
+ */
+@ApplicationScoped
+public class ApiHandlers {
+
+    // 残高取得の待ち時間の上限（超えた場合は最終正常値を返す）
+    private static final long POINTS_SOFT_DEADLINE_MILLIS = BffConfig.getLong("BFF_POINTS_SOFT_DEADLINE_MS", 1000);
+
+    @Inject
+    private UserServiceClient userServiceClient;
+
+    @Inject
+    private PointServiceClient pointServiceClient;
+
+    @Inject
+    private PointBalanceFallbackCache pointBalanceFallbackCache;
+
+    public ApiHandlers() {
+    }
+
+    ApiHandlers(UserServiceClient userServiceClient, PointServiceClient pointServiceClient,
+                PointBalanceFallbackCache pointBalanceFallbackCache) {
+        this.userServiceClient = userServiceClient;
+        this.pointServiceClient = pointServiceClient;
+        this.pointBalanceFallbackCache = pointBalanceFallbackCache;
+    }
+
+    /**
+     * ユーザーアカウント情報（GET /api/account）
+     */
+    public CompletionStage<Response> getAccount(UUID userId, String ifNoneMatch) {
+        return userServiceClient.getUserAccount(userId, ifNoneMatch).thenApply(StreamingRelay::relay);
+    }
+
+    /**
+     * ユーザー情報（GET /api/users/{id}）
+     */
+    public CompletionStage<Response> getUser(UUID id, String ifNoneMatch) {
+        return userServiceClient.getUser(id, ifNoneMatch).thenApply(StreamingRelay::relay);
+    }
+
+    /**
+     * 全ユーザー（GET /api/users）
+     */
+    public CompletionStage<Response> getAllUsers() {
+        return userServiceClient.getAllUsers().thenApply(StreamingRelay::relay);
+    }
+
+    /**
+     * ポイント残高（GET /api/points）
+     * Point Serviceが停止・遅延している場合は最後に取得できた残高を stale として返す
+     * （遅延時も下流の呼び出しは続け、完了したらキャッシュを更新する）
+     * 一度失敗したユーザーは、正常に取得できるまで下流を待たずに stale を返し、裏で取得し直す
+     */
+    public CompletionStage<Response> getPoints(String token, UUID userId, String ifNoneMatch) {
+        PointBalanceFallbackCache.Entry fallback = pointBalanceFallbackCache.get(userId);
+        if (fallback != null && fallback.isFailing()) {
+            revalidatePoints(token, userId);
+            return CompletableFuture.completedFuture(pointBalanceFallbackCache.toStaleResponse(fallback));
+        }
+
+        CompletableFuture<BufferedResponse> fetch = fetchPoints(token, userId, ifNoneMatch);
+        if (fallback == null) {
+            return fetch.handle(ApiHandlers::relayPointResponse);
+        }
+        return fetch
+                .handle((response, error) -> isPointServiceFailure(response, error)
+                        ? pointBalanceFallbackCache.toStaleResponse(fallback)
+                        : relayPointResponse(response, null))
+                .completeOnTimeout(null, POINTS_SOFT_DEADLINE_MILLIS, TimeUnit.MILLISECONDS)
+                .thenApply(response -> {
+                    if (response != null) {
+                        return response;
+                    }
+                    // 遅延も障害として扱い、以降は待たずに stale を返す
+                    pointBalanceFallbackCache.markFailing(userId);
+                    return pointBalanceFallbackCache.toStaleResponse(fallback);
+                });
+    }
+
+    /**
+     * 残高を取得し、結果で最終正常値を更新する（失敗した場合は印を付ける）
+     * 残高は小さいのでバッファする
+     */
+    private CompletableFuture<BufferedResponse> fetchPoints(String token, UUID userId, String ifNoneMatch) {
+        CompletableFuture<BufferedResponse> fetch = pointServiceClient.getPoints(token, ifNoneMatch)
+                .thenApply(BufferedResponse::of)
+                .toCompletableFuture();
+        fetch.whenComplete((response, error) -> {
+            if (isPointServiceFailure(response, error)) {
+                pointBalanceFallbackCache.markFailing(userId);
+            } else {
+                pointBalanceFallbackCache.put(userId, response);
+            }
+        });
+        return fetch;
+    }
+
+    /**
+     * 裏で残高を取得し直す（ユーザーごとに同時に1件まで）
+     * 本文が必要なので If-None-Match は付けない
+     */
+    private void revalidatePoints(String token, UUID userId) {
+        if (!pointBalanceFallbackCache.startRevalidation(userId)) {
+            return;
+        }
+        try {
+            fetchPoints(token, userId, null)
+                    .whenComplete((response, error) -> pointBalanceFallbackCache.finishRevalidation(userId));
+        } catch (RuntimeException e) {
+            pointBalanceFallbackCache.finishRevalidation(userId);
+        }
+    }
+
+    /**
+     * ポイント履歴（GET /api/points/history）
+     */
+    public CompletionStage<Response> getPointHistory(String token, int page, int limit) {
+        return pointServiceClient.getPointHistory(token, page, limit).handle(ApiHandlers::relayPointResponse);
+    }
+
+    /**
+     * Point Serviceの障害（接続エラー・拒否・5xx）かどうか
+     */
+    private static boolean isPointServiceFailure(Response pointResponse, Throwable error) {
+        return error != null || pointResponse.getStatus() >= 500;
+    }
+
+    /**
+     * Point Serviceのレスポンスを返す（停止時は503）
+     */
+    private static Response relayPointResponse(Response pointResponse, Throwable error) {
+        if (error != null) {
+            Throwable cause = BffResource.unwrap(error);
+            if (cause instanceof ProcessingException || cause instanceof RejectedExecutionException) {
+                // Point Service接続エラー（停止時など）
+                return serviceUnavailable();
+            }
+            throw new CompletionException(cause);
+        }
+
+        // Point Service停止時のエラーハンドリング（ボディは読まずに接続を解放）
+        int status = pointResponse.getStatus();
+        if (status == 503 || status == 502 || status == 504) {
+            pointResponse.close();
+            return serviceUnavailable();
+        }
+
+        return StreamingRelay.relay(pointResponse);
+    }
+
+    private static Response serviceUnavailable() {
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                .entity(Collections.singletonMap("error", "Service Unavailable"))
+                .build();
+    }
+}
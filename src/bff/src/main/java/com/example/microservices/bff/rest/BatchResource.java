@@ -0,0 +1,230 @@
+package com.example.microservices.bff.rest;
+
+import com.example.microservices.bff.config.BffConfig;
+import com.example.microservices.bff.security.RateLimiter;
+import com.example.microservices.bff.security.TokenAuthenticator;
+import com.example.microservices.bff.security.UserPrincipal;
+
+import javax.inject.Inject;
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * バッチAPI
+ * POST /api/batch
+ * 複数の参照系リクエストを1回の往復で実行する（トークン検証は1回だけ行い、各リクエストは並列に実行）
+ * 各リクエストは BffResource と同じ処理（ApiHandlers）で実行し、失敗はそのリクエストの status にだけ反映する
+ *
+ * リクエスト例:
+ * {"requests": [
+ *   {"id": "balance", "method": "GET", "path": "/api/points"},
+ *   {"id": "history", "method": "GET", "path": "/api/points/history", "query": {"page": 2, "limit": 20}}
+ * ]}
+ * レスポンス例（リクエストと同じ順序）:
+ * {"responses": [
+ *   {"id": "balance", "status": 200, "body": {...}},
+ *   {"id": "history", "status": 503, "error": "Service Unavailable"}
+ * ]}
+ *
+ * 設定: BFF_BATCH_MAX_REQUESTS  1回のバッチで受け付ける最大リクエスト数（デフォルト 20）
+ */
+@Path("/api/batch")
+@Produces(MediaType.APPLICATION_JSON)
+@Consumes(MediaType.APPLICATION_JSON)
+public class BatchResource {
+
+    private static final int MAX_REQUESTS = BffConfig.getInt("BFF_BATCH_MAX_REQUESTS", 20);
+
+    private static final Pattern USER_PATH = Pattern.compile("/api/users/([^/]+)");
+
+    @Inject
+    private ApiHandlers apiHandlers;
+
+    @Inject
+    private TokenAuthenticator tokenAuthenticator;
+
+    @Inject
+    private RateLimiter rateLimiter;
+
+    public BatchResource() {
+    }
+
+    BatchResource(ApiHandlers apiHandlers, TokenAuthenticator tokenAuthenticator, RateLimiter rateLimiter) {
+        this.apiHandlers = apiHandlers;
+        this.tokenAuthenticator = tokenAuthenticator;
+        this.rateLimiter = rateLimiter;
+    }
+
+    @POST
+    public CompletionStage<Response> executeBatch(@HeaderParam("Authorization") String authHeader, JsonObject body) {
+        JsonArray requests = body == null ? null : body.getJsonArray("requests");
+        if (requests == null) {
+            return completed(error(Response.Status.BAD_REQUEST, "requests is required"));
+        }
+        if (requests.size() > MAX_REQUESTS) {
+            return completed(error(Response.Status.BAD_REQUEST, "Too many requests in batch (max " + MAX_REQUESTS + ")"));
+        }
+
+        String token = TokenAuthenticator.extractBearerToken(authHeader);
+        if (token == null) {
+            return completed(error(Response.Status.UNAUTHORIZED, "Unauthorized"));
+        }
+
+        try {
+            // トークン検証は1回だけ
+            return tokenAuthenticator.authenticateToken(token)
+                    .thenCompose(principal -> {
+                        if (!principal.isPresent()) {
+                            return completed(error(Response.Status.UNAUTHORIZED, "Invalid token"));
+                        }
+
+                        List<CompletableFuture<DashboardSection>> results = new ArrayList<>();
+                        for (JsonValue request : requests) {
+                            results.add(execute(request, token, principal.get()));
+                        }
+                        return CompletableFuture.allOf(results.toArray(new CompletableFuture[0]))
+                                .thenApply(v -> createBatchResponse(requests, results));
+                    })
+                    .exceptionally(e -> error(Response.Status.INTERNAL_SERVER_ERROR,
+                            "Batch failed: " + BffResource.unwrap(e).getMessage()));
+        } catch (Exception e) {
+            return completed(error(Response.Status.INTERNAL_SERVER_ERROR, "Batch failed: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * 1件のサブリクエストを実行（失敗しても例外にはせず、そのリクエストの status にする）
+     */
+    private CompletableFuture<DashboardSection> execute(JsonValue value, String token, UserPrincipal principal) {
+        try {
+            if (value.getValueType() != JsonValue.ValueType.OBJECT) {
+                return section(400, "Request must be an object");
+            }
+            JsonObject request = (JsonObject) value;
+            String method = request.getString("method", "GET");
+            String path = request.getString("path", null);
+
+            if (path == null) {
+                return section(400, "path is required");
+            }
+            if (!"GET".equalsIgnoreCase(method)) {
+                return section(405, "Only GET is supported in batch");
+            }
+
+            Supplier<CompletionStage<Response>> call = route(path, queryOf(request), token, principal);
+            if (call == null) {
+                return section(404, "Unknown path: " + path);
+            }
+
+            // 下流の呼び出し1回ごとにユーザー単位のレート制限を適用
+            if (rateLimiter.tryAcquire(RateLimiter.Route.READ, RateLimiter.Dimension.USER,
+                    principal.getUserId().toString()) > 0) {
+                return section(429, "Too Many Requests");
+            }
+
+            return call.get().handle(DashboardSection::ofRelayed).toCompletableFuture();
+        } catch (IllegalArgumentException e) {
+            // query・UUID・数値の形式エラー
+            return section(400, "Invalid request: " + e.getMessage());
+        } catch (RuntimeException e) {
+            return CompletableFuture.completedFuture(DashboardSection.of(null, e));
+        }
+    }
+
+    /**
+     * パスに対応する BffResource と同じ処理（未知のパスは null）
+     * パラメーターはここで解釈し、形式エラーは IllegalArgumentException にする
+     */
+    private Supplier<CompletionStage<Response>> route(String path, Map<String, String> query, String token,
+                                                      UserPrincipal principal) {
+        Matcher userMatcher = USER_PATH.matcher(path);
+        if ("/api/account".equals(path)) {
+            return () -> apiHandlers.getAccount(principal.getUserId(), null);
+        } else if ("/api/users".equals(path)) {
+            return apiHandlers::getAllUsers;
+        } else if (userMatcher.matches()) {
+            UUID id = UUID.fromString(userMatcher.group(1));
+            return () -> apiHandlers.getUser(id, null);
+        } else if ("/api/points".equals(path)) {
+            return () -> apiHandlers.getPoints(token, principal.getUserId(), null);
+        } else if ("/api/points/history".equals(path)) {
+            int page = Integer.parseInt(query.getOrDefault("page", "1"));
+            int limit = Integer.parseInt(query.getOrDefault("limit", "10"));
+            return () -> apiHandlers.getPointHistory(token, page, limit);
+        }
+        return null;
+    }
+
+    private Response createBatchResponse(JsonArray requests, List<CompletableFuture<DashboardSection>> results) {
+        JsonArrayBuilder responses = Json.createArrayBuilder();
+        for (int i = 0; i < results.size(); i++) {
+            DashboardSection result = results.get(i).join();
+            JsonObjectBuilder item = Json.createObjectBuilder();
+            JsonValue request = requests.get(i);
+            if (request.getValueType() == JsonValue.ValueType.OBJECT && ((JsonObject) request).containsKey("id")) {
+                item.add("id", ((JsonObject) request).get("id"));
+            }
+            item.add("status", result.getStatus());
+            if (result.isSuccessful()) {
+                item.add("body", result.getBody());
+            } else {
+                item.add("error", result.getError());
+            }
+            responses.add(item);
+        }
+        return Response.ok(Json.createObjectBuilder().add("responses", responses).build().toString()).build();
+    }
+
+    private static Map<String, String> queryOf(JsonObject request) {
+        JsonValue queryValue = request.get("query");
+        if (queryValue == null || queryValue.getValueType() == JsonValue.ValueType.NULL) {
+            return Collections.emptyMap();
+        }
+        if (queryValue.getValueType() != JsonValue.ValueType.OBJECT) {
+            throw new IllegalArgumentException("query must be an object");
+        }
+        JsonObject query = (JsonObject) queryValue;
+        Map<String, String> values = new LinkedHashMap<>();
+        query.forEach((name, value) -> values.put(name, value.getValueType() == JsonValue.ValueType.STRING
+                ? ((JsonString) value).getString()
+                : value.toString()));
+        return values;
+    }
+
+    private static CompletableFuture<DashboardSection> section(int status, String message) {
+        return CompletableFuture.completedFuture(DashboardSection.failed(status, message));
+    }
+
+    private static Response error(Response.Status status, String message) {
+        return Response.status(status)
+                .entity(Collections.singletonMap("error", message))
+                .build();
+    }
+
+    private static <T> CompletionStage<T> completed(T value) {
+        return CompletableFuture.completedFuture(value);
+    }
+}
@@ -1,21 +1,35 @@
 package com.example.microservices.bff.rest;
 
 import com.example.microservices.bff.client.AuthServiceClient;
+import com.example.microservices.bff.client.CallNotPermittedException;
 import com.example.microservices.bff.client.PointServiceClient;
 import com.example.microservices.bff.client.UserServiceClient;
+import com.example.microservices.bff.filter.RateLimitFilter;
+import com.example.microservices.bff.security.RateLimiter;
+import com.example.microservices.bff.security.TokenAuthenticator;
 
 import javax.inject.Inject;
-import javax.json.JsonObject;
+import javax.json.Json;
+import javax.json.JsonObjectBuilder;
 import javax.ws.rs.*;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
 
 /**
  * BFF REST API
  * フロントエンドからのリクエストを各マイクロサービスにプロキシ
+ * 各エンドポイントは CompletionStage を返し、下流サービスのI/O待ちの間コンテナのスレッドを解放する
  */
 @Path("/api")
 @Produces(MediaType.APPLICATION_JSON)
@@ -31,6 +45,23 @@ public class BffResource {
     @Inject
     private PointServiceClient pointServiceClient;
 
+    @Inject
+    private TokenAuthenticator tokenAuthenticator;
+
+    @Inject
+    private ApiHandlers apiHandlers;
+
+    @Inject
+    private RateLimiter rateLimiter;
+
+    public BffResource() {
+    }
+
+    BffResource(AuthServiceClient authServiceClient, TokenAuthenticator tokenAuthenticator) {
+        this.authServiceClient = authServiceClient;
+        this.tokenAuthenticator = tokenAuthenticator;
+    }
+
     // ==================== 認証エンドポイント ====================
 
     /**
@@ -38,29 +69,39 @@ public class BffResource {
      */
     @POST
     @Path("/login")
-    public Response login(Map<String, Object> loginData) {
+    public CompletionStage<Response> login(Map<String, Object> loginData) {
         try {
             // リクエストボディの検証とログ出力
             System.out.println("Login request received: " + loginData);
-            
+
             if (loginData == null || !loginData.containsKey("password")) {
-                return createErrorResponse("Username and password are required");
+                return completed(createErrorResponse("Username and password are required"));
             }
 
-            // userId または username を取得
-            Object userIdObj = loginData.get("userId");
-            Object usernameObj = loginData.get("username");
-            String password = (String) loginData.get("password");
+            // ユーザー名（またはユーザーID）ごとのレート制限（クライアントIPごとの制限は RateLimitFilter で実施済み）
+            Object loginKey = loginData.containsKey("username") ? loginData.get("username") : loginData.get("userId");
+            if (loginKey != null) {
+                long retryAfter = rateLimiter.tryAcquire(RateLimiter.Route.LOGIN, RateLimiter.Dimension.USER,
+                        loginKey.toString());
+                if (retryAfter > 0) {
+                    return completed(RateLimitFilter.tooManyRequests(retryAfter));
+                }
+            }
 
             // loginData をそのまま転送
-            Response authResponse = authServiceClient.login(loginData);
-            String body = authResponse.readEntity(String.class);
-            return Response.status(authResponse.getStatus())
-                    .entity(body)
-                    .build();
+            return authServiceClient.login(loginData)
+                    .thenApply(this::relay)
+                    .exceptionally(e -> {
+                        Response response = createFailureResponse("Login failed", e);
+                        // サーキットブレーカー・バルクヘッドによる拒否（503）は想定内のためログに出さない
+                        if (response.getStatus() == Response.Status.INTERNAL_SERVER_ERROR.getStatusCode()) {
+                            System.err.println("Login failed: " + unwrap(e));
+                        }
+                        return response;
+                    });
         } catch (Exception e) {
             e.printStackTrace();
-            return createErrorResponse("Login failed: " + e.getMessage());
+            return completed(createErrorResponse("Login failed: " + e.getMessage()));
         }
     }
 
@@ -69,20 +110,28 @@ public class BffResource {
      */
     @POST
     @Path("/logout")
-    public Response logout(@HeaderParam("Authorization") String authHeader) {
+    public CompletionStage<Response> logout(@HeaderParam("Authorization") String authHeader) {
         try {
             if (authHeader == null || !authHeader.startsWith("Bearer ")) {
-                return createErrorResponse("Invalid authorization header");
+                return completed(createErrorResponse("Invalid authorization header"));
             }
 
             String token = authHeader.substring(7);
-            Response authResponse = authServiceClient.logout(token);
-            String body = authResponse.readEntity(String.class);
-            return Response.status(authResponse.getStatus())
-                    .entity(body)
-                    .build();
+            return authServiceClient.logout(token)
+                    .thenApply(authResponse -> {
+                        boolean loggedOut = authResponse.getStatusInfo().getFamily() == Response.Status.Family.SUCCESSFUL;
+                        Response response = relay(authResponse);
+                        // 検証済みトークンのキャッシュを破棄
+                        tokenAuthenticator.invalidate(token);
+                        if (loggedOut) {
+                            // JWTは失効一覧の次の取得を待たずにこのノードで拒否する
+                            tokenAuthenticator.revoke(token);
+                        }
+                        return response;
+                    })
+                    .exceptionally(e -> createFailureResponse("Logout failed", e));
         } catch (Exception e) {
-            return createErrorResponse("Logout failed: " + e.getMessage());
+            return completed(createErrorResponse("Logout failed: " + e.getMessage()));
         }
     }
 
@@ -91,20 +140,38 @@ public class BffResource {
      */
     @GET
     @Path("/verify")
-    public Response verifyToken(@HeaderParam("Authorization") String authHeader) {
+    public CompletionStage<Response> verifyToken(@HeaderParam("Authorization") String authHeader) {
         try {
             if (authHeader == null || !authHeader.startsWith("Bearer ")) {
-                return createErrorResponse("Invalid authorization header");
+                return completed(createErrorResponse("Invalid authorization header"));
             }
 
             String token = authHeader.substring(7);
-            Response authResponse = authServiceClient.verifyToken(token);
-            String body = authResponse.readEntity(String.class);
-            return Response.status(authResponse.getStatus())
-                    .entity(body)
-                    .build();
+
+            // JWTはローカルで検証（Auth Serviceと同じレスポンス形式）
+            if (tokenAuthenticator.isJwt(token)) {
+                return tokenAuthenticator.authenticateToken(token).thenApply(principal -> {
+                    if (!principal.isPresent()) {
+                        return Response.status(Response.Status.UNAUTHORIZED)
+                                .entity(createErrorMap("Invalid token"))
+                                .build();
+                    }
+                    Map<String, Object> response = new HashMap<>();
+                    response.put("valid", true);
+                    response.put("userId", principal.get().getUserId().toString());
+                    if (principal.get().getUsername() != null) {
+                        response.put("username", principal.get().getUsername());
+                    }
+                    return Response.ok(response).build();
+                });
+            }
+
+            // レガシーセッショントークンはAuth Serviceで検証
+            return authServiceClient.verifyToken(token)
+                    .thenApply(this::relay)
+                    .exceptionally(e -> createFailureResponse("Verification failed", e));
         } catch (Exception e) {
-            return createErrorResponse("Verification failed: " + e.getMessage());
+            return completed(createErrorResponse("Verification failed: " + e.getMessage()));
         }
     }
 
@@ -112,41 +179,34 @@ public class BffResource {
 
     /**
      * 会員画面用：ユーザーアカウント情報取得（認証付き）
+     * If-None-Match はUser Serviceに転送し、変更がなければ304を返す
      */
     @GET
     @Path("/account")
-    public Response getAccount(@HeaderParam("Authorization") String authHeader) {
+    public CompletionStage<Response> getAccount(@HeaderParam("Authorization") String authHeader,
+                                                @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
         try {
             // トークン検証
             if (authHeader == null || !authHeader.startsWith("Bearer ")) {
-                return Response.status(Response.Status.UNAUTHORIZED)
+                return completed(Response.status(Response.Status.UNAUTHORIZED)
                         .entity(createErrorMap("Invalid authorization header"))
-                        .build();
-            }
-
-            String token = authHeader.substring(7);
-            Response verifyResponse = authServiceClient.verifyToken(token);
-            
-            if (verifyResponse.getStatus() != 200) {
-                return Response.status(Response.Status.UNAUTHORIZED)
-                        .entity(createErrorMap("Invalid or expired token"))
-                        .build();
+                        .build());
             }
 
-            // トークンから userId を取得
-            String verifyBody = verifyResponse.readEntity(String.class);
-            // 簡易的な実装（実際はJSON パースが必要）
-            UUID userId = extractUserIdFromVerifyResponse(verifyBody);
-
-            // ユーザーアカウント情報取得
-            Response userResponse = userServiceClient.getUserAccount(userId);
-            String body = userResponse.readEntity(String.class);
-            
-            return Response.status(userResponse.getStatus())
-                    .entity(body)
-                    .build();
+            return tokenAuthenticator.authenticate(authHeader)
+                    .thenCompose(principal -> {
+                        if (!principal.isPresent()) {
+                            return completed(Response.status(Response.Status.UNAUTHORIZED)
+                                    .entity(createErrorMap("Invalid or expired token"))
+                                    .build());
+                        }
+
+                        // ユーザーアカウント情報取得
+                        return apiHandlers.getAccount(principal.get().getUserId(), ifNoneMatch);
+                    })
+                    .exceptionally(e -> createFailureResponse("Failed to get account", e));
         } catch (Exception e) {
-            return createErrorResponse("Failed to get account: " + e.getMessage());
+            return completed(createErrorResponse("Failed to get account: " + e.getMessage()));
         }
     }
 
@@ -155,32 +215,33 @@ public class BffResource {
      */
     @GET
     @Path("/users/{id}")
-    public Response getUser(@PathParam("id") String idParam, @HeaderParam("Authorization") String authHeader) {
+    public CompletionStage<Response> getUser(@PathParam("id") String idParam,
+                                             @HeaderParam("Authorization") String authHeader,
+                                             @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
         try {
             // UUIDバリデーション
             UUID id;
             try {
                 id = UUID.fromString(idParam);
             } catch (IllegalArgumentException e) {
-                return Response.status(Response.Status.BAD_REQUEST)
+                return completed(Response.status(Response.Status.BAD_REQUEST)
                         .entity(createErrorMap("Invalid UUID format"))
-                        .build();
+                        .build());
             }
 
             // 認証チェック
-            if (!isAuthenticated(authHeader)) {
-                return Response.status(Response.Status.UNAUTHORIZED)
-                        .entity(createErrorMap("Unauthorized"))
-                        .build();
-            }
-
-            Response userResponse = userServiceClient.getUser(id);
-            String body = userResponse.readEntity(String.class);
-            return Response.status(userResponse.getStatus())
-                    .entity(body)
-                    .build();
+            return isAuthenticated(authHeader)
+                    .thenCompose(authenticated -> {
+                        if (!authenticated) {
+                            return completed(Response.status(Response.Status.UNAUTHORIZED)
+                                    .entity(createErrorMap("Unauthorized"))
+                                    .build());
+                        }
+                        return apiHandlers.getUser(id, ifNoneMatch);
+                    })
+                    .exceptionally(e -> createFailureResponse("Failed to get user", e));
         } catch (Exception e) {
-            return createErrorResponse("Failed to get user: " + e.getMessage());
+            return completed(createErrorResponse("Failed to get user: " + e.getMessage()));
         }
     }
 
@@ -189,22 +250,21 @@ public class BffResource {
      */
     @GET
     @Path("/users")
-    public Response getAllUsers(@HeaderParam("Authorization") String authHeader) {
+    public CompletionStage<Response> getAllUsers(@HeaderParam("Authorization") String authHeader) {
         try {
             // 認証チェック
-            if (!isAuthenticated(authHeader)) {
-                return Response.status(Response.Status.UNAUTHORIZED)
-                        .entity(createErrorMap("Unauthorized"))
-                        .build();
-            }
-
-            Response userResponse = userServiceClient.getAllUsers();
-            String body = userResponse.readEntity(String.class);
-            return Response.status(userResponse.getStatus())
-                    .entity(body)
-                    .build();
+            return isAuthenticated(authHeader)
+                    .thenCompose(authenticated -> {
+                        if (!authenticated) {
+                            return completed(Response.status(Response.Status.UNAUTHORIZED)
+                                    .entity(createErrorMap("Unauthorized"))
+                                    .build());
+                        }
+                        return apiHandlers.getAllUsers();
+                    })
+                    .exceptionally(e -> createFailureResponse("Failed to get users", e));
         } catch (Exception e) {
-            return createErrorResponse("Failed to get users: " + e.getMessage());
+            return completed(createErrorResponse("Failed to get users: " + e.getMessage()));
         }
     }
 
@@ -213,51 +273,38 @@ public class BffResource {
     /**
      * ポイント残高取得
      * GET /api/points
+     * If-None-Match はPoint Serviceに転送し、変更がなければ304を返す
+     * Point Serviceが停止・遅延している場合は最後に取得できた残高を stale として返す（ApiHandlers#getPoints）
      */
     @GET
     @Path("/points")
-    public Response getPoints(@HeaderParam("Authorization") String authHeader) {
+    public CompletionStage<Response> getPoints(@HeaderParam("Authorization") String authHeader,
+                                               @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
         try {
             // 認証チェック
             if (authHeader == null || !authHeader.startsWith("Bearer ")) {
-                return Response.status(Response.Status.UNAUTHORIZED)
+                return completed(Response.status(Response.Status.UNAUTHORIZED)
                         .entity(createErrorMap("Unauthorized"))
-                        .build();
+                        .build());
             }
 
             String token = authHeader.substring(7);
-            
-            // JWT検証
-            Response verifyResponse = authServiceClient.verifyToken(token);
-            if (verifyResponse.getStatus() != 200) {
-                return Response.status(Response.Status.UNAUTHORIZED)
-                        .entity(createErrorMap("Invalid token"))
-                        .build();
-            }
 
-            // Point Serviceにリクエストを転送
-            try {
-                Response pointResponse = pointServiceClient.getPoints(token);
-                String body = pointResponse.readEntity(String.class);
-                
-                // Point Service停止時のエラーハンドリング
-                if (isServiceUnavailable(pointResponse.getStatus())) {
-                    return Response.status(Response.Status.SERVICE_UNAVAILABLE)
-                            .entity(createErrorMap("Service Unavailable"))
-                            .build();
-                }
-                
-                return Response.status(pointResponse.getStatus())
-                        .entity(body)
-                        .build();
-            } catch (javax.ws.rs.ProcessingException e) {
-                // Point Service接続エラー（停止時など）
-                return Response.status(Response.Status.SERVICE_UNAVAILABLE)
-                        .entity(createErrorMap("Service Unavailable"))
-                        .build();
-            }
+            // トークン検証（JWTはBFF内でローカル検証）
+            return tokenAuthenticator.authenticateToken(token)
+                    .thenCompose(principal -> {
+                        if (!principal.isPresent()) {
+                            return completed(Response.status(Response.Status.UNAUTHORIZED)
+                                    .entity(createErrorMap("Invalid token"))
+                                    .build());
+                        }
+
+                        // Point Serviceにリクエストを転送（停止・遅延時は最終正常値）
+                        return apiHandlers.getPoints(token, principal.get().getUserId(), ifNoneMatch);
+                    })
+                    .exceptionally(e -> createFailureResponse("Failed to get points", e));
         } catch (Exception e) {
-            return createErrorResponse("Failed to get points: " + e.getMessage());
+            return completed(createErrorResponse("Failed to get points: " + e.getMessage()));
         }
     }
 
@@ -267,100 +314,192 @@ public class BffResource {
      */
     @GET
     @Path("/points/history")
-    public Response getPointHistory(
+    public CompletionStage<Response> getPointHistory(
             @HeaderParam("Authorization") String authHeader,
             @QueryParam("page") @DefaultValue("1") int page,
             @QueryParam("limit") @DefaultValue("10") int limit) {
         try {
             // 認証チェック
             if (authHeader == null || !authHeader.startsWith("Bearer ")) {
-                return Response.status(Response.Status.UNAUTHORIZED)
+                return completed(Response.status(Response.Status.UNAUTHORIZED)
                         .entity(createErrorMap("Unauthorized"))
-                        .build();
+                        .build());
             }
 
             String token = authHeader.substring(7);
-            
-            // JWT検証
-            Response verifyResponse = authServiceClient.verifyToken(token);
-            if (verifyResponse.getStatus() != 200) {
-                return Response.status(Response.Status.UNAUTHORIZED)
-                        .entity(createErrorMap("Invalid token"))
-                        .build();
-            }
 
-            // Point Serviceにリクエストを転送
-            try {
-                Response pointResponse = pointServiceClient.getPointHistory(token, page, limit);
-                String body = pointResponse.readEntity(String.class);
-                
-                // Point Service停止時のエラーハンドリング
-                if (isServiceUnavailable(pointResponse.getStatus())) {
-                    return Response.status(Response.Status.SERVICE_UNAVAILABLE)
-                            .entity(createErrorMap("Service Unavailable"))
-                            .build();
-                }
-                
-                return Response.status(pointResponse.getStatus())
-                        .entity(body)
-                        .build();
-            } catch (javax.ws.rs.ProcessingException e) {
-                // Point Service接続エラー（停止時など）
-                return Response.status(Response.Status.SERVICE_UNAVAILABLE)
-                        .entity(createErrorMap("Service Unavailable"))
-                        .build();
+            // トークン検証（JWTはBFF内でローカル検証）
+            return tokenAuthenticator.authenticateToken(token)
+                    .thenCompose(principal -> {
+                        if (!principal.isPresent()) {
+                            return completed(Response.status(Response.Status.UNAUTHORIZED)
+                                    .entity(createErrorMap("Invalid token"))
+                                    .build());
+                        }
+
+                        // Point Serviceにリクエストを転送
+                        return apiHandlers.getPointHistory(token, page, limit);
+                    })
+                    .exceptionally(e -> createFailureResponse("Failed to get point history", e));
+        } catch (Exception e) {
+            return completed(createErrorResponse("Failed to get point history: " + e.getMessage()));
+        }
+    }
+
+    // ==================== ダッシュボードエンドポイント ====================
+
+    /**
+     * 会員画面・ポイント画面用：アカウント情報・ポイント残高・ポイント履歴を一括取得
+     * GET /api/dashboard?page=1&limit=10
+     * トークン検証は1回だけ行い、3つの下流呼び出しを並列に実行する
+     * 一部のサービスが停止していても取得できた分を返す（partial: true と errors に失敗内容）
+     */
+    @GET
+    @Path("/dashboard")
+    public CompletionStage<Response> getDashboard(
+            @HeaderParam("Authorization") String authHeader,
+            @QueryParam("page") @DefaultValue("1") int page,
+            @QueryParam("limit") @DefaultValue("10") int limit) {
+        try {
+            // 認証チェック
+            if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+                return completed(Response.status(Response.Status.UNAUTHORIZED)
+                        .entity(createErrorMap("Unauthorized"))
+                        .build());
             }
+
+            String token = authHeader.substring(7);
+
+            return tokenAuthenticator.authenticateToken(token)
+                    .thenCompose(principal -> {
+                        if (!principal.isPresent()) {
+                            return completed(Response.status(Response.Status.UNAUTHORIZED)
+                                    .entity(createErrorMap("Invalid token"))
+                                    .build());
+                        }
+
+                        // 3つの下流呼び出しを並列に実行
+                        UUID userId = principal.get().getUserId();
+                        CompletableFuture<DashboardSection> account =
+                                fetchSection(() -> userServiceClient.getUserAccount(userId));
+                        CompletableFuture<DashboardSection> points =
+                                fetchSection(() -> pointServiceClient.getPoints(token));
+                        CompletableFuture<DashboardSection> history =
+                                fetchSection(() -> pointServiceClient.getPointHistory(token, page, limit));
+
+                        return CompletableFuture.allOf(account, points, history)
+                                .thenApply(v -> createDashboardResponse(account.join(), points.join(), history.join()));
+                    })
+                    .exceptionally(e -> createFailureResponse("Failed to get dashboard", e));
         } catch (Exception e) {
-            return createErrorResponse("Failed to get point history: " + e.getMessage());
+            return completed(createErrorResponse("Failed to get dashboard: " + e.getMessage()));
         }
     }
 
     // ==================== ヘルパーメソッド ====================
 
-    private boolean isAuthenticated(String authHeader) {
+    private CompletionStage<Boolean> isAuthenticated(String authHeader) {
         if (authHeader == null || !authHeader.startsWith("Bearer ")) {
-            return false;
+            return completed(false);
         }
 
         try {
-            String token = authHeader.substring(7);
-            Response verifyResponse = authServiceClient.verifyToken(token);
-            return verifyResponse.getStatus() == 200;
+            return tokenAuthenticator.authenticate(authHeader)
+                    .thenApply(Optional::isPresent)
+                    .exceptionally(e -> {
+                        // Auth Serviceのサーキットが開いている場合は401ではなく503にする
+                        Throwable cause = unwrap(e);
+                        if (cause instanceof CallNotPermittedException) {
+                            throw new CompletionException(cause);
+                        }
+                        return false;
+                    });
         } catch (Exception e) {
-            return false;
+            return completed(false);
         }
     }
 
-    private boolean isServiceUnavailable(int statusCode) {
-        return statusCode == 503 || statusCode == 502 || statusCode == 504;
+    /**
+     * 下流サービスのレスポンスをそのまま返す（ボディはストリーミングで中継）
+     */
+    private Response relay(Response downstream) {
+        return StreamingRelay.relay(downstream);
     }
 
-    private UUID extractUserIdFromVerifyResponse(String jsonResponse) {
-        // 簡易的な実装（実際は JSON ライブラリで適切にパースすべき）
-        // 例: {"valid":true,"userId":"550e8400-e29b-41d4-a716-446655440000","expiresAt":"..."}
+    /**
+     * ダッシュボードの1区画を取得（失敗しても例外にはしない）
+     */
+    private CompletableFuture<DashboardSection> fetchSection(Supplier<CompletionStage<Response>> call) {
         try {
-            String userIdKey = "\"userId\":";
-            int userIdIndex = jsonResponse.indexOf(userIdKey);
-            if (userIdIndex == -1) {
-                return null;
-            }
-            // Skip past "userId": to find the opening quote
-            String substring = jsonResponse.substring(userIdIndex + userIdKey.length());
-            int openQuoteIndex = substring.indexOf("\"");
-            if (openQuoteIndex == -1) {
-                return null;
-            }
-            // Find the closing quote after the opening quote
-            String afterOpenQuote = substring.substring(openQuoteIndex + 1);
-            int closeQuoteIndex = afterOpenQuote.indexOf("\"");
-            if (closeQuoteIndex == -1) {
-                return null;
+            return call.get().handle(DashboardSection::of).toCompletableFuture();
+        } catch (RuntimeException e) {
+            return CompletableFuture.completedFuture(DashboardSection.of(null, e));
+        }
+    }
+
+    /**
+     * ダッシュボードのレスポンスを組み立てる
+     * 全区画が失敗した場合のみ503を返す
+     */
+    private Response createDashboardResponse(DashboardSection account, DashboardSection points,
+                                             DashboardSection history) {
+        JsonObjectBuilder result = Json.createObjectBuilder();
+        JsonObjectBuilder errors = Json.createObjectBuilder();
+        int failures = 0;
+
+        String[] names = {"account", "points", "history"};
+        DashboardSection[] sections = {account, points, history};
+        for (int i = 0; i < sections.length; i++) {
+            if (sections[i].isSuccessful()) {
+                result.add(names[i], sections[i].getBody());
+            } else {
+                result.addNull(names[i]);
+                errors.add(names[i], sections[i].toErrorJson());
+                failures++;
             }
-            String userIdStr = afterOpenQuote.substring(0, closeQuoteIndex);
-            return UUID.fromString(userIdStr);
-        } catch (Exception e) {
-            return null;
         }
+
+        result.add("partial", failures > 0);
+        if (failures > 0) {
+            result.add("errors", errors);
+        }
+
+        Response.Status status = failures == sections.length
+                ? Response.Status.SERVICE_UNAVAILABLE
+                : Response.Status.OK;
+        return Response.status(status)
+                .entity(result.build().toString())
+                .build();
+    }
+
+    /**
+     * CompletionStage の例外ラッパーを外す
+     */
+    static Throwable unwrap(Throwable e) {
+        Throwable cause = e;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException)
+                && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    /**
+     * 非同期処理の失敗をレスポンスに変換
+     * サーキットブレーカー・バルクヘッドによる拒否や呼び出し待ち行列の溢れは503
+     */
+    private Response createFailureResponse(String message, Throwable error) {
+        Throwable cause = unwrap(error);
+        if (cause instanceof CallNotPermittedException || cause instanceof RejectedExecutionException) {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                    .entity(createErrorMap("Service Unavailable"))
+                    .build();
+        }
+        return createErrorResponse(message + ": " + cause.getMessage());
+    }
+
+    private static <T> CompletionStage<T> completed(T value) {
+        return CompletableFuture.completedFuture(value);
     }
 
     private Response createErrorResponse(String message) {
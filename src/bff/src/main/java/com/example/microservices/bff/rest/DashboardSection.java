@@ -0,0 +1,139 @@
+package com.example.microservices.bff.rest;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.JsonValue;
+import javax.json.stream.JsonParsingException;
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * ダッシュボードの1区画・バッチの1件（下流サービス1呼び出し分）の結果
+ * 成功時はレスポンスボディ、失敗時はステータスとエラーメッセージを保持する
+ */
+final class DashboardSection {
+
+    private final JsonValue body;
+    private final int status;
+    private final String error;
+
+    private DashboardSection(JsonValue body, int status, String error) {
+        this.body = body;
+        this.status = status;
+        this.error = error;
+    }
+
+    static DashboardSection failed(int status, String error) {
+        return new DashboardSection(null, status, error);
+    }
+
+    /**
+     * 下流サービスの呼び出し結果から区画を生成
+     */
+    static DashboardSection of(Response response, Throwable error) {
+        if (error != null) {
+            Throwable cause = BffResource.unwrap(error);
+            if (cause instanceof ProcessingException || cause instanceof RejectedExecutionException) {
+                return failed(503, "Service Unavailable");
+            }
+            return failed(500, String.valueOf(cause.getMessage()));
+        }
+
+        try {
+            return fromBody(response.getStatus(), response.readEntity(String.class));
+        } catch (ProcessingException e) {
+            return failed(502, "Invalid response: " + e.getMessage());
+        }
+    }
+
+    /**
+     * BFF自身が組み立てたレスポンス（ApiHandlers の戻り値）から区画を生成
+     * 本文は StreamingOutput（下流の中継）・文字列・エラーの Map のいずれか
+     */
+    static DashboardSection ofRelayed(Response response, Throwable error) {
+        if (error != null) {
+            return of(null, error);
+        }
+        Object entity = response.getEntity();
+        try {
+            String body;
+            if (entity instanceof StreamingOutput) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                ((StreamingOutput) entity).write(out);
+                body = new String(out.toByteArray(), StandardCharsets.UTF_8);
+            } else if (entity instanceof Map) {
+                @SuppressWarnings("unchecked")
+                Map<String, Object> map = (Map<String, Object>) entity;
+                body = Json.createObjectBuilder(map).build().toString();
+            } else {
+                body = entity == null ? "" : entity.toString();
+            }
+            return fromBody(response.getStatus(), body);
+        } catch (IOException e) {
+            return failed(502, "Invalid response: " + e.getMessage());
+        }
+    }
+
+    private static DashboardSection fromBody(int status, String body) {
+        if (status == 502 || status == 503 || status == 504) {
+            return failed(503, "Service Unavailable");
+        }
+        if (status < 200 || status >= 300) {
+            return failed(status, extractErrorMessage(body, status));
+        }
+        try {
+            return new DashboardSection(parse(body), status, null);
+        } catch (JsonParsingException e) {
+            return failed(502, "Invalid response: " + e.getMessage());
+        }
+    }
+
+    boolean isSuccessful() {
+        return error == null;
+    }
+
+    JsonValue getBody() {
+        return body;
+    }
+
+    int getStatus() {
+        return status;
+    }
+
+    String getError() {
+        return error;
+    }
+
+    JsonObject toErrorJson() {
+        return Json.createObjectBuilder()
+                .add("status", status)
+                .add("error", error)
+                .build();
+    }
+
+    private static JsonValue parse(String body) {
+        try (JsonReader reader = Json.createReader(new StringReader(body))) {
+            return reader.readValue();
+        }
+    }
+
+    private static String extractErrorMessage(String body, int status) {
+        try {
+            JsonValue value = parse(body);
+            if (value.getValueType() == JsonValue.ValueType.OBJECT) {
+                return ((JsonObject) value).getString("error", "HTTP " + status);
+            }
+        } catch (RuntimeException e) {
+            // JSON以外のエラーボディはステータスのみ返す
+        }
+        return "HTTP " + status;
+    }
+}
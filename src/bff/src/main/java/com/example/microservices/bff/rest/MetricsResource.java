@@ -0,0 +1,118 @@
+package com.example.microservices.bff.rest;
+
+import com.example.microservices.bff.client.HttpTransport;
+import com.example.microservices.bff.client.PointBalanceFallbackCache;
+import com.example.microservices.bff.client.RequestCoalescer;
+import com.example.microservices.bff.client.RequestHedger;
+import com.example.microservices.bff.config.BffConfig;
+import com.example.microservices.bff.filter.CompressionMetrics;
+import com.example.microservices.bff.security.JwksKeyStore;
+import com.example.microservices.bff.security.RateLimiter;
+import com.example.microservices.bff.security.TokenRevocationCache;
+import com.example.microservices.bff.security.VerifiedTokenCache;
+
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * BFF内部メトリクス
+ * GET /api/metrics
+ *
+ * 内部の状態（キャッシュ・プール・鍵ID など）を含むため、既定では公開しない（404）
+ * 設定:
+ * - BFF_METRICS_ENABLED  有効にする（デフォルト false）
+ * - BFF_METRICS_TOKEN    設定した場合、X-Metrics-Token ヘッダーに同じ値を持つリクエストのみ許可する（本番では必ず設定する）
+ */
+@Path("/api/metrics")
+@Produces(MediaType.APPLICATION_JSON)
+public class MetricsResource {
+
+    @Inject
+    private VerifiedTokenCache verifiedTokenCache;
+
+    @Inject
+    private HttpTransport httpTransport;
+
+    @Inject
+    private RequestCoalescer requestCoalescer;
+
+    @Inject
+    private RequestHedger requestHedger;
+
+    @Inject
+    private PointBalanceFallbackCache pointBalanceFallbackCache;
+
+    @Inject
+    private CompressionMetrics compressionMetrics;
+
+    @Inject
+    private RateLimiter rateLimiter;
+
+    @Inject
+    private TokenRevocationCache tokenRevocationCache;
+
+    @Inject
+    private JwksKeyStore jwksKeyStore;
+
+    private final boolean enabled;
+    private final byte[] token;
+
+    public MetricsResource() {
+        this(BffConfig.getBoolean("BFF_METRICS_ENABLED", false), BffConfig.getString("BFF_METRICS_TOKEN", null));
+    }
+
+    MetricsResource(boolean enabled, String token) {
+        this.enabled = enabled;
+        this.token = token == null ? null : token.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @GET
+    public Response getMetrics(@HeaderParam("X-Metrics-Token") String metricsToken) {
+        Response denied = checkAccess(metricsToken);
+        if (denied != null) {
+            return denied;
+        }
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("tokenCache", verifiedTokenCache.snapshot());
+        metrics.put("httpPools", httpTransport.snapshot());
+        metrics.put("coalescing", requestCoalescer.snapshot());
+        metrics.put("hedging", requestHedger.snapshot());
+        metrics.put("pointBalanceFallback", pointBalanceFallbackCache.snapshot());
+        metrics.put("compression", compressionMetrics.snapshot());
+        metrics.put("rateLimit", rateLimiter.snapshot());
+        metrics.put("tokenRevocations", tokenRevocationCache.snapshot());
+        metrics.put("signingKeys", jwksKeyStore.snapshot());
+        return Response.ok(metrics).build();
+    }
+
+    /**
+     * 参照を許可しない場合のレスポンス（許可する場合は null）
+     */
+    Response checkAccess(String metricsToken) {
+        if (!enabled) {
+            return error(Response.Status.NOT_FOUND, "Not Found");
+        }
+        // 長さ以外の情報が時間差で漏れないよう定数時間で比較する
+        if (token != null && (metricsToken == null
+                || !MessageDigest.isEqual(token, metricsToken.getBytes(StandardCharsets.UTF_8)))) {
+            return error(Response.Status.UNAUTHORIZED, "Unauthorized");
+        }
+        return null;
+    }
+
+    private static Response error(Response.Status status, String message) {
+        return Response.status(status)
+                .entity(Collections.singletonMap("error", message))
+                .build();
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.microservices.bff.rest;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 下流サービスのレスポンスボディをヒープに溜めずにそのままクライアントへ流す
+ * ステータスと主要なヘッダーを引き継ぎ、書き込み完了後に下流のレスポンスを閉じて接続をプールへ返す
+ */
+final class StreamingRelay {
+
+    /** 引き継ぐヘッダー（Content-Length は圧縮などで変わり得るため引き継がない） */
+    static final List<String> FORWARDED_HEADERS = Arrays.asList(
+            HttpHeaders.CONTENT_TYPE,
+            HttpHeaders.ETAG,
+            HttpHeaders.LAST_MODIFIED,
+            HttpHeaders.CACHE_CONTROL,
+            HttpHeaders.CONTENT_LANGUAGE,
+            HttpHeaders.RETRY_AFTER);
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private StreamingRelay() {
+    }
+
+    /**
+     * 下流サービスのレスポンスをストリーミングで返すレスポンスに変換
+     */
+    static Response relay(Response downstream) {
+        Response.ResponseBuilder builder = Response.status(downstream.getStatus());
+        for (String name : FORWARDED_HEADERS) {
+            String value = downstream.getHeaderString(name);
+            if (value != null) {
+                builder.header(name, value);
+            }
+        }
+
+        if (!downstream.hasEntity()) {
+            downstream.close();
+            return builder.build();
+        }
+
+        InputStream body = downstream.readEntity(InputStream.class);
+        StreamingOutput output = out -> {
+            try (InputStream in = body) {
+                copy(in, out);
+            } finally {
+                downstream.close();
+            }
+        };
+        return builder.entity(output).build();
+    }
+
+    private static void copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        out.flush();
+    }
+}
@@ -0,0 +1,194 @@
+package com.example.microservices.bff.security;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTDecodeException;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.example.microservices.bff.config.BffConfig;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * JWTのローカル検証
+ * Auth Serviceへの問い合わせなしに署名と有効期限を検証する
+ * 鍵のローテーションに対応するため、kid ヘッダーごとの検証器を保持する
+ *
+ * ES256 のトークンは Auth Service が公開する公開鍵（JwksKeyStore）で検証する（シークレット不要）
+ * HS256 で発行済みのトークンは、シークレットが明示的に設定された場合のみ期限まで検証する（既定では拒否）
+ *
+ * HS256 の設定（移行用、Auth Serviceと同じ値を使用）:
+ * - JWT_KEYS        検証に使う鍵の一覧 "kid:secret,kid:secret"（未設定時は JWT_SECRET_KEY を kid "default" として使う）
+ * - JWT_SECRET_KEY  単一鍵運用時のシークレット
+ * - JWT_HS256_ACCEPT_UNTIL  HS256 のトークンを受け付ける期限（ISO-8601、鍵を設定する場合は必須）
+ * kid ヘッダーのないトークンは kid "default" の鍵で検証する
+ * ログアウト済みのトークン（jti が失効一覧にあるもの）は TokenRevocationCache で拒否する
+ */
+@ApplicationScoped
+public class JwtVerifier {
+
+    private static final String DEFAULT_KEY_ID = "default";
+
+    private final Map<String, JWTVerifier> verifiers;
+    // この時刻以降は HS256 のトークンを受け付けない（null の場合は期限なし）
+    private final Instant hmacAcceptUntil;
+
+    @Inject
+    private TokenRevocationCache revocationCache;
+
+    @Inject
+    private JwksKeyStore jwksKeyStore;
+
+    public JwtVerifier() {
+        this(parseKeys(BffConfig.getString("JWT_KEYS", null), BffConfig.getString("JWT_SECRET_KEY", null)));
+    }
+
+    private JwtVerifier(Map<String, String> keys) {
+        this(keys, keys.isEmpty() ? null : parseAcceptUntil(BffConfig.getString("JWT_HS256_ACCEPT_UNTIL", null)));
+    }
+
+    JwtVerifier(String secretKey) {
+        this(Collections.singletonMap(DEFAULT_KEY_ID, secretKey), null);
+    }
+
+    JwtVerifier(String secretKey, TokenRevocationCache revocationCache) {
+        this(secretKey);
+        this.revocationCache = revocationCache;
+    }
+
+    JwtVerifier(Map<String, String> keys, Instant hmacAcceptUntil) {
+        // JWTVerifier はスレッドセーフなので鍵ごとに一度だけ生成して使い回す
+        Map<String, JWTVerifier> verifierMap = new HashMap<>();
+        keys.forEach((keyId, secret) -> verifierMap.put(keyId, JWT.require(Algorithm.HMAC256(secret)).build()));
+        this.verifiers = Collections.unmodifiableMap(verifierMap);
+        this.hmacAcceptUntil = hmacAcceptUntil;
+    }
+
+    /**
+     * JWT_HS256_ACCEPT_UNTIL を解析（HS256 の鍵を設定する場合は必須）
+     */
+    static Instant parseAcceptUntil(String value) {
+        if (value == null) {
+            throw new IllegalArgumentException(
+                    "JWT_HS256_ACCEPT_UNTIL is required when HS256 keys are configured (e.g. 2024-07-01T00:00:00Z)");
+        }
+        try {
+            return Instant.parse(value.trim());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid JWT_HS256_ACCEPT_UNTIL (expected ISO-8601 instant): " + value, e);
+        }
+    }
+
+    /**
+     * JWT_KEYS（"kid:secret,kid:secret"）を解析（どちらも未設定なら空）
+     */
+    static Map<String, String> parseKeys(String spec, String fallbackSecret) {
+        Map<String, String> keys = new LinkedHashMap<>();
+        if (spec == null || spec.trim().isEmpty()) {
+            if (fallbackSecret != null) {
+                keys.put(DEFAULT_KEY_ID, fallbackSecret);
+            }
+            return keys;
+        }
+        for (String entry : spec.split(",")) {
+            int separator = entry.indexOf(':');
+            if (separator <= 0 || separator == entry.length() - 1) {
+                throw new IllegalArgumentException("Invalid JWT_KEYS entry (expected kid:secret)");
+            }
+            keys.put(entry.substring(0, separator).trim(), entry.substring(separator + 1).trim());
+        }
+        return keys;
+    }
+
+    /**
+     * JWT形式（header.payload.signature）かどうか
+     * JWT形式でないものはレガシーセッショントークンとして扱う
+     */
+    public boolean isJwt(String token) {
+        if (token == null) {
+            return false;
+        }
+        int first = token.indexOf('.');
+        if (first <= 0) {
+            return false;
+        }
+        int second = token.indexOf('.', first + 1);
+        return second > first + 1 && token.indexOf('.', second + 1) == -1;
+    }
+
+    /**
+     * JWTを検証して利用者情報を取得
+     *
+     * @param token JWTトークン
+     * @return 検証に成功した場合は利用者情報、失敗した場合は空
+     */
+    public Optional<UserPrincipal> verify(String token) {
+        try {
+            DecodedJWT decoded = JWT.decode(token);
+            String keyId = decoded.getKeyId() != null ? decoded.getKeyId() : DEFAULT_KEY_ID;
+            // 検証器ごとにアルゴリズムが固定されるため、alg ヘッダーの書き換えでは別の方式で検証されない
+            JWTVerifier verifier = "ES256".equals(decoded.getAlgorithm())
+                    ? publicKeyVerifier(keyId)
+                    : hmacVerifier(keyId);
+            if (verifier == null) {
+                return Optional.empty();
+            }
+            DecodedJWT jwt = verifier.verify(decoded);
+            if (revocationCache != null && revocationCache.isRevoked(jwt.getId())) {
+                return Optional.empty();
+            }
+            String userIdStr = jwt.getClaim("userId").asString();
+            if (userIdStr == null || userIdStr.isEmpty()) {
+                return Optional.empty();
+            }
+
+            // usernameはオプショナル
+            String username = jwt.getClaim("username").asString();
+            return Optional.of(new UserPrincipal(
+                    UUID.fromString(userIdStr),
+                    username != null && !username.isEmpty() ? username : null,
+                    jwt.getExpiresAtAsInstant()));
+        } catch (JWTVerificationException | IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * ログアウトしたJWTを手元の失効一覧に加え、失効一覧の次の取得を待たずにこのノードで拒否する
+     * （トークンは Auth Service がログアウト時に検証済み）
+     */
+    public void revoke(String token) {
+        if (revocationCache == null) {
+            return;
+        }
+        try {
+            DecodedJWT decoded = JWT.decode(token);
+            if (decoded.getExpiresAt() != null) {
+                revocationCache.revokeLocally(decoded.getId(), decoded.getExpiresAt().toInstant().getEpochSecond());
+            }
+        } catch (JWTDecodeException e) {
+            // JWTでなければ失効させるものはない
+        }
+    }
+
+    private JWTVerifier hmacVerifier(String keyId) {
+        if (hmacAcceptUntil != null && !Instant.now().isBefore(hmacAcceptUntil)) {
+            return null;
+        }
+        return verifiers.get(keyId);
+    }
+
+    private JWTVerifier publicKeyVerifier(String keyId) {
+        return jwksKeyStore != null ? jwksKeyStore.verifierFor(keyId) : null;
+    }
+}
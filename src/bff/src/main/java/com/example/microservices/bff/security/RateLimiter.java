@@ -0,0 +1,245 @@
+package com.example.microservices.bff.security;
+
+import com.example.microservices.bff.config.BffConfig;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * トークンバケットによるレート制限（キー: クライアントIP、ユーザー名/ユーザーIDなど）
+ * キーはハッシュでストライプに分け、ストライプごとのロックで競合を抑える
+ * 一定時間使われていない（またはトークンが満タンに戻った）バケットは定期的に破棄する
+ *
+ * 設定（ルート・次元ごと）: BFF_RATE_LIMIT_{ROUTE}_{DIMENSION}_CAPACITY / _PER_SECOND
+ * 例: BFF_RATE_LIMIT_LOGIN_IP_CAPACITY=10, BFF_RATE_LIMIT_LOGIN_IP_PER_SECOND=0.2
+ * - BFF_RATE_LIMIT_ENABLED       有効/無効（デフォルト true）
+ * - BFF_RATE_LIMIT_IDLE_SECONDS  使われていないバケットを破棄するまでの時間（デフォルト 300）
+ */
+@ApplicationScoped
+public class RateLimiter {
+
+    /**
+     * 制限対象のルート
+     */
+    public enum Route {
+        LOGIN, READ
+    }
+
+    /**
+     * 制限のキーの種類
+     */
+    public enum Dimension {
+        IP, USER
+    }
+
+    private static final int STRIPES = 64;
+
+    private final boolean enabled;
+    private final long idleNanos;
+    private final LongSupplier nanoClock;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final Map<String, Limit> limits = new HashMap<>();
+    private final ConcurrentHashMap<String, AtomicLong> allowed = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, AtomicLong> rejected = new ConcurrentHashMap<>();
+    private final AtomicLong evictions = new AtomicLong();
+    private ScheduledExecutorService sweeper;
+
+    public RateLimiter() {
+        this(BffConfig.getBoolean("BFF_RATE_LIMIT_ENABLED", true),
+                BffConfig.getLong("BFF_RATE_LIMIT_IDLE_SECONDS", 300),
+                System::nanoTime);
+        // ログインはBCryptを伴うため厳しく、参照系は通常の利用を妨げない程度にする
+        configure(Route.LOGIN, Dimension.IP, 20, 0.5);
+        configure(Route.LOGIN, Dimension.USER, 5, 0.1);
+        configure(Route.READ, Dimension.IP, 200, 100);
+        configure(Route.READ, Dimension.USER, 60, 20);
+    }
+
+    RateLimiter(boolean enabled, long idleSeconds, LongSupplier nanoClock) {
+        this.enabled = enabled;
+        this.idleNanos = TimeUnit.SECONDS.toNanos(idleSeconds);
+        this.nanoClock = nanoClock;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "bff-rate-limit-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::evictIdle, 60, 60, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+    }
+
+    /**
+     * 制限値を設定（環境変数の値があればそちらを優先）
+     */
+    void configure(Route route, Dimension dimension, int capacity, double perSecond) {
+        String prefix = "BFF_RATE_LIMIT_" + route + "_" + dimension + "_";
+        int configuredCapacity = BffConfig.getInt(prefix + "CAPACITY", capacity);
+        double configuredRate = perSecond;
+        String rate = BffConfig.getString(prefix + "PER_SECOND", null);
+        if (rate != null) {
+            try {
+                configuredRate = Double.parseDouble(rate.trim());
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid number for " + prefix + "PER_SECOND: " + rate);
+            }
+        }
+        limits.put(limitKey(route, dimension), new Limit(Math.max(1, configuredCapacity), Math.max(0.001, configuredRate)));
+    }
+
+    /**
+     * トークンを1つ取得
+     *
+     * @return 0なら許可、正の値なら拒否（再試行まで待つべき秒数）
+     */
+    public long tryAcquire(Route route, Dimension dimension, String key) {
+        Limit limit = limits.get(limitKey(route, dimension));
+        if (!enabled || limit == null || key == null || key.isEmpty()) {
+            return 0;
+        }
+
+        String bucketKey = route + ":" + dimension + ":" + key.toLowerCase(Locale.ROOT);
+        Stripe stripe = stripes[(bucketKey.hashCode() & 0x7fffffff) % STRIPES];
+        long now = nanoClock.getAsLong();
+        long retryAfterSeconds;
+        synchronized (stripe) {
+            Bucket bucket = stripe.buckets.get(bucketKey);
+            if (bucket == null) {
+                bucket = new Bucket(limit, now);
+                stripe.buckets.put(bucketKey, bucket);
+            }
+            retryAfterSeconds = bucket.tryAcquire(now);
+        }
+
+        String counterKey = route + "_" + dimension;
+        (retryAfterSeconds == 0 ? allowed : rejected)
+                .computeIfAbsent(counterKey, k -> new AtomicLong()).incrementAndGet();
+        return retryAfterSeconds;
+    }
+
+    /**
+     * 使われていない、またはトークンが満タンに戻ったバケットを破棄（満タンのバケットは新規作成と同じ）
+     */
+    void evictIdle() {
+        long now = nanoClock.getAsLong();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                Iterator<Bucket> it = stripe.buckets.values().iterator();
+                while (it.hasNext()) {
+                    Bucket bucket = it.next();
+                    if (now - bucket.lastAccessNanos > idleNanos || bucket.isFull(now)) {
+                        it.remove();
+                        evictions.incrementAndGet();
+                    }
+                }
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.buckets.size();
+            }
+        }
+        return size;
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", enabled);
+        metrics.put("buckets", size());
+        metrics.put("evictions", evictions.get());
+        Map<String, Object> allowedCounts = new TreeMap<>();
+        allowed.forEach((key, count) -> allowedCounts.put(key, count.get()));
+        Map<String, Object> rejectedCounts = new TreeMap<>();
+        rejected.forEach((key, count) -> rejectedCounts.put(key, count.get()));
+        metrics.put("allowed", allowedCounts);
+        metrics.put("rejected", rejectedCounts);
+        return metrics;
+    }
+
+    private static String limitKey(Route route, Dimension dimension) {
+        return route + "_" + dimension;
+    }
+
+    private static final class Limit {
+        private final int capacity;
+        private final double tokensPerNano;
+
+        Limit(int capacity, double perSecond) {
+            this.capacity = capacity;
+            this.tokensPerNano = perSecond / TimeUnit.SECONDS.toNanos(1);
+        }
+    }
+
+    private static final class Stripe {
+        private final HashMap<String, Bucket> buckets = new HashMap<>();
+    }
+
+    /**
+     * トークンバケット（ストライプのロック内でのみ操作する）
+     */
+    private static final class Bucket {
+        private final Limit limit;
+        private double tokens;
+        private long lastRefillNanos;
+        private long lastAccessNanos;
+
+        Bucket(Limit limit, long now) {
+            this.limit = limit;
+            this.tokens = limit.capacity;
+            this.lastRefillNanos = now;
+            this.lastAccessNanos = now;
+        }
+
+        long tryAcquire(long now) {
+            refill(now);
+            lastAccessNanos = now;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            double waitNanos = (1 - tokens) / limit.tokensPerNano;
+            return Math.max(1, (long) Math.ceil(waitNanos / TimeUnit.SECONDS.toNanos(1)));
+        }
+
+        boolean isFull(long now) {
+            refill(now);
+            return tokens >= limit.capacity;
+        }
+
+        private void refill(long now) {
+            if (now > lastRefillNanos) {
+                tokens = Math.min(limit.capacity, tokens + (now - lastRefillNanos) * limit.tokensPerNano);
+                lastRefillNanos = now;
+            }
+        }
+    }
+}
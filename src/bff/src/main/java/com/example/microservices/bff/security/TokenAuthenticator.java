@@ -0,0 +1,223 @@
+package com.example.microservices.bff.security;
+
+import com.example.microservices.bff.client.AuthServiceClient;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.core.Response;
+import java.io.StringReader;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Authorizationヘッダーの認証
+ * JWTはローカルで検証し、レガシーセッショントークンのみAuth Serviceに問い合わせる
+ * Auth Serviceでの検証結果は VerifiedTokenCache にキャッシュする
+ * RateLimitFilter で検証したJWTの結果はリクエスト属性に保存し、同じリクエスト内では署名を検証し直さない
+ */
+@ApplicationScoped
+public class TokenAuthenticator {
+
+    private static final String BEARER_PREFIX = "Bearer ";
+    // フィルターで検証したJWTの結果を保存するリクエスト属性
+    private static final String VERIFIED_JWT_PROPERTY = TokenAuthenticator.class.getName() + ".verifiedJwt";
+
+    @Inject
+    private JwtVerifier jwtVerifier;
+
+    @Inject
+    private AuthServiceClient authServiceClient;
+
+    @Inject
+    private VerifiedTokenCache verifiedTokenCache;
+
+    @Inject
+    private HttpServletRequest servletRequest;
+
+    public TokenAuthenticator() {
+    }
+
+    TokenAuthenticator(JwtVerifier jwtVerifier, HttpServletRequest servletRequest) {
+        this.jwtVerifier = jwtVerifier;
+        this.servletRequest = servletRequest;
+    }
+
+    /**
+     * Authorizationヘッダーからトークンを取り出す
+     *
+     * @return Bearerトークン、ヘッダーが不正な場合はnull
+     */
+    public static String extractBearerToken(String authHeader) {
+        if (authHeader == null || !authHeader.startsWith(BEARER_PREFIX)) {
+            return null;
+        }
+        return authHeader.substring(BEARER_PREFIX.length());
+    }
+
+    /**
+     * Authorizationヘッダーを認証
+     *
+     * @return 認証に成功した場合は利用者情報、失敗した場合は空
+     *         （Auth Serviceへの接続に失敗した場合は ProcessingException で異常終了）
+     */
+    public CompletionStage<Optional<UserPrincipal>> authenticate(String authHeader) {
+        String token = extractBearerToken(authHeader);
+        if (token == null || token.isEmpty()) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+        return authenticateToken(token);
+    }
+
+    /**
+     * ローカル検証の対象となるJWT形式のトークンかどうか
+     */
+    public boolean isJwt(String token) {
+        return jwtVerifier.isJwt(token);
+    }
+
+    /**
+     * トークンを認証
+     */
+    public CompletionStage<Optional<UserPrincipal>> authenticateToken(String token) {
+        if (jwtVerifier.isJwt(token)) {
+            // JWTはローカル検証のみで確定（Auth Service側でもセッショントークンには一致しない）
+            Optional<UserPrincipal> verified = verifiedInRequest(token);
+            return CompletableFuture.completedFuture(verified != null ? verified : jwtVerifier.verify(token));
+        }
+        return verifyRemotely(token);
+    }
+
+    /**
+     * リクエストフィルターでJWTを検証し、結果をリクエスト属性に保存する
+     * 同じリクエストの authenticateToken は保存した結果を使う
+     */
+    public Optional<UserPrincipal> verifyJwtForRequest(ContainerRequestContext requestContext, String token) {
+        Optional<UserPrincipal> principal = jwtVerifier.verify(token);
+        requestContext.setProperty(VERIFIED_JWT_PROPERTY, new VerifiedJwt(token, principal));
+        return principal;
+    }
+
+    /**
+     * このリクエストのフィルターで検証済みの結果（検証していない場合は null）
+     */
+    private Optional<UserPrincipal> verifiedInRequest(String token) {
+        if (servletRequest == null) {
+            return null;
+        }
+        Object verified;
+        try {
+            verified = servletRequest.getAttribute(VERIFIED_JWT_PROPERTY);
+        } catch (RuntimeException e) {
+            // リクエストの処理スレッド以外（非同期処理の続き）から呼ばれた場合
+            return null;
+        }
+        if (verified instanceof VerifiedJwt && ((VerifiedJwt) verified).token.equals(token)) {
+            return ((VerifiedJwt) verified).principal;
+        }
+        return null;
+    }
+
+    /**
+     * ログアウトしたトークンのキャッシュを破棄
+     */
+    public void invalidate(String token) {
+        if (token != null && !token.isEmpty()) {
+            verifiedTokenCache.invalidate(token);
+        }
+    }
+
+    /**
+     * ログアウトしたJWTをこのノードで直ちに失効させる（Auth Serviceでログアウトが成功した後に呼ぶ）
+     * 他のノードには失効一覧の取得で反映される
+     */
+    public void revoke(String token) {
+        if (jwtVerifier.isJwt(token)) {
+            jwtVerifier.revoke(token);
+        }
+    }
+
+    private CompletionStage<Optional<UserPrincipal>> verifyRemotely(String token) {
+        VerifiedTokenCache.Entry cached = verifiedTokenCache.get(token);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(Optional.ofNullable(cached.getPrincipal()));
+        }
+
+        return authServiceClient.verifyToken(token)
+                .thenApply(verifyResponse -> handleVerifyResponse(token, verifyResponse));
+    }
+
+    private Optional<UserPrincipal> handleVerifyResponse(String token, Response verifyResponse) {
+        try {
+            if (verifyResponse.getStatus() == 401) {
+                // 無効なトークンは短時間キャッシュ
+                verifiedTokenCache.putInvalid(token);
+                return Optional.empty();
+            }
+            if (verifyResponse.getStatus() != 200) {
+                // Auth Serviceの障害はキャッシュしない
+                return Optional.empty();
+            }
+            Optional<UserPrincipal> principal = parseVerifyResponse(verifyResponse.readEntity(String.class));
+            principal.ifPresent(p -> verifiedTokenCache.putValid(token, p));
+            return principal;
+        } finally {
+            verifyResponse.close();
+        }
+    }
+
+    /**
+     * Auth Serviceの検証レスポンスを解析
+     * 例: {"valid":true,"userId":"550e8400-e29b-41d4-a716-446655440000","expiresAt":"..."}
+     */
+    static Optional<UserPrincipal> parseVerifyResponse(String body) {
+        try (JsonReader reader = Json.createReader(new StringReader(body))) {
+            JsonObject json = reader.readObject();
+            String userIdStr = json.getString("userId", null);
+            if (userIdStr == null || userIdStr.isEmpty()) {
+                return Optional.empty();
+            }
+            return Optional.of(new UserPrincipal(
+                    UUID.fromString(userIdStr),
+                    json.getString("username", null),
+                    parseExpiresAt(json.getString("expiresAt", null))));
+        } catch (RuntimeException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static Instant parseExpiresAt(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            // Auth ServiceはLocalDateTime（サーバーのローカル時刻）で返す
+            return LocalDateTime.parse(value).atZone(ZoneId.systemDefault()).toInstant();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * フィルターで検証したJWTとその結果
+     */
+    private static final class VerifiedJwt {
+        private final String token;
+        private final Optional<UserPrincipal> principal;
+
+        private VerifiedJwt(String token, Optional<UserPrincipal> principal) {
+            this.token = token;
+            this.principal = principal;
+        }
+    }
+}
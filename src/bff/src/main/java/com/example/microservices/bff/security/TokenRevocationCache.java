@@ -0,0 +1,189 @@
+package com.example.microservices.bff.security;
+
+import com.example.microservices.bff.client.AuthServiceClient;
+import com.example.microservices.bff.config.BffConfig;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import java.io.StringReader;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ログアウトで失効したJWT（jti）の手元の写し
+ * Auth Service の失効一覧（GET /api/auth/revocations）を ETag 付きで定期的に取得し、
+ * JWTのローカル検証時に O(1) で照合する（変更がなければ 304 で本文は送られない）
+ * 取得に失敗した場合は最後に取得した一覧を使い続ける
+ * このノードで受け付けたログアウトは次の取得を待たずに手元で失効させる（取得した一覧に載るまで保持する）
+ *
+ * 設定:
+ * - BFF_REVOCATION_POLL_SECONDS  取得間隔。ログアウトが反映されるまでの上限（デフォルト 5）
+ */
+@ApplicationScoped
+public class TokenRevocationCache {
+
+    private static final long POLL_TIMEOUT_SECONDS = 10;
+
+    @Inject
+    private AuthServiceClient authServiceClient;
+
+    private final Clock clock;
+    // jti → 有効期限（エポック秒）。取得のたびに丸ごと差し替える
+    private volatile Map<String, Long> revoked = Collections.emptyMap();
+    // このノードでログアウトしたJWT（jti → 有効期限）
+    private final Map<String, Long> revokedLocally = new ConcurrentHashMap<>();
+    private volatile String etag;
+    private volatile Instant lastUpdatedAt;
+    private ScheduledExecutorService scheduler;
+
+    private final AtomicLong polls = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+    private final AtomicLong pollFailures = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public TokenRevocationCache() {
+        this(Clock.systemUTC());
+    }
+
+    TokenRevocationCache(Clock clock) {
+        this.clock = clock;
+    }
+
+    @PostConstruct
+    void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "bff-revocation-poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long pollSeconds = Math.max(1, BffConfig.getLong("BFF_REVOCATION_POLL_SECONDS", 5));
+        scheduler.scheduleWithFixedDelay(this::pollQuietly, 0, pollSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 失効済みかどうか（jti のないトークンは失効させられないため false）
+     */
+    public boolean isRevoked(String jti) {
+        if (jti == null) {
+            return false;
+        }
+        Long expiresAt = revoked.get(jti);
+        if (expiresAt == null) {
+            expiresAt = revokedLocally.get(jti);
+        }
+        if (expiresAt == null || expiresAt <= clock.instant().getEpochSecond()) {
+            return false;
+        }
+        rejected.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * このノードでログアウトしたJWTを失効させる（Auth Serviceでログアウトが成功した後に呼ぶ）
+     *
+     * @param expiresAt 有効期限（エポック秒）
+     */
+    public void revokeLocally(String jti, long expiresAt) {
+        if (jti != null) {
+            revokedLocally.put(jti, expiresAt);
+        }
+    }
+
+    private void poll() throws Exception {
+        polls.incrementAndGet();
+        Response response = authServiceClient.getRevocations(etag)
+                .toCompletableFuture()
+                .get(POLL_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        try {
+            if (response.getStatus() == 304) {
+                notModified.incrementAndGet();
+                return;
+            }
+            if (response.getStatus() != 200) {
+                throw new IllegalStateException("Unexpected status " + response.getStatus());
+            }
+            apply(parse(response.readEntity(String.class)), response.getHeaderString(HttpHeaders.ETAG));
+        } finally {
+            response.close();
+        }
+    }
+
+    private void pollQuietly() {
+        try {
+            poll();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            pollFailures.incrementAndGet();
+            System.err.println("Failed to poll token revocations: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 取得した一覧に差し替える
+     */
+    void apply(Map<String, Long> entries, String etag) {
+        this.revoked = Collections.unmodifiableMap(entries);
+        this.etag = etag;
+        this.lastUpdatedAt = clock.instant();
+        // 一覧に載ったもの・期限切れのものは手元の分から外す
+        long now = lastUpdatedAt.getEpochSecond();
+        revokedLocally.entrySet().removeIf(entry -> entries.containsKey(entry.getKey()) || entry.getValue() <= now);
+    }
+
+    /**
+     * 失効一覧のレスポンスを解析
+     * 例: {"version":"9f86d081884c7d659a2feaa0c55ad015","revoked":[{"jti":"...","exp":1717200000}]}
+     */
+    static Map<String, Long> parse(String body) {
+        try (JsonReader reader = Json.createReader(new StringReader(body))) {
+            JsonObject json = reader.readObject();
+            JsonArray items = json.getJsonArray("revoked");
+            Map<String, Long> entries = new HashMap<>(Math.max(16, items.size() * 2));
+            for (JsonObject item : items.getValuesAs(JsonObject.class)) {
+                entries.put(item.getString("jti"), item.getJsonNumber("exp").longValue());
+            }
+            return entries;
+        }
+    }
+
+    /**
+     * メトリクスのスナップショット
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("version", etag);
+        snapshot.put("size", revoked.size());
+        snapshot.put("revokedLocally", revokedLocally.size());
+        snapshot.put("lastUpdatedAt", lastUpdatedAt != null ? lastUpdatedAt.toString() : null);
+        snapshot.put("polls", polls.get());
+        snapshot.put("notModified", notModified.get());
+        snapshot.put("pollFailures", pollFailures.get());
+        snapshot.put("rejected", rejected.get());
+        return snapshot;
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.microservices.bff.security;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * 検証済みトークンの利用者情報（不変）
+ */
+public final class UserPrincipal {
+
+    private final UUID userId;
+    private final String username;
+    private final Instant expiresAt;
+
+    public UserPrincipal(UUID userId, String username, Instant expiresAt) {
+        if (userId == null) {
+            throw new IllegalArgumentException("userId is required");
+        }
+        this.userId = userId;
+        this.username = username;
+        this.expiresAt = expiresAt;
+    }
+
+    public UUID getUserId() {
+        return userId;
+    }
+
+    /**
+     * ユーザー名（レガシートークンの場合はnull）
+     */
+    public String getUsername() {
+        return username;
+    }
+
+    /**
+     * 有効期限（不明な場合はnull）
+     */
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    @Override
+    public String toString() {
+        return "UserPrincipal{userId=" + userId + ", username=" + username + "}";
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.microservices.bff.security;
+
+import com.example.microservices.bff.config.BffConfig;
+
+import javax.enterprise.context.ApplicationScoped;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 検証済みトークンのキャッシュ
+ * トークンのSHA-256ダイジェストをキーに、Auth Serviceでの検証結果を保持する
+ * - 有効なトークン: トークン自身の有効期限と最大TTLの短い方まで保持
+ * - 無効なトークン: 短時間だけ保持し、Auth Serviceへの繰り返し問い合わせを防ぐ
+ * - 上限件数を超えた場合は古いエントリから追い出す
+ */
+@ApplicationScoped
+public class VerifiedTokenCache {
+
+    private final int maxEntries;
+    private final Duration maxTtl;
+    private final Duration negativeTtl;
+    private final Clock clock;
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    // 追い出し順序（挿入順）。更新・削除済みのノードは追い出し時に読み飛ばす
+    private final ConcurrentLinkedQueue<Node> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queuedNodes = new AtomicInteger();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong negativeHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public VerifiedTokenCache() {
+        this(BffConfig.getInt("BFF_TOKEN_CACHE_MAX_ENTRIES", 10000),
+                Duration.ofSeconds(BffConfig.getLong("BFF_TOKEN_CACHE_TTL_SECONDS", 300)),
+                Duration.ofSeconds(BffConfig.getLong("BFF_TOKEN_CACHE_NEGATIVE_TTL_SECONDS", 10)),
+                Clock.systemUTC());
+    }
+
+    VerifiedTokenCache(int maxEntries, Duration maxTtl, Duration negativeTtl, Clock clock) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.maxTtl = maxTtl;
+        this.negativeTtl = negativeTtl;
+        this.clock = clock;
+    }
+
+    /**
+     * キャッシュされた検証結果を取得
+     *
+     * @return キャッシュにない場合（または期限切れの場合）はnull
+     */
+    public Entry get(String token) {
+        String key = digest(token);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        if (!clock.instant().isBefore(entry.expiresAt)) {
+            if (entries.remove(key, entry)) {
+                expirations.incrementAndGet();
+            }
+            misses.incrementAndGet();
+            return null;
+        }
+        if (entry.isValid()) {
+            hits.incrementAndGet();
+        } else {
+            negativeHits.incrementAndGet();
+        }
+        return entry;
+    }
+
+    /**
+     * 有効なトークンの検証結果を保存
+     */
+    public void putValid(String token, UserPrincipal principal) {
+        Instant now = clock.instant();
+        Instant expiresAt = now.plus(maxTtl);
+        if (principal.getExpiresAt() != null && principal.getExpiresAt().isBefore(expiresAt)) {
+            expiresAt = principal.getExpiresAt();
+        }
+        if (!now.isBefore(expiresAt)) {
+            return;
+        }
+        put(digest(token), new Entry(principal, expiresAt));
+    }
+
+    /**
+     * 無効なトークンを短時間保存（ネガティブキャッシュ）
+     */
+    public void putInvalid(String token) {
+        if (negativeTtl.isZero() || negativeTtl.isNegative()) {
+            return;
+        }
+        put(digest(token), new Entry(null, clock.instant().plus(negativeTtl)));
+    }
+
+    /**
+     * トークンのキャッシュを無効化（ログアウト時）
+     */
+    public void invalidate(String token) {
+        if (entries.remove(digest(token)) != null) {
+            invalidations.incrementAndGet();
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * メトリクスのスナップショット
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("size", entries.size());
+        metrics.put("maxEntries", maxEntries);
+        metrics.put("hits", hits.get());
+        metrics.put("negativeHits", negativeHits.get());
+        metrics.put("misses", misses.get());
+        metrics.put("evictions", evictions.get());
+        metrics.put("expirations", expirations.get());
+        metrics.put("invalidations", invalidations.get());
+        return metrics;
+    }
+
+    private void put(String key, Entry entry) {
+        entries.put(key, entry);
+        insertionOrder.add(new Node(key, entry));
+        int queued = queuedNodes.incrementAndGet();
+
+        // 上限超過分を古い順に追い出す。読み飛ばしノードが溜まりすぎた場合も掃除する
+        while (entries.size() > maxEntries || queued > maxEntries * 2) {
+            Node oldest = insertionOrder.poll();
+            if (oldest == null) {
+                break;
+            }
+            queued = queuedNodes.decrementAndGet();
+            if (entries.remove(oldest.key, oldest.entry)) {
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    static String digest(String token) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            byte[] hash = md.digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * キャッシュエントリ（principalがnullの場合は無効なトークン）
+     */
+    public static final class Entry {
+        private final UserPrincipal principal;
+        private final Instant expiresAt;
+
+        Entry(UserPrincipal principal, Instant expiresAt) {
+            this.principal = principal;
+            this.expiresAt = expiresAt;
+        }
+
+        public boolean isValid() {
+            return principal != null;
+        }
+
+        public UserPrincipal getPrincipal() {
+            return principal;
+        }
+    }
+
+    private static final class Node {
+        private final String key;
+        private final Entry entry;
+
+        Node(String key, Entry entry) {
+            this.key = key;
+            this.entry = entry;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.microservices.bff.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * CircuitBreaker のテスト
+ */
+public class CircuitBreakerTest {
+
+    /**
+     * テスト用の進められる時計
+     */
+    private static class MutableClock extends Clock {
+        private Instant now = Instant.parse("2024-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+
+    private final MutableClock clock = new MutableClock();
+
+    /**
+     * 直近10件・最低4件・失敗率50%・遅延1秒以上が80%・OPEN 5秒・試行2件
+     */
+    private CircuitBreaker createBreaker() {
+        return new CircuitBreaker("test-service",
+                new CircuitBreaker.Settings(10, 4, 50, 1000, 80, 5000, 2), clock);
+    }
+
+    private void record(CircuitBreaker breaker, long durationMillis, boolean failed) {
+        assertTrue(breaker.tryAcquirePermission());
+        breaker.onResult(durationMillis, failed);
+    }
+
+    @Test
+    public void testOpensWhenFailureRateExceeded() {
+        CircuitBreaker breaker = createBreaker();
+        record(breaker, 10, false);
+        record(breaker, 10, true);
+        record(breaker, 10, false);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        record(breaker, 10, true);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquirePermission());
+    }
+
+    @Test
+    public void testOpensWhenSlowCallRateExceeded() {
+        CircuitBreaker breaker = createBreaker();
+        for (int i = 0; i < 4; i++) {
+            record(breaker, 1500, false);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void testHalfOpenClosesAfterSuccessfulTrials() {
+        CircuitBreaker breaker = createBreaker();
+        for (int i = 0; i < 4; i++) {
+            record(breaker, 10, true);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        clock.advance(Duration.ofSeconds(5));
+        assertTrue(breaker.tryAcquirePermission());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.tryAcquirePermission());
+        // 試行数を超える呼び出しは拒否
+        assertFalse(breaker.tryAcquirePermission());
+
+        breaker.onResult(10, false);
+        breaker.onResult(10, false);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        @SuppressWarnings("unchecked")
+        Map<String, Long> transitions = (Map<String, Long>) breaker.snapshot().get("transitions");
+        assertEquals(1L, transitions.get("CLOSED_TO_OPEN"));
+        assertEquals(1L, transitions.get("OPEN_TO_HALF_OPEN"));
+        assertEquals(1L, transitions.get("HALF_OPEN_TO_CLOSED"));
+    }
+
+    @Test
+    public void testHalfOpenReopensOnFailure() {
+        CircuitBreaker breaker = createBreaker();
+        for (int i = 0; i < 4; i++) {
+            record(breaker, 10, true);
+        }
+
+        clock.advance(Duration.ofSeconds(5));
+        record(breaker, 10, true);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        clock.advance(Duration.ofSeconds(4));
+        assertFalse(breaker.tryAcquirePermission());
+    }
+}
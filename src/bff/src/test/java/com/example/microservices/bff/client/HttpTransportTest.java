@@ -0,0 +1,105 @@
+package com.example.microservices.bff.client;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * HttpTransport のテスト
+ */
+public class HttpTransportTest {
+
+    private HttpServer server;
+    private HttpTransport transport;
+    private String baseUrl;
+    private final CountDownLatch gate = new CountDownLatch(1);
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/hello", exchange -> {
+            byte[] body = "{\"message\":\"hello\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        // 応答を止めておけるエンドポイント（後続処理を登録してから応答させる）
+        server.createContext("/gated", exchange -> {
+            try {
+                gate.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+
+        transport = new HttpTransport();
+        transport.init();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        gate.countDown();
+        transport.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    public void testClientIsSharedPerService() {
+        assertSame(transport.clientFor("test-service"), transport.clientFor("test-service"));
+        assertNotSame(transport.clientFor("test-service"), transport.clientFor("other-service"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testPooledConnectionIsReleased() {
+        Client client = transport.clientFor("test-service");
+        for (int i = 0; i < 3; i++) {
+            Response response = client.target(baseUrl).path("/hello").request().get();
+            assertEquals(200, response.getStatus());
+            assertEquals("{\"message\":\"hello\"}", response.readEntity(String.class));
+        }
+
+        Map<String, Object> metrics = (Map<String, Object>) transport.snapshot().get("test-service");
+        assertEquals(3L, metrics.get("leaseRequests"));
+        assertEquals(0, metrics.get("leased"));
+        // Keep-Alive で同じ接続が再利用される
+        assertEquals(1, metrics.get("available"));
+    }
+
+    @Test
+    public void testAsyncInvocationRunsOnTransportExecutor() throws Exception {
+        Client client = transport.clientFor("test-service");
+        // 応答前に登録した後続処理は、応答を受け取ったスレッドで実行される
+        CompletableFuture<String> threadName = client.target(baseUrl).path("/gated").request()
+                .rx().get()
+                .thenApply(response -> {
+                    response.close();
+                    return Thread.currentThread().getName();
+                })
+                .toCompletableFuture();
+        gate.countDown();
+
+        String name = threadName.get(5, TimeUnit.SECONDS);
+        assertTrue(name.startsWith("bff-http-test-service-"), name);
+    }
+}
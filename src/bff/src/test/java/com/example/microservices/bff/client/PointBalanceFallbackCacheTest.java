@@ -0,0 +1,77 @@
+package com.example.microservices.bff.client;
+
+import org.junit.jupiter.api.Test;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.ws.rs.core.Response;
+import java.io.StringReader;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * PointBalanceFallbackCache のテスト
+ */
+public class PointBalanceFallbackCacheTest {
+
+    private static final Instant NOW = Instant.parse("2024-01-01T00:00:00Z");
+
+    private static PointBalanceFallbackCache.Entry entry(String body, Instant cachedAt) {
+        return new PointBalanceFallbackCache.Entry(body.getBytes(), cachedAt);
+    }
+
+    @Test
+    public void testStaleResponseHasMarker() {
+        PointBalanceFallbackCache cache = new PointBalanceFallbackCache(10, Duration.ofHours(1),
+                Clock.fixed(NOW.plusSeconds(30), ZoneOffset.UTC));
+
+        Response response = cache.toStaleResponse(entry("{\"userId\":\"u1\",\"balance\":1500}", NOW));
+
+        assertEquals(200, response.getStatus());
+        assertEquals("true", response.getHeaderString("X-Bff-Stale"));
+        assertEquals("30", response.getHeaderString("Age"));
+        try (JsonReader reader = Json.createReader(new StringReader((String) response.getEntity()))) {
+            JsonObject json = reader.readObject();
+            assertEquals(1500, json.getInt("balance"));
+            assertTrue(json.getBoolean("stale"));
+            assertEquals(NOW.toString(), json.getString("cachedAt"));
+        }
+        assertEquals(1L, cache.snapshot().get("staleServed"));
+    }
+
+    @Test
+    public void testTooOldEntryIsNotServed() {
+        Clock clock = Clock.fixed(NOW, ZoneOffset.UTC);
+        PointBalanceFallbackCache cache = new PointBalanceFallbackCache(10, Duration.ofMinutes(10), clock);
+        UUID userId = UUID.randomUUID();
+        cache.putEntry(userId, entry("{\"balance\":1}", NOW.minus(Duration.ofMinutes(11))));
+
+        assertNull(cache.get(userId));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() {
+        PointBalanceFallbackCache cache = new PointBalanceFallbackCache(2, Duration.ofHours(1),
+                Clock.fixed(NOW, ZoneOffset.UTC));
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        UUID third = UUID.randomUUID();
+        cache.putEntry(first, entry("{\"balance\":1}", NOW));
+        cache.putEntry(second, entry("{\"balance\":2}", NOW));
+        // first を使うと second が最も使われていないユーザーになる
+        assertNotNull(cache.get(first));
+        cache.putEntry(third, entry("{\"balance\":3}", NOW));
+
+        assertNotNull(cache.get(first));
+        assertNull(cache.get(second));
+        assertNotNull(cache.get(third));
+        assertEquals(1L, cache.snapshot().get("evictions"));
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.microservices.bff.client;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RequestCoalescer のテスト
+ */
+public class RequestCoalescerTest {
+
+    private HttpServer server;
+    private Client client;
+    private String baseUrl;
+    private final AtomicInteger serverCalls = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/points", exchange -> {
+            serverCalls.incrementAndGet();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = "{\"balance\":100}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        client = ClientBuilder.newClient();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        client.close();
+        server.stop(0);
+    }
+
+    private CompletionStage<Response> callPoints() {
+        return client.target(baseUrl).path("/points").request().rx().get();
+    }
+
+    @Test
+    public void testConcurrentIdenticalCallsShareOneDownstreamCall() throws Exception {
+        RequestCoalescer coalescer = new RequestCoalescer(true);
+        String key = RequestCoalescer.key("point-service", "/points", "token-a");
+
+        CompletableFuture<Response> first = coalescer.execute(key, this::callPoints).toCompletableFuture();
+        CompletableFuture<Response> second = coalescer.execute(key, this::callPoints).toCompletableFuture();
+        release.countDown();
+
+        assertEquals("{\"balance\":100}", first.get(5, TimeUnit.SECONDS).readEntity(String.class));
+        assertEquals("{\"balance\":100}", second.get(5, TimeUnit.SECONDS).readEntity(String.class));
+        assertEquals("application/json", second.get().getHeaderString("content-type"));
+        assertEquals(1, serverCalls.get());
+        assertEquals(1L, coalescer.snapshot().get("coalescedCalls"));
+        assertEquals(0, coalescer.snapshot().get("inFlight"));
+    }
+
+    @Test
+    public void testDifferentCredentialsAreNotShared() throws Exception {
+        RequestCoalescer coalescer = new RequestCoalescer(true);
+
+        CompletableFuture<Response> first = coalescer.execute(
+                RequestCoalescer.key("point-service", "/points", "token-a"), this::callPoints).toCompletableFuture();
+        CompletableFuture<Response> second = coalescer.execute(
+                RequestCoalescer.key("point-service", "/points", "token-b"), this::callPoints).toCompletableFuture();
+        release.countDown();
+
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+        assertEquals(2, serverCalls.get());
+        assertEquals(0L, coalescer.snapshot().get("coalescedCalls"));
+    }
+
+    @Test
+    public void testCompletedCallIsNotReused() throws Exception {
+        RequestCoalescer coalescer = new RequestCoalescer(true);
+        String key = RequestCoalescer.key("point-service", "/points", "token-a");
+        release.countDown();
+
+        coalescer.execute(key, this::callPoints).toCompletableFuture().get(5, TimeUnit.SECONDS);
+        coalescer.execute(key, this::callPoints).toCompletableFuture().get(5, TimeUnit.SECONDS);
+        assertEquals(2, serverCalls.get());
+    }
+
+    @Test
+    public void testSingleCallIsNotBuffered() throws Exception {
+        RequestCoalescer coalescer = new RequestCoalescer(true);
+        String key = RequestCoalescer.key("user-service", "/users", null);
+        release.countDown();
+
+        Response response = coalescer.execute(key, this::callPoints).toCompletableFuture().get(5, TimeUnit.SECONDS);
+        // 合流がなければ下流のレスポンスをそのまま返す（ストリーミング中継のため）
+        assertFalse(response instanceof BufferedResponse);
+        assertEquals("{\"balance\":100}", response.readEntity(String.class));
+    }
+
+    @Test
+    public void testCoalescedCallsShareBufferedResponse() throws Exception {
+        RequestCoalescer coalescer = new RequestCoalescer(true);
+        String key = RequestCoalescer.key("user-service", "/users", null);
+
+        CompletableFuture<Response> first = coalescer.execute(key, this::callPoints).toCompletableFuture();
+        CompletableFuture<Response> second = coalescer.execute(key, this::callPoints).toCompletableFuture();
+        release.countDown();
+
+        assertTrue(first.get(5, TimeUnit.SECONDS) instanceof BufferedResponse);
+        assertSame(first.get(), second.get(5, TimeUnit.SECONDS));
+    }
+}
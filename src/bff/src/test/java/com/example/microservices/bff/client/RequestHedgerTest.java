@@ -0,0 +1,104 @@
+package com.example.microservices.bff.client;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.ws.rs.core.Response;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RequestHedger のテスト
+ */
+public class RequestHedgerTest {
+
+    private final List<CompletableFuture<Response>> attempts = new ArrayList<>();
+    private RequestHedger hedger;
+
+    private synchronized CompletionStage<Response> attempt() {
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        attempts.add(future);
+        return future;
+    }
+
+    private synchronized int attemptCount() {
+        return attempts.size();
+    }
+
+    private synchronized CompletableFuture<Response> attemptAt(int index) {
+        return attempts.get(index);
+    }
+
+    private void awaitAttempts(int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (attemptCount() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(expected, attemptCount());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (hedger != null) {
+            hedger.shutdown();
+        }
+    }
+
+    @Test
+    public void testSlowPrimaryIsHedgedAndLoserIsClosed() throws Exception {
+        hedger = new RequestHedger(true, 10, 95, 10, 100, 0);
+        CompletableFuture<Response> result = hedger.execute("op", this::attempt).toCompletableFuture();
+
+        awaitAttempts(2);
+        Response hedgeResponse = Response.ok("hedge").build();
+        attemptAt(1).complete(hedgeResponse);
+        assertSame(hedgeResponse, result.get(5, TimeUnit.SECONDS));
+
+        // 後から返った最初の呼び出しの応答は閉じられる
+        Response lateResponse = Response.ok("late").build();
+        attemptAt(0).complete(lateResponse);
+        assertThrows(IllegalStateException.class, lateResponse::getEntity);
+        assertEquals(1L, hedger.snapshot().get("hedgeWins"));
+    }
+
+    @Test
+    public void testFastPrimaryIsNotHedged() throws Exception {
+        hedger = new RequestHedger(true, 10, 95, 200, 200, 0);
+        CompletableFuture<Response> result = hedger.execute("op", () -> {
+            CompletionStage<Response> stage = attempt();
+            stage.toCompletableFuture().complete(Response.ok("fast").build());
+            return stage;
+        }).toCompletableFuture();
+
+        assertEquals(200, result.get(5, TimeUnit.SECONDS).getStatus());
+        Thread.sleep(300);
+        assertEquals(1, attemptCount());
+        assertEquals(0L, hedger.snapshot().get("hedges"));
+    }
+
+    @Test
+    public void testBudgetLimitsHedges() throws Exception {
+        // 予算0%: 初期の貯金（10回分）を使い切るとヘッジしない
+        hedger = new RequestHedger(true, 0, 95, 1, 1, 0);
+        for (int i = 0; i < 11; i++) {
+            hedger.execute("op", this::attempt);
+        }
+        awaitAttempts(21);
+        Thread.sleep(50);
+        assertEquals(21, attemptCount());
+        assertEquals(10L, hedger.snapshot().get("hedges"));
+        assertEquals(1L, hedger.snapshot().get("budgetExhausted"));
+    }
+
+    @Test
+    public void testDisabledPassesThrough() {
+        hedger = new RequestHedger(false, 10, 95, 1, 1, 0);
+        CompletionStage<Response> stage = hedger.execute("op", this::attempt);
+        assertSame(attemptAt(0), stage);
+    }
+}
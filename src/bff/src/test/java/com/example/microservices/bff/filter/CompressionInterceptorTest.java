@@ -0,0 +1,211 @@
+package com.example.microservices.bff.filter;
+
+import org.junit.jupiter.api.Test;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * CompressionInterceptor のテスト
+ */
+public class CompressionInterceptorTest {
+
+    /**
+     * エンティティを出力ストリームに書くだけのテスト用コンテキスト
+     */
+    private static class TestContext implements WriterInterceptorContext {
+        private final Map<String, Object> properties = new HashMap<>();
+        private final MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
+        private final ByteArrayOutputStream wire = new ByteArrayOutputStream();
+        private final byte[] entity;
+        private OutputStream outputStream = wire;
+
+        TestContext(String entity, String acceptEncoding) {
+            this.entity = entity.getBytes(StandardCharsets.UTF_8);
+            properties.put(CompressionInterceptor.class.getName() + ".acceptEncoding", acceptEncoding);
+            properties.put(CompressionInterceptor.class.getName() + ".route", "GET /api/test");
+        }
+
+        @Override
+        public void proceed() throws IOException {
+            // 小さな単位で書き込む（ストリーミング出力を模擬）
+            for (int off = 0; off < entity.length; off += 100) {
+                outputStream.write(entity, off, Math.min(100, entity.length - off));
+            }
+        }
+
+        @Override
+        public Object getEntity() {
+            return entity;
+        }
+
+        @Override
+        public void setEntity(Object entity) {
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return outputStream;
+        }
+
+        @Override
+        public void setOutputStream(OutputStream os) {
+            this.outputStream = os;
+        }
+
+        @Override
+        public MultivaluedMap<String, Object> getHeaders() {
+            return headers;
+        }
+
+        @Override
+        public Object getProperty(String name) {
+            return properties.get(name);
+        }
+
+        @Override
+        public Collection<String> getPropertyNames() {
+            return properties.keySet();
+        }
+
+        @Override
+        public void setProperty(String name, Object object) {
+            properties.put(name, object);
+        }
+
+        @Override
+        public void removeProperty(String name) {
+            properties.remove(name);
+        }
+
+        @Override
+        public Annotation[] getAnnotations() {
+            return new Annotation[0];
+        }
+
+        @Override
+        public void setAnnotations(Annotation[] annotations) {
+        }
+
+        @Override
+        public Class<?> getType() {
+            return byte[].class;
+        }
+
+        @Override
+        public void setType(Class<?> type) {
+        }
+
+        @Override
+        public Type getGenericType() {
+            return byte[].class;
+        }
+
+        @Override
+        public void setGenericType(Type genericType) {
+        }
+
+        @Override
+        public MediaType getMediaType() {
+            return MediaType.APPLICATION_JSON_TYPE;
+        }
+
+        @Override
+        public void setMediaType(MediaType mediaType) {
+        }
+    }
+
+    private static String repeat(String value, int times) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            sb.append(value);
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void testNegotiate() {
+        assertEquals("gzip", CompressionInterceptor.negotiate("gzip, deflate, br"));
+        assertEquals("deflate", CompressionInterceptor.negotiate("gzip;q=0, deflate"));
+        assertEquals("deflate", CompressionInterceptor.negotiate("gzip;q=0.5, deflate;q=0.8"));
+        assertEquals("gzip", CompressionInterceptor.negotiate("*"));
+        assertNull(CompressionInterceptor.negotiate("identity"));
+        assertNull(CompressionInterceptor.negotiate(null));
+    }
+
+    @Test
+    public void testLargeBodyIsGzipped() throws IOException {
+        CompressionMetrics metrics = new CompressionMetrics();
+        CompressionInterceptor interceptor = new CompressionInterceptor(metrics, true, 1024, 6, 0);
+        String body = repeat("{\"id\":1,\"name\":\"tanaka_taro\"},", 200);
+        TestContext context = new TestContext(body, "gzip, deflate");
+        context.getHeaders().add(HttpHeaders.ETAG, "\"abc\"");
+
+        interceptor.aroundWriteTo(context);
+
+        assertEquals("gzip", context.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals("W/\"abc\"", context.getHeaders().getFirst(HttpHeaders.ETAG));
+        byte[] compressed = context.wire.toByteArray();
+        assertTrue(compressed.length < body.length());
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                decoded.write(buffer, 0, read);
+            }
+            assertEquals(body, decoded.toString(StandardCharsets.UTF_8.name()));
+        }
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> route = (Map<String, Object>) metrics.snapshot().get("GET /api/test");
+        assertEquals(1L, route.get("compressedResponses"));
+        assertEquals((long) body.length(), route.get("bytesIn"));
+        assertEquals((long) compressed.length, route.get("bytesOut"));
+        assertEquals(0L, route.get("cpuSampledResponses"));
+    }
+
+    @Test
+    public void testCpuTimeIsRecordedOnlyForSampledResponses() throws IOException {
+        CompressionMetrics metrics = new CompressionMetrics();
+        CompressionInterceptor interceptor = new CompressionInterceptor(metrics, true, 1024, 6, 1);
+        String body = repeat("{\"id\":1,\"name\":\"tanaka_taro\"},", 200);
+
+        interceptor.aroundWriteTo(new TestContext(body, "gzip"));
+        interceptor.aroundWriteTo(new TestContext(body, "deflate"));
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> route = (Map<String, Object>) metrics.snapshot().get("GET /api/test");
+        assertEquals(2L, route.get("compressedResponses"));
+        assertEquals(2L, route.get("cpuSampledResponses"));
+    }
+
+    @Test
+    public void testSmallBodyIsNotCompressed() throws IOException {
+        CompressionInterceptor interceptor = new CompressionInterceptor(new CompressionMetrics(), true, 1024, 6, 0);
+        TestContext context = new TestContext("{\"balance\":100}", "gzip");
+
+        interceptor.aroundWriteTo(context);
+
+        assertNull(context.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(HttpHeaders.ACCEPT_ENCODING, context.getHeaders().getFirst(HttpHeaders.VARY));
+        assertEquals("{\"balance\":100}", context.wire.toString(StandardCharsets.UTF_8.name()));
+    }
+}
@@ -0,0 +1,335 @@
+package com.example.microservices.bff.rest;
+
+import com.example.microservices.bff.client.PointBalanceFallbackCache;
+import com.example.microservices.bff.client.PointServiceClient;
+import com.example.microservices.bff.client.UserServiceClient;
+import com.example.microservices.bff.security.RateLimiter;
+import com.example.microservices.bff.security.TokenAuthenticator;
+import com.example.microservices.bff.security.UserPrincipal;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * BatchResource のテスト
+ * 下流サービスはローカルの HttpServer で模擬し、BffResource と同じ ApiHandlers を通して呼び出す
+ */
+public class BatchResourceTest {
+
+    private static final String TOKEN = "valid-token";
+    private static final UUID USER_ID = UUID.randomUUID();
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private Client client;
+    private String baseUrl;
+    private final AtomicInteger pointsStatus = new AtomicInteger(200);
+    private final AtomicInteger pointsBalance = new AtomicInteger(1500);
+    private final AtomicInteger pointsRequests = new AtomicInteger();
+    private final AtomicReference<CountDownLatch> pointsGate = new AtomicReference<>();
+    private final AtomicInteger allowedCalls = new AtomicInteger(Integer.MAX_VALUE);
+    private PointBalanceFallbackCache fallbackCache;
+    private BatchResource resource;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/account", exchange -> respond(exchange, 200, "{\"userId\":\"" + USER_ID + "\"}"));
+        server.createContext("/users", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            respond(exchange, 200, "/users".equals(path) ? "[{\"name\":\"all\"}]"
+                    : "{\"id\":\"" + path.substring("/users/".length()) + "\"}");
+        });
+        server.createContext("/points", exchange -> {
+            pointsRequests.incrementAndGet();
+            CountDownLatch gate = pointsGate.get();
+            try {
+                if (gate != null) {
+                    gate.await(5, TimeUnit.SECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            respond(exchange, pointsStatus.get(), "{\"balance\":" + pointsBalance.get() + "}");
+        });
+        server.createContext("/history", exchange -> {
+            // 先に投げたリクエストほど遅く返す（応答の順番が入れ替わっても結果はリクエスト順）
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            respond(exchange, 200, "{\"query\":\"" + exchange.getRequestURI().getQuery() + "\"}");
+        });
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        client = ClientBuilder.newClient();
+
+        fallbackCache = new PointBalanceFallbackCache();
+        ApiHandlers handlers = new ApiHandlers(new FakeUserServiceClient(), new FakePointServiceClient(), fallbackCache);
+        resource = new BatchResource(handlers, new FakeTokenAuthenticator(), new FakeRateLimiter());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        CountDownLatch gate = pointsGate.get();
+        if (gate != null) {
+            gate.countDown();
+        }
+        client.close();
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    private CompletionStage<Response> get(String path) {
+        return client.target(baseUrl).path(path).request().rx().get();
+    }
+
+    private class FakeUserServiceClient extends UserServiceClient {
+        @Override
+        public CompletionStage<Response> getUserAccount(UUID userId, String ifNoneMatch) {
+            return get("/account");
+        }
+
+        @Override
+        public CompletionStage<Response> getUser(UUID userId, String ifNoneMatch) {
+            return get("/users/" + userId);
+        }
+
+        @Override
+        public CompletionStage<Response> getAllUsers() {
+            return get("/users");
+        }
+    }
+
+    private class FakePointServiceClient extends PointServiceClient {
+        @Override
+        public CompletionStage<Response> getPoints(String jwtToken, String ifNoneMatch) {
+            return get("/points");
+        }
+
+        @Override
+        public CompletionStage<Response> getPointHistory(String jwtToken, int page, int limit) {
+            return client.target(baseUrl).path("/history")
+                    .queryParam("page", page)
+                    .queryParam("limit", limit)
+                    .request().rx().get();
+        }
+    }
+
+    private static class FakeTokenAuthenticator extends TokenAuthenticator {
+        @Override
+        public CompletionStage<Optional<UserPrincipal>> authenticateToken(String token) {
+            return CompletableFuture.completedFuture(TOKEN.equals(token)
+                    ? Optional.of(new UserPrincipal(USER_ID, "tanaka_taro", Instant.now().plusSeconds(60)))
+                    : Optional.empty());
+        }
+    }
+
+    /**
+     * allowedCalls 回までは通し、それ以降は1秒待つよう返すレート制限
+     */
+    private class FakeRateLimiter extends RateLimiter {
+        @Override
+        public long tryAcquire(Route route, Dimension dimension, String key) {
+            assertEquals(Route.READ, route);
+            assertEquals(Dimension.USER, dimension);
+            assertEquals(USER_ID.toString(), key);
+            return allowedCalls.getAndDecrement() > 0 ? 0 : 1;
+        }
+    }
+
+    private JsonArray executeBatch(String body) throws Exception {
+        Response response = executeBatchResponse("Bearer " + TOKEN, body);
+        assertEquals(200, response.getStatus());
+        try (JsonReader reader = Json.createReader(new StringReader((String) response.getEntity()))) {
+            return reader.readObject().getJsonArray("responses");
+        }
+    }
+
+    private Response executeBatchResponse(String authHeader, String body) throws Exception {
+        JsonObject json;
+        try (JsonReader reader = Json.createReader(new StringReader(body))) {
+            json = reader.readObject();
+        }
+        return resource.executeBatch(authHeader, json).toCompletableFuture().get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testResponsesKeepRequestOrder() throws Exception {
+        JsonArray responses = executeBatch("{\"requests\":["
+                + "{\"id\":\"history\",\"path\":\"/api/points/history\",\"query\":{\"page\":2,\"limit\":\"20\"}},"
+                + "{\"id\":\"account\",\"method\":\"GET\",\"path\":\"/api/account\"},"
+                + "{\"id\":\"users\",\"path\":\"/api/users\"},"
+                + "{\"id\":\"user\",\"path\":\"/api/users/" + USER_ID + "\"},"
+                + "{\"id\":\"points\",\"path\":\"/api/points\"}]}");
+
+        assertEquals(5, responses.size());
+        String[] ids = {"history", "account", "users", "user", "points"};
+        for (int i = 0; i < ids.length; i++) {
+            assertEquals(ids[i], responses.getJsonObject(i).getString("id"));
+            assertEquals(200, responses.getJsonObject(i).getInt("status"));
+        }
+        assertEquals("page=2&limit=20", responses.getJsonObject(0).getJsonObject("body").getString("query"));
+        assertEquals(USER_ID.toString(), responses.getJsonObject(1).getJsonObject("body").getString("userId"));
+        assertEquals("all", responses.getJsonObject(2).getJsonArray("body").getJsonObject(0).getString("name"));
+        assertEquals(USER_ID.toString(), responses.getJsonObject(3).getJsonObject("body").getString("id"));
+        assertEquals(1500, responses.getJsonObject(4).getJsonObject("body").getInt("balance"));
+    }
+
+    @Test
+    public void testInvalidItemsFailIndividually() throws Exception {
+        JsonArray responses = executeBatch("{\"requests\":["
+                + "\"not-an-object\","
+                + "{\"id\":\"no-path\"},"
+                + "{\"id\":\"post\",\"method\":\"POST\",\"path\":\"/api/points\"},"
+                + "{\"id\":\"unknown\",\"path\":\"/api/unknown\"},"
+                + "{\"id\":\"bad-uuid\",\"path\":\"/api/users/not-a-uuid\"},"
+                + "{\"id\":\"bad-query\",\"path\":\"/api/points/history\",\"query\":\"page=2\"},"
+                + "{\"id\":\"bad-page\",\"path\":\"/api/points/history\",\"query\":{\"page\":\"abc\"}},"
+                + "{\"id\":\"ok\",\"path\":\"/api/account\"}]}");
+
+        assertEquals(8, responses.size());
+        assertFalse(responses.getJsonObject(0).containsKey("id"));
+        assertEquals(400, responses.getJsonObject(0).getInt("status"));
+        int[] expected = {400, 400, 405, 404, 400, 400, 400, 200};
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], responses.getJsonObject(i).getInt("status"), "item " + i);
+        }
+        assertEquals("Invalid request: query must be an object", responses.getJsonObject(5).getString("error"));
+        assertTrue(responses.getJsonObject(7).containsKey("body"));
+    }
+
+    @Test
+    public void testRateLimitIsAppliedPerItem() throws Exception {
+        allowedCalls.set(2);
+
+        JsonArray responses = executeBatch("{\"requests\":["
+                + "{\"path\":\"/api/account\"},"
+                + "{\"path\":\"/api/unknown\"},"
+                + "{\"path\":\"/api/users\"},"
+                + "{\"path\":\"/api/points\"}]}");
+
+        // 実行できないリクエスト（404）は枠を消費しない
+        assertEquals(200, responses.getJsonObject(0).getInt("status"));
+        assertEquals(404, responses.getJsonObject(1).getInt("status"));
+        assertEquals(200, responses.getJsonObject(2).getInt("status"));
+        assertEquals(429, responses.getJsonObject(3).getInt("status"));
+        assertEquals("Too Many Requests", responses.getJsonObject(3).getString("error"));
+    }
+
+    @Test
+    public void testPointsFallBackToLastKnownBalance() throws Exception {
+        String batch = "{\"requests\":[{\"id\":\"points\",\"path\":\"/api/points\"}]}";
+        assertEquals(200, executeBatch(batch).getJsonObject(0).getInt("status"));
+        // 最終正常値の保存は下流の応答と並行して行われる
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (fallbackCache.get(USER_ID) == null && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        pointsStatus.set(503);
+        JsonObject points = executeBatch(batch).getJsonObject(0);
+
+        assertEquals(200, points.getInt("status"));
+        assertEquals(1500, points.getJsonObject("body").getInt("balance"));
+        assertTrue(points.getJsonObject("body").getBoolean("stale"));
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    @Test
+    public void testFailingPointsAreServedStaleAndRevalidatedInBackground() throws Exception {
+        String batch = "{\"requests\":[{\"id\":\"points\",\"path\":\"/api/points\"}]}";
+        executeBatch(batch);
+        await(() -> fallbackCache.get(USER_ID) != null);
+        pointsStatus.set(503);
+        assertTrue(executeBatch(batch).getJsonObject(0).getJsonObject("body").getBoolean("stale"));
+        await(() -> fallbackCache.get(USER_ID).isFailing());
+
+        // 障害中は下流の応答を待たずに stale を返し、取得し直しは裏で1件だけ行う
+        CountDownLatch release = new CountDownLatch(1);
+        pointsGate.set(release);
+        pointsStatus.set(200);
+        pointsBalance.set(1200);
+        int requestsBefore = pointsRequests.get();
+        for (int i = 0; i < 3; i++) {
+            JsonObject body = executeBatch(batch).getJsonObject(0).getJsonObject("body");
+            assertTrue(body.getBoolean("stale"));
+            assertEquals(1500, body.getInt("balance"));
+        }
+        await(() -> pointsRequests.get() == requestsBefore + 1);
+        assertEquals(1L, fallbackCache.snapshot().get("revalidations"));
+
+        // 取得し直しに成功したら最新の残高に戻る
+        release.countDown();
+        await(() -> !fallbackCache.get(USER_ID).isFailing());
+        JsonObject body = executeBatch(batch).getJsonObject(0).getJsonObject("body");
+        assertFalse(body.containsKey("stale"));
+        assertEquals(1200, body.getInt("balance"));
+        assertEquals(requestsBefore + 2, pointsRequests.get());
+    }
+
+    @Test
+    public void testPointServiceFailureWithoutFallbackIs503() throws Exception {
+        pointsStatus.set(503);
+
+        JsonObject points = executeBatch("{\"requests\":[{\"path\":\"/api/points\"}]}").getJsonObject(0);
+
+        assertEquals(503, points.getInt("status"));
+        assertEquals("Service Unavailable", points.getString("error"));
+    }
+
+    @Test
+    public void testBatchLevelErrors() throws Exception {
+        assertEquals(400, executeBatchResponse("Bearer " + TOKEN, "{}").getStatus());
+        assertEquals(401, executeBatchResponse(null, "{\"requests\":[]}").getStatus());
+        assertEquals(401, executeBatchResponse("Bearer other", "{\"requests\":[]}").getStatus());
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.microservices.bff.rest;
+
+import com.example.microservices.bff.client.AuthServiceClient;
+import com.example.microservices.bff.security.TokenAuthenticator;
+import com.example.microservices.bff.security.UserPrincipal;
+import org.junit.jupiter.api.Test;
+
+import javax.ws.rs.core.Response;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * BffResource のログアウトのテスト
+ */
+public class BffResourceTest {
+
+    private static final String TOKEN = "header.payload.signature";
+
+    /**
+     * ログアウトの結果だけを返す Auth Service
+     */
+    private static class FakeAuthServiceClient extends AuthServiceClient {
+        private final int logoutStatus;
+
+        FakeAuthServiceClient(int logoutStatus) {
+            this.logoutStatus = logoutStatus;
+        }
+
+        @Override
+        public CompletionStage<Response> logout(String token) {
+            return CompletableFuture.completedFuture(Response.status(logoutStatus).build());
+        }
+    }
+
+    /**
+     * 失効させたJWTを拒否する認証（JWTのローカル検証を模擬する）
+     */
+    private static class FakeTokenAuthenticator extends TokenAuthenticator {
+        private final Set<String> revoked = new HashSet<>();
+
+        @Override
+        public boolean isJwt(String token) {
+            return true;
+        }
+
+        @Override
+        public CompletionStage<Optional<UserPrincipal>> authenticateToken(String token) {
+            return CompletableFuture.completedFuture(revoked.contains(token)
+                    ? Optional.empty()
+                    : Optional.of(new UserPrincipal(UUID.randomUUID(), "tanaka_taro", Instant.now().plusSeconds(60))));
+        }
+
+        @Override
+        public void invalidate(String token) {
+        }
+
+        @Override
+        public void revoke(String token) {
+            revoked.add(token);
+        }
+    }
+
+    private static int status(CompletionStage<Response> response) throws Exception {
+        return response.toCompletableFuture().get(5, TimeUnit.SECONDS).getStatus();
+    }
+
+    @Test
+    public void testTokenIsRejectedRightAfterLogout() throws Exception {
+        BffResource resource = new BffResource(new FakeAuthServiceClient(200), new FakeTokenAuthenticator());
+        assertEquals(200, status(resource.verifyToken("Bearer " + TOKEN)));
+
+        assertEquals(200, status(resource.logout("Bearer " + TOKEN)));
+
+        assertEquals(401, status(resource.verifyToken("Bearer " + TOKEN)));
+    }
+
+    @Test
+    public void testFailedLogoutDoesNotRevoke() throws Exception {
+        BffResource resource = new BffResource(new FakeAuthServiceClient(503), new FakeTokenAuthenticator());
+
+        assertEquals(503, status(resource.logout("Bearer " + TOKEN)));
+
+        assertEquals(200, status(resource.verifyToken("Bearer " + TOKEN)));
+    }
+}
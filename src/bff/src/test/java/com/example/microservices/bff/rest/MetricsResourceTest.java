@@ -0,0 +1,35 @@
+package com.example.microservices.bff.rest;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * MetricsResource の公開範囲のテスト
+ */
+public class MetricsResourceTest {
+
+    @Test
+    public void testDisabledByDefault() {
+        MetricsResource resource = new MetricsResource(false, "secret");
+
+        assertEquals(404, resource.checkAccess(null).getStatus());
+        // トークンが正しくても無効なら公開しない
+        assertEquals(404, resource.checkAccess("secret").getStatus());
+    }
+
+    @Test
+    public void testTokenIsRequiredWhenConfigured() {
+        MetricsResource resource = new MetricsResource(true, "secret");
+
+        assertEquals(401, resource.checkAccess(null).getStatus());
+        assertEquals(401, resource.checkAccess("wrong").getStatus());
+        assertEquals(401, resource.checkAccess("secret-but-longer").getStatus());
+        assertNull(resource.checkAccess("secret"));
+    }
+
+    @Test
+    public void testEnabledWithoutToken() {
+        assertNull(new MetricsResource(true, null).checkAccess(null));
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.microservices.bff.rest;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * StreamingRelay のテスト
+ */
+public class StreamingRelayTest {
+
+    private static final int LARGE_BODY_SIZE = 1024 * 1024;
+
+    private HttpServer server;
+    private Client client;
+    private String baseUrl;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/large", exchange -> {
+            byte[] body = new byte[LARGE_BODY_SIZE];
+            Arrays.fill(body, (byte) 'a');
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.getResponseHeaders().add("ETag", "\"v1\"");
+            exchange.getResponseHeaders().add("X-Internal", "secret");
+            // チャンク転送で返す
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        server.createContext("/empty", exchange -> {
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        client = ClientBuilder.newClient();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        client.close();
+        server.stop(0);
+    }
+
+    @Test
+    public void testBodyIsStreamedWithForwardedHeaders() throws IOException {
+        Response relayed = StreamingRelay.relay(client.target(baseUrl).path("/large").request().get());
+
+        assertEquals(200, relayed.getStatus());
+        assertEquals("application/json", relayed.getHeaderString("Content-Type"));
+        assertEquals("\"v1\"", relayed.getHeaderString("ETag"));
+        assertNull(relayed.getHeaderString("X-Internal"));
+        assertTrue(relayed.getEntity() instanceof StreamingOutput);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ((StreamingOutput) relayed.getEntity()).write(out);
+        assertEquals(LARGE_BODY_SIZE, out.size());
+    }
+
+    @Test
+    public void testResponseWithoutBody() {
+        Response relayed = StreamingRelay.relay(client.target(baseUrl).path("/empty").request().get());
+
+        assertEquals(204, relayed.getStatus());
+        assertNull(relayed.getEntity());
+    }
+}
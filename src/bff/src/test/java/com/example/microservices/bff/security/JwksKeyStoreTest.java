@@ -0,0 +1,227 @@
+package com.example.microservices.bff.security;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.example.microservices.bff.client.AuthServiceClient;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JwksKeyStore（Auth Service の公開鍵のキャッシュ）のテスト
+ */
+public class JwksKeyStoreTest {
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private Client client;
+    private String baseUrl;
+    private final AtomicInteger keyRequests = new AtomicInteger();
+    private final AtomicInteger keysStatus = new AtomicInteger(200);
+    private final AtomicReference<String> keysBody = new AtomicReference<>("{\"keys\":[]}");
+    private final AtomicReference<CountDownLatch> keysGate = new AtomicReference<>();
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        // Auth Service の GET /api/auth/keys を模擬する
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/keys", exchange -> {
+            keyRequests.incrementAndGet();
+            CountDownLatch gate = keysGate.get();
+            try {
+                if (gate != null) {
+                    gate.await(5, TimeUnit.SECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] bytes = keysBody.get().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(keysStatus.get(), bytes.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(bytes);
+            }
+        });
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        client = ClientBuilder.newClient();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        client.close();
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    private class StubAuthServiceClient extends AuthServiceClient {
+        @Override
+        public CompletionStage<Response> getKeys() {
+            return client.target(baseUrl).path("/keys").request().rx().get();
+        }
+    }
+
+    private static KeyPair generateKeyPair() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        return generator.generateKeyPair();
+    }
+
+    private static String coordinate(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        byte[] fixed = new byte[32];
+        int length = Math.min(bytes.length, 32);
+        System.arraycopy(bytes, bytes.length - length, fixed, 32 - length, length);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(fixed);
+    }
+
+    private static String jwks(String keyId, ECPublicKey publicKey) {
+        return "{\"keys\":[{\"kty\":\"EC\",\"crv\":\"P-256\",\"use\":\"sig\",\"alg\":\"ES256\",\"kid\":\"" + keyId + "\","
+                + "\"x\":\"" + coordinate(publicKey.getW().getAffineX()) + "\","
+                + "\"y\":\"" + coordinate(publicKey.getW().getAffineY()) + "\"},"
+                + "{\"kty\":\"RSA\",\"kid\":\"ignored\",\"n\":\"AQAB\",\"e\":\"AQAB\"}]}";
+    }
+
+    private static String sign(KeyPair keyPair, String keyId) {
+        return JWT.create()
+                .withKeyId(keyId)
+                .withClaim("userId", UUID.randomUUID().toString())
+                .withExpiresAt(new Date(System.currentTimeMillis() + 60_000))
+                .sign(Algorithm.ECDSA256((ECPublicKey) keyPair.getPublic(), (ECPrivateKey) keyPair.getPrivate()));
+    }
+
+    @Test
+    public void testVerifyWithPublishedKey() throws Exception {
+        KeyPair keyPair = generateKeyPair();
+        JwksKeyStore keyStore = new JwksKeyStore(new StubAuthServiceClient(), 10, 1000, System::nanoTime, Runnable::run);
+        keyStore.apply(JwksKeyStore.parse(jwks("2024-06", (ECPublicKey) keyPair.getPublic())));
+
+        assertNotNull(keyStore.verifierFor("2024-06").verify(sign(keyPair, "2024-06")));
+        // 同じ kid でも別の鍵で署名されたトークンは拒否する
+        String forged = sign(generateKeyPair(), "2024-06");
+        assertThrows(JWTVerificationException.class, () -> keyStore.verifierFor("2024-06").verify(forged));
+        assertEquals(0, keyRequests.get());
+    }
+
+    @Test
+    public void testConcurrentUnknownKeyIdsShareOneRefresh() throws Exception {
+        KeyPair keyPair = generateKeyPair();
+        keysBody.set(jwks("2024-07", (ECPublicKey) keyPair.getPublic()));
+        CountDownLatch release = new CountDownLatch(1);
+        keysGate.set(release);
+        ExecutorService refresher = Executors.newSingleThreadExecutor();
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        try {
+            JwksKeyStore keyStore = new JwksKeyStore(new StubAuthServiceClient(), 10, 5000, System::nanoTime, refresher);
+            String token = sign(keyPair, "2024-07");
+
+            // ローテーション直後の鍵で署名されたトークンが同時に届く
+            List<Future<JWTVerifier>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(callers.submit(() -> keyStore.verifierFor("2024-07")));
+            }
+            Thread.sleep(100);
+            release.countDown();
+
+            for (Future<JWTVerifier> result : results) {
+                assertNotNull(result.get(5, TimeUnit.SECONDS).verify(token));
+            }
+            assertEquals(1, keyRequests.get());
+            assertEquals(1L, keyStore.snapshot().get("refreshes"));
+        } finally {
+            release.countDown();
+            callers.shutdownNow();
+            refresher.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testUnknownKeyIdGivesUpAfterWaitTimeout() throws Exception {
+        KeyPair keyPair = generateKeyPair();
+        keysBody.set(jwks("2024-07", (ECPublicKey) keyPair.getPublic()));
+        CountDownLatch release = new CountDownLatch(1);
+        keysGate.set(release);
+        ExecutorService refresher = Executors.newSingleThreadExecutor();
+        try {
+            JwksKeyStore keyStore = new JwksKeyStore(new StubAuthServiceClient(), 10, 100, System::nanoTime, refresher);
+
+            // 取得が間に合わなければ待たずに拒否し、取得は続ける
+            assertNull(keyStore.verifierFor("2024-07"));
+            assertEquals(1L, keyStore.snapshot().get("unknownKeyTimeouts"));
+
+            release.countDown();
+            refresher.shutdown();
+            assertTrue(refresher.awaitTermination(5, TimeUnit.SECONDS));
+            assertNotNull(keyStore.verifierFor("2024-07"));
+        } finally {
+            release.countDown();
+            refresher.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testUnknownKeyIdRefreshesAtMostOncePerInterval() {
+        AtomicLong now = new AtomicLong();
+        List<Runnable> scheduled = new ArrayList<>();
+        // Auth Service が障害中の状態（取得は失敗し、鍵は空のまま）
+        keysStatus.set(503);
+        JwksKeyStore keyStore = new JwksKeyStore(new StubAuthServiceClient(), 10, 0, now::get, scheduled::add);
+
+        // 実行中の取得は1つだけ
+        assertNull(keyStore.verifierFor("unknown"));
+        assertNull(keyStore.verifierFor("unknown"));
+        assertEquals(1, scheduled.size());
+        assertEquals(0L, keyStore.snapshot().get("refreshes"));
+
+        scheduled.remove(0).run();
+        assertEquals(1L, keyStore.snapshot().get("refreshes"));
+        assertEquals(1L, keyStore.snapshot().get("refreshFailures"));
+
+        // 最小間隔が経つまでは取得しない
+        assertNull(keyStore.verifierFor("unknown"));
+        assertTrue(scheduled.isEmpty());
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(11));
+        assertNull(keyStore.verifierFor("unknown"));
+        assertEquals(1, scheduled.size());
+        scheduled.remove(0).run();
+        assertEquals(2L, keyStore.snapshot().get("refreshes"));
+        assertEquals(4L, keyStore.snapshot().get("unknownKeyIds"));
+        assertEquals(2, keyRequests.get());
+    }
+}
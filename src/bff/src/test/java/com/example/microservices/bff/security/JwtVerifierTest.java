@@ -0,0 +1,120 @@
+package com.example.microservices.bff.security;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JwtVerifier のテスト
+ */
+public class JwtVerifierTest {
+
+    private static final String SECRET = "test-secret";
+
+    private final JwtVerifier verifier = new JwtVerifier(SECRET);
+
+    private String createToken(String secret, UUID userId, String username, long expiresInMillis) {
+        Date now = new Date();
+        return JWT.create()
+                .withClaim("userId", userId.toString())
+                .withClaim("username", username)
+                .withIssuedAt(now)
+                .withExpiresAt(new Date(now.getTime() + expiresInMillis))
+                .sign(Algorithm.HMAC256(secret));
+    }
+
+    @Test
+    public void testVerifyValidToken() {
+        UUID userId = UUID.randomUUID();
+        String token = createToken(SECRET, userId, "tanaka_taro", 60_000);
+
+        Optional<UserPrincipal> principal = verifier.verify(token);
+
+        assertTrue(principal.isPresent());
+        assertEquals(userId, principal.get().getUserId());
+        assertEquals("tanaka_taro", principal.get().getUsername());
+        assertNotNull(principal.get().getExpiresAt());
+    }
+
+    @Test
+    public void testRejectWrongSignature() {
+        String token = createToken("other-secret", UUID.randomUUID(), "tanaka_taro", 60_000);
+        assertFalse(verifier.verify(token).isPresent());
+    }
+
+    @Test
+    public void testRejectExpiredToken() {
+        String token = createToken(SECRET, UUID.randomUUID(), "tanaka_taro", -60_000);
+        assertFalse(verifier.verify(token).isPresent());
+    }
+
+    @Test
+    public void testRejectMissingUserId() {
+        String token = JWT.create()
+                .withClaim("username", "tanaka_taro")
+                .withExpiresAt(new Date(System.currentTimeMillis() + 60_000))
+                .sign(Algorithm.HMAC256(SECRET));
+        assertFalse(verifier.verify(token).isPresent());
+    }
+
+    @Test
+    public void testVerifyByKeyId() {
+        Map<String, String> keys = new HashMap<>();
+        keys.put("default", SECRET);
+        keys.put("2024-06", "rotated-secret");
+        JwtVerifier rotating = new JwtVerifier(keys, null);
+        UUID userId = UUID.randomUUID();
+        String rotated = JWT.create()
+                .withKeyId("2024-06")
+                .withClaim("userId", userId.toString())
+                .withExpiresAt(new Date(System.currentTimeMillis() + 60_000))
+                .sign(Algorithm.HMAC256("rotated-secret"));
+        String unknownKid = JWT.create()
+                .withKeyId("retired")
+                .withClaim("userId", userId.toString())
+                .withExpiresAt(new Date(System.currentTimeMillis() + 60_000))
+                .sign(Algorithm.HMAC256("rotated-secret"));
+
+        assertEquals(userId, rotating.verify(rotated).get().getUserId());
+        // kid なしのトークンは "default" の鍵で検証する
+        assertTrue(rotating.verify(createToken(SECRET, userId, "tanaka_taro", 60_000)).isPresent());
+        assertFalse(rotating.verify(unknownKid).isPresent());
+    }
+
+    @Test
+    public void testIsJwt() {
+        assertTrue(verifier.isJwt(createToken(SECRET, UUID.randomUUID(), "u", 60_000)));
+        // レガシーセッショントークン（Base64URL）はJWT形式ではない
+        assertFalse(verifier.isJwt("q2X8m1vJ0b9yQ4n7c3K5w6Z1r8T0p2L4s6D8f0H2j4k"));
+        assertFalse(verifier.isJwt("a.b"));
+        assertFalse(verifier.isJwt("a..c"));
+        assertFalse(verifier.isJwt(null));
+    }
+
+    @Test
+    public void testHs256IsRejectedUnlessConfigured() {
+        String token = createToken("your-secret-key-change-this-in-production", UUID.randomUUID(), "u", 60_000);
+        // シークレット未設定の既定の構成では HS256 のトークンを受け付けない
+        assertFalse(new JwtVerifier().verify(token).isPresent());
+        assertThrows(IllegalArgumentException.class, () -> JwtVerifier.parseAcceptUntil(null));
+    }
+
+    @Test
+    public void testHs256IsRejectedAfterAcceptUntil() {
+        String token = createToken(SECRET, UUID.randomUUID(), "u", 60_000);
+        Map<String, String> keys = new HashMap<>();
+        keys.put("default", SECRET);
+
+        assertTrue(new JwtVerifier(keys, Instant.now().plusSeconds(3600)).verify(token).isPresent());
+        assertFalse(new JwtVerifier(keys, Instant.now().minusSeconds(1)).verify(token).isPresent());
+    }
+}
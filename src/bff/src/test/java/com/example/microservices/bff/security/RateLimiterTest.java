@@ -0,0 +1,71 @@
+package com.example.microservices.bff.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RateLimiter のテスト
+ */
+public class RateLimiterTest {
+
+    private long now = 0;
+
+    private RateLimiter createLimiter() {
+        RateLimiter limiter = new RateLimiter(true, 300, () -> now);
+        // 3回までバースト、その後は0.5回/秒
+        limiter.configure(RateLimiter.Route.LOGIN, RateLimiter.Dimension.USER, 3, 0.5);
+        return limiter;
+    }
+
+    @Test
+    public void testBurstThenRetryAfter() {
+        RateLimiter limiter = createLimiter();
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire(RateLimiter.Route.LOGIN, RateLimiter.Dimension.USER, "tanaka_taro"));
+        }
+        assertEquals(2, limiter.tryAcquire(RateLimiter.Route.LOGIN, RateLimiter.Dimension.USER, "tanaka_taro"));
+
+        // 別のキーは影響を受けない（大文字小文字は区別しない）
+        assertEquals(0, limiter.tryAcquire(RateLimiter.Route.LOGIN, RateLimiter.Dimension.USER, "suzuki_hanako"));
+        assertTrue(limiter.tryAcquire(RateLimiter.Route.LOGIN, RateLimiter.Dimension.USER, "TANAKA_TARO") > 0);
+
+        now += TimeUnit.SECONDS.toNanos(2);
+        assertEquals(0, limiter.tryAcquire(RateLimiter.Route.LOGIN, RateLimiter.Dimension.USER, "tanaka_taro"));
+
+        @SuppressWarnings("unchecked")
+        Map<String, Long> rejected = (Map<String, Long>) limiter.snapshot().get("rejected");
+        assertEquals(2L, rejected.get("LOGIN_USER"));
+    }
+
+    @Test
+    public void testUnconfiguredRouteIsNotLimited() {
+        RateLimiter limiter = createLimiter();
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0, limiter.tryAcquire(RateLimiter.Route.READ, RateLimiter.Dimension.IP, "127.0.0.1"));
+        }
+    }
+
+    @Test
+    public void testIdleAndRefilledBucketsAreEvicted() {
+        RateLimiter limiter = createLimiter();
+        limiter.tryAcquire(RateLimiter.Route.LOGIN, RateLimiter.Dimension.USER, "a");
+        limiter.tryAcquire(RateLimiter.Route.LOGIN, RateLimiter.Dimension.USER, "b");
+        for (int i = 0; i < 3; i++) {
+            limiter.tryAcquire(RateLimiter.Route.LOGIN, RateLimiter.Dimension.USER, "c");
+        }
+        assertEquals(3, limiter.size());
+
+        // 2秒後: a, b は満タンに戻る、c はまだ途中
+        now += TimeUnit.SECONDS.toNanos(2);
+        limiter.evictIdle();
+        assertEquals(1, limiter.size());
+
+        now += TimeUnit.SECONDS.toNanos(301);
+        limiter.evictIdle();
+        assertEquals(0, limiter.size());
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.microservices.bff.security;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import org.junit.jupiter.api.Test;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.container.ContainerRequestContext;
+import java.lang.reflect.Proxy;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * TokenAuthenticator のテスト（フィルターで検証したJWTの再利用）
+ */
+public class TokenAuthenticatorTest {
+
+    private static final String SECRET = "test-secret";
+
+    /**
+     * 署名の検証回数を数える検証器
+     */
+    private static class CountingJwtVerifier extends JwtVerifier {
+        private final AtomicInteger verifications = new AtomicInteger();
+
+        CountingJwtVerifier() {
+            super(SECRET);
+        }
+
+        @Override
+        public Optional<UserPrincipal> verify(String token) {
+            verifications.incrementAndGet();
+            return super.verify(token);
+        }
+    }
+
+    /**
+     * 属性を共有するリクエスト（ContainerRequestContext のプロパティはサーブレットのリクエスト属性と同期される）
+     */
+    private final Map<String, Object> attributes = new HashMap<>();
+
+    private final HttpServletRequest servletRequest = (HttpServletRequest) Proxy.newProxyInstance(
+            getClass().getClassLoader(), new Class<?>[]{HttpServletRequest.class}, (proxy, method, args) -> {
+                if (method.getName().equals("getAttribute")) {
+                    return attributes.get((String) args[0]);
+                }
+                throw new UnsupportedOperationException(method.getName());
+            });
+
+    private final ContainerRequestContext requestContext = (ContainerRequestContext) Proxy.newProxyInstance(
+            getClass().getClassLoader(), new Class<?>[]{ContainerRequestContext.class}, (proxy, method, args) -> {
+                if (method.getName().equals("setProperty")) {
+                    attributes.put((String) args[0], args[1]);
+                    return null;
+                }
+                throw new UnsupportedOperationException(method.getName());
+            });
+
+    private static String createToken(UUID userId) {
+        return JWT.create()
+                .withClaim("userId", userId.toString())
+                .withExpiresAt(new Date(System.currentTimeMillis() + 60_000))
+                .sign(Algorithm.HMAC256(SECRET));
+    }
+
+    @Test
+    public void testJwtVerifiedInFilterIsReused() throws Exception {
+        CountingJwtVerifier jwtVerifier = new CountingJwtVerifier();
+        TokenAuthenticator authenticator = new TokenAuthenticator(jwtVerifier, servletRequest);
+        UUID userId = UUID.randomUUID();
+        String token = createToken(userId);
+
+        assertEquals(userId, authenticator.verifyJwtForRequest(requestContext, token).get().getUserId());
+        Optional<UserPrincipal> principal = authenticator.authenticateToken(token).toCompletableFuture().get();
+
+        assertEquals(userId, principal.get().getUserId());
+        assertEquals(1, jwtVerifier.verifications.get());
+    }
+
+    @Test
+    public void testLoggedOutJwtIsRejectedBeforeNextPoll() throws Exception {
+        TokenRevocationCache revocationCache = new TokenRevocationCache();
+        TokenAuthenticator authenticator = new TokenAuthenticator(new JwtVerifier(SECRET, revocationCache), servletRequest);
+        String jti = UUID.randomUUID().toString();
+        String token = JWT.create()
+                .withJWTId(jti)
+                .withClaim("userId", UUID.randomUUID().toString())
+                .withExpiresAt(new Date(System.currentTimeMillis() + 60_000))
+                .sign(Algorithm.HMAC256(SECRET));
+        assertTrue(authenticator.authenticateToken(token).toCompletableFuture().get().isPresent());
+
+        authenticator.revoke(token);
+
+        // 失効一覧の取得を待たずに、フィルターでもエンドポイントでも拒否する
+        assertFalse(authenticator.verifyJwtForRequest(requestContext, token).isPresent());
+        assertFalse(authenticator.authenticateToken(token).toCompletableFuture().get().isPresent());
+
+        // ログアウト前に始まった取得の結果（まだ載っていない一覧）で差し替えられても拒否し続ける
+        revocationCache.apply(new HashMap<>(), "\"v1\"");
+        assertFalse(authenticator.authenticateToken(token).toCompletableFuture().get().isPresent());
+        assertEquals(1, revocationCache.snapshot().get("revokedLocally"));
+
+        // 一覧に載ったら手元の分は外す
+        Map<String, Long> listed = new HashMap<>();
+        listed.put(jti, System.currentTimeMillis() / 1000 + 60);
+        revocationCache.apply(listed, "\"v2\"");
+        assertFalse(authenticator.authenticateToken(token).toCompletableFuture().get().isPresent());
+        assertEquals(0, revocationCache.snapshot().get("revokedLocally"));
+    }
+
+    @Test
+    public void testOtherTokenIsVerifiedAgain() throws Exception {
+        CountingJwtVerifier jwtVerifier = new CountingJwtVerifier();
+        TokenAuthenticator authenticator = new TokenAuthenticator(jwtVerifier, servletRequest);
+        authenticator.verifyJwtForRequest(requestContext, createToken(UUID.randomUUID()));
+
+        UUID otherUser = UUID.randomUUID();
+        Optional<UserPrincipal> principal = authenticator.authenticateToken(createToken(otherUser))
+                .toCompletableFuture().get();
+        assertEquals(otherUser, principal.get().getUserId());
+        assertEquals(2, jwtVerifier.verifications.get());
+    }
+}
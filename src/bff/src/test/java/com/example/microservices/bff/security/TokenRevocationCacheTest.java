@@ -0,0 +1,43 @@
+package com.example.microservices.bff.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * TokenRevocationCache（失効済みJWTの手元の写し）のテスト
+ */
+public class TokenRevocationCacheTest {
+
+    private static final Instant NOW = Instant.parse("2024-06-01T00:00:00Z");
+
+    @Test
+    public void testParseRevocationList() {
+        Map<String, Long> entries = TokenRevocationCache.parse(
+                "{\"version\":\"abc-2\",\"revoked\":[{\"jti\":\"a\",\"exp\":1717200060},{\"jti\":\"b\",\"exp\":1717200120}]}");
+
+        assertEquals(2, entries.size());
+        assertEquals(1717200060L, entries.get("a"));
+        assertEquals(1717200120L, entries.get("b"));
+    }
+
+    @Test
+    public void testRevokedUntilTokenExpiry() {
+        TokenRevocationCache cache = new TokenRevocationCache(Clock.fixed(NOW, ZoneOffset.UTC));
+        cache.apply(TokenRevocationCache.parse("{\"version\":\"abc-1\",\"revoked\":["
+                + "{\"jti\":\"live\",\"exp\":" + (NOW.getEpochSecond() + 60) + "},"
+                + "{\"jti\":\"expired\",\"exp\":" + (NOW.getEpochSecond() - 1) + "}]}"), "\"abc-1\"");
+
+        assertTrue(cache.isRevoked("live"));
+        assertFalse(cache.isRevoked("expired"));
+        assertFalse(cache.isRevoked("unknown"));
+        assertFalse(cache.isRevoked(null));
+        assertEquals("\"abc-1\"", cache.snapshot().get("version"));
+        assertEquals(1L, cache.snapshot().get("rejected"));
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.microservices.bff.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * VerifiedTokenCache のテスト
+ */
+public class VerifiedTokenCacheTest {
+
+    /**
+     * テスト用の進められる時計
+     */
+    private static class MutableClock extends Clock {
+        private Instant now = Instant.parse("2024-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+
+    private final MutableClock clock = new MutableClock();
+
+    private VerifiedTokenCache createCache(int maxEntries) {
+        return new VerifiedTokenCache(maxEntries, Duration.ofMinutes(5), Duration.ofSeconds(10), clock);
+    }
+
+    private UserPrincipal principal(Instant expiresAt) {
+        return new UserPrincipal(UUID.randomUUID(), "tanaka_taro", expiresAt);
+    }
+
+    @Test
+    public void testHitAndMiss() {
+        VerifiedTokenCache cache = createCache(10);
+        assertNull(cache.get("token-a"));
+
+        UserPrincipal p = principal(null);
+        cache.putValid("token-a", p);
+
+        VerifiedTokenCache.Entry entry = cache.get("token-a");
+        assertNotNull(entry);
+        assertTrue(entry.isValid());
+        assertSame(p, entry.getPrincipal());
+        assertEquals(1L, cache.snapshot().get("hits"));
+        assertEquals(1L, cache.snapshot().get("misses"));
+    }
+
+    @Test
+    public void testEntryExpiresWithToken() {
+        VerifiedTokenCache cache = createCache(10);
+        // トークンの有効期限（1分）が最大TTL（5分）より短い
+        cache.putValid("token-a", principal(clock.instant().plusSeconds(60)));
+
+        clock.advance(Duration.ofSeconds(59));
+        assertNotNull(cache.get("token-a"));
+
+        clock.advance(Duration.ofSeconds(1));
+        assertNull(cache.get("token-a"));
+        assertEquals(1L, cache.snapshot().get("expirations"));
+    }
+
+    @Test
+    public void testExpiredTokenIsNotCached() {
+        VerifiedTokenCache cache = createCache(10);
+        cache.putValid("token-a", principal(clock.instant().minusSeconds(1)));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testNegativeCaching() {
+        VerifiedTokenCache cache = createCache(10);
+        cache.putInvalid("bad-token");
+
+        VerifiedTokenCache.Entry entry = cache.get("bad-token");
+        assertNotNull(entry);
+        assertFalse(entry.isValid());
+        assertEquals(1L, cache.snapshot().get("negativeHits"));
+
+        clock.advance(Duration.ofSeconds(10));
+        assertNull(cache.get("bad-token"));
+    }
+
+    @Test
+    public void testInvalidate() {
+        VerifiedTokenCache cache = createCache(10);
+        cache.putValid("token-a", principal(null));
+        cache.invalidate("token-a");
+
+        assertNull(cache.get("token-a"));
+        assertEquals(1L, cache.snapshot().get("invalidations"));
+    }
+
+    @Test
+    public void testSizeBoundEvictsOldest() {
+        VerifiedTokenCache cache = createCache(3);
+        for (int i = 0; i < 5; i++) {
+            cache.putValid("token-" + i, principal(null));
+        }
+
+        assertEquals(3, cache.size());
+        assertNull(cache.get("token-0"));
+        assertNull(cache.get("token-1"));
+        assertNotNull(cache.get("token-4"));
+        assertEquals(2L, cache.snapshot().get("evictions"));
+    }
+}
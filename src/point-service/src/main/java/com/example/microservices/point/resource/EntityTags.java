@@ -0,0 +1,70 @@
+package com.example.microservices.point.resource;
+
+import javax.json.bind.Jsonb;
+import javax.json.bind.JsonbBuilder;
+import javax.ws.rs.core.EntityTag;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+/**
+ * 条件付きGET（If-None-Match）用の強いETag
+ * シリアライズしたレスポンスボディそのものから算出し、送る表現とETagが必ず対応するようにする
+ * （サービスごとに独立してデプロイするため、各サービスに同じものを置く）
+ */
+final class EntityTags {
+
+    // スレッドセーフなので使い回す（JAX-RS ランタイムと同じ JSON-B の既定設定）
+    private static final Jsonb JSONB = JsonbBuilder.create();
+
+    private EntityTags() {
+    }
+
+    /**
+     * レスポンスボディ（JSON）にシリアライズ
+     */
+    static String toJson(Object entity) {
+        return JSONB.toJson(entity);
+    }
+
+    /**
+     * レスポンスボディから強いETagを生成
+     */
+    static EntityTag of(String body) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(body.getBytes(StandardCharsets.UTF_8));
+            // 先頭128bitで十分
+            byte[] truncated = new byte[16];
+            System.arraycopy(hash, 0, truncated, 0, truncated.length);
+            return new EntityTag(Base64.getUrlEncoder().withoutPadding().encodeToString(truncated));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * If-None-Match のいずれかが ETag と一致するか
+     * GET の If-None-Match は弱い比較（W/ の有無を問わない）で判定する
+     * （BFF の圧縮などで W/ 付きに変わった ETag でも304にできる）
+     */
+    static boolean matches(String ifNoneMatch, EntityTag etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String quoted = "\"" + etag.getValue() + "\"";
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(quoted)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -7,15 +7,21 @@ import com.auth0.jwt.exceptions.JWTVerificationException;
 import com.auth0.jwt.interfaces.DecodedJWT;
 import com.example.microservices.point.model.Point;
 import com.example.microservices.point.model.PointHistory;
+import com.example.microservices.point.service.JwksKeyStore;
 import com.example.microservices.point.service.PointService;
+import com.example.microservices.point.service.TokenRevocationCache;
 
 import javax.inject.Inject;
 import javax.ws.rs.*;
+import javax.ws.rs.core.CacheControl;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.sql.SQLException;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.util.*;
 
 /**
@@ -29,16 +35,84 @@ public class PointResource {
     @Inject
     private PointService pointService;
 
-    // JWT検証用のシークレットキー（Auth Serviceと同じ値を使用）
-    // SECURITY NOTE: 本番環境では環境変数や暗号化された設定から取得すべき
-    // 環境変数例: System.getenv("JWT_SECRET_KEY")
-    // または AWS Secrets Manager, HashiCorp Vault などのシークレット管理サービスを使用
-    private static final String SECRET_KEY = "your-secret-key-change-this-in-production";
-    private static final Algorithm ALGORITHM = Algorithm.HMAC256(SECRET_KEY);
+    @Inject
+    private TokenRevocationCache tokenRevocationCache;
+
+    // ES256 のトークンは Auth Service が公開する公開鍵で検証する（シークレット不要）
+    @Inject
+    private JwksKeyStore jwksKeyStore;
+
+    public PointResource() {
+    }
+
+    PointResource(PointService pointService, TokenRevocationCache tokenRevocationCache, JwksKeyStore jwksKeyStore) {
+        this.pointService = pointService;
+        this.tokenRevocationCache = tokenRevocationCache;
+        this.jwksKeyStore = jwksKeyStore;
+    }
+
+    private static final String DEFAULT_KEY_ID = "default";
+
+    // HS256 で発行済みのトークンの kid ごとの検証器（移行用、JWTVerifier はスレッドセーフなので一度だけ生成して使い回す）
+    // シークレットが明示的に設定された場合のみ作り、既定では HS256 のトークンを拒否する
+    // JWT_KEYS="kid:secret,kid:secret" が未設定の場合は JWT_SECRET_KEY を kid "default" として使う
+    private static final Map<String, JWTVerifier> VERIFIERS = createVerifiers();
+    // この時刻以降は HS256 のトークンを受け付けない（JWT_HS256_ACCEPT_UNTIL、鍵を設定する場合は必須）
+    private static final Instant HMAC_ACCEPT_UNTIL = VERIFIERS.isEmpty() ? null : parseAcceptUntil();
+
+    private static Map<String, JWTVerifier> createVerifiers() {
+        Map<String, JWTVerifier> verifiers = new HashMap<>();
+        String spec = getConfigValue("JWT_KEYS", null);
+        if (spec == null) {
+            String secret = getConfigValue("JWT_SECRET_KEY", null);
+            if (secret != null) {
+                verifiers.put(DEFAULT_KEY_ID, JWT.require(Algorithm.HMAC256(secret)).build());
+            }
+            return Collections.unmodifiableMap(verifiers);
+        }
+        for (String entry : spec.split(",")) {
+            int separator = entry.indexOf(':');
+            if (separator <= 0 || separator == entry.length() - 1) {
+                throw new IllegalArgumentException("Invalid JWT_KEYS entry (expected kid:secret)");
+            }
+            verifiers.put(entry.substring(0, separator).trim(),
+                    JWT.require(Algorithm.HMAC256(entry.substring(separator + 1).trim())).build());
+        }
+        return Collections.unmodifiableMap(verifiers);
+    }
+
+    private static Instant parseAcceptUntil() {
+        String value = getConfigValue("JWT_HS256_ACCEPT_UNTIL", null);
+        if (value == null) {
+            throw new IllegalArgumentException(
+                    "JWT_HS256_ACCEPT_UNTIL is required when HS256 keys are configured (e.g. 2024-07-01T00:00:00Z)");
+        }
+        try {
+            return Instant.parse(value.trim());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid JWT_HS256_ACCEPT_UNTIL (expected ISO-8601 instant): " + value, e);
+        }
+    }
+
+    /**
+     * 設定値を取得（システムプロパティ優先、次に環境変数、最後にデフォルト値）
+     */
+    private static String getConfigValue(String key, String defaultValue) {
+        String sysProp = System.getProperty(key);
+        if (sysProp != null && !sysProp.isEmpty()) {
+            return sysProp;
+        }
+        String envVar = System.getenv(key);
+        if (envVar != null && !envVar.isEmpty()) {
+            return envVar;
+        }
+        return defaultValue;
+    }
 
     /**
      * ポイント残高取得
      * GET /api/points
+     * If-None-Match が現在のETagと一致する場合は304を返す
      */
     @GET
     public Response getPointBalance(@Context HttpHeaders headers) {
@@ -53,20 +127,26 @@ public class PointResource {
 
             // ポイント残高を取得
             Optional<Point> point = pointService.getPointBalance(userId);
+
+            Map<String, Object> response = new HashMap<>();
             if (point.isPresent()) {
-                Map<String, Object> response = new HashMap<>();
                 response.put("userId", point.get().getUserId().toString());
                 response.put("balance", point.get().getBalance());
                 response.put("lastUpdated", point.get().getLastUpdated());
-                return Response.ok(response).build();
             } else {
                 // ポイント残高がない場合は0として返す
-                Map<String, Object> response = new HashMap<>();
                 response.put("userId", userId.toString());
                 response.put("balance", 0);
                 response.put("lastUpdated", null);
-                return Response.ok(response).build();
             }
+
+            // 送るボディそのものからETagを算出し、変更がなければ304を返す
+            String body = EntityTags.toJson(response);
+            EntityTag etag = EntityTags.of(body);
+            if (EntityTags.matches(headers.getHeaderString(HttpHeaders.IF_NONE_MATCH), etag)) {
+                return Response.notModified(etag).cacheControl(revalidate()).build();
+            }
+            return Response.ok(body, MediaType.APPLICATION_JSON).tag(etag).cacheControl(revalidate()).build();
         } catch (SQLException e) {
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
                     .entity(createErrorResponse("Failed to fetch point balance: " + e.getMessage()))
@@ -156,8 +236,25 @@ public class PointResource {
             }
 
             String token = authHeader.substring(7); // "Bearer " を除去
-            JWTVerifier verifier = JWT.require(ALGORITHM).build();
-            DecodedJWT jwt = verifier.verify(token);
+            DecodedJWT decoded = JWT.decode(token);
+            String keyId = decoded.getKeyId() != null ? decoded.getKeyId() : DEFAULT_KEY_ID;
+            // alg ヘッダーで検証方式を選び、公開鍵とシークレットを取り違えないようにする
+            JWTVerifier verifier;
+            if ("ES256".equals(decoded.getAlgorithm())) {
+                verifier = jwksKeyStore.verifierFor(keyId);
+            } else if (HMAC_ACCEPT_UNTIL != null && Instant.now().isBefore(HMAC_ACCEPT_UNTIL)) {
+                verifier = VERIFIERS.get(keyId);
+            } else {
+                verifier = null;
+            }
+            if (verifier == null) {
+                return null;
+            }
+            DecodedJWT jwt = verifier.verify(decoded);
+            // ログアウト済みのトークン
+            if (tokenRevocationCache.isRevoked(jwt.getId())) {
+                return null;
+            }
             
             String userIdStr = jwt.getClaim("userId").asString();
             if (userIdStr == null || userIdStr.isEmpty()) {
@@ -201,6 +298,16 @@ public class PointResource {
         return result;
     }
 
+    /**
+     * キャッシュは可能だが毎回ETagで再検証させる
+     */
+    private CacheControl revalidate() {
+        CacheControl cacheControl = new CacheControl();
+        cacheControl.setPrivate(true);
+        cacheControl.setNoCache(true);
+        return cacheControl;
+    }
+
     /**
      * エラーレスポンスを生成
      */
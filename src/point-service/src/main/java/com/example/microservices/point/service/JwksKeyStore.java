@@ -0,0 +1,285 @@
+package com.example.microservices.point.service;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.algorithms.Algorithm;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import java.io.StringReader;
+import java.math.BigInteger;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.security.AlgorithmParameters;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPoint;
+import java.security.spec.ECPublicKeySpec;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+/**
+ * Auth Service が公開するJWT署名の公開鍵（GET /auth-service/api/auth/keys、JWKS）のキャッシュ
+ * 公開鍵で検証できるため、Point Service は署名用のシークレットを持たずにJWTを検証できる
+ *
+ * - 定期的（POINT_JWKS_REFRESH_SECONDS）に取得し直す
+ * - 未知の kid のトークンを受け取った場合（鍵のローテーション直後・起動直後）は取得し直し、
+ *   短時間（POINT_JWKS_UNKNOWN_KID_WAIT_MS）だけ待ってから引き直す
+ *   同時に来たリクエストは1回の取得の完了を共有して待つ
+ *   でたらめな kid で Auth Service を叩かせないよう、間隔（POINT_JWKS_MIN_REFRESH_SECONDS）を空ける
+ * - 取得に失敗した場合は最後に取得した鍵を使い続ける
+ *
+ * 設定:
+ * - AUTH_SERVICE_URL                  Auth Service のURL（デフォルト http://localhost:8081）
+ * - POINT_JWKS_REFRESH_SECONDS        定期的な取得の間隔（デフォルト 300）
+ * - POINT_JWKS_MIN_REFRESH_SECONDS    未知の kid による取得の最小間隔（デフォルト 10）
+ * - POINT_JWKS_UNKNOWN_KID_WAIT_MS    未知の kid で取得を待つ時間の上限（デフォルト 1000）
+ */
+@ApplicationScoped
+public class JwksKeyStore {
+
+    private final URI uri;
+    private final long minRefreshNanos;
+    private final long unknownKeyWaitMillis;
+    private final LongSupplier nanoClock;
+    // kid → 検証器。取得のたびに丸ごと差し替える
+    private volatile Map<String, JWTVerifier> verifiers = Collections.emptyMap();
+    private final Object refreshLock = new Object();
+    private volatile boolean refreshed;
+    private volatile long lastRefreshNanos;
+    // 実行中の取得（同時に1つまで。未知の kid のリクエストはこの完了を待つ）
+    private final AtomicReference<CompletableFuture<Void>> inFlight = new AtomicReference<>();
+    private HttpClient httpClient;
+    private Executor refreshExecutor;
+    private ScheduledExecutorService scheduler;
+
+    private final AtomicLong refreshes = new AtomicLong();
+    private final AtomicLong refreshFailures = new AtomicLong();
+    private final AtomicLong unknownKeyIds = new AtomicLong();
+    private final AtomicLong unknownKeyTimeouts = new AtomicLong();
+
+    public JwksKeyStore() {
+        this(URI.create(getConfigValue("AUTH_SERVICE_URL", "http://localhost:8081") + "/auth-service/api/auth/keys"),
+                Long.parseLong(getConfigValue("POINT_JWKS_MIN_REFRESH_SECONDS", "10")),
+                Long.parseLong(getConfigValue("POINT_JWKS_UNKNOWN_KID_WAIT_MS", "1000")),
+                System::nanoTime, null);
+    }
+
+    JwksKeyStore(URI uri, long minRefreshSeconds, long unknownKeyWaitMillis,
+                 LongSupplier nanoClock, Executor refreshExecutor) {
+        this.uri = uri;
+        this.minRefreshNanos = TimeUnit.SECONDS.toNanos(Math.max(0, minRefreshSeconds));
+        this.unknownKeyWaitMillis = Math.max(0, unknownKeyWaitMillis);
+        this.nanoClock = nanoClock;
+        this.refreshExecutor = refreshExecutor;
+    }
+
+    @PostConstruct
+    void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "point-jwks-refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (refreshExecutor == null) {
+            refreshExecutor = scheduler;
+        }
+        // 初回の取得は未知の kid による取得と同じく共有し、起動直後のリクエストはその完了を待つ
+        requestRefresh();
+        long refreshSeconds = Math.max(10, Long.parseLong(getConfigValue("POINT_JWKS_REFRESH_SECONDS", "300")));
+        scheduler.scheduleWithFixedDelay(this::refreshQuietly, refreshSeconds, refreshSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * kid に対応する検証器
+     * 手元にない場合は（最小間隔を空けて）取得し直し、完了を短時間だけ待ってから引き直す
+     *
+     * @return 検証器、見つからない場合は null
+     */
+    public JWTVerifier verifierFor(String keyId) {
+        JWTVerifier verifier = verifiers.get(keyId);
+        if (verifier != null) {
+            return verifier;
+        }
+        unknownKeyIds.incrementAndGet();
+        CompletableFuture<Void> fetch = requestRefresh();
+        if (fetch == null) {
+            return null;
+        }
+        try {
+            fetch.get(unknownKeyWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException | TimeoutException e) {
+            // 待ちきれない場合はこのトークンを拒否する（取得はそのまま続ける）
+            unknownKeyTimeouts.incrementAndGet();
+            return null;
+        }
+        return verifiers.get(keyId);
+    }
+
+    /**
+     * 取得し直しをスケジューラーのスレッドで開始する
+     * 実行中の取得があればそれを返し、前回の取得から最小間隔が経っていない場合は何もしない
+     *
+     * @return 取得の完了、取得しない場合は null
+     */
+    private CompletableFuture<Void> requestRefresh() {
+        CompletableFuture<Void> pending = inFlight.get();
+        if (pending != null) {
+            return pending;
+        }
+        if (refreshed && nanoClock.getAsLong() - lastRefreshNanos < minRefreshNanos) {
+            return null;
+        }
+        Executor executor = refreshExecutor;
+        if (executor == null) {
+            return null;
+        }
+        CompletableFuture<Void> fetch = new CompletableFuture<>();
+        if (!inFlight.compareAndSet(null, fetch)) {
+            return inFlight.get();
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    refreshQuietly();
+                } finally {
+                    inFlight.set(null);
+                    fetch.complete(null);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 停止処理中
+            inFlight.set(null);
+            fetch.complete(null);
+            return null;
+        }
+        return fetch;
+    }
+
+    private void refresh() throws Exception {
+        if (httpClient == null) {
+            httpClient = HttpClient.newBuilder()
+                    .connectTimeout(Duration.ofSeconds(2))
+                    .build();
+        }
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofSeconds(5))
+                .header("Accept", "application/json")
+                .GET()
+                .build();
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Unexpected status " + response.statusCode());
+        }
+        verifiers = Collections.unmodifiableMap(parse(response.body()));
+    }
+
+    private void refreshQuietly() {
+        synchronized (refreshLock) {
+            refreshes.incrementAndGet();
+            try {
+                refresh();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                refreshFailures.incrementAndGet();
+                System.err.println("Failed to fetch JWT signing keys: " + e.getMessage());
+            } finally {
+                refreshed = true;
+                lastRefreshNanos = nanoClock.getAsLong();
+            }
+        }
+    }
+
+    /**
+     * JWKS を解析して kid ごとの検証器を作る（ES256 以外の鍵は無視する）
+     * 例: {"keys":[{"kty":"EC","crv":"P-256","alg":"ES256","kid":"2024-06","x":"...","y":"..."}]}
+     */
+    static Map<String, JWTVerifier> parse(String body) throws GeneralSecurityException {
+        try (JsonReader reader = Json.createReader(new StringReader(body))) {
+            JsonObject json = reader.readObject();
+            Map<String, JWTVerifier> keys = new HashMap<>();
+            for (JsonObject jwk : json.getJsonArray("keys").getValuesAs(JsonObject.class)) {
+                if (!"EC".equals(jwk.getString("kty", null)) || !"P-256".equals(jwk.getString("crv", null))
+                        || jwk.getString("kid", null) == null) {
+                    continue;
+                }
+                ECPublicKey publicKey = toPublicKey(jwk.getString("x"), jwk.getString("y"));
+                keys.put(jwk.getString("kid"), JWT.require(Algorithm.ECDSA256(publicKey, null)).build());
+            }
+            return keys;
+        }
+    }
+
+    private static ECPublicKey toPublicKey(String x, String y) throws GeneralSecurityException {
+        AlgorithmParameters parameters = AlgorithmParameters.getInstance("EC");
+        parameters.init(new ECGenParameterSpec("secp256r1"));
+        ECParameterSpec curve = parameters.getParameterSpec(ECParameterSpec.class);
+        ECPoint point = new ECPoint(
+                new BigInteger(1, Base64.getUrlDecoder().decode(x)),
+                new BigInteger(1, Base64.getUrlDecoder().decode(y)));
+        return (ECPublicKey) KeyFactory.getInstance("EC").generatePublic(new ECPublicKeySpec(point, curve));
+    }
+
+    /**
+     * 取得状況のスナップショット
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("keyIds", verifiers.keySet());
+        snapshot.put("refreshes", refreshes.get());
+        snapshot.put("refreshFailures", refreshFailures.get());
+        snapshot.put("unknownKeyIds", unknownKeyIds.get());
+        snapshot.put("unknownKeyTimeouts", unknownKeyTimeouts.get());
+        return snapshot;
+    }
+
+    /**
+     * 設定値を取得（システムプロパティ優先、次に環境変数、最後にデフォルト値）
+     */
+    private static String getConfigValue(String key, String defaultValue) {
+        String sysProp = System.getProperty(key);
+        if (sysProp != null && !sysProp.isEmpty()) {
+            return sysProp;
+        }
+        String envVar = System.getenv(key);
+        if (envVar != null && !envVar.isEmpty()) {
+            return envVar;
+        }
+        return defaultValue;
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.microservices.point.service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import java.io.StringReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ログアウトで失効したJWT（jti）の手元の写し
+ * Auth Service の失効一覧（GET /auth-service/api/auth/revocations）を ETag 付きで定期的に取得し、
+ * トークン検証時に O(1) で照合する。取得に失敗した場合は最後に取得した一覧を使い続ける
+ *
+ * 設定:
+ * - AUTH_SERVICE_URL                Auth Service のURL（デフォルト http://localhost:8081）
+ * - POINT_REVOCATION_POLL_SECONDS   取得間隔（デフォルト 5）
+ */
+@ApplicationScoped
+public class TokenRevocationCache {
+
+    private final Clock clock;
+    // jti → 有効期限（エポック秒）。取得のたびに丸ごと差し替える
+    private volatile Map<String, Long> revoked = Collections.emptyMap();
+    private volatile String etag;
+    private HttpClient httpClient;
+    private ScheduledExecutorService scheduler;
+
+    public TokenRevocationCache() {
+        this(Clock.systemUTC());
+    }
+
+    TokenRevocationCache(Clock clock) {
+        this.clock = clock;
+    }
+
+    @PostConstruct
+    void start() {
+        httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(2))
+                .build();
+        URI uri = URI.create(getConfigValue("AUTH_SERVICE_URL", "http://localhost:8081")
+                + "/auth-service/api/auth/revocations");
+        long pollSeconds = Math.max(1, Long.parseLong(getConfigValue("POINT_REVOCATION_POLL_SECONDS", "5")));
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "point-revocation-poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> pollQuietly(uri), 0, pollSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 失効済みかどうか（jti のないトークンは失効させられないため false）
+     */
+    public boolean isRevoked(String jti) {
+        if (jti == null) {
+            return false;
+        }
+        Long expiresAt = revoked.get(jti);
+        return expiresAt != null && expiresAt > clock.instant().getEpochSecond();
+    }
+
+    private void pollQuietly(URI uri) {
+        try {
+            HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+                    .timeout(Duration.ofSeconds(5))
+                    .header("Accept", "application/json");
+            String currentEtag = etag;
+            if (currentEtag != null) {
+                request.header("If-None-Match", currentEtag);
+            }
+            HttpResponse<String> response = httpClient.send(request.GET().build(), HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() == 304) {
+                return;
+            }
+            if (response.statusCode() != 200) {
+                System.err.println("Failed to poll token revocations: status " + response.statusCode());
+                return;
+            }
+            apply(parse(response.body()), response.headers().firstValue("ETag").orElse(null));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            System.err.println("Failed to poll token revocations: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 取得した一覧に差し替える
+     */
+    void apply(Map<String, Long> entries, String etag) {
+        this.revoked = Collections.unmodifiableMap(entries);
+        this.etag = etag;
+    }
+
+    /**
+     * 失効一覧のレスポンスを解析
+     * 例: {"version":"9f86d081884c7d659a2feaa0c55ad015","revoked":[{"jti":"...","exp":1717200000}]}
+     */
+    static Map<String, Long> parse(String body) {
+        try (JsonReader reader = Json.createReader(new StringReader(body))) {
+            JsonObject json = reader.readObject();
+            JsonArray items = json.getJsonArray("revoked");
+            Map<String, Long> entries = new HashMap<>(Math.max(16, items.size() * 2));
+            for (JsonObject item : items.getValuesAs(JsonObject.class)) {
+                entries.put(item.getString("jti"), item.getJsonNumber("exp").longValue());
+            }
+            return entries;
+        }
+    }
+
+    /**
+     * 設定値を取得（システムプロパティ優先、次に環境変数、最後にデフォルト値）
+     */
+    private static String getConfigValue(String key, String defaultValue) {
+        String sysProp = System.getProperty(key);
+        if (sysProp != null && !sysProp.isEmpty()) {
+            return sysProp;
+        }
+        String envVar = System.getenv(key);
+        if (envVar != null && !envVar.isEmpty()) {
+            return envVar;
+        }
+        return defaultValue;
+    }
+}
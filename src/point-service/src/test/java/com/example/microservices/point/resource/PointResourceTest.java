@@ -0,0 +1,165 @@
+package com.example.microservices.point.resource;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.example.microservices.point.model.Point;
+import com.example.microservices.point.service.JwksKeyStore;
+import com.example.microservices.point.service.PointService;
+import com.example.microservices.point.service.TokenRevocationCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import java.io.StringReader;
+import java.lang.reflect.Proxy;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * PointResource の条件付きGET（ETag / If-None-Match）のテスト
+ */
+public class PointResourceTest {
+
+    private static final String KEY_ID = "2024-06";
+
+    private final UUID userId = UUID.randomUUID();
+    private final Map<UUID, Point> points = new HashMap<>();
+    private PointResource resource;
+    private String token;
+
+    private class InMemoryPointService extends PointService {
+        @Override
+        public Optional<Point> getPointBalance(UUID id) {
+            return Optional.ofNullable(points.get(id));
+        }
+    }
+
+    private static class StaticKeyStore extends JwksKeyStore {
+        private final JWTVerifier verifier;
+
+        StaticKeyStore(ECPublicKey publicKey) {
+            this.verifier = JWT.require(Algorithm.ECDSA256(publicKey, null)).build();
+        }
+
+        @Override
+        public JWTVerifier verifierFor(String keyId) {
+            return KEY_ID.equals(keyId) ? verifier : null;
+        }
+    }
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        KeyPair keyPair = generator.generateKeyPair();
+        token = JWT.create()
+                .withKeyId(KEY_ID)
+                .withJWTId(UUID.randomUUID().toString())
+                .withClaim("userId", userId.toString())
+                .withExpiresAt(new Date(System.currentTimeMillis() + 60_000))
+                .sign(Algorithm.ECDSA256((ECPublicKey) keyPair.getPublic(), (ECPrivateKey) keyPair.getPrivate()));
+        resource = new PointResource(new InMemoryPointService(), new TokenRevocationCache(),
+                new StaticKeyStore((ECPublicKey) keyPair.getPublic()));
+        points.put(userId, new Point(userId, 1500, LocalDateTime.of(2024, 6, 1, 10, 0)));
+    }
+
+    /**
+     * Authorization と If-None-Match だけを返す HttpHeaders
+     */
+    private HttpHeaders headers(String ifNoneMatch) {
+        return (HttpHeaders) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {HttpHeaders.class},
+                (proxy, method, args) -> {
+                    if ("getHeaderString".equals(method.getName())) {
+                        if (HttpHeaders.AUTHORIZATION.equals(args[0])) {
+                            return "Bearer " + token;
+                        }
+                        if (HttpHeaders.IF_NONE_MATCH.equals(args[0])) {
+                            return ifNoneMatch;
+                        }
+                        return null;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private static JsonObject parse(Response response) {
+        try (JsonReader reader = Json.createReader(new StringReader((String) response.getEntity()))) {
+            return reader.readObject();
+        }
+    }
+
+    @Test
+    public void testETagIsComputedOverSerializedBody() {
+        Response response = resource.getPointBalance(headers(null));
+
+        assertEquals(200, response.getStatus());
+        EntityTag etag = response.getEntityTag();
+        assertFalse(etag.isWeak());
+        assertEquals(EntityTags.of((String) response.getEntity()), etag);
+        assertEquals(1500, parse(response).getInt("balance"));
+        assertEquals(etag, resource.getPointBalance(headers(null)).getEntityTag());
+    }
+
+    @Test
+    public void testMatchingIfNoneMatchReturns304() {
+        EntityTag etag = resource.getPointBalance(headers(null)).getEntityTag();
+
+        Response notModified = resource.getPointBalance(headers("\"" + etag.getValue() + "\""));
+
+        assertEquals(304, notModified.getStatus());
+        assertNull(notModified.getEntity());
+        assertEquals(etag, notModified.getEntityTag());
+    }
+
+    @Test
+    public void testWeakAndListedTagsMatch() {
+        EntityTag etag = resource.getPointBalance(headers(null)).getEntityTag();
+
+        // BFF の圧縮などで W/ 付きになった ETag も一致とみなす（弱い比較）
+        assertEquals(304, resource.getPointBalance(headers("W/\"" + etag.getValue() + "\"")).getStatus());
+        assertEquals(304, resource.getPointBalance(headers("\"a\",W/\"" + etag.getValue() + "\"")).getStatus());
+        assertEquals(304, resource.getPointBalance(headers("*")).getStatus());
+        assertEquals(200, resource.getPointBalance(headers("\"a\"")).getStatus());
+    }
+
+    @Test
+    public void testBalanceChangeInvalidatesETag() {
+        EntityTag before = resource.getPointBalance(headers(null)).getEntityTag();
+
+        points.put(userId, new Point(userId, 1200, LocalDateTime.of(2024, 6, 1, 11, 0)));
+        Response response = resource.getPointBalance(headers("\"" + before.getValue() + "\""));
+
+        assertEquals(200, response.getStatus());
+        assertNotEquals(before, response.getEntityTag());
+        assertEquals(1200, parse(response).getInt("balance"));
+    }
+
+    @Test
+    public void testMissingBalanceIsZeroWithETag() {
+        points.clear();
+
+        Response response = resource.getPointBalance(headers(null));
+
+        assertEquals(200, response.getStatus());
+        assertEquals(0, parse(response).getInt("balance"));
+        EntityTag etag = response.getEntityTag();
+        assertEquals(304, resource.getPointBalance(headers("\"" + etag.getValue() + "\"")).getStatus());
+    }
+}
@@ -5,6 +5,9 @@ import com.example.microservices.user.repository.UserRepository;
 
 import javax.inject.Inject;
 import javax.ws.rs.*;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.sql.SQLException;
@@ -25,6 +28,13 @@ public class UserResource {
     @Inject
     private UserRepository userRepository;
 
+    public UserResource() {
+    }
+
+    UserResource(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
     /**
      * 全ユーザー取得
      */
@@ -42,14 +52,16 @@ public class UserResource {
 
     /**
      * ユーザーID指定取得
+     * If-None-Match が現在のETagと一致する場合は304を返す
      */
     @GET
     @Path("/{id}")
-    public Response getUserById(@PathParam("id") UUID id) {
+    public Response getUserById(@PathParam("id") UUID id,
+                                @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
         try {
             Optional<User> user = userRepository.findById(id);
             if (user.isPresent()) {
-                return Response.ok(user.get()).build();
+                return conditionalOk(user.get(), ifNoneMatch);
             } else {
                 return Response.status(Response.Status.NOT_FOUND)
                         .entity(createErrorResponse("User not found with id: " + id))
@@ -86,10 +98,12 @@ public class UserResource {
 
     /**
      * ユーザーアカウント情報を取得
+     * If-None-Match が現在のETagと一致する場合は304を返す
      */
     @GET
     @Path("/{id}/account")
-    public Response getUserAccount(@PathParam("id") UUID id) {
+    public Response getUserAccount(@PathParam("id") UUID id,
+                                   @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
         try {
             Optional<User> userOpt = userRepository.findById(id);
             if (!userOpt.isPresent()) {
@@ -102,7 +116,7 @@ public class UserResource {
             Map<String, Object> accountData = new HashMap<>();
             accountData.put("user", userOpt.get());
 
-            return Response.ok(accountData).build();
+            return conditionalOk(accountData, ifNoneMatch);
         } catch (SQLException e) {
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
                     .entity(createErrorResponse("Failed to fetch account: " + e.getMessage()))
@@ -172,6 +186,28 @@ public class UserResource {
         }
     }
 
+    /**
+     * シリアライズしたボディからETagを算出し、If-None-Match と一致すれば304、しなければボディを返す
+     */
+    private Response conditionalOk(Object entity, String ifNoneMatch) {
+        String body = EntityTags.toJson(entity);
+        EntityTag etag = EntityTags.of(body);
+        if (EntityTags.matches(ifNoneMatch, etag)) {
+            return Response.notModified(etag).cacheControl(revalidate()).build();
+        }
+        return Response.ok(body, MediaType.APPLICATION_JSON).tag(etag).cacheControl(revalidate()).build();
+    }
+
+    /**
+     * キャッシュは可能だが毎回ETagで再検証させる
+     */
+    private CacheControl revalidate() {
+        CacheControl cacheControl = new CacheControl();
+        cacheControl.setPrivate(true);
+        cacheControl.setNoCache(true);
+        return cacheControl;
+    }
+
     private Map<String, String> createErrorResponse(String message) {
         Map<String, String> error = new HashMap<>();
         error.put("error", message);
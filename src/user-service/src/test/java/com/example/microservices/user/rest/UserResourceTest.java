@@ -0,0 +1,115 @@
+package com.example.microservices.user.rest;
+
+import com.example.microservices.user.model.User;
+import com.example.microservices.user.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Response;
+import java.io.StringReader;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * UserResource の条件付きGET（ETag / If-None-Match）のテスト
+ */
+public class UserResourceTest {
+
+    private final User user = new User(UUID.randomUUID(), "tanaka_taro", "tanaka@example.com", "田中太郎");
+    private UserResource resource;
+
+    /**
+     * 1人のユーザーだけを返すリポジトリ
+     */
+    private class SingleUserRepository extends UserRepository {
+        @Override
+        public Optional<User> findById(UUID id) {
+            return user.getId().equals(id) ? Optional.of(user) : Optional.empty();
+        }
+    }
+
+    @BeforeEach
+    public void setUp() {
+        user.setCreatedAt(LocalDateTime.of(2024, 6, 1, 10, 0));
+        user.setUpdatedAt(LocalDateTime.of(2024, 6, 1, 10, 0));
+        resource = new UserResource(new SingleUserRepository());
+    }
+
+    private static JsonObject parse(Response response) {
+        try (JsonReader reader = Json.createReader(new StringReader((String) response.getEntity()))) {
+            return reader.readObject();
+        }
+    }
+
+    @Test
+    public void testETagIsComputedOverSerializedBody() {
+        Response response = resource.getUserById(user.getId(), null);
+
+        assertEquals(200, response.getStatus());
+        EntityTag etag = response.getEntityTag();
+        assertNotNull(etag);
+        assertFalse(etag.isWeak());
+        assertEquals(EntityTags.of((String) response.getEntity()), etag);
+        assertEquals("tanaka_taro", parse(response).getString("username"));
+        assertEquals(etag, resource.getUserById(user.getId(), null).getEntityTag());
+    }
+
+    @Test
+    public void testMatchingIfNoneMatchReturns304() {
+        EntityTag etag = resource.getUserById(user.getId(), null).getEntityTag();
+
+        Response notModified = resource.getUserById(user.getId(), "\"" + etag.getValue() + "\"");
+
+        assertEquals(304, notModified.getStatus());
+        assertNull(notModified.getEntity());
+        assertEquals(etag, notModified.getEntityTag());
+        assertTrue(notModified.getHeaderString("Cache-Control").contains("no-cache"));
+    }
+
+    @Test
+    public void testWeakAndListedTagsMatch() {
+        EntityTag etag = resource.getUserAccount(user.getId(), null).getEntityTag();
+
+        // 圧縮などで W/ 付きになった ETag も一致とみなす（弱い比較）
+        assertEquals(304, resource.getUserAccount(user.getId(), "W/\"" + etag.getValue() + "\"").getStatus());
+        assertEquals(304, resource.getUserAccount(user.getId(), "\"other\", W/\"" + etag.getValue() + "\"").getStatus());
+        assertEquals(304, resource.getUserAccount(user.getId(), "*").getStatus());
+        assertEquals(200, resource.getUserAccount(user.getId(), "\"other\"").getStatus());
+        // 引用符のない値は ETag として扱わない
+        assertEquals(200, resource.getUserAccount(user.getId(), etag.getValue()).getStatus());
+    }
+
+    @Test
+    public void testETagChangesWithAnySerializedField() {
+        EntityTag before = resource.getUserById(user.getId(), null).getEntityTag();
+
+        // updated_at が変わらなくても、本文に含まれる値が変われば ETag も変わる
+        user.setCreatedAt(LocalDateTime.of(2024, 5, 1, 10, 0));
+        Response response = resource.getUserById(user.getId(), "\"" + before.getValue() + "\"");
+
+        assertEquals(200, response.getStatus());
+        assertNotEquals(before, response.getEntityTag());
+    }
+
+    @Test
+    public void testRepresentationsHaveDifferentTags() {
+        EntityTag userTag = resource.getUserById(user.getId(), null).getEntityTag();
+        Response account = resource.getUserAccount(user.getId(), "\"" + userTag.getValue() + "\"");
+
+        assertEquals(200, account.getStatus());
+        assertNotEquals(userTag, account.getEntityTag());
+        assertEquals("tanaka_taro", parse(account).getJsonObject("user").getString("username"));
+    }
+
+    @Test
+    public void testUnknownUserIs404() {
+        assertEquals(404, resource.getUserById(UUID.randomUUID(), null).getStatus());
+    }
+}